@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -239,26 +240,29 @@ public class Cglib2AopProxy implements AopProxy, Serializable {
 		// by sending the aop calls direct to the target using the fixed
 		// chain for that method
 		if (isStatic && isFrozen) {
-			Callback[] fixedCallbacks = null;
-
 			Method[] methods = rootClass.getMethods();
-			fixedCallbacks = new Callback[methods.length];
+			List fixedCallbackList = new ArrayList(methods.length);
 
 			fixedInterceptorMap = new HashMap();
 
-			// TODO: small memory optimisation here (can skip creation for
-			// methods with no advice)
+			// methods without advice are handled by the main callbacks,
+			// so we only need fixed callbacks for advised methods
 			for (int x = 0; x < methods.length; x++) {
 
 				List chain = advised.getAdvisorChainFactory()
 				    .getInterceptorsAndDynamicInterceptionAdvice(advised,
 				        null, methods[x], rootClass);
 
-				fixedCallbacks[x] = new FixedChainStaticTargetInterceptor(chain, advised.getTargetSource().getTarget());
-
-				fixedInterceptorMap.put(methods[x].toString(), new Integer(x));
+				if (!chain.isEmpty()) {
+					fixedInterceptorMap.put(methods[x].toString(), new Integer(fixedCallbackList.size()));
+					fixedCallbackList.add(
+					    new FixedChainStaticTargetInterceptor(chain, advised.getTargetSource().getTarget()));
+				}
 			}
 
+			Callback[] fixedCallbacks =
+			    (Callback[]) fixedCallbackList.toArray(new Callback[fixedCallbackList.size()]);
+
 			// now copy both the callbacks from mainCallbacks
 			// and fixedCallbacks into the callbacks array.
 			callbacks = new Callback[mainCallbacks.length
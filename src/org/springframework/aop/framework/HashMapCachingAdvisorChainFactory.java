@@ -17,6 +17,7 @@
 package org.springframework.aop.framework;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +30,11 @@ import org.springframework.core.CollectionFactory;
  * IdentityMap (if available), which skip expensive Method.hashCode() calls.
  * Falls back to standard HashMap on plain JDK 1.3.
  *
+ * <p>The cache is copy-on-write: lookups work on an immutable snapshot and
+ * don't need to synchronize, while adding a newly calculated chain copies
+ * the cache. This suits the access pattern of a proxy, with a small number
+ * of methods that are invoked very often. Cached chains are unmodifiable.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @see org.springframework.core.CollectionFactory#createIdentityMapIfPossible
@@ -36,16 +42,23 @@ import org.springframework.core.CollectionFactory;
  */
 public final class HashMapCachingAdvisorChainFactory implements AdvisorChainFactory {
 
-	private final Map methodCache = CollectionFactory.createIdentityMapIfPossible(32);
+	/** Snapshot of the method cache, never modified after publication */
+	private volatile Map methodCache = CollectionFactory.createIdentityMapIfPossible(16);
 	
 	public List getInterceptorsAndDynamicInterceptionAdvice(
 			Advised config, Object proxy, Method method, Class targetClass) {
 		List cached = (List) this.methodCache.get(method);
 		if (cached == null) {
 			// recalculate
-			cached = AdvisorChainFactoryUtils.calculateInterceptorsAndDynamicInterceptionAdvice(
-					config, proxy, method, targetClass);
-			this.methodCache.put(method, cached);
+			cached = Collections.unmodifiableList(
+					AdvisorChainFactoryUtils.calculateInterceptorsAndDynamicInterceptionAdvice(
+							config, proxy, method, targetClass));
+			synchronized (this) {
+				Map newCache = CollectionFactory.createIdentityMapIfPossible(this.methodCache.size() + 1);
+				newCache.putAll(this.methodCache);
+				newCache.put(method, cached);
+				this.methodCache = newCache;
+			}
 		}
 		return cached;
 	}
@@ -53,8 +66,8 @@ public final class HashMapCachingAdvisorChainFactory implements AdvisorChainFact
 	public void activated(AdvisedSupport advisedSupport) {
 	}
 
-	public void adviceChanged(AdvisedSupport advisedSupport) {
-		this.methodCache.clear();
+	public synchronized void adviceChanged(AdvisedSupport advisedSupport) {
+		this.methodCache = CollectionFactory.createIdentityMapIfPossible(16);
 	}
 
 }
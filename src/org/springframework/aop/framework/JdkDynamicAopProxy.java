@@ -20,11 +20,14 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.aopalliance.intercept.MethodInvocation;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.aop.Advisor;
 import org.springframework.aop.TargetSource;
 
 /**
@@ -46,6 +49,12 @@ import org.springframework.aop.TargetSource;
  * are serializable (meaning both Advices and Pointcuts)
  * and the TargetSource is serializable.
  *
+ * <p>If the configuration is frozen and the TargetSource is static, the
+ * interceptor chain for each proxied method gets resolved once on proxy
+ * creation. Invocations then neither consult the AdvisorChainFactory nor
+ * the TargetSource, and methods without advice are invoked on the target
+ * directly, without creating a MethodInvocation.
+ *
  * 本身是InvocationHandler实现类，因此充当了jdk动态代理中的参数。
  *
  * @author Rod Johnson
@@ -71,6 +80,20 @@ final class JdkDynamicAopProxy implements AopProxy, InvocationHandler, Serializa
 	/** Config used to configure this proxy */
 	private AdvisedSupport advisedSupport;
 
+	/**
+	 * Interceptor chains resolved on proxy creation: Method --> List.
+	 * Only used for frozen configurations with a static TargetSource, else null.
+	 */
+	private transient Map frozenChains;
+
+	/** Target for frozen chains, obtained once from the static TargetSource */
+	private transient Object frozenTarget;
+
+	/** Advisors and TargetSource that the frozen chains have been resolved for */
+	private transient Advisor[] frozenAdvisors;
+
+	private transient TargetSource frozenTargetSource;
+
 	/**
 	 * Construct a new JDK proxy.
 	 * @throws AopConfigException if the config is invalid. We try
@@ -85,6 +108,41 @@ final class JdkDynamicAopProxy implements AopProxy, InvocationHandler, Serializa
 		this.advisedSupport = config;
 	}
 
+	/**
+	 * Resolve the interceptor chains for all methods of the given proxied
+	 * interfaces, if the configuration is frozen and the TargetSource is static.
+	 * The resulting map is never modified after this method has returned.
+	 */
+	private void initFrozenChains(Class[] proxiedInterfaces) {
+		if (!this.advisedSupport.isFrozen() || !this.advisedSupport.getTargetSource().isStatic()) {
+			return;
+		}
+		Object target = null;
+		try {
+			target = this.advisedSupport.getTargetSource().getTarget();
+		}
+		catch (Exception ex) {
+			throw new AopConfigException("Could not obtain target from static TargetSource", ex);
+		}
+		Class targetClass = (target != null ? target.getClass() : null);
+		// keyed by Method equality: java.lang.reflect.Proxy passes its own Method instances
+		Map chains = new HashMap(32);
+		for (int i = 0; i < proxiedInterfaces.length; i++) {
+			if (proxiedInterfaces[i] == Advised.class) {
+				continue;
+			}
+			Method[] methods = proxiedInterfaces[i].getMethods();
+			for (int j = 0; j < methods.length; j++) {
+				chains.put(methods[j], this.advisedSupport.advisorChainFactory.getInterceptorsAndDynamicInterceptionAdvice(
+						this.advisedSupport, null, methods[j], targetClass));
+			}
+		}
+		this.frozenTarget = target;
+		this.frozenAdvisors = this.advisedSupport.getAdvisors();
+		this.frozenTargetSource = this.advisedSupport.getTargetSource();
+		this.frozenChains = chains;
+	}
+
 	/**
 	 * Implementation of InvocationHandler.invoke.
 	 * Callers will see exactly the exception thrown by the target, unless a hook
@@ -117,23 +175,44 @@ final class JdkDynamicAopProxy implements AopProxy, InvocationHandler, Serializa
 			}
 			
 			Object retVal = null;
-			
-			// May be null. Get as late as possible to minimize the time we "own" the target,
-			// in case it comes from a pool.
-			target = targetSource.getTarget();
-			if (target != null) {
-				targetClass = target.getClass();
+
+			// Use the chain resolved on proxy creation, if available
+			// and if the config hasn't been unfrozen and changed since.
+			List chain = null;
+			if (this.frozenChains != null && this.advisedSupport.getAdvisors() == this.frozenAdvisors &&
+					targetSource == this.frozenTargetSource) {
+				chain = (List) this.frozenChains.get(method);
 			}
-			
-			if (this.advisedSupport.exposeProxy) {
-				// Make invocation available if necessary
-				oldProxy = AopContext.setCurrentProxy(proxy);
-				setProxyContext = true;
+
+			if (chain != null) {
+				// Static target: nothing to release.
+				target = this.frozenTarget;
+				if (target != null) {
+					targetClass = target.getClass();
+				}
+				if (this.advisedSupport.exposeProxy) {
+					oldProxy = AopContext.setCurrentProxy(proxy);
+					setProxyContext = true;
+				}
+			}
+			else {
+				// May be null. Get as late as possible to minimize the time we "own" the target,
+				// in case it comes from a pool.
+				target = targetSource.getTarget();
+				if (target != null) {
+					targetClass = target.getClass();
+				}
+
+				if (this.advisedSupport.exposeProxy) {
+					// Make invocation available if necessary
+					oldProxy = AopContext.setCurrentProxy(proxy);
+					setProxyContext = true;
+				}
+
+				// Get the interception chain for this method
+				chain = this.advisedSupport.advisorChainFactory.getInterceptorsAndDynamicInterceptionAdvice(
+						this.advisedSupport, proxy, method, targetClass);
 			}
-		
-			// Get the interception chain for this method
-			List chain = this.advisedSupport.advisorChainFactory.getInterceptorsAndDynamicInterceptionAdvice(
-					this.advisedSupport, proxy, method, targetClass);
 			
 			// Check whether we have any advice. If we don't, we can fallback on
 			// direct reflective invocation of the target, and avoid creating a MethodInvocation
@@ -193,6 +272,9 @@ final class JdkDynamicAopProxy implements AopProxy, InvocationHandler, Serializa
 			logger.debug("Creating JDK dynamic proxy for [" + this.advisedSupport.getTargetSource().getTargetClass() + "]");
 		}
 		Class[] proxiedInterfaces = AopProxyUtils.completeProxiedInterfaces(this.advisedSupport);
+		if (this.frozenChains == null) {
+			initFrozenChains(proxiedInterfaces);
+		}
 		return Proxy.newProxyInstance(cl, proxiedInterfaces, this);
 	}
 
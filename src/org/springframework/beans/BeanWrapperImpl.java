@@ -52,6 +52,7 @@ import org.springframework.beans.propertyeditors.LocaleEditor;
 import org.springframework.beans.propertyeditors.PropertiesEditor;
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
 import org.springframework.beans.propertyeditors.URLEditor;
+import org.springframework.core.CollectionFactory;
 import org.springframework.util.StringUtils;
 
 /**
@@ -73,6 +74,11 @@ import org.springframework.util.StringUtils;
  * arrays can be written against a comma delimited String as String arrays are
  * converted in such a format if the array itself is not assignable.
  *
+ * <p>Property paths are parsed once and cached, shared by all BeanWrapperImpl
+ * instances. Property read and write methods are invoked through reflection by
+ * default; CGLIB-generated accessors can be activated instead, for faster
+ * repeated property access.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @author Jean-Pierre Pawlak
@@ -91,6 +97,19 @@ public class BeanWrapperImpl implements BeanWrapper {
 	/** We'll create a lot of these objects, so we don't want a new logger every time */
 	private static final Log logger = LogFactory.getLog(BeanWrapperImpl.class);
 
+	/**
+	 * Maximum number of parsed property paths to cache. Protects against an
+	 * ever-growing cache in case of arbitrary paths, like map keys that
+	 * originate from request parameters.
+	 */
+	private static final int PROPERTY_PATH_CACHE_LIMIT = 1024;
+
+	/**
+	 * Cache of parsed property paths: property path String to
+	 * PropertyTokenHolder array, with one element per nested property.
+	 */
+	private static final Map propertyPathCache = CollectionFactory.createConcurrentMapIfPossible(256);
+
 
 	//---------------------------------------------------------------------
 	// Instance data
@@ -117,6 +136,9 @@ public class BeanWrapperImpl implements BeanWrapper {
 	/* Map with cached nested BeanWrappers */
 	private Map nestedBeanWrappers;
 
+	/** Whether to invoke property accessors through CGLIB rather than reflection */
+	private boolean useCglibAccessors = false;
+
 
 	//---------------------------------------------------------------------
 	// Constructors
@@ -192,10 +214,39 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 */
 	private BeanWrapperImpl(Object object, String nestedPath, BeanWrapperImpl superBw) {
 		this.defaultEditors = superBw.defaultEditors;
+		this.useCglibAccessors = superBw.useCglibAccessors;
 		setWrappedInstance(object, nestedPath);
 	}
 
 
+	//---------------------------------------------------------------------
+	// Configuration
+	//---------------------------------------------------------------------
+
+	/**
+	 * Set whether to invoke property read and write methods through
+	 * CGLIB-generated accessor classes rather than through reflection.
+	 * Default is false. Applies to nested BeanWrappers too.
+	 * <p>The accessor class for a bean class gets generated on first access
+	 * and is cached for all BeanWrapperImpl instances. This pays off for
+	 * repeated access to the same kind of objects, like in data binding or
+	 * row mapping. Requires CGLIB on the class path; non-public classes and
+	 * methods will still be accessed through reflection.
+	 * @see net.sf.cglib.reflect.FastClass
+	 */
+	public void setUseCglibAccessors(boolean useCglibAccessors) {
+		this.useCglibAccessors = useCglibAccessors;
+	}
+
+	/**
+	 * Return whether to invoke property read and write methods through
+	 * CGLIB-generated accessor classes.
+	 */
+	public boolean isUseCglibAccessors() {
+		return useCglibAccessors;
+	}
+
+
 	//---------------------------------------------------------------------
 	// Implementation of BeanWrapper
 	//---------------------------------------------------------------------
@@ -358,7 +409,7 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * @param last whether to return the last separator rather than the first
 	 * @return the index of the nested property separator, or -1 if none
 	 */
-	private int getNestedPropertySeparatorIndex(String propertyPath, boolean last) {
+	private static int getNestedPropertySeparatorIndex(String propertyPath, boolean last) {
 		boolean inKey = false;
 		int i = (last ? propertyPath.length()-1 : 0);
 		while ((last && i >= 0) || i < propertyPath.length()) {
@@ -378,16 +429,30 @@ public class BeanWrapperImpl implements BeanWrapper {
 	}
 
 	/**
-	 * Get the last component of the path. Also works if not nested.
-	 * @param bw BeanWrapper to work on
-	 * @param nestedPath property path we know is nested
-	 * @return last component of the path (the property on the target bean)
+	 * Return the parsed form of the given property path, from the cache
+	 * if possible.
+	 * @param propertyPath property path, which may be nested
+	 * @return the tokens for each property in the path, with the last
+	 * element representing the property on the target bean
 	 */
-	private String getFinalPath(BeanWrapper bw, String nestedPath) {
-		if (bw == this) {
-			return nestedPath;
+	private static PropertyTokenHolder[] getPropertyPathTokens(String propertyPath) {
+		PropertyTokenHolder[] tokens = (PropertyTokenHolder[]) propertyPathCache.get(propertyPath);
+		if (tokens == null) {
+			List tokenList = new ArrayList(4);
+			String remainingPath = propertyPath;
+			int pos = getNestedPropertySeparatorIndex(remainingPath, false);
+			while (pos > -1) {
+				tokenList.add(getPropertyNameTokens(remainingPath.substring(0, pos)));
+				remainingPath = remainingPath.substring(pos + 1);
+				pos = getNestedPropertySeparatorIndex(remainingPath, false);
+			}
+			tokenList.add(getPropertyNameTokens(remainingPath));
+			tokens = (PropertyTokenHolder[]) tokenList.toArray(new PropertyTokenHolder[tokenList.size()]);
+			if (propertyPathCache.size() < PROPERTY_PATH_CACHE_LIMIT) {
+				propertyPathCache.put(propertyPath, tokens);
+			}
 		}
-		return nestedPath.substring(getNestedPropertySeparatorIndex(nestedPath, true) + 1);
+		return tokens;
 	}
 
 	/**
@@ -396,17 +461,20 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * @return a BeanWrapper for the target bean
 	 */
 	protected BeanWrapperImpl getBeanWrapperForPropertyPath(String propertyPath) throws BeansException {
-		int pos = getNestedPropertySeparatorIndex(propertyPath, false);
-		// handle nested properties recursively
-		if (pos > -1) {
-			String nestedProperty = propertyPath.substring(0, pos);
-			String nestedPath = propertyPath.substring(pos + 1);
-			BeanWrapperImpl nestedBw = getNestedBeanWrapper(nestedProperty);
-			return nestedBw.getBeanWrapperForPropertyPath(nestedPath);
-		}
-		else {
-			return this;
+		return getBeanWrapperForPropertyPath(getPropertyPathTokens(propertyPath));
+	}
+
+	/**
+	 * Navigate through all nested properties of the given parsed property path.
+	 * @param path the parsed property path
+	 * @return a BeanWrapper for the target bean
+	 */
+	private BeanWrapperImpl getBeanWrapperForPropertyPath(PropertyTokenHolder[] path) throws BeansException {
+		BeanWrapperImpl nestedBw = this;
+		for (int i = 0; i < path.length - 1; i++) {
+			nestedBw = nestedBw.getNestedBeanWrapper(path[i]);
 		}
+		return nestedBw;
 	}
 
 	/**
@@ -414,18 +482,17 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * Create a new one if not found in the cache.
 	 * <p>Note: Caching nested BeanWrappers is necessary now,
 	 * to keep registered custom editors for nested properties.
-	 * @param nestedProperty property to create the BeanWrapper for
+	 * @param tokens the tokens of the property to create the BeanWrapper for
 	 * @return the BeanWrapper instance, either cached or newly created
 	 */
-	private BeanWrapperImpl getNestedBeanWrapper(String nestedProperty) throws BeansException {
+	private BeanWrapperImpl getNestedBeanWrapper(PropertyTokenHolder tokens) throws BeansException {
 		if (this.nestedBeanWrappers == null) {
 			this.nestedBeanWrappers = new HashMap();
 		}
 		// get value of bean property
-		String[] tokens = getPropertyNameTokens(nestedProperty);
-		Object propertyValue = getPropertyValue(tokens[0], tokens[1], tokens[2]);
-		String canonicalName = tokens[0];
-		String propertyName = tokens[1];
+		Object propertyValue = getPropertyValue(tokens.canonicalName, tokens.actualName, tokens.key);
+		String canonicalName = tokens.canonicalName;
+		String propertyName = tokens.actualName;
 		if (propertyValue == null) {
 			throw new NullValueInNestedPathException(getWrappedClass(), this.nestedPath + canonicalName);
 		}
@@ -472,7 +539,7 @@ public class BeanWrapperImpl implements BeanWrapper {
 		return nestedBw;
 	}
 
-	private String[] getPropertyNameTokens(String propertyName) {
+	private static PropertyTokenHolder getPropertyNameTokens(String propertyName) {
 		String actualName = propertyName;
 		String key = null;
 		int keyStart = propertyName.indexOf(PROPERTY_KEY_PREFIX);
@@ -490,14 +557,15 @@ public class BeanWrapperImpl implements BeanWrapper {
 		if (key != null) {
 			canonicalName += PROPERTY_KEY_PREFIX + key + PROPERTY_KEY_SUFFIX;
 		}
-		return new String[] {canonicalName, actualName, key};
+		return new PropertyTokenHolder(propertyName, canonicalName, actualName, key);
 	}
 
 
 	public Object getPropertyValue(String propertyName) throws BeansException {
-		BeanWrapperImpl nestedBw = getBeanWrapperForPropertyPath(propertyName);
-		String[] tokens = getPropertyNameTokens(getFinalPath(nestedBw, propertyName));
-		return nestedBw.getPropertyValue(tokens[0], tokens[1], tokens[2]);
+		PropertyTokenHolder[] path = getPropertyPathTokens(propertyName);
+		BeanWrapperImpl nestedBw = getBeanWrapperForPropertyPath(path);
+		PropertyTokenHolder tokens = path[path.length - 1];
+		return nestedBw.getPropertyValue(tokens.canonicalName, tokens.actualName, tokens.key);
 	}
 
 	protected Object getPropertyValue(String propertyName, String actualName, String key) throws BeansException {
@@ -509,7 +577,7 @@ public class BeanWrapperImpl implements BeanWrapper {
 			logger.debug("About to invoke read method [" + pd.getReadMethod() + "] on object of class [" +
 					this.object.getClass().getName() + "]");
 		try {
-			Object value = pd.getReadMethod().invoke(this.object, null);
+			Object value = invokeReadMethod(pd.getReadMethod());
 			if (key != null) {
 				if (value == null) {
 					throw new NullValueInNestedPathException(
@@ -578,17 +646,18 @@ public class BeanWrapperImpl implements BeanWrapper {
 	}
 
 	public void setPropertyValue(String propertyName, Object value) throws BeansException {
+		PropertyTokenHolder[] path = getPropertyPathTokens(propertyName);
 		BeanWrapperImpl nestedBw = null;
 		try {
-			nestedBw = getBeanWrapperForPropertyPath(propertyName);
+			nestedBw = getBeanWrapperForPropertyPath(path);
 		}
 		catch (NotReadablePropertyException ex) {
 			throw new NotWritablePropertyException(
 					getWrappedClass(), this.nestedPath + propertyName,
 					"Nested property in path '" + propertyName + "' does not exist", ex);
 		}
-		String[] tokens = getPropertyNameTokens(getFinalPath(nestedBw, propertyName));
-		nestedBw.setPropertyValue(tokens[0], tokens[1], tokens[2], value);
+		PropertyTokenHolder tokens = path[path.length - 1];
+		nestedBw.setPropertyValue(tokens.canonicalName, tokens.actualName, tokens.key, value);
 	}
 
 	protected void setPropertyValue(String propertyName, String actualName, String key, Object value)
@@ -684,7 +753,7 @@ public class BeanWrapperImpl implements BeanWrapper {
 					logger.debug("About to invoke write method [" + writeMethod + "] on object of class [" +
 							this.object.getClass().getName() + "]");
 				}
-				writeMethod.invoke(this.object, new Object[] { newValue });
+				invokeWriteMethod(writeMethod, newValue);
 				if (logger.isDebugEnabled()) {
 					String msg = "Invoked write method [" + writeMethod + "] with value ";
 					// only cause toString invocation of new value in case of simple property
@@ -719,6 +788,38 @@ public class BeanWrapperImpl implements BeanWrapper {
 		}
 	}
 
+	/**
+	 * Invoke the given read method on the wrapped object,
+	 * through CGLIB or reflection.
+	 * @see #setUseCglibAccessors
+	 */
+	private Object invokeReadMethod(Method readMethod) throws InvocationTargetException, IllegalAccessException {
+		if (this.useCglibAccessors) {
+			CglibPropertyAccessor accessor = this.cachedIntrospectionResults.getCglibPropertyAccessor();
+			if (accessor != null) {
+				return accessor.invokeReadMethod(readMethod, this.object);
+			}
+		}
+		return readMethod.invoke(this.object, null);
+	}
+
+	/**
+	 * Invoke the given write method on the wrapped object,
+	 * through CGLIB or reflection.
+	 * @see #setUseCglibAccessors
+	 */
+	private void invokeWriteMethod(Method writeMethod, Object value)
+			throws InvocationTargetException, IllegalAccessException {
+		if (this.useCglibAccessors) {
+			CglibPropertyAccessor accessor = this.cachedIntrospectionResults.getCglibPropertyAccessor();
+			if (accessor != null) {
+				accessor.invokeWriteMethod(writeMethod, this.object, value);
+				return;
+			}
+		}
+		writeMethod.invoke(this.object, new Object[] { value });
+	}
+
 	public void setPropertyValue(PropertyValue pv) throws BeansException {
 		setPropertyValue(pv.getName(), pv.getValue());
 	}
@@ -937,8 +1038,9 @@ public class BeanWrapperImpl implements BeanWrapper {
 	 * Returns null if not found rather than throwing an exception.
 	 */
 	protected PropertyDescriptor getPropertyDescriptorInternal(String propertyName) throws BeansException {
-		BeanWrapperImpl nestedBw = getBeanWrapperForPropertyPath(propertyName);
-		return nestedBw.cachedIntrospectionResults.getPropertyDescriptor(getFinalPath(nestedBw, propertyName));
+		PropertyTokenHolder[] path = getPropertyPathTokens(propertyName);
+		BeanWrapperImpl nestedBw = getBeanWrapperForPropertyPath(path);
+		return nestedBw.cachedIntrospectionResults.getPropertyDescriptor(path[path.length - 1].propertyName);
 	}
 
 	public Class getPropertyType(String propertyName) throws BeansException {
@@ -1041,6 +1143,32 @@ public class BeanWrapperImpl implements BeanWrapper {
 	}
 
 
+	/**
+	 * Parsed form of a single property in a property path.
+	 */
+	private static class PropertyTokenHolder {
+
+		/** The property as specified in the path, like "map['key']" */
+		private final String propertyName;
+
+		/** The canonical name of the property, like "map[key]" */
+		private final String canonicalName;
+
+		/** The name of the actual bean property, like "map" */
+		private final String actualName;
+
+		/** The key or index into the property value, or null if none */
+		private final String key;
+
+		private PropertyTokenHolder(String propertyName, String canonicalName, String actualName, String key) {
+			this.propertyName = propertyName;
+			this.canonicalName = canonicalName;
+			this.actualName = actualName;
+			this.key = key;
+		}
+	}
+
+
 	/**
 	 * Holder for a registered custom editor with property name.
 	 * Keeps the PropertyEditor itself plus the type it was registered for.
@@ -32,9 +32,12 @@ import java.util.WeakHashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.core.CollectionFactory;
+
 /**
  * Class to cache PropertyDescriptor information for a Java class.
- * Package-visible; not for use by application code.
+ * Public for cache management; the introspection results themselves
+ * are not for use by application code.
  *
  * <p>Necessary as Introspector.getBeanInfo() in JDK 1.3 will return a new
  * deep copy of the BeanInfo every time we ask for it. We take the opportunity
@@ -45,20 +48,70 @@ import org.apache.commons.logging.LogFactory;
  * implements the factory design pattern, using a private constructor
  * and a static forClass method to obtain instances.
  *
+ * <p>Results for classes that are loaded by the class loader of this class
+ * (or a parent of it) are kept in a concurrent map, allowing for lookups
+ * without locking if a concurrent map implementation is available. Results
+ * for other classes, like those of a hot-deployed web application when
+ * Spring is deployed in a shared class loader, are held in a number of
+ * separately synchronized weak maps, to allow for proper garbage collection.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @since 05 May 2001
+ * @see #preload
+ * @see #getHitCount
+ * @see #getMissCount
  */
-final class CachedIntrospectionResults {
+public final class CachedIntrospectionResults {
 
 	private static final Log logger = LogFactory.getLog(CachedIntrospectionResults.class);
 
+	/** Number of separately synchronized maps for classes that are not cache-safe */
+	private static final int WEAK_CACHE_STRIPE_COUNT = 16;
+
+	/** Number of hit counters, each updated by a subset of threads */
+	private static final int HIT_COUNT_STRIPE_COUNT = 16;
+
+	/** Distance between two hit counters, to keep them on separate cache lines */
+	private static final int HIT_COUNT_PADDING = 8;
+
+	/**
+	 * Map keyed by class containing CachedIntrospectionResults,
+	 * for cache-safe classes only. Those cannot get garbage-collected
+	 * before this class anyway, so they can be held strongly.
+	 */
+	private static final Map strongClassCache = CollectionFactory.createConcurrentMapIfPossible(64);
+
 	/**
-	 * Map keyed by class containing CachedIntrospectionResults.
-	 * Needs to be a WeakHashMap with WeakReferences as values to allow
-	 * for proper garbage collection in case of multiple classloaders.
+	 * Maps keyed by class containing WeakReferences to CachedIntrospectionResults,
+	 * for classes that are not cache-safe. Need to be WeakHashMaps with
+	 * WeakReferences as values to allow for proper garbage collection in case
+	 * of multiple classloaders. Each class gets assigned to one of those maps
+	 * by its hash code, to reduce contention.
 	 */
-	private static final Map classCache = Collections.synchronizedMap(new WeakHashMap());
+	private static final Map[] weakClassCaches = new Map[WEAK_CACHE_STRIPE_COUNT];
+
+	static {
+		for (int i = 0; i < weakClassCaches.length; i++) {
+			weakClassCaches[i] = Collections.synchronizedMap(new WeakHashMap());
+		}
+	}
+
+	/**
+	 * Number of lookups served from the cache, in one counter per thread stripe.
+	 * Deliberately unsynchronized, to keep cached lookups free of locking:
+	 * Concurrent updates of the same counter may get lost.
+	 */
+	private static final long[] hitCounts = new long[HIT_COUNT_STRIPE_COUNT * HIT_COUNT_PADDING];
+
+	/** Number of lookups that required introspection, guarded by missCountMonitor */
+	private static long missCount = 0;
+
+	private static final Object missCountMonitor = new Object();
+
+	/** Marker for classes that cannot be accessed through a CGLIB property accessor */
+	private static final Object NO_CGLIB_PROPERTY_ACCESSOR = new Object();
+
 
 	/**
 	 * We might use this from the EJB tier, so we don't want to use synchronization.
@@ -66,37 +119,92 @@ final class CachedIntrospectionResults {
 	 * unnecessary lookup at startup only.
 	 */
 	static CachedIntrospectionResults forClass(Class clazz) throws BeansException {
-		CachedIntrospectionResults results = null;
-		Object value = classCache.get(clazz);
-		if (value instanceof Reference) {
-			Reference ref = (Reference) value;
-			results = (CachedIntrospectionResults) ref.get();
-		}
-		else {
-			results = (CachedIntrospectionResults) value;
-		}
+		CachedIntrospectionResults results = (CachedIntrospectionResults) strongClassCache.get(clazz);
 		if (results == null) {
-			// can throw BeansException
-			results = new CachedIntrospectionResults(clazz);
-			boolean cacheSafe = isCacheSafe(clazz);
-			if (logger.isDebugEnabled()) {
-				logger.debug("Class [" + clazz.getName() + "] is " + (!cacheSafe ? "not " : "") + "cache-safe");
-			}
-			if (cacheSafe) {
-				classCache.put(clazz, results);
-			}
-			else {
-				classCache.put(clazz, new WeakReference(results));
+			Reference ref = (Reference) getWeakClassCache(clazz).get(clazz);
+			if (ref != null) {
+				results = (CachedIntrospectionResults) ref.get();
 			}
 		}
-		else {
+		if (results != null) {
+			hitCounts[((System.identityHashCode(Thread.currentThread()) & Integer.MAX_VALUE) % HIT_COUNT_STRIPE_COUNT) * HIT_COUNT_PADDING]++;
 			if (logger.isDebugEnabled()) {
 				logger.debug("Using cached introspection results for class [" + clazz.getName() + "]");
 			}
+			return results;
+		}
+
+		synchronized (missCountMonitor) {
+			missCount++;
+		}
+		// can throw BeansException
+		results = new CachedIntrospectionResults(clazz);
+		boolean cacheSafe = isCacheSafe(clazz);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Class [" + clazz.getName() + "] is " + (!cacheSafe ? "not " : "") + "cache-safe");
+		}
+		if (cacheSafe) {
+			strongClassCache.put(clazz, results);
+		}
+		else {
+			getWeakClassCache(clazz).put(clazz, new WeakReference(results));
 		}
 		return results;
 	}
 
+	/**
+	 * Return the weak map that is responsible for the given class.
+	 */
+	private static Map getWeakClassCache(Class clazz) {
+		return weakClassCaches[(clazz.hashCode() & Integer.MAX_VALUE) % WEAK_CACHE_STRIPE_COUNT];
+	}
+
+	/**
+	 * Introspect the given classes upfront, to avoid introspection cost
+	 * when binding to objects of those classes for the first time.
+	 * Classes that have already been introspected will not be introspected again.
+	 * <p>Can be invoked on application startup, for example through a
+	 * MethodInvokingFactoryBean with a "staticMethod" of
+	 * "org.springframework.beans.CachedIntrospectionResults.preload".
+	 * @param classes the classes to introspect
+	 * @throws BeansException if introspection of a class failed
+	 * @see org.springframework.beans.factory.config.MethodInvokingFactoryBean
+	 */
+	public static void preload(Class[] classes) throws BeansException {
+		for (int i = 0; i < classes.length; i++) {
+			forClass(classes[i]);
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Preloaded introspection results for " + classes.length + " classes");
+		}
+	}
+
+	/**
+	 * Return the approximate number of introspection result lookups that were
+	 * served from the cache. Intended for monitoring purposes.
+	 * <p>Cache hits are counted without synchronization, in counters striped
+	 * by thread, so that cached lookups do not contend on a shared counter.
+	 * Hence concurrent lookups may occasionally not be counted.
+	 */
+	public static long getHitCount() {
+		long count = 0;
+		for (int i = 0; i < hitCounts.length; i += HIT_COUNT_PADDING) {
+			count += hitCounts[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Return the number of introspection result lookups that required
+	 * introspection of the class, as it was not cached yet (or not anymore).
+	 * Intended for monitoring purposes.
+	 */
+	public static long getMissCount() {
+		synchronized (missCountMonitor) {
+			return missCount;
+		}
+	}
+
 	/**
 	 * Check whether the given class is cache-safe,
 	 * i.e. whether it is loaded by the same class loader as the
@@ -127,6 +235,12 @@ final class CachedIntrospectionResults {
 	/** Property descriptors keyed by property name */
 	private final Map propertyDescriptorCache;
 
+	/**
+	 * CGLIB-based property accessor, or NO_CGLIB_PROPERTY_ACCESSOR; lazily created.
+	 * Volatile, so that it only gets published once fully constructed.
+	 */
+	private volatile Object cglibPropertyAccessor;
+
 	/**
 	 * Create new CachedIntrospectionResults instance fot the given class.
 	 */
@@ -192,4 +306,35 @@ final class CachedIntrospectionResults {
 		return (PropertyDescriptor) this.propertyDescriptorCache.get(propertyName);
 	}
 
+	/**
+	 * Return the CGLIB-based property accessor for the introspected class,
+	 * generating it on first access.
+	 * <p>This doesn't use locking: Concurrent first access may lead to the
+	 * accessor being resolved more than once, which is harmless as CGLIB caches
+	 * FastClasses. The accessor is published through a single volatile field,
+	 * assigned after construction, so other threads see it fully initialized.
+	 * @return the accessor, or null if the class cannot be accessed through
+	 * CGLIB, in which case reflection is supposed to be used
+	 */
+	CglibPropertyAccessor getCglibPropertyAccessor() {
+		Object accessor = this.cglibPropertyAccessor;
+		if (accessor == null) {
+			accessor = NO_CGLIB_PROPERTY_ACCESSOR;
+			try {
+				CglibPropertyAccessor cglibAccessor = CglibPropertyAccessor.forClass(getBeanClass(),
+						(PropertyDescriptor[]) this.propertyDescriptorCache.values().toArray(
+								new PropertyDescriptor[this.propertyDescriptorCache.size()]));
+				if (cglibAccessor != null) {
+					accessor = cglibAccessor;
+				}
+			}
+			catch (Throwable ex) {
+				logger.info("Could not generate CGLIB property accessor for class [" + getBeanClass().getName() +
+						"] - falling back to reflection: " + ex);
+			}
+			this.cglibPropertyAccessor = accessor;
+		}
+		return (accessor != NO_CGLIB_PROPERTY_ACCESSOR ? (CglibPropertyAccessor) accessor : null);
+	}
+
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.cglib.reflect.FastClass;
+
+/**
+ * Invokes the read and write methods of the bean properties of a specific
+ * class through a generated CGLIB FastClass rather than through reflection.
+ * Package-visible; not for use by application code.
+ *
+ * <p>A FastClass dispatches to the actual method via an index, without any
+ * access checks or argument copies. Methods that cannot be invoked through
+ * the FastClass, like public methods inherited from a non-public base class,
+ * get invoked through reflection as usual.
+ *
+ * <p>Only referenced when CGLIB property accessors are activated,
+ * to avoid a hard dependency on CGLIB.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see BeanWrapperImpl#setUseCglibAccessors
+ * @see net.sf.cglib.reflect.FastClass
+ */
+final class CglibPropertyAccessor {
+
+	private static final Object[] EMPTY_ARGS = new Object[0];
+
+	/**
+	 * Create a CglibPropertyAccessor for the given class.
+	 * @param clazz the bean class
+	 * @param pds the property descriptors of the bean class
+	 * @return the accessor, or null if the class is not public
+	 * and can hence not be accessed by a FastClass
+	 */
+	static CglibPropertyAccessor forClass(Class clazz, PropertyDescriptor[] pds) {
+		if (!Modifier.isPublic(clazz.getModifiers())) {
+			return null;
+		}
+		return new CglibPropertyAccessor(FastClass.create(clazz), pds);
+	}
+
+
+	private final FastClass fastClass;
+
+	/** FastClass method indexes keyed by read or write Method */
+	private final Map methodIndexes = new HashMap();
+
+	private CglibPropertyAccessor(FastClass fastClass, PropertyDescriptor[] pds) {
+		this.fastClass = fastClass;
+		for (int i = 0; i < pds.length; i++) {
+			addMethodIndex(pds[i].getReadMethod());
+			addMethodIndex(pds[i].getWriteMethod());
+		}
+	}
+
+	private void addMethodIndex(Method method) {
+		if (method != null && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+			int index = this.fastClass.getIndex(method.getName(), method.getParameterTypes());
+			if (index >= 0) {
+				this.methodIndexes.put(method, new Integer(index));
+			}
+		}
+	}
+
+	/**
+	 * Invoke the given read method on the given target.
+	 * @see java.lang.reflect.Method#invoke
+	 */
+	Object invokeReadMethod(Method readMethod, Object target)
+			throws InvocationTargetException, IllegalAccessException {
+		Integer index = (Integer) this.methodIndexes.get(readMethod);
+		if (index != null) {
+			return this.fastClass.invoke(index.intValue(), target, EMPTY_ARGS);
+		}
+		return readMethod.invoke(target, null);
+	}
+
+	/**
+	 * Invoke the given write method on the given target.
+	 * @see java.lang.reflect.Method#invoke
+	 */
+	void invokeWriteMethod(Method writeMethod, Object target, Object value)
+			throws InvocationTargetException, IllegalAccessException {
+		Integer index = (Integer) this.methodIndexes.get(writeMethod);
+		if (index != null) {
+			this.fastClass.invoke(index.intValue(), target, new Object[] {value});
+		}
+		else {
+			writeMethod.invoke(target, new Object[] {value});
+		}
+	}
+
+	/**
+	 * Return whether the given method gets invoked through the FastClass.
+	 */
+	boolean isOptimized(Method method) {
+		return this.methodIndexes.containsKey(method);
+	}
+
+}
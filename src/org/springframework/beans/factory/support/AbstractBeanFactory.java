@@ -44,6 +44,7 @@ import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.core.CollectionFactory;
 
 /**
  * Abstract superclass for BeanFactory implementations.
@@ -54,6 +55,13 @@ import org.springframework.beans.factory.config.ConfigurableBeanFactory;
  * definitions. It also allows for management of a bean factory hierarchy,
  * implementing the HierarchicalBeanFactory interface.
  *
+ * <p>Fully initialized singletons are kept in a concurrent map if available
+ * (JDK 1.5 or util.concurrent), so that retrieving an existing singleton does
+ * not acquire any lock. Singleton creation is tracked per bean name: a thread
+ * that requests a singleton currently being created by another thread waits
+ * for that particular bean only, while unrelated singletons can be created
+ * concurrently.
+ *
  * <p>The main template methods to be implemented by subclasses are
  * getBeanDefinition and createBean, retrieving a bean definition for
  * a given bean name respectively creating a bean instance for a given
@@ -75,7 +83,7 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 	public static final String FACTORY_BEAN_PREFIX = "&";
 
     /**
-     * 实例化bean时，注册进单例缓存的临时标记对象。
+     * 实例化bean时，登记为正在创建中的临时标记对象（尚无可用的提前引用）。
      * 表明当前bean正处于创建之中（in creation），用于监测循环依赖问题
      */
 	private static final Object CURRENTLY_IN_CREATION = new Object();
@@ -101,8 +109,21 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 
     /**
      * 单例bean的缓存map，结构：Map<String, Object>：bean名称:bean实例
+     * Only contains fully initialized singletons; lock-free reads if possible.
      */
-	private final Map singletonCache = Collections.synchronizedMap(new HashMap());
+	private final Map singletonCache = CollectionFactory.createConcurrentMapIfPossible(16);
+
+	/**
+	 * Singletons currently in creation: bean name --> SingletonCreation.
+	 * Also serves as monitor for all modifications of the singleton cache.
+	 */
+	private final Map singletonsInCreation = new HashMap();
+
+	/**
+	 * Threads waiting for a singleton that is being created by another thread:
+	 * Thread --> SingletonCreation. Guarded by the singletonsInCreation monitor.
+	 */
+	private final Map threadsWaitingForSingletons = new HashMap();
 
 
 	/**
@@ -148,13 +169,10 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 		String beanName = transformedBeanName(name);
 
 		// 检查缓存的单例map（为了获取手动注册的单例bean）
+		// Lock-free if possible: only fully initialized singletons are cached there.
 		Object sharedInstance = this.singletonCache.get(beanName);
 		// 【设计模式】双重检查的单例模式，第一重检查
 		if (sharedInstance != null) {
-			// 若bean正处于创建过程中，抛出异常
-			if (sharedInstance == CURRENTLY_IN_CREATION) {
-				throw new BeanCurrentlyInCreationException(beanName, "Requested bean is already currently in creation");
-			}
 			// 直接返回bean实例，顺便处理factory bean的情况
 			return getObjectForSharedInstance(name, sharedInstance);
 		}
@@ -188,24 +206,8 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 
         // 创建bean实例
         if (mergedBeanDefinition.isSingleton()) {
-            // 【设计模式】双重检查的单例模式实例：第一重检查
-            synchronized (this.singletonCache) {
-                // 双重检查的单例模式，锁内第二重检
-                sharedInstance = this.singletonCache.get(beanName);
-                if (sharedInstance == null) {
-                	// 将临时对象放入缓存，以解决循环依赖问题
-                    this.singletonCache.put(beanName, CURRENTLY_IN_CREATION);
-                    try {
-                    	// 创建bean实例，放入缓存map中，替代原有的临时对象
-                        sharedInstance = createBean(beanName, mergedBeanDefinition, args);
-                        this.singletonCache.put(beanName, sharedInstance);
-                    }
-                    catch (BeansException ex) {
-                        this.singletonCache.remove(beanName);
-                        throw ex;
-                    }
-                }
-            }
+            // 【设计模式】双重检查的单例模式，第二重检查在getSingleton中进行（按bean名称加锁）
+            sharedInstance = getSingleton(beanName, mergedBeanDefinition, args);
             return getObjectForSharedInstance(name, sharedInstance);
         }
         else {
@@ -224,7 +226,7 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 
 	public boolean containsBean(String name) {
 		String beanName = transformedBeanName(name);
-		if (this.singletonCache.containsKey(beanName)) {
+		if (containsSingleton(beanName)) {
 			return true;
 		}
 		if (containsBeanDefinition(beanName)) {
@@ -279,7 +281,7 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 	public String[] getAliases(String name) throws NoSuchBeanDefinitionException {
 		String beanName = transformedBeanName(name);
 		// check if bean actually exists in this bean factory
-		if (this.singletonCache.containsKey(beanName) || containsBeanDefinition(beanName)) {
+		if (containsSingleton(beanName) || containsBeanDefinition(beanName)) {
 			// if found, gather aliases
 			List aliases = new ArrayList();
 			synchronized (this.aliasMap) {
@@ -378,8 +380,12 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 	}
 
 	public void registerSingleton(String beanName, Object singletonObject) throws BeanDefinitionStoreException {
-		synchronized (this.singletonCache) {
+		synchronized (this.singletonsInCreation) {
 			Object oldObject = this.singletonCache.get(beanName);
+			SingletonCreation creation = (SingletonCreation) this.singletonsInCreation.get(beanName);
+			if (oldObject == null && creation != null) {
+				oldObject = creation.earlySingleton;
+			}
 			if (oldObject != null) {
 				throw new BeanDefinitionStoreException("Could not register object [" + singletonObject +
 						"] under bean name '" + beanName + "': there's already object [" + oldObject + " bound");
@@ -391,9 +397,20 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 	/**
 	 * 将给定的单例bean添加进当前工厂的缓存。
 	 * 需要迫切注册时调用，比如要解决循环依赖问题时。
+	 * <p>If the singleton is currently in creation by this thread, it will just
+	 * be exposed as early reference for resolving circular references; it will
+	 * only be visible in the singleton cache once its creation has completed.
 	 */
 	protected void addSingleton(String beanName, Object singletonObject) {
-		this.singletonCache.put(beanName, singletonObject);
+		synchronized (this.singletonsInCreation) {
+			SingletonCreation creation = (SingletonCreation) this.singletonsInCreation.get(beanName);
+			if (creation != null && creation.thread == Thread.currentThread()) {
+				creation.earlySingleton = singletonObject;
+			}
+			else {
+				this.singletonCache.put(beanName, singletonObject);
+			}
+		}
 	}
 
 	/**
@@ -402,18 +419,39 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 	 * @param beanName the name of the bean
 	 */
 	protected void removeSingleton(String beanName) {
-		this.singletonCache.remove(beanName);
+		synchronized (this.singletonsInCreation) {
+			SingletonCreation creation = (SingletonCreation) this.singletonsInCreation.get(beanName);
+			if (creation != null && creation.thread == Thread.currentThread()) {
+				creation.earlySingleton = CURRENTLY_IN_CREATION;
+			}
+			this.singletonCache.remove(beanName);
+		}
+	}
+
+	/**
+	 * Return whether the singleton cache of this factory contains a singleton
+	 * with the given name, either fully initialized or currently in creation.
+	 * @param beanName the name of the bean
+	 */
+	protected boolean containsSingleton(String beanName) {
+		if (this.singletonCache.containsKey(beanName)) {
+			return true;
+		}
+		synchronized (this.singletonsInCreation) {
+			return this.singletonsInCreation.containsKey(beanName);
+		}
 	}
 
 	public void destroySingletons() {
 		if (logger.isInfoEnabled()) {
 			logger.info("Destroying singletons in factory {" + this + "}");
 		}
-		synchronized (this.singletonCache) {
-			Set singletonCacheKeys = new HashSet(this.singletonCache.keySet());
-			for (Iterator it = singletonCacheKeys.iterator(); it.hasNext();) {
-				destroySingleton((String) it.next());
-			}
+		Set singletonCacheKeys = null;
+		synchronized (this.singletonsInCreation) {
+			singletonCacheKeys = new HashSet(this.singletonCache.keySet());
+		}
+		for (Iterator it = singletonCacheKeys.iterator(); it.hasNext();) {
+			destroySingleton((String) it.next());
 		}
 	}
 
@@ -424,7 +462,10 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 	 * @see #destroyBean
 	 */
 	protected final void destroySingleton(String beanName) {
-		Object singletonInstance = this.singletonCache.remove(beanName);
+		Object singletonInstance = null;
+		synchronized (this.singletonsInCreation) {
+			singletonInstance = this.singletonCache.remove(beanName);
+		}
 		if (singletonInstance != null) {
 			destroyBean(beanName, singletonInstance);
 		}
@@ -477,7 +518,7 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 	 * object type (including subclasses), or an empty array if none
 	 */
 	public String[] getSingletonNames(Class type) {
-		synchronized (this.singletonCache) {
+		synchronized (this.singletonsInCreation) {
 			Set keys = this.singletonCache.keySet();
 			Set matches = new HashSet();
 			Iterator itr = keys.iterator();
@@ -492,6 +533,103 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 		}
 	}
 
+	/**
+	 * Return the singleton with the given name, creating it if necessary.
+	 * <p>Only the creation of this particular singleton is guarded: a thread that
+	 * requests a singleton currently in creation by another thread waits until
+	 * that creation has finished, while creation of other singletons proceeds.
+	 * A circular reference within the creating thread is resolved through an
+	 * eagerly cached early reference, as registered via <code>addSingleton</code>,
+	 * or leads to a BeanCurrentlyInCreationException. The same applies to
+	 * circular references between singletons that are being created by different
+	 * threads, which would otherwise wait for each other forever.
+	 * @param beanName the name of the bean
+	 * @param mergedBeanDefinition the merged bean definition for the bean
+	 * @param args arguments to use if creating a prototype using explicit arguments
+	 * @return the fully initialized singleton, or an early reference in case
+	 * of a circular reference
+	 * @see #addSingleton
+	 */
+	private Object getSingleton(String beanName, RootBeanDefinition mergedBeanDefinition, Object[] args) {
+		Thread currentThread = Thread.currentThread();
+		SingletonCreation creation = null;
+		synchronized (this.singletonsInCreation) {
+			while (creation == null) {
+				// 锁内第二重检查
+				Object singletonObject = this.singletonCache.get(beanName);
+				if (singletonObject != null) {
+					return singletonObject;
+				}
+				SingletonCreation existing = (SingletonCreation) this.singletonsInCreation.get(beanName);
+				if (existing == null) {
+					// 登记为正在创建中，以解决循环依赖问题
+					creation = new SingletonCreation(currentThread);
+					this.singletonsInCreation.put(beanName, creation);
+				}
+				else if (existing.thread == currentThread || isWaitingFor(existing.thread, currentThread)) {
+					// circular reference: resolve it like within a single thread
+					if (existing.earlySingleton == CURRENTLY_IN_CREATION) {
+						throw new BeanCurrentlyInCreationException(beanName, "Requested bean is already currently in creation");
+					}
+					return existing.earlySingleton;
+				}
+				else {
+					// wait for creation of this singleton in another thread
+					this.threadsWaitingForSingletons.put(currentThread, existing);
+					try {
+						this.singletonsInCreation.wait();
+					}
+					catch (InterruptedException ex) {
+						currentThread.interrupt();
+						throw new BeanCreationException(beanName,
+								"Interrupted while waiting for singleton creation in another thread", ex);
+					}
+					finally {
+						this.threadsWaitingForSingletons.remove(currentThread);
+					}
+				}
+			}
+		}
+
+		Object singletonObject = null;
+		try {
+			// 创建bean实例，放入缓存map中，替代原有的临时对象
+			singletonObject = createBean(beanName, mergedBeanDefinition, args);
+			return singletonObject;
+		}
+		finally {
+			synchronized (this.singletonsInCreation) {
+				if (singletonObject != null) {
+					this.singletonCache.put(beanName, singletonObject);
+				}
+				this.singletonsInCreation.remove(beanName);
+				this.singletonsInCreation.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Determine whether the given thread waits, directly or transitively,
+	 * for a singleton that is currently in creation by the given owner thread.
+	 * Must be called while holding the singletonsInCreation monitor.
+	 * @param thread the thread that might be waiting
+	 * @param owner the thread that might be waited for
+	 */
+	private boolean isWaitingFor(Thread thread, Thread owner) {
+		Set visited = new HashSet();
+		while (thread != null && visited.add(thread)) {
+			SingletonCreation awaited = (SingletonCreation) this.threadsWaitingForSingletons.get(thread);
+			if (awaited == null) {
+				return false;
+			}
+			if (awaited.thread == owner) {
+				return true;
+			}
+			thread = awaited.thread;
+		}
+		return false;
+	}
+
     /**
      * 根据bean名称和实例，获取bean实例。
      * 处理了factory bean的情况：若实例是factory bean，且调用者想要一个由factory bean创建的bean实例，
@@ -647,4 +785,21 @@ public abstract class AbstractBeanFactory implements ConfigurableBeanFactory {
 	 */
 	protected abstract void destroyBean(String beanName, Object bean);
 
+
+	/**
+	 * Holder for the state of a singleton that is currently in creation:
+	 * the creating thread and an early reference to the bean, if exposed.
+	 * The early reference is CURRENTLY_IN_CREATION as long as none is available.
+	 */
+	private static class SingletonCreation {
+
+		private final Thread thread;
+
+		private Object earlySingleton = CURRENTLY_IN_CREATION;
+
+		private SingletonCreation(Thread thread) {
+			this.thread = thread;
+		}
+	}
+
 }
@@ -18,13 +18,17 @@ package org.springframework.beans.factory.support;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.BeansException;
+import org.springframework.beans.PropertyValue;
 import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.BeanCurrentlyInCreationException;
 import org.springframework.beans.factory.BeanDefinitionStoreException;
@@ -34,7 +38,11 @@ import org.springframework.beans.factory.BeanIsAbstractException;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.core.CollectionFactory;
 import org.springframework.util.StringUtils;
 
 /**
@@ -62,6 +70,24 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	/** bean名称列表，按注册顺序排序 */
 	private final List beanDefinitionNames = new LinkedList();
 
+	/**
+	 * Index of bean definition names by type: Class to TypeIndexEntry, with
+	 * names in registration order. Filled on demand, cleared on every registration.
+	 */
+	private final Map beanNamesByType = CollectionFactory.createConcurrentMapIfPossible(16);
+
+	/**
+	 * Incremented on every registration. Index entries computed for an older
+	 * version get ignored, even if put after the index has been cleared.
+	 */
+	private volatile int beanDefinitionVersion = 0;
+
+	/** Names of singletons registered without bean definition, in registration order */
+	private final List manualSingletonNames = new ArrayList();
+
+	/** Number of threads to use for pre-instantiating singletons */
+	private int preInstantiationThreadCount = 1;
+
 
 	/**
 	 * Create a new DefaultListableBeanFactory.
@@ -86,6 +112,33 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		this.allowBeanDefinitionOverriding = allowBeanDefinitionOverriding;
 	}
 
+	/**
+	 * Set the number of threads to use for pre-instantiating singletons.
+	 * Default is 1, creating all singletons one after another in registration
+	 * order on the calling thread.
+	 * <p>With more than one thread, singletons that do not depend on each other
+	 * get created in parallel, which speeds up startup when many singletons
+	 * perform expensive I/O on initialization. Dependencies are determined from
+	 * "depends-on" declarations and bean references in property values and
+	 * constructor arguments: A singleton gets created after all singletons that
+	 * it refers to. Further dependencies, like autowired ones, are resolved on
+	 * demand as usual, with a singleton being created only once even if requested
+	 * by multiple threads.
+	 * <p>The first exception thrown by any singleton creation aborts
+	 * pre-instantiation: No further singletons get created, already created ones
+	 * get destroyed, and the exception gets rethrown to the caller.
+	 * <p>Application contexts can specify this value in an overridden
+	 * <code>createBeanFactory</code> method.
+	 * @see #preInstantiateSingletons
+	 * @see org.springframework.context.support.AbstractXmlApplicationContext#createBeanFactory
+	 */
+	public void setPreInstantiationThreadCount(int preInstantiationThreadCount) {
+		if (preInstantiationThreadCount < 1) {
+			throw new IllegalArgumentException("preInstantiationThreadCount must be at least 1");
+		}
+		this.preInstantiationThreadCount = preInstantiationThreadCount;
+	}
+
 
 	//---------------------------------------------------------------------
 	// Implementation of ListableBeanFactory
@@ -102,8 +155,36 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	/**
 	 * 找到符合指定类型的所有bean名称
 	 * 符合类型是指，属于指定类及其子类，或是指定接口的实现类
+	 * <p>The result for each type is kept in an index that gets cleared
+	 * whenever a bean definition is registered or overridden. Hence, repeated
+	 * lookups for the same type, as performed by autowiring by type and by
+	 * auto-proxy creators, do not have to check every bean definition again.
+	 * Bean definitions that are modified after registration need to be
+	 * registered again for the index to reflect the change.
+	 * @see #registerBeanDefinition
 	 */
 	public String[] getBeanDefinitionNames(Class type) {
+		if (type == null) {
+			return doGetBeanDefinitionNames(null);
+		}
+		// read the version first: a registration during the lookup
+		// will then render the computed entry outdated
+		int version = this.beanDefinitionVersion;
+		TypeIndexEntry entry = (TypeIndexEntry) this.beanNamesByType.get(type);
+		if (entry == null || entry.version != version) {
+			entry = new TypeIndexEntry(doGetBeanDefinitionNames(type), version);
+			this.beanNamesByType.put(type, entry);
+		}
+		return (String[]) entry.beanNames.clone();
+	}
+
+	/**
+	 * Check all bean definitions for a match with the given type.
+	 * @param type the type to match, or null for all bean definitions
+	 * @return the names of the matching bean definitions, in registration order
+	 * @see #isBeanDefinitionTypeMatch
+	 */
+	private String[] doGetBeanDefinitionNames(Class type) {
 		List matches = new ArrayList();
 		Iterator it = this.beanDefinitionNames.iterator();
 		while (it.hasNext()) {
@@ -158,12 +239,15 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 			}
 		}
 
-		String[] singletonNames = getSingletonNames(type);
+		String[] singletonNames = getManualSingletonNames();
 		for (int i = 0; i < singletonNames.length; i++) {
-			if (!containsBeanDefinition(singletonNames[i])) {
+			if (!containsBeanDefinition(singletonNames[i]) && containsSingleton(singletonNames[i])) {
 				// directly registered singleton
 				try {
-					result.put(singletonNames[i], getBean(singletonNames[i]));
+					Object singletonObject = getBean(singletonNames[i]);
+					if (type == null || type.isInstance(singletonObject)) {
+						result.put(singletonNames[i], singletonObject);
+					}
 				}
 				catch (BeanCurrentlyInCreationException ex) {
 					if (logger.isDebugEnabled()) {
@@ -223,29 +307,21 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	/**
 	 * 初始化全部单例对象（懒加载除外），同时考虑FactoryBean的情况。
 	 * 如果失败，销毁所有已创建的单例对象，以避免挂起资源。
+	 * <p>If a pre-instantiation thread count greater than 1 has been specified,
+	 * independent singletons get created in parallel.
+	 * @see #setPreInstantiationThreadCount
 	 */
 	public void preInstantiateSingletons() throws BeansException {
 		try {
-			for (Iterator it = this.beanDefinitionNames.iterator(); it.hasNext();) {
-				String beanName = (String) it.next();
-				// 包含bean定义信息，才允许继续创建
-				if (containsBeanDefinition(beanName)) {
-					// 获取融合后的bean定义对象。其中融合是指递归包含所有parent属性指代的bean定义信息
-					RootBeanDefinition bd = getMergedBeanDefinition(beanName, false);
-					// 满足以下条件才会在此步创建bean：有bean类型、非抽象、是单例、非懒加载
-					if (bd.hasBeanClass() && !bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit()) {
-						// 若属于FactoryBean，首先获取到这个工厂bean后，再获取这个bean
-						// （因为获取bean时会识别出它是由工厂bean创建的，所以需要首先把工厂bean创建出来）
-						if (FactoryBean.class.isAssignableFrom(bd.getBeanClass())) {
-							FactoryBean factory = (FactoryBean) getBean(FACTORY_BEAN_PREFIX + beanName);
-							// factory bean下，需要通过FactoryBean来判断这个bean是否单例
-							if (factory.isSingleton()) {
-								getBean(beanName);
-							}
-						} else {
-							// 非FactoryBean，普通bean直接创建即可
-							getBean(beanName);
-						}
+			if (this.preInstantiationThreadCount > 1) {
+				new ParallelPreInstantiation(getPreInstantiationCandidates()).run();
+			}
+			else {
+				for (Iterator it = this.beanDefinitionNames.iterator(); it.hasNext();) {
+					String beanName = (String) it.next();
+					// 包含bean定义信息，才允许继续创建
+					if (isPreInstantiationCandidate(beanName)) {
+						preInstantiateSingleton(beanName);
 					}
 				}
 			}
@@ -262,6 +338,119 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		}
 	}
 
+	/**
+	 * Determine whether the given bean needs to be created on pre-instantiation.
+	 */
+	private boolean isPreInstantiationCandidate(String beanName) {
+		if (containsBeanDefinition(beanName)) {
+			// 获取融合后的bean定义对象。其中融合是指递归包含所有parent属性指代的bean定义信息
+			RootBeanDefinition bd = getMergedBeanDefinition(beanName, false);
+			// 满足以下条件才会在此步创建bean：有bean类型、非抽象、是单例、非懒加载
+			return (bd.hasBeanClass() && !bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit());
+		}
+		return false;
+	}
+
+	/**
+	 * Return the names of all beans that need to be created on pre-instantiation,
+	 * in registration order.
+	 */
+	private List getPreInstantiationCandidates() {
+		List candidates = new ArrayList();
+		for (Iterator it = this.beanDefinitionNames.iterator(); it.hasNext();) {
+			String beanName = (String) it.next();
+			if (isPreInstantiationCandidate(beanName)) {
+				candidates.add(beanName);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Create the given singleton, or the singleton FactoryBean and its object.
+	 */
+	private void preInstantiateSingleton(String beanName) throws BeansException {
+		RootBeanDefinition bd = getMergedBeanDefinition(beanName, false);
+		// 若属于FactoryBean，首先获取到这个工厂bean后，再获取这个bean
+		// （因为获取bean时会识别出它是由工厂bean创建的，所以需要首先把工厂bean创建出来）
+		if (FactoryBean.class.isAssignableFrom(bd.getBeanClass())) {
+			FactoryBean factory = (FactoryBean) getBean(FACTORY_BEAN_PREFIX + beanName);
+			// factory bean下，需要通过FactoryBean来判断这个bean是否单例
+			if (factory.isSingleton()) {
+				getBean(beanName);
+			}
+		} else {
+			// 非FactoryBean，普通bean直接创建即可
+			getBean(beanName);
+		}
+	}
+
+	/**
+	 * Determine the names of the beans that the given bean refers to in its
+	 * definition: via "depends-on", bean references in property values and
+	 * constructor arguments, including those of inner beans and managed collections.
+	 * Autowired dependencies are not known in advance and hence not included.
+	 */
+	private Set getReferencedBeanNames(String beanName) {
+		RootBeanDefinition bd = getMergedBeanDefinition(beanName, false);
+		Set beanNames = new HashSet();
+		addReferencedBeanNames(bd, beanNames);
+		return beanNames;
+	}
+
+	private void addReferencedBeanNames(BeanDefinition bd, Set beanNames) {
+		if (bd instanceof AbstractBeanDefinition) {
+			String[] dependsOn = ((AbstractBeanDefinition) bd).getDependsOn();
+			if (dependsOn != null) {
+				for (int i = 0; i < dependsOn.length; i++) {
+					beanNames.add(transformedBeanName(dependsOn[i]));
+				}
+			}
+		}
+		if (bd.getPropertyValues() != null) {
+			PropertyValue[] pvs = bd.getPropertyValues().getPropertyValues();
+			for (int i = 0; i < pvs.length; i++) {
+				addReferencedBeanNames(pvs[i].getValue(), beanNames);
+			}
+		}
+		ConstructorArgumentValues cargs = bd.getConstructorArgumentValues();
+		if (cargs != null) {
+			for (Iterator it = cargs.getIndexedArgumentValues().values().iterator(); it.hasNext();) {
+				addReferencedBeanNames(((ConstructorArgumentValues.ValueHolder) it.next()).getValue(), beanNames);
+			}
+			for (Iterator it = cargs.getGenericArgumentValues().iterator(); it.hasNext();) {
+				addReferencedBeanNames(((ConstructorArgumentValues.ValueHolder) it.next()).getValue(), beanNames);
+			}
+		}
+	}
+
+	private void addReferencedBeanNames(Object value, Set beanNames) {
+		if (value instanceof BeanDefinitionHolder) {
+			addReferencedBeanNames(((BeanDefinitionHolder) value).getBeanDefinition(), beanNames);
+		}
+		else if (value instanceof BeanDefinition) {
+			addReferencedBeanNames((BeanDefinition) value, beanNames);
+		}
+		else if (value instanceof RuntimeBeanReference) {
+			RuntimeBeanReference ref = (RuntimeBeanReference) value;
+			if (!ref.isToParent()) {
+				beanNames.add(transformedBeanName(ref.getBeanName()));
+			}
+		}
+		else if (value instanceof ManagedList || value instanceof ManagedSet) {
+			for (Iterator it = ((Collection) value).iterator(); it.hasNext();) {
+				addReferencedBeanNames(it.next(), beanNames);
+			}
+		}
+		else if (value instanceof ManagedMap) {
+			for (Iterator it = ((Map) value).entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry) it.next();
+				addReferencedBeanNames(entry.getKey(), beanNames);
+				addReferencedBeanNames(entry.getValue(), beanNames);
+			}
+		}
+	}
+
 
 	//---------------------------------------------------------------------
 	// Implementation of BeanDefinitionRegistry
@@ -292,6 +481,36 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		}
 		// 注册进map中
 		this.beanDefinitionMap.put(name, beanDefinition);
+		// the new definition may match any type, and may change the merged
+		// definitions of child beans: rebuild the type index on demand
+		this.beanDefinitionVersion++;
+		this.beanNamesByType.clear();
+	}
+
+
+	/**
+	 * Overridden to keep track of directly registered singletons,
+	 * to be considered by <code>getBeansOfType</code> without having
+	 * to check the entire singleton cache.
+	 * @see #getBeansOfType
+	 */
+	public void registerSingleton(String beanName, Object singletonObject) throws BeanDefinitionStoreException {
+		super.registerSingleton(beanName, singletonObject);
+		synchronized (this.manualSingletonNames) {
+			if (!this.manualSingletonNames.contains(beanName)) {
+				this.manualSingletonNames.add(beanName);
+			}
+		}
+	}
+
+	/**
+	 * Return the names of all singletons that have been registered
+	 * via <code>registerSingleton</code>.
+	 */
+	private String[] getManualSingletonNames() {
+		synchronized (this.manualSingletonNames) {
+			return (String[]) this.manualSingletonNames.toArray(new String[this.manualSingletonNames.size()]);
+		}
 	}
 
 
@@ -316,6 +535,206 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	}
 
 
+	/**
+	 * Creates a given list of singletons on a bounded number of threads,
+	 * respecting the dependencies between them. Circular references between
+	 * singletons are broken by releasing the first waiting singleton in
+	 * registration order once nothing else can be created: Its creation
+	 * resolves the circular reference within one thread, as usual.
+	 */
+	private class ParallelPreInstantiation {
+
+		private final List beanNames;
+
+		/** Map from bean name to Set of names of pending singletons it depends on */
+		private final Map pendingDependencies = new HashMap();
+
+		/** Map from bean name to List of names of singletons that depend on it */
+		private final Map dependentBeans = new HashMap();
+
+		private final LinkedList readyBeanNames = new LinkedList();
+
+		private final Set releasedBeanNames = new HashSet();
+
+		private int runningCount = 0;
+
+		private int createdCount = 0;
+
+		private Throwable failure;
+
+		private boolean shutdown = false;
+
+		public ParallelPreInstantiation(List beanNames) {
+			this.beanNames = beanNames;
+			Set candidates = new HashSet(beanNames);
+			for (Iterator it = beanNames.iterator(); it.hasNext();) {
+				String beanName = (String) it.next();
+				Set dependencies = getReferencedBeanNames(beanName);
+				dependencies.retainAll(candidates);
+				dependencies.remove(beanName);
+				for (Iterator depIt = dependencies.iterator(); depIt.hasNext();) {
+					String dependency = (String) depIt.next();
+					List dependents = (List) this.dependentBeans.get(dependency);
+					if (dependents == null) {
+						dependents = new LinkedList();
+						this.dependentBeans.put(dependency, dependents);
+					}
+					dependents.add(beanName);
+				}
+				this.pendingDependencies.put(beanName, dependencies);
+			}
+			for (Iterator it = beanNames.iterator(); it.hasNext();) {
+				String beanName = (String) it.next();
+				if (((Set) this.pendingDependencies.get(beanName)).isEmpty()) {
+					release(beanName);
+				}
+			}
+		}
+
+		/**
+		 * Create all singletons, waiting until all of them have been created
+		 * or until the first failure.
+		 * @throws BeansException the first exception thrown by a singleton creation
+		 */
+		public void run() throws BeansException {
+			if (this.beanNames.isEmpty()) {
+				return;
+			}
+			int threadCount = Math.min(preInstantiationThreadCount, this.beanNames.size());
+			if (logger.isInfoEnabled()) {
+				logger.info("Pre-instantiating " + this.beanNames.size() + " singletons using " +
+						threadCount + " threads in factory [" + DefaultListableBeanFactory.this + "]");
+			}
+			Thread[] threads = new Thread[threadCount];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(new Runnable() {
+					public void run() {
+						createSingletons();
+					}
+				}, "preInstantiateSingletons-" + (i + 1));
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+			try {
+				synchronized (this) {
+					while (this.failure == null && this.createdCount < this.beanNames.size()) {
+						if (this.readyBeanNames.isEmpty() && this.runningCount == 0) {
+							releaseFirstPendingBean();
+						}
+						wait();
+					}
+				}
+			}
+			catch (InterruptedException ex) {
+				throw new BeanCreationException("Interrupted while pre-instantiating singletons", ex);
+			}
+			finally {
+				synchronized (this) {
+					this.shutdown = true;
+					notifyAll();
+				}
+				// wait for singletons that are currently being created
+				for (int i = 0; i < threads.length; i++) {
+					try {
+						threads[i].join();
+					}
+					catch (InterruptedException ex) {
+						// proceed: worker threads will terminate on their own
+					}
+				}
+			}
+			if (this.failure instanceof BeansException) {
+				throw (BeansException) this.failure;
+			}
+			if (this.failure instanceof RuntimeException) {
+				throw (RuntimeException) this.failure;
+			}
+			if (this.failure instanceof Error) {
+				throw (Error) this.failure;
+			}
+		}
+
+		/**
+		 * Worker loop: create ready singletons until shutdown.
+		 */
+		private void createSingletons() {
+			while (true) {
+				String beanName = null;
+				synchronized (this) {
+					while (this.readyBeanNames.isEmpty() && !this.shutdown) {
+						try {
+							wait();
+						}
+						catch (InterruptedException ex) {
+							return;
+						}
+					}
+					if (this.shutdown) {
+						return;
+					}
+					beanName = (String) this.readyBeanNames.removeFirst();
+					this.runningCount++;
+				}
+				Throwable ex = null;
+				try {
+					preInstantiateSingleton(beanName);
+				}
+				catch (Throwable t) {
+					ex = t;
+				}
+				synchronized (this) {
+					this.runningCount--;
+					if (ex != null) {
+						if (this.failure == null) {
+							this.failure = ex;
+						}
+						this.shutdown = true;
+					}
+					else {
+						this.createdCount++;
+						List dependents = (List) this.dependentBeans.get(beanName);
+						if (dependents != null) {
+							for (Iterator it = dependents.iterator(); it.hasNext();) {
+								String dependent = (String) it.next();
+								Set dependencies = (Set) this.pendingDependencies.get(dependent);
+								dependencies.remove(beanName);
+								if (dependencies.isEmpty()) {
+									release(dependent);
+								}
+							}
+						}
+					}
+					notifyAll();
+				}
+			}
+		}
+
+		private void release(String beanName) {
+			if (this.releasedBeanNames.add(beanName)) {
+				this.readyBeanNames.add(beanName);
+			}
+		}
+
+		/**
+		 * Release the first singleton that is still waiting for dependencies,
+		 * as the remaining singletons refer to each other.
+		 */
+		private void releaseFirstPendingBean() {
+			for (Iterator it = this.beanNames.iterator(); it.hasNext();) {
+				String beanName = (String) it.next();
+				if (!this.releasedBeanNames.contains(beanName)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Releasing singleton '" + beanName + "' that is part of a circular reference");
+					}
+					release(beanName);
+					notifyAll();
+					return;
+				}
+			}
+		}
+	}
+
+
 	public String toString() {
 		StringBuffer sb = new StringBuffer(getClass().getName());
 		sb.append(" defining beans [" + StringUtils.arrayToDelimitedString(getBeanDefinitionNames(), ",") + "]");
@@ -328,4 +747,22 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		return sb.toString();
 	}
 
+
+
+	/**
+	 * Entry in the type index: the matching bean definition names,
+	 * along with the registration version that they have been determined for.
+	 */
+	private static class TypeIndexEntry {
+
+		private final String[] beanNames;
+
+		private final int version;
+
+		private TypeIndexEntry(String[] beanNames, int version) {
+			this.beanNames = beanNames;
+			this.version = version;
+		}
+	}
+
 }
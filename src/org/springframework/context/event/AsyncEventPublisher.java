@@ -0,0 +1,349 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.event;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Constants;
+
+/**
+ * ApplicationEventPublisher decorator that hands events over to a background
+ * thread, which publishes them to the target publisher (usually an
+ * ApplicationContext). The publishing thread does not wait for any listener:
+ * Publication just adds the event to a bounded ring buffer, which the
+ * background thread drains in batches.
+ *
+ * <p>If the buffer is full, the configured overflow policy applies: discard
+ * the new event (the default), discard the oldest buffered event, or publish
+ * the new event on the calling thread. Discarded events are counted.
+ *
+ * <p>Listeners will receive the events one at a time: usually on the
+ * background thread and in publication order. Events published on the calling
+ * thread, because of the caller-runs policy or after destruction, are not
+ * delivered concurrently with the background thread either, but may overtake
+ * events that are still buffered. Hence listeners that aggregate events, like
+ * PerformanceMonitorListener, do not need to synchronize their state if they
+ * only receive events via this publisher.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setOverflowPolicy
+ * @see org.springframework.web.servlet.FrameworkServlet#setPublishEventsAsynchronously
+ */
+public class AsyncEventPublisher implements ApplicationEventPublisher, InitializingBean, DisposableBean {
+
+	/**
+	 * Overflow policy that discards the event to publish if the buffer is full.
+	 */
+	public static final int OVERFLOW_DISCARD_NEWEST = 0;
+
+	/**
+	 * Overflow policy that discards the oldest buffered event
+	 * to make room for the event to publish.
+	 */
+	public static final int OVERFLOW_DISCARD_OLDEST = 1;
+
+	/**
+	 * Overflow policy that publishes the event on the calling thread
+	 * if the buffer is full, slowing down the caller instead of losing events.
+	 */
+	public static final int OVERFLOW_CALLER_RUNS = 2;
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	private static final Constants constants = new Constants(AsyncEventPublisher.class);
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private ApplicationEventPublisher targetPublisher;
+
+	private int capacity = DEFAULT_CAPACITY;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private int overflowPolicy = OVERFLOW_DISCARD_NEWEST;
+
+	private String threadName = "AsyncEventPublisher";
+
+	/** Monitor for the buffer state and the counters below */
+	private final Object bufferMonitor = new Object();
+
+	/** Monitor that serializes delivery of events to the target publisher */
+	private final Object deliveryMonitor = new Object();
+
+	private ApplicationEvent[] buffer;
+
+	/** Index of the oldest buffered event */
+	private int head = 0;
+
+	private int count = 0;
+
+	private Thread publisherThread;
+
+	private boolean active = false;
+
+	private long publishedCount = 0;
+
+	private long discardedCount = 0;
+
+
+	/**
+	 * Create a new AsyncEventPublisher.
+	 * @see #setTargetPublisher
+	 */
+	public AsyncEventPublisher() {
+	}
+
+	/**
+	 * Create a new AsyncEventPublisher and start its background thread.
+	 * @param targetPublisher the publisher to hand the events to
+	 */
+	public AsyncEventPublisher(ApplicationEventPublisher targetPublisher) {
+		setTargetPublisher(targetPublisher);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * Set the publisher to hand the events to, usually an ApplicationContext.
+	 */
+	public void setTargetPublisher(ApplicationEventPublisher targetPublisher) {
+		this.targetPublisher = targetPublisher;
+	}
+
+	/**
+	 * Return the publisher to hand the events to.
+	 */
+	public ApplicationEventPublisher getTargetPublisher() {
+		return targetPublisher;
+	}
+
+	/**
+	 * Set the maximum number of buffered events. Default is 1024.
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Set the maximum number of events that the background thread takes
+	 * from the buffer at once, publishing them without holding the buffer
+	 * lock. Default is 64.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the policy to apply if the buffer is full, as constant of this class.
+	 * Default is OVERFLOW_DISCARD_NEWEST.
+	 * @see #OVERFLOW_DISCARD_NEWEST
+	 * @see #OVERFLOW_DISCARD_OLDEST
+	 * @see #OVERFLOW_CALLER_RUNS
+	 */
+	public void setOverflowPolicy(int overflowPolicy) {
+		if (overflowPolicy < OVERFLOW_DISCARD_NEWEST || overflowPolicy > OVERFLOW_CALLER_RUNS) {
+			throw new IllegalArgumentException("Invalid overflow policy: " + overflowPolicy);
+		}
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Set the overflow policy by the name of the corresponding constant
+	 * in this class, e.g. "OVERFLOW_CALLER_RUNS".
+	 * @see #setOverflowPolicy
+	 */
+	public void setOverflowPolicyName(String constantName) {
+		if (constantName == null || !constantName.startsWith("OVERFLOW_")) {
+			throw new IllegalArgumentException("Only overflow policy constants allowed");
+		}
+		setOverflowPolicy(constants.asNumber(constantName).intValue());
+	}
+
+	/**
+	 * Set the name of the background thread. Default is "AsyncEventPublisher".
+	 */
+	public void setThreadName(String threadName) {
+		this.threadName = threadName;
+	}
+
+	/**
+	 * Start the background thread.
+	 */
+	public void afterPropertiesSet() {
+		if (this.targetPublisher == null) {
+			throw new IllegalArgumentException("targetPublisher is required");
+		}
+		if (this.capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be greater than 0");
+		}
+		if (this.batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be greater than 0");
+		}
+		synchronized (this.bufferMonitor) {
+			if (this.publisherThread == null) {
+				this.buffer = new ApplicationEvent[this.capacity];
+				this.active = true;
+				this.publisherThread = new Thread(new PublisherTask(), this.threadName);
+				this.publisherThread.setDaemon(true);
+				this.publisherThread.start();
+			}
+		}
+	}
+
+	/**
+	 * Stop the background thread, waiting for it to publish
+	 * all events that have been buffered until now.
+	 * <p>As this bean implements DisposableBean, a bean factory will
+	 * automatically invoke this on destruction of its cached singletons.
+	 */
+	public void destroy() {
+		Thread threadToJoin;
+		synchronized (this.bufferMonitor) {
+			this.active = false;
+			threadToJoin = this.publisherThread;
+			this.publisherThread = null;
+			this.bufferMonitor.notifyAll();
+		}
+		if (threadToJoin != null && threadToJoin != Thread.currentThread()) {
+			try {
+				threadToJoin.join();
+			}
+			catch (InterruptedException ex) {
+				logger.warn("Interrupted while waiting for buffered events to be published");
+			}
+		}
+	}
+
+
+	/**
+	 * Add the given event to the buffer, for publication by the background
+	 * thread. Applies the overflow policy if the buffer is full.
+	 */
+	public void publishEvent(ApplicationEvent event) {
+		synchronized (this.bufferMonitor) {
+			if (this.active) {
+				if (this.count < this.buffer.length) {
+					this.buffer[(this.head + this.count) % this.buffer.length] = event;
+					this.count++;
+					if (this.count == 1) {
+						this.bufferMonitor.notifyAll();
+					}
+					return;
+				}
+				if (this.overflowPolicy == OVERFLOW_DISCARD_NEWEST) {
+					this.discardedCount++;
+					return;
+				}
+				if (this.overflowPolicy == OVERFLOW_DISCARD_OLDEST) {
+					this.buffer[this.head] = event;
+					this.head = (this.head + 1) % this.buffer.length;
+					this.discardedCount++;
+					return;
+				}
+			}
+			this.publishedCount++;
+		}
+		// caller runs: either on overflow or not active
+		synchronized (this.deliveryMonitor) {
+			this.targetPublisher.publishEvent(event);
+		}
+	}
+
+	/**
+	 * Return the number of events that are currently buffered.
+	 */
+	public int getBufferedCount() {
+		synchronized (this.bufferMonitor) {
+			return this.count;
+		}
+	}
+
+	/**
+	 * Return the number of events that have been handed to the target publisher.
+	 */
+	public long getPublishedCount() {
+		synchronized (this.bufferMonitor) {
+			return this.publishedCount;
+		}
+	}
+
+	/**
+	 * Return the number of events that have been discarded
+	 * because of a full buffer.
+	 */
+	public long getDiscardedCount() {
+		synchronized (this.bufferMonitor) {
+			return this.discardedCount;
+		}
+	}
+
+
+	/**
+	 * Background task that drains the buffer in batches,
+	 * until deactivated and all buffered events have been published.
+	 */
+	private class PublisherTask implements Runnable {
+
+		public void run() {
+			ApplicationEvent[] batch = new ApplicationEvent[batchSize];
+			while (true) {
+				int batchCount = 0;
+				synchronized (bufferMonitor) {
+					while (count == 0 && active) {
+						try {
+							bufferMonitor.wait();
+						}
+						catch (InterruptedException ex) {
+							// keep waiting until deactivated
+						}
+					}
+					if (count == 0) {
+						return;
+					}
+					while (batchCount < batch.length && count > 0) {
+						batch[batchCount++] = buffer[head];
+						buffer[head] = null;
+						head = (head + 1) % buffer.length;
+						count--;
+					}
+					publishedCount += batchCount;
+				}
+				for (int i = 0; i < batchCount; i++) {
+					try {
+						synchronized (deliveryMonitor) {
+							targetPublisher.publishEvent(batch[i]);
+						}
+					}
+					catch (Throwable ex) {
+						// keep the thread alive for the remaining events, even on Errors
+						logger.warn("Failed to publish event [" + batch[i] + "]", ex);
+					}
+					batch[i] = null;
+				}
+			}
+		}
+	}
+
+}
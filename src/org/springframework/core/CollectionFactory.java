@@ -16,6 +16,8 @@
 
 package org.springframework.core;
 
+import java.lang.reflect.Constructor;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
@@ -29,7 +31,8 @@ import org.apache.commons.logging.LogFactory;
 /**
  * Factory for collections, being aware of JDK 1.4's extended collections
  * and Commons Collection 3.1's corresponding versions for older JDKs.
- * Mainly for internal use within the framework.
+ * Also aware of JDK 1.5's concurrent maps and their predecessor in
+ * Doug Lea's util.concurrent package. Mainly for internal use within the framework.
  *
  * <p>The goal of this class is to avoid runtime dependencies on JDK 1.4
  * or Commons Collections 3.x, simply using the best collection implementation
@@ -44,10 +47,15 @@ public class CollectionFactory {
 	private static final String COMMONS_COLLECTIONS_CLASS_NAME =
 			"org.apache.commons.collections.map.LinkedMap";
 
+	private static final String[] CONCURRENT_MAP_CLASS_NAMES = new String[] {
+			"java.util.concurrent.ConcurrentHashMap", "EDU.oswego.cs.dl.util.concurrent.ConcurrentHashMap"};
+
 	private static final Log logger = LogFactory.getLog(CollectionFactory.class);
 
 	private static boolean commonsCollections3xAvailable;
 
+	private static Constructor concurrentMapConstructor;
+
 	static {
 		// Check whether Commons Collections 3.x is available,
 		// provided that we're not running on JDK >= 1.4 in the first place.
@@ -65,6 +73,19 @@ public class CollectionFactory {
 				logger.info("Using JDK 1.3 collections");
 			}
 		}
+
+		// Check whether a concurrent map implementation is available:
+		// JDK 1.5's java.util.concurrent or Doug Lea's util.concurrent.
+		for (int i = 0; i < CONCURRENT_MAP_CLASS_NAMES.length && concurrentMapConstructor == null; i++) {
+			try {
+				Class mapClass = Class.forName(CONCURRENT_MAP_CLASS_NAMES[i]);
+				concurrentMapConstructor = mapClass.getConstructor(new Class[] {int.class});
+				logger.info("Using concurrent map [" + mapClass.getName() + "]");
+			}
+			catch (Exception ex) {
+				// not available - try next one
+			}
+		}
 	}
 
 	/**
@@ -115,6 +136,44 @@ public class CollectionFactory {
 		}
 	}
 
+	/**
+	 * Create a concurrent map if possible: that is, if running on JDK >= 1.5
+	 * or if Doug Lea's util.concurrent package is available. Prefers a JDK 1.5
+	 * ConcurrentHashMap to a util.concurrent ConcurrentHashMap. Falls back to
+	 * a synchronized HashMap else.
+	 * <p>Retrieval from the returned map is lock-free for the concurrent
+	 * variants, so this is suitable for read-mostly caches that are hit on
+	 * every request. Note that concurrent maps do not accept <code>null</code>
+	 * keys or values, and that only single operations are atomic: compound
+	 * operations still need to synchronize on a separate monitor.
+	 * @param initialCapacity the initial capacity of the map
+	 * @return the new map instance
+	 * @see java.util.concurrent.ConcurrentHashMap
+	 * @see EDU.oswego.cs.dl.util.concurrent.ConcurrentHashMap
+	 */
+	public static Map createConcurrentMapIfPossible(int initialCapacity) {
+		if (concurrentMapConstructor != null) {
+			try {
+				return (Map) concurrentMapConstructor.newInstance(new Object[] {new Integer(initialCapacity)});
+			}
+			catch (Exception ex) {
+				logger.warn("Could not create concurrent map - falling back to synchronized HashMap", ex);
+			}
+		}
+		logger.debug("Falling back to synchronized java.util.HashMap for concurrent map");
+		return Collections.synchronizedMap(new HashMap(initialCapacity));
+	}
+
+	/**
+	 * Return whether maps created via <code>createConcurrentMapIfPossible</code>
+	 * allow for lock-free retrieval, that is, whether a concurrent map
+	 * implementation is available.
+	 * @see #createConcurrentMapIfPossible
+	 */
+	public static boolean isConcurrentMapAvailable() {
+		return (concurrentMapConstructor != null);
+	}
+
 
 	/**
 	 * Actual creation of a java.util.LinkedHashMap.
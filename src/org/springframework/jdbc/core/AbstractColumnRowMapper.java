@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Abstract base class for RowMappers that work with column indexes
+ * determined from the ResultSetMetaData, instead of looking up
+ * columns by name for each row.
+ *
+ * <p>Subclasses create a column mapping from the ResultSetColumns, for example
+ * column indexes or a property per column. To reuse the mapping for all rows
+ * of a result, JdbcTemplate and RowMapperResultReader obtain a separate mapper
+ * for each query execution via <code>forSingleResult</code>, which reads the
+ * ResultSetMetaData once, on the first row. Invoking <code>mapRow</code> on
+ * this instance directly determines the column mapping for each row.
+ *
+ * <p>Like any RowMapper, instances are reusable and thread-safe: They do not
+ * hold on to any ResultSet or column mapping between query executions.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see ResultSetColumns
+ * @see #createColumnMapping
+ * @see #mapRow(java.sql.ResultSet, int, Object)
+ * @see #forSingleResult
+ */
+public abstract class AbstractColumnRowMapper implements RowMapper {
+
+	/**
+	 * Determine the column mapping for the given ResultSet and delegate
+	 * to the mapRow variant that takes the column mapping.
+	 * <p>Reads the ResultSetMetaData on each call: Use the mapper returned by
+	 * <code>forSingleResult</code> for mapping multiple rows of the same result.
+	 * @see #forSingleResult
+	 */
+	public final Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+		return mapRow(rs, rowNum, createColumnMapping(new ResultSetColumns(rs.getMetaData())));
+	}
+
+	/**
+	 * Return a RowMapper for the rows of a single result, which determines the
+	 * column mapping on the first row and reuses it for all further rows.
+	 * <p>The returned mapper is not thread-safe: Obtain a new one for each
+	 * query execution and discard it afterwards.
+	 * @return the RowMapper for a single result
+	 */
+	public RowMapper forSingleResult() {
+		return new SingleResultRowMapper();
+	}
+
+	/**
+	 * Create the column mapping for the given columns.
+	 * Invoked once per result, before mapping its first row.
+	 * @param columns the columns of the ResultSet
+	 * @return the column mapping, to be passed into
+	 * <code>mapRow(ResultSet, int, Object)</code> for each row
+	 * @throws SQLException if thrown while evaluating the columns
+	 */
+	protected abstract Object createColumnMapping(ResultSetColumns columns) throws SQLException;
+
+	/**
+	 * Map the current row of the given ResultSet, using the given column mapping.
+	 * @param rs the ResultSet to map (pre-initialized for the current row)
+	 * @param rowNum the number of the current row
+	 * @param columnMapping the column mapping, as created by createColumnMapping
+	 * @return the result object for the current row
+	 * @throws SQLException if an SQLException is encountered getting
+	 * column values (that is, there's no need to catch SQLException)
+	 * @see #createColumnMapping
+	 */
+	protected abstract Object mapRow(ResultSet rs, int rowNum, Object columnMapping) throws SQLException;
+
+
+	/**
+	 * Return the RowMapper to use for a single query execution: a mapper that
+	 * reuses its column mapping in case of an AbstractColumnRowMapper, else the
+	 * given mapper itself.
+	 * @param rowMapper the RowMapper that has been passed in
+	 * @return the RowMapper to use for mapping the rows of one result
+	 * @see #forSingleResult
+	 */
+	public static RowMapper getSingleResultMapper(RowMapper rowMapper) {
+		if (rowMapper instanceof AbstractColumnRowMapper) {
+			return ((AbstractColumnRowMapper) rowMapper).forSingleResult();
+		}
+		return rowMapper;
+	}
+
+
+	/**
+	 * RowMapper for a single result, keeping the column mapping
+	 * determined on the first row.
+	 */
+	private class SingleResultRowMapper implements RowMapper {
+
+		private Object columnMapping;
+
+		private boolean initialized = false;
+
+		public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+			if (!this.initialized) {
+				this.columnMapping = createColumnMapping(new ResultSetColumns(rs.getMetaData()));
+				this.initialized = true;
+			}
+			return AbstractColumnRowMapper.this.mapRow(rs, rowNum, this.columnMapping);
+		}
+	}
+
+}
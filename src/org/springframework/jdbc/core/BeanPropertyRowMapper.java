@@ -0,0 +1,301 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.FatalBeanException;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.TypeMismatchDataAccessException;
+
+/**
+ * RowMapper implementation that creates an instance of the given bean class
+ * for each row, populating bean properties from columns with matching names.
+ * A column matches a property if its name is equal to the property name,
+ * ignoring case and underscores: for example, column "FIRST_NAME" populates
+ * property "firstName". Columns without matching writable property are ignored.
+ *
+ * <p>The columns are matched with bean properties once per ResultSet. Each
+ * matched column is then read with the ResultSet getter that corresponds to
+ * the property type, like <code>getInt</code> for an int property or
+ * <code>getString</code> for a String property, and passed to the property's
+ * write method without any further conversion. SQL NULL values leave
+ * primitive properties at their default values.
+ *
+ * <p>The bean class needs to be a JavaBean with a public no-arg constructor.
+ * Like any RowMapper, a BeanPropertyRowMapper is reusable and thread-safe.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see AbstractColumnRowMapper
+ * @see org.springframework.jdbc.object.BeanPropertyMappingSqlQuery
+ */
+public class BeanPropertyRowMapper extends AbstractColumnRowMapper {
+
+	private static final int TYPE_OBJECT = 0;
+	private static final int TYPE_STRING = 1;
+	private static final int TYPE_INT = 2;
+	private static final int TYPE_LONG = 3;
+	private static final int TYPE_SHORT = 4;
+	private static final int TYPE_BYTE = 5;
+	private static final int TYPE_DOUBLE = 6;
+	private static final int TYPE_FLOAT = 7;
+	private static final int TYPE_BOOLEAN = 8;
+	private static final int TYPE_BIG_DECIMAL = 9;
+	private static final int TYPE_DATE = 10;
+	private static final int TYPE_SQL_DATE = 11;
+	private static final int TYPE_TIME = 12;
+	private static final int TYPE_TIMESTAMP = 13;
+	private static final int TYPE_BYTES = 14;
+
+
+	private final Class mappedClass;
+
+	/** No-arg constructor of the mapped class, resolved once */
+	private final Constructor constructor;
+
+	/** Writable PropertyDescriptors keyed by normalized property name */
+	private final Map mappedProperties = new HashMap();
+
+	/**
+	 * Create a new BeanPropertyRowMapper for the given bean class.
+	 * @param mappedClass the class to create an instance of for each row
+	 */
+	public BeanPropertyRowMapper(Class mappedClass) {
+		this.mappedClass = mappedClass;
+		try {
+			this.constructor = mappedClass.getDeclaredConstructor(null);
+		}
+		catch (NoSuchMethodException ex) {
+			throw new FatalBeanException("Could not instantiate class [" + mappedClass.getName() +
+					"]: no default constructor found", ex);
+		}
+		PropertyDescriptor[] pds = new BeanWrapperImpl(mappedClass).getPropertyDescriptors();
+		for (int i = 0; i < pds.length; i++) {
+			if (pds[i].getWriteMethod() != null) {
+				this.mappedProperties.put(normalizeName(pds[i].getName()), pds[i]);
+			}
+		}
+	}
+
+	/**
+	 * Return the class that this mapper creates an instance of for each row.
+	 */
+	public Class getMappedClass() {
+		return mappedClass;
+	}
+
+	/**
+	 * Normalize the given column or property name for matching:
+	 * lower case, without underscores.
+	 */
+	private String normalizeName(String name) {
+		StringBuffer sb = new StringBuffer(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c != '_') {
+				sb.append(Character.toLowerCase(c));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Match the columns with the properties of the mapped class.
+	 * @return an array of PropertyColumn objects, one per matched column
+	 */
+	protected Object createColumnMapping(ResultSetColumns columns) {
+		List propertyColumns = new ArrayList(columns.getColumnCount());
+		for (int i = 1; i <= columns.getColumnCount(); i++) {
+			String columnName = columns.getColumnName(i);
+			if (columnName != null) {
+				PropertyDescriptor pd = (PropertyDescriptor) this.mappedProperties.get(normalizeName(columnName));
+				if (pd != null) {
+					propertyColumns.add(new PropertyColumn(i, pd.getName(), pd.getWriteMethod()));
+				}
+			}
+		}
+		return propertyColumns.toArray(new PropertyColumn[propertyColumns.size()]);
+	}
+
+	protected Object mapRow(ResultSet rs, int rowNum, Object columnMapping) throws SQLException {
+		PropertyColumn[] propertyColumns = (PropertyColumn[]) columnMapping;
+		Object bean = BeanUtils.instantiateClass(this.constructor, null);
+		Object[] args = new Object[1];
+		for (int i = 0; i < propertyColumns.length; i++) {
+			PropertyColumn pc = propertyColumns[i];
+			Object value = getColumnValue(rs, pc.columnIndex, pc.valueType);
+			if (value != null || !pc.primitive) {
+				args[0] = value;
+				try {
+					pc.writeMethod.invoke(bean, args);
+				}
+				catch (InvocationTargetException ex) {
+					throw new DataRetrievalFailureException("Could not set property '" + pc.propertyName +
+							"' of [" + this.mappedClass.getName() + "]", ex.getTargetException());
+				}
+				catch (IllegalArgumentException ex) {
+					throw new TypeMismatchDataAccessException("Value of column " + pc.columnIndex + " [" + value +
+							"] does not match type of property '" + pc.propertyName + "' of [" +
+							this.mappedClass.getName() + "]", ex);
+				}
+				catch (IllegalAccessException ex) {
+					throw new DataRetrievalFailureException("Could not set property '" + pc.propertyName +
+							"' of [" + this.mappedClass.getName() + "]", ex);
+				}
+			}
+		}
+		return bean;
+	}
+
+	/**
+	 * Read the value of the given column with the getter for the given value type.
+	 * @return the value, or null in case of SQL NULL
+	 */
+	private Object getColumnValue(ResultSet rs, int columnIndex, int valueType) throws SQLException {
+		Object value = null;
+		switch (valueType) {
+			case TYPE_STRING:
+				return rs.getString(columnIndex);
+			case TYPE_INT:
+				value = new Integer(rs.getInt(columnIndex));
+				break;
+			case TYPE_LONG:
+				value = new Long(rs.getLong(columnIndex));
+				break;
+			case TYPE_SHORT:
+				value = new Short(rs.getShort(columnIndex));
+				break;
+			case TYPE_BYTE:
+				value = new Byte(rs.getByte(columnIndex));
+				break;
+			case TYPE_DOUBLE:
+				value = new Double(rs.getDouble(columnIndex));
+				break;
+			case TYPE_FLOAT:
+				value = new Float(rs.getFloat(columnIndex));
+				break;
+			case TYPE_BOOLEAN:
+				value = (rs.getBoolean(columnIndex) ? Boolean.TRUE : Boolean.FALSE);
+				break;
+			case TYPE_BIG_DECIMAL:
+				return rs.getBigDecimal(columnIndex);
+			case TYPE_DATE:
+			case TYPE_TIMESTAMP:
+				return rs.getTimestamp(columnIndex);
+			case TYPE_SQL_DATE:
+				return rs.getDate(columnIndex);
+			case TYPE_TIME:
+				return rs.getTime(columnIndex);
+			case TYPE_BYTES:
+				return rs.getBytes(columnIndex);
+			default:
+				return rs.getObject(columnIndex);
+		}
+		return (rs.wasNull() ? null : value);
+	}
+
+	/**
+	 * Determine the value type constant for the given property type.
+	 */
+	private static int getValueType(Class propertyType) {
+		if (String.class.equals(propertyType)) {
+			return TYPE_STRING;
+		}
+		else if (int.class.equals(propertyType) || Integer.class.equals(propertyType)) {
+			return TYPE_INT;
+		}
+		else if (long.class.equals(propertyType) || Long.class.equals(propertyType)) {
+			return TYPE_LONG;
+		}
+		else if (short.class.equals(propertyType) || Short.class.equals(propertyType)) {
+			return TYPE_SHORT;
+		}
+		else if (byte.class.equals(propertyType) || Byte.class.equals(propertyType)) {
+			return TYPE_BYTE;
+		}
+		else if (double.class.equals(propertyType) || Double.class.equals(propertyType)) {
+			return TYPE_DOUBLE;
+		}
+		else if (float.class.equals(propertyType) || Float.class.equals(propertyType)) {
+			return TYPE_FLOAT;
+		}
+		else if (boolean.class.equals(propertyType) || Boolean.class.equals(propertyType)) {
+			return TYPE_BOOLEAN;
+		}
+		else if (BigDecimal.class.equals(propertyType)) {
+			return TYPE_BIG_DECIMAL;
+		}
+		else if (java.sql.Date.class.equals(propertyType)) {
+			return TYPE_SQL_DATE;
+		}
+		else if (java.sql.Time.class.equals(propertyType)) {
+			return TYPE_TIME;
+		}
+		else if (Timestamp.class.equals(propertyType)) {
+			return TYPE_TIMESTAMP;
+		}
+		else if (java.util.Date.class.equals(propertyType)) {
+			return TYPE_DATE;
+		}
+		else if (byte[].class.equals(propertyType)) {
+			return TYPE_BYTES;
+		}
+		return TYPE_OBJECT;
+	}
+
+
+	/**
+	 * Column mapped to a bean property, with the value type
+	 * determined from the property type.
+	 */
+	private static class PropertyColumn {
+
+		private final int columnIndex;
+
+		private final String propertyName;
+
+		private final Method writeMethod;
+
+		private final int valueType;
+
+		private final boolean primitive;
+
+		public PropertyColumn(int columnIndex, String propertyName, Method writeMethod) {
+			this.columnIndex = columnIndex;
+			this.propertyName = propertyName;
+			this.writeMethod = writeMethod;
+			Class propertyType = writeMethod.getParameterTypes()[0];
+			this.valueType = getValueType(propertyType);
+			this.primitive = propertyType.isPrimitive();
+		}
+	}
+
+}
@@ -116,6 +116,19 @@ public interface JdbcOperations {
 	 */
 	List queryForList(String sql) throws DataAccessException;
 
+	/**
+	 * Execute a query for a result list of compact row objects, given static SQL.
+	 * <p>Like queryForList, but mapping each row to a ResultSetRow that holds the
+	 * column values in an array instead of a Map. All rows share the column names,
+	 * read from the ResultSetMetaData once. Preferable for large or wide results.
+	 * @param sql SQL query to execute
+	 * @return a List that contains a ResultSetRow per row
+	 * @throws DataAccessException if there is any problem executing the query
+	 * @see #queryForList(String)
+	 * @see ResultSetRow
+	 */
+	List queryForRows(String sql) throws DataAccessException;
+
 	/**
 	 * Execute a query for a result object, given static SQL.
 	 * <p>Uses a JDBC Statement, not a PreparedStatement. If you want to execute
@@ -376,6 +389,80 @@ public interface JdbcOperations {
 	List query(String sql, Object[] args, RowMapper rowMapper)
 			throws DataAccessException;
 
+	/**
+	 * Query using a prepared statement, returning a RowCursor that maps
+	 * one row at a time via the given RowMapper while iterating.
+	 * <p>In contrast to the List-returning query methods, rows are fetched from
+	 * the open ResultSet on demand (in batches of the "fetchSize", if specified)
+	 * and not kept, which allows for processing results that do not fit into
+	 * memory. The returned cursor needs to be closed if not fully iterated.
+	 * @param psc object that can create a PreparedStatement given a Connection
+	 * @param rowMapper object that will map one object per row
+	 * @return the RowCursor over the mapped objects
+	 * @throws DataAccessException if the query fails
+	 * @see RowCursor#close
+	 * @see JdbcTemplate#setFetchSize
+	 */
+	RowCursor queryForCursor(PreparedStatementCreator psc, RowMapper rowMapper)
+			throws DataAccessException;
+
+	/**
+	 * Query given static SQL, returning a RowCursor that maps
+	 * one row at a time via the given RowMapper while iterating.
+	 * @param sql SQL query to execute
+	 * @param rowMapper object that will map one object per row
+	 * @return the RowCursor over the mapped objects
+	 * @throws DataAccessException if the query fails
+	 * @see #queryForCursor(PreparedStatementCreator, RowMapper)
+	 */
+	RowCursor queryForCursor(String sql, RowMapper rowMapper) throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a
+	 * PreparedStatementSetter implementation that knows how to bind values
+	 * to the query, returning a RowCursor that maps one row at a time.
+	 * @param sql SQL query to execute
+	 * @param pss object that knows how to set values on the prepared statement.
+	 * If this is null, the SQL will be assumed to contain no bind parameters.
+	 * @param rowMapper object that will map one object per row
+	 * @return the RowCursor over the mapped objects
+	 * @throws DataAccessException if the query fails
+	 * @see #queryForCursor(PreparedStatementCreator, RowMapper)
+	 */
+	RowCursor queryForCursor(String sql, PreparedStatementSetter pss, RowMapper rowMapper)
+			throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list of
+	 * arguments to bind to the query, returning a RowCursor that maps one
+	 * row at a time.
+	 * @param sql SQL query to execute
+	 * @param args arguments to bind to the query
+	 * @param argTypes SQL types of the arguments (constants from java.sql.Types)
+	 * @param rowMapper object that will map one object per row
+	 * @return the RowCursor over the mapped objects
+	 * @throws DataAccessException if the query fails
+	 * @see #queryForCursor(PreparedStatementCreator, RowMapper)
+	 * @see java.sql.Types
+	 */
+	RowCursor queryForCursor(String sql, Object[] args, int[] argTypes, RowMapper rowMapper)
+			throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list of
+	 * arguments to bind to the query, returning a RowCursor that maps one
+	 * row at a time.
+	 * @param sql SQL query to execute
+	 * @param args arguments to bind to the query
+	 * (leaving it to the PreparedStatement to guess the respective SQL type)
+	 * @param rowMapper object that will map one object per row
+	 * @return the RowCursor over the mapped objects
+	 * @throws DataAccessException if the query fails
+	 * @see #queryForCursor(PreparedStatementCreator, RowMapper)
+	 */
+	RowCursor queryForCursor(String sql, Object[] args, RowMapper rowMapper)
+			throws DataAccessException;
+
 	/**
 	 * Query given SQL to create a prepared statement from SQL and a
 	 * list of arguments to bind to the query, expecting a result list.
@@ -391,6 +478,19 @@ public interface JdbcOperations {
 	 */
 	List queryForList(String sql, Object[] args) throws DataAccessException;
 
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list of
+	 * arguments to bind to the query, expecting a result list of compact
+	 * row objects.
+	 * @param sql SQL to execute
+	 * @param args arguments to bind to the query
+	 * (leaving it to the PreparedStatement to guess the respective SQL type)
+	 * @return a List that contains a ResultSetRow per row
+	 * @throws DataAccessException if the query fails
+	 * @see #queryForRows(String)
+	 */
+	List queryForRows(String sql, Object[] args) throws DataAccessException;
+
 	/**
 	 * Query given SQL to create a prepared statement from SQL and a
 	 * list of arguments to bind to the query, expecting a result object.
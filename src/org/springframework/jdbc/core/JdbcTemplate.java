@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import javax.sql.DataSource;
 
@@ -277,6 +278,10 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations, Initia
 		return (List) query(sql, new ListResultSetExtractor());
 	}
 
+	public List queryForRows(String sql) throws DataAccessException {
+		return query(sql, new ResultSetRowMapper());
+	}
+
 	public Object queryForObject(String sql, Class requiredType) throws DataAccessException {
 		return query(sql, new ObjectResultSetExtractor(requiredType));
 	}
@@ -458,12 +463,117 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations, Initia
 		return query(sql, args, new RowMapperResultReader(rowMapper));
 	}
 
+	/**
+	 * Query using a prepared statement, returning a RowCursor over the open
+	 * ResultSet. All queryForCursor methods use this method.
+	 * <p>In contrast to the callback-based methods, the Connection, Statement and
+	 * ResultSet stay open after this method returns: They get released by the
+	 * returned cursor, when closed explicitly or when iterated to the end.
+	 * @param psc Callback handler that can create a PreparedStatement given a
+	 * Connection
+	 * @param pss object that knows how to set values on the prepared statement.
+	 * If this is null, the SQL will be assumed to contain no bind parameters.
+	 * @param rowMapper object that will map one object per row
+	 * @return the RowCursor over the mapped objects
+	 * @throws DataAccessException if there is any problem
+	 */
+	protected RowCursor queryForCursor(
+			PreparedStatementCreator psc, PreparedStatementSetter pss, RowMapper rowMapper)
+			throws DataAccessException {
+		if (logger.isDebugEnabled()) {
+			String sql = getSql(psc);
+			logger.debug("Executing SQL query for cursor" + (sql != null ? " [" + sql  + "]" : ""));
+		}
+		Connection con = DataSourceUtils.getConnection(getDataSource());
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			Connection conToUse = con;
+			if (this.nativeJdbcExtractor != null &&
+					this.nativeJdbcExtractor.isNativeConnectionNecessaryForNativePreparedStatements()) {
+				conToUse = this.nativeJdbcExtractor.getNativeConnection(con);
+			}
+			ps = psc.createPreparedStatement(conToUse);
+			DataSourceUtils.applyTransactionTimeout(ps, getDataSource());
+			PreparedStatement psToUse = ps;
+			if (this.nativeJdbcExtractor != null) {
+				psToUse = this.nativeJdbcExtractor.getNativePreparedStatement(ps);
+			}
+			if (pss != null) {
+				pss.setValues(psToUse);
+			}
+			if (getFetchSize() > 0) {
+				psToUse.setFetchSize(getFetchSize());
+			}
+			rs = psToUse.executeQuery();
+			SQLWarning warning = ps.getWarnings();
+			throwExceptionOnWarningIfNotIgnoringWarnings(warning);
+			ResultSet rsToUse = rs;
+			if (this.nativeJdbcExtractor != null) {
+				rsToUse = this.nativeJdbcExtractor.getNativeResultSet(rs);
+			}
+			return new ResultSetRowCursor(con, ps, rs, rsToUse, rowMapper, getSql(psc));
+		}
+		catch (SQLException ex) {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(ps);
+			DataSourceUtils.closeConnectionIfNecessary(con, getDataSource());
+			throw getExceptionTranslator().translate("executing query for cursor [" + psc + "]",
+					getSql(psc), ex);
+		}
+		catch (RuntimeException ex) {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(ps);
+			DataSourceUtils.closeConnectionIfNecessary(con, getDataSource());
+			throw ex;
+		}
+		finally {
+			if (psc instanceof ParameterDisposer) {
+				((ParameterDisposer) psc).cleanupParameters();
+			}
+			if (pss instanceof ParameterDisposer) {
+				((ParameterDisposer) pss).cleanupParameters();
+			}
+		}
+	}
+
+	public RowCursor queryForCursor(PreparedStatementCreator psc, RowMapper rowMapper)
+			throws DataAccessException {
+		return queryForCursor(psc, null, rowMapper);
+	}
+
+	public RowCursor queryForCursor(String sql, RowMapper rowMapper) throws DataAccessException {
+		return queryForCursor(sql, (PreparedStatementSetter) null, rowMapper);
+	}
+
+	public RowCursor queryForCursor(String sql, PreparedStatementSetter pss, RowMapper rowMapper)
+			throws DataAccessException {
+		if (sql == null) {
+			throw new InvalidDataAccessApiUsageException("SQL may not be null");
+		}
+		return queryForCursor(new SimplePreparedStatementCreator(sql), pss, rowMapper);
+	}
+
+	public RowCursor queryForCursor(String sql, Object[] args, int[] argTypes, RowMapper rowMapper)
+			throws DataAccessException {
+		return queryForCursor(sql, new ArgTypePreparedStatementSetter(args, argTypes), rowMapper);
+	}
+
+	public RowCursor queryForCursor(String sql, Object[] args, RowMapper rowMapper)
+			throws DataAccessException {
+		return queryForCursor(sql, new ArgPreparedStatementSetter(args), rowMapper);
+	}
+
 	public List queryForList(String sql, final Object[] args) throws DataAccessException {
 		return (List) query(sql,
 				new ArgPreparedStatementSetter(args),
 				new ListResultSetExtractor());
 	}
 
+	public List queryForRows(String sql, Object[] args) throws DataAccessException {
+		return query(sql, args, new ResultSetRowMapper());
+	}
+
 	public Object queryForObject(String sql, Object[] args, Class requiredType)
 			throws DataAccessException {
 		return query(sql,
@@ -955,11 +1065,16 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations, Initia
 		public Object extractData(ResultSet rs) throws SQLException {
 			ResultSetMetaData rsmd = rs.getMetaData();
 			int numberOfColumns = rsmd.getColumnCount();
+			// read column names once rather than for each row
+			String[] columnNames = new String[numberOfColumns];
+			for (int i = 0; i < numberOfColumns; i++) {
+				columnNames[i] = rsmd.getColumnName(i + 1);
+			}
 			List listOfRows = new ArrayList();
 			while (rs.next()) {
 				Map mapOfColValues = CollectionFactory.createLinkedMapIfPossible(numberOfColumns);
-				for (int i = 1; i <= numberOfColumns; i++) {
-					mapOfColValues.put(rsmd.getColumnName(i), rs.getObject(i));
+				for (int i = 0; i < numberOfColumns; i++) {
+					mapOfColValues.put(columnNames[i], rs.getObject(i + 1));
 				}
 				listOfRows.add(mapOfColValues);
 			}
@@ -1050,4 +1165,106 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations, Initia
 		}
 	}
 
+
+
+	/**
+	 * RowCursor implementation that advances the given ResultSet on demand,
+	 * releasing all JDBC resources when closed or iterated to the end.
+	 * Keeps a reference to the current row object only until it has been returned.
+	 */
+	private class ResultSetRowCursor implements RowCursor {
+
+		private final Connection con;
+
+		private final PreparedStatement ps;
+
+		private final ResultSet rs;
+
+		private final ResultSet rsToUse;
+
+		private final RowMapper rowMapper;
+
+		private final String sql;
+
+		private Object nextRow;
+
+		private boolean nextRowAvailable;
+
+		private int rowCount;
+
+		private boolean closed;
+
+		public ResultSetRowCursor(Connection con, PreparedStatement ps, ResultSet rs, ResultSet rsToUse,
+				RowMapper rowMapper, String sql) {
+			this.con = con;
+			this.ps = ps;
+			this.rs = rs;
+			this.rsToUse = rsToUse;
+			this.rowMapper = AbstractColumnRowMapper.getSingleResultMapper(rowMapper);
+			this.sql = sql;
+		}
+
+		public boolean hasNext() throws DataAccessException {
+			if (this.nextRowAvailable) {
+				return true;
+			}
+			if (this.closed) {
+				return false;
+			}
+			try {
+				if (this.rsToUse.next()) {
+					this.nextRow = this.rowMapper.mapRow(this.rsToUse, this.rowCount);
+					this.nextRowAvailable = true;
+					return true;
+				}
+			}
+			catch (SQLException ex) {
+				close();
+				throw getExceptionTranslator().translate("iterating over RowCursor", this.sql, ex);
+			}
+			catch (RuntimeException ex) {
+				close();
+				throw ex;
+			}
+			close();
+			return false;
+		}
+
+		public Object next() throws DataAccessException {
+			if (!hasNext()) {
+				throw new NoSuchElementException("No more rows in RowCursor");
+			}
+			Object row = this.nextRow;
+			this.nextRow = null;
+			this.nextRowAvailable = false;
+			this.rowCount++;
+			return row;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("RowCursor does not support remove");
+		}
+
+		public int getRowCount() {
+			return this.rowCount;
+		}
+
+		public void close() {
+			if (!this.closed) {
+				this.closed = true;
+				try {
+					JdbcUtils.closeResultSet(this.rs);
+					JdbcUtils.closeStatement(this.ps);
+				}
+				finally {
+					DataSourceUtils.closeConnectionIfNecessary(this.con, getDataSource());
+				}
+			}
+		}
+
+		public boolean isClosed() {
+			return this.closed;
+		}
+	}
+
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Template class with a basic set of JDBC operations, allowing the use
+ * of named parameters (":name") rather than "?" placeholders.
+ * Parameter values are passed in as Map from parameter name to value.
+ * Collection and object array values get expanded, for IN lists.
+ *
+ * <p>Delegates to a JdbcOperations instance, typically a JdbcTemplate,
+ * after substituting the named parameters. Each SQL statement gets parsed
+ * only once, through NamedParameterUtils' cache.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see NamedParameterUtils
+ * @see JdbcTemplate
+ */
+public class NamedParameterJdbcTemplate {
+
+	private final JdbcOperations jdbcOperations;
+
+
+	/**
+	 * Create a new NamedParameterJdbcTemplate for the given DataSource,
+	 * using a new JdbcTemplate.
+	 * @param dataSource the JDBC DataSource to access
+	 */
+	public NamedParameterJdbcTemplate(DataSource dataSource) {
+		this.jdbcOperations = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Create a new NamedParameterJdbcTemplate for the given JdbcOperations,
+	 * typically a preconfigured JdbcTemplate.
+	 * @param jdbcOperations the JdbcOperations instance to delegate to
+	 */
+	public NamedParameterJdbcTemplate(JdbcOperations jdbcOperations) {
+		if (jdbcOperations == null) {
+			throw new IllegalArgumentException("jdbcOperations is required");
+		}
+		this.jdbcOperations = jdbcOperations;
+	}
+
+	/**
+	 * Return the JdbcOperations instance that this template delegates to,
+	 * for operations with "?" placeholders.
+	 */
+	public JdbcOperations getJdbcOperations() {
+		return jdbcOperations;
+	}
+
+
+	/**
+	 * Query given SQL, reading the ResultSet with a ResultSetExtractor.
+	 * @param sql SQL query with named parameters
+	 * @param paramMap Map from parameter name to value
+	 * @param rse object that will extract results
+	 * @return an arbitrary result object, as returned by the ResultSetExtractor
+	 * @see JdbcOperations#query(String, Object[], ResultSetExtractor)
+	 */
+	public Object query(String sql, Map paramMap, ResultSetExtractor rse) throws DataAccessException {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		return this.jdbcOperations.query(parsedSql.getSql(paramMap), parsedSql.getValues(paramMap), rse);
+	}
+
+	/**
+	 * Query given SQL, reading the ResultSet on a per-row basis
+	 * with a RowCallbackHandler.
+	 * @param sql SQL query with named parameters
+	 * @param paramMap Map from parameter name to value
+	 * @param rch object that will extract results, one row at a time
+	 * @return the result List in case of a ResultReader, or null else
+	 * @see JdbcOperations#query(String, Object[], RowCallbackHandler)
+	 */
+	public List query(String sql, Map paramMap, RowCallbackHandler rch) throws DataAccessException {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		return this.jdbcOperations.query(parsedSql.getSql(paramMap), parsedSql.getValues(paramMap), rch);
+	}
+
+	/**
+	 * Query given SQL, mapping each row to a Java object via a RowMapper.
+	 * @param sql SQL query with named parameters
+	 * @param paramMap Map from parameter name to value
+	 * @param rowMapper object that will map one object per row
+	 * @return the result List, containing mapped objects
+	 * @see JdbcOperations#query(String, Object[], RowMapper)
+	 */
+	public List query(String sql, Map paramMap, RowMapper rowMapper) throws DataAccessException {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		return this.jdbcOperations.query(parsedSql.getSql(paramMap), parsedSql.getValues(paramMap), rowMapper);
+	}
+
+	/**
+	 * Query given SQL, expecting a result list with a Map per row.
+	 * @param sql SQL query with named parameters
+	 * @param paramMap Map from parameter name to value
+	 * @return a List that contains a Map per row
+	 * @see JdbcOperations#queryForList(String, Object[])
+	 */
+	public List queryForList(String sql, Map paramMap) throws DataAccessException {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		return this.jdbcOperations.queryForList(parsedSql.getSql(paramMap), parsedSql.getValues(paramMap));
+	}
+
+	/**
+	 * Query given SQL, expecting a single row with a single column.
+	 * @param sql SQL query with named parameters
+	 * @param paramMap Map from parameter name to value
+	 * @param requiredType the type that the result object is expected to match
+	 * @return the result object of the required type, or null in case of SQL NULL
+	 * @see JdbcOperations#queryForObject(String, Object[], Class)
+	 */
+	public Object queryForObject(String sql, Map paramMap, Class requiredType) throws DataAccessException {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		return this.jdbcOperations.queryForObject(parsedSql.getSql(paramMap), parsedSql.getValues(paramMap), requiredType);
+	}
+
+	/**
+	 * Query given SQL, expecting a single row with a single numeric column.
+	 * @param sql SQL query with named parameters
+	 * @param paramMap Map from parameter name to value
+	 * @return the long value, or 0 in case of SQL NULL
+	 * @see JdbcOperations#queryForLong(String, Object[])
+	 */
+	public long queryForLong(String sql, Map paramMap) throws DataAccessException {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		return this.jdbcOperations.queryForLong(parsedSql.getSql(paramMap), parsedSql.getValues(paramMap));
+	}
+
+	/**
+	 * Query given SQL, expecting a single row with a single numeric column.
+	 * @param sql SQL query with named parameters
+	 * @param paramMap Map from parameter name to value
+	 * @return the int value, or 0 in case of SQL NULL
+	 * @see JdbcOperations#queryForInt(String, Object[])
+	 */
+	public int queryForInt(String sql, Map paramMap) throws DataAccessException {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		return this.jdbcOperations.queryForInt(parsedSql.getSql(paramMap), parsedSql.getValues(paramMap));
+	}
+
+	/**
+	 * Issue an update via a prepared statement.
+	 * @param sql SQL containing named parameters
+	 * @param paramMap Map from parameter name to value
+	 * @return the number of rows affected
+	 * @see JdbcOperations#update(String, Object[])
+	 */
+	public int update(String sql, Map paramMap) throws DataAccessException {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		return this.jdbcOperations.update(parsedSql.getSql(paramMap), parsedSql.getValues(paramMap));
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.core.CollectionFactory;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * Helper methods for SQL statements with named parameters (":name").
+ * Parses each distinct SQL statement only once: Parsed statements get
+ * cached, up to a fixed number of statements.
+ *
+ * <p>Named parameters are recognized outside of quoted literals and comments.
+ * A double colon, as in PostgreSQL's "::type" casts, is not treated as
+ * a parameter. Mixing named parameters and "?" placeholders is not supported.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see ParsedSql
+ * @see NamedParameterJdbcTemplate
+ */
+public abstract class NamedParameterUtils {
+
+	/**
+	 * Maximum number of parsed statements to cache. When exceeded, the
+	 * statement that has been cached first gets evicted, to avoid unbounded
+	 * growth in case of dynamically built SQL while still caching statements
+	 * that get used later on.
+	 */
+	private static final int CACHE_LIMIT = 1024;
+
+	private static final Map parsedSqlCache = CollectionFactory.createConcurrentMapIfPossible(64);
+
+	/** Cached SQL statements in insertion order, also serving as monitor for cache updates */
+	private static final LinkedList parsedSqlOrder = new LinkedList();
+
+
+	/**
+	 * Return the parsed representation of the given SQL statement,
+	 * from the cache if already parsed before.
+	 * @param sql the SQL statement with named parameters
+	 * @return the ParsedSql object
+	 * @throws InvalidDataAccessApiUsageException if the statement
+	 * mixes named parameters with "?" placeholders
+	 */
+	public static ParsedSql parseSqlStatement(String sql) throws InvalidDataAccessApiUsageException {
+		ParsedSql parsedSql = (ParsedSql) parsedSqlCache.get(sql);
+		if (parsedSql == null) {
+			parsedSql = doParseSqlStatement(sql);
+			synchronized (parsedSqlOrder) {
+				if (!parsedSqlCache.containsKey(sql)) {
+					if (parsedSqlOrder.size() >= CACHE_LIMIT) {
+						parsedSqlCache.remove(parsedSqlOrder.removeFirst());
+					}
+					parsedSqlCache.put(sql, parsedSql);
+					parsedSqlOrder.add(sql);
+				}
+			}
+		}
+		return parsedSql;
+	}
+
+	/**
+	 * Return whether the given SQL statement contains named parameters.
+	 * @param sql the SQL statement
+	 */
+	public static boolean hasNamedParameters(String sql) {
+		return (sql.indexOf(':') != -1 && parseSqlStatement(sql).getParameterCount() > 0);
+	}
+
+	/**
+	 * Parse the given SQL statement, without caching.
+	 * @param sql the SQL statement with named parameters
+	 * @return the ParsedSql object
+	 */
+	private static ParsedSql doParseSqlStatement(String sql) throws InvalidDataAccessApiUsageException {
+		List names = new ArrayList();
+		List starts = new ArrayList();
+		List ends = new ArrayList();
+		boolean placeholderFound = false;
+		int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"') {
+				// skip quoted literal, including escaped (doubled) quotes
+				int end = sql.indexOf(c, i + 1);
+				i = (end != -1 ? end + 1 : length);
+			}
+			else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				int end = sql.indexOf('\n', i + 2);
+				i = (end != -1 ? end + 1 : length);
+			}
+			else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = (end != -1 ? end + 2 : length);
+			}
+			else if (c == ':' && i + 1 < length && sql.charAt(i + 1) == ':') {
+				i += 2;
+			}
+			else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+				int end = i + 2;
+				while (end < length && Character.isJavaIdentifierPart(sql.charAt(end))) {
+					end++;
+				}
+				names.add(sql.substring(i + 1, end));
+				starts.add(new Integer(i));
+				ends.add(new Integer(end));
+				i = end;
+			}
+			else {
+				if (c == '?') {
+					placeholderFound = true;
+				}
+				i++;
+			}
+		}
+		if (placeholderFound && !names.isEmpty()) {
+			throw new InvalidDataAccessApiUsageException(
+					"Cannot mix named parameters and '?' placeholders in SQL [" + sql + "]");
+		}
+		int count = names.size();
+		String[] parameterNames = (String[]) names.toArray(new String[count]);
+		int[] parameterStarts = new int[count];
+		int[] parameterEnds = new int[count];
+		for (int j = 0; j < count; j++) {
+			parameterStarts[j] = ((Integer) starts.get(j)).intValue();
+			parameterEnds[j] = ((Integer) ends.get(j)).intValue();
+		}
+		return new ParsedSql(sql, parameterNames, parameterStarts, parameterEnds);
+	}
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * Immutable representation of a SQL statement with named parameters
+ * (":name"), as parsed by NamedParameterUtils. Holds the parameter slots
+ * in the order of their occurrence, plus the SQL with each parameter
+ * replaced by a JDBC "?" placeholder.
+ *
+ * <p>Collection and object array values get expanded into a list of
+ * placeholders, for example for IN lists: "WHERE id IN (:ids)" with
+ * a List of 3 ids results in "WHERE id IN (?, ?, ?)". Without such values,
+ * the pre-built SQL gets used as-is.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see NamedParameterUtils#parseSqlStatement
+ */
+public class ParsedSql {
+
+	private final String originalSql;
+
+	/** Parameter name per slot, in order of occurrence */
+	private final String[] parameterNames;
+
+	/** Start index of each slot in the original SQL (position of the colon) */
+	private final int[] parameterStarts;
+
+	/** End index (exclusive) of each slot in the original SQL */
+	private final int[] parameterEnds;
+
+	/** Number of distinct parameter names */
+	private final int distinctParameterCount;
+
+	/** The SQL with all named parameters replaced by "?" */
+	private final String sql;
+
+
+	/**
+	 * Create a new ParsedSql instance.
+	 * @param originalSql the SQL statement with named parameters
+	 * @param parameterNames the parameter name per slot
+	 * @param parameterStarts the start index of each slot in the original SQL
+	 * @param parameterEnds the end index of each slot in the original SQL
+	 */
+	ParsedSql(String originalSql, String[] parameterNames, int[] parameterStarts, int[] parameterEnds) {
+		this.originalSql = originalSql;
+		this.parameterNames = parameterNames;
+		this.parameterStarts = parameterStarts;
+		this.parameterEnds = parameterEnds;
+		int distinctCount = 0;
+		for (int i = 0; i < parameterNames.length; i++) {
+			boolean duplicate = false;
+			for (int j = 0; j < i && !duplicate; j++) {
+				duplicate = parameterNames[j].equals(parameterNames[i]);
+			}
+			if (!duplicate) {
+				distinctCount++;
+			}
+		}
+		this.distinctParameterCount = distinctCount;
+		this.sql = buildSql(null);
+	}
+
+	/**
+	 * Return the SQL statement as specified, with named parameters.
+	 */
+	public String getOriginalSql() {
+		return originalSql;
+	}
+
+	/**
+	 * Return the number of parameter slots, counting each occurrence.
+	 */
+	public int getParameterCount() {
+		return this.parameterNames.length;
+	}
+
+	/**
+	 * Return the number of distinct parameter names.
+	 */
+	public int getDistinctParameterCount() {
+		return distinctParameterCount;
+	}
+
+	/**
+	 * Return the name of the parameter in the given slot.
+	 * @param index the index of the slot, starting with 0
+	 */
+	public String getParameterName(int index) {
+		return this.parameterNames[index];
+	}
+
+	/**
+	 * Return the SQL statement with each named parameter replaced by "?".
+	 * Can be used as-is if no collection values need to be expanded.
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Return whether any of the values in the given Map needs to be expanded
+	 * into multiple placeholders, i.e. is a Collection or an object array.
+	 * @param paramMap Map from parameter name to value
+	 */
+	public boolean requiresExpansion(Map paramMap) {
+		for (int i = 0; i < this.parameterNames.length; i++) {
+			if (getExpansionSize(paramMap.get(this.parameterNames[i])) != -1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return the SQL statement with placeholders for the given values.
+	 * Returns the pre-built SQL if no values need to be expanded.
+	 * @param paramMap Map from parameter name to value
+	 * @see #getSql
+	 */
+	public String getSql(Map paramMap) {
+		if (paramMap == null || !requiresExpansion(paramMap)) {
+			return this.sql;
+		}
+		return buildSql(paramMap);
+	}
+
+	/**
+	 * Return the values for all placeholders, in the order of the slots.
+	 * Collection and object array values get expanded into their elements.
+	 * @param paramMap Map from parameter name to value
+	 * @return the array of values, to be used with <code>getSql(paramMap)</code>
+	 * @throws InvalidDataAccessApiUsageException if there is no value
+	 * for one of the parameters
+	 */
+	public Object[] getValues(Map paramMap) throws InvalidDataAccessApiUsageException {
+		Object[] values = new Object[this.parameterNames.length];
+		boolean expand = false;
+		for (int i = 0; i < this.parameterNames.length; i++) {
+			String name = this.parameterNames[i];
+			if (paramMap == null || !paramMap.containsKey(name)) {
+				throw new InvalidDataAccessApiUsageException(
+						"No value supplied for SQL parameter '" + name + "' of SQL [" + this.originalSql + "]");
+			}
+			values[i] = paramMap.get(name);
+			expand = expand || getExpansionSize(values[i]) != -1;
+		}
+		if (!expand) {
+			return values;
+		}
+		List expandedValues = new ArrayList(values.length * 2);
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] instanceof Collection) {
+				expandedValues.addAll((Collection) values[i]);
+			}
+			else if (values[i] instanceof Object[]) {
+				Object[] array = (Object[]) values[i];
+				for (int j = 0; j < array.length; j++) {
+					expandedValues.add(array[j]);
+				}
+			}
+			else {
+				expandedValues.add(values[i]);
+			}
+		}
+		return expandedValues.toArray();
+	}
+
+	/**
+	 * Return a List with the given SqlParameter per placeholder,
+	 * repeating the parameter of a slot for each element of an expanded value.
+	 * @param slotParameters the SqlParameter per slot
+	 * @param paramMap Map from parameter name to value
+	 * @return the List of SqlParameters, in the order of the placeholders
+	 * in <code>getSql(paramMap)</code>
+	 */
+	public List getParameters(SqlParameter[] slotParameters, Map paramMap) {
+		List parameters = new ArrayList(slotParameters.length);
+		for (int i = 0; i < this.parameterNames.length; i++) {
+			int size = (paramMap != null ? getExpansionSize(paramMap.get(this.parameterNames[i])) : -1);
+			if (size == -1) {
+				size = 1;
+			}
+			for (int j = 0; j < size; j++) {
+				parameters.add(slotParameters[i]);
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Resolve the given declared parameters by name,
+	 * returning the matching SqlParameter for each slot.
+	 * @param declaredParameters List of SqlParameter objects
+	 * @return the SqlParameter per slot
+	 * @throws InvalidDataAccessApiUsageException if a parameter has not been declared
+	 */
+	public SqlParameter[] resolveParameters(List declaredParameters) throws InvalidDataAccessApiUsageException {
+		SqlParameter[] slotParameters = new SqlParameter[this.parameterNames.length];
+		for (int i = 0; i < this.parameterNames.length; i++) {
+			for (Iterator it = declaredParameters.iterator(); it.hasNext() && slotParameters[i] == null;) {
+				SqlParameter param = (SqlParameter) it.next();
+				if (this.parameterNames[i].equals(param.getName())) {
+					slotParameters[i] = param;
+				}
+			}
+			if (slotParameters[i] == null) {
+				throw new InvalidDataAccessApiUsageException("SQL parameter '" + this.parameterNames[i] +
+						"' of SQL [" + this.originalSql + "] has not been declared");
+			}
+		}
+		return slotParameters;
+	}
+
+	public String toString() {
+		return this.originalSql;
+	}
+
+
+	/**
+	 * Build the SQL with placeholders for the given values.
+	 * @param paramMap Map from parameter name to value, or null for one
+	 * placeholder per slot
+	 */
+	private String buildSql(Map paramMap) {
+		StringBuffer buf = new StringBuffer(this.originalSql.length());
+		int lastEnd = 0;
+		for (int i = 0; i < this.parameterNames.length; i++) {
+			buf.append(this.originalSql.substring(lastEnd, this.parameterStarts[i]));
+			int size = (paramMap != null ? getExpansionSize(paramMap.get(this.parameterNames[i])) : -1);
+			if (size == 0) {
+				throw new InvalidDataAccessApiUsageException("Empty collection or array specified for SQL parameter '" +
+						this.parameterNames[i] + "' of SQL [" + this.originalSql + "]");
+			}
+			buf.append('?');
+			for (int j = 1; j < size; j++) {
+				buf.append(", ?");
+			}
+			lastEnd = this.parameterEnds[i];
+		}
+		buf.append(this.originalSql.substring(lastEnd));
+		return buf.toString();
+	}
+
+	/**
+	 * Return the number of placeholders for the given value
+	 * if it needs to be expanded, or -1 else.
+	 */
+	private static int getExpansionSize(Object value) {
+		if (value instanceof Collection) {
+			return ((Collection) value).size();
+		}
+		if (value instanceof Object[]) {
+			return ((Object[]) value).length;
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of the column names and types of a ResultSet, read from its
+ * ResultSetMetaData once. Allows for resolving column names to indexes
+ * without asking the ResultSetMetaData or the driver again for every row.
+ *
+ * <p>Column indexes are 1-based, like with JDBC. Column names are resolved
+ * case-insensitively; for duplicate names, the first column wins.
+ *
+ * <p>Instances are immutable and can be shared between the rows of a result.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see ResultSetRow
+ * @see AbstractColumnRowMapper
+ */
+public class ResultSetColumns {
+
+	private final String[] columnNames;
+
+	private final int[] columnTypes;
+
+	/** Column indexes (Integer) keyed by upper-case column name */
+	private final Map columnIndexes;
+
+	/**
+	 * Create a new ResultSetColumns instance for the given ResultSetMetaData.
+	 * @param rsmd the ResultSetMetaData to read the column names and types from
+	 * @throws SQLException if thrown by ResultSetMetaData methods
+	 */
+	public ResultSetColumns(ResultSetMetaData rsmd) throws SQLException {
+		int columnCount = rsmd.getColumnCount();
+		this.columnNames = new String[columnCount];
+		this.columnTypes = new int[columnCount];
+		this.columnIndexes = new HashMap(columnCount * 2);
+		for (int i = 0; i < columnCount; i++) {
+			this.columnNames[i] = rsmd.getColumnName(i + 1);
+			this.columnTypes[i] = rsmd.getColumnType(i + 1);
+			if (this.columnNames[i] != null) {
+				String key = this.columnNames[i].toUpperCase();
+				if (!this.columnIndexes.containsKey(key)) {
+					this.columnIndexes.put(key, new Integer(i + 1));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the number of columns.
+	 */
+	public int getColumnCount() {
+		return this.columnNames.length;
+	}
+
+	/**
+	 * Return the name of the given column.
+	 * @param columnIndex the 1-based column index
+	 * @see java.sql.ResultSetMetaData#getColumnName
+	 */
+	public String getColumnName(int columnIndex) {
+		return this.columnNames[columnIndex - 1];
+	}
+
+	/**
+	 * Return the SQL type of the given column.
+	 * @param columnIndex the 1-based column index
+	 * @return the SQL type, as constant from java.sql.Types
+	 * @see java.sql.ResultSetMetaData#getColumnType
+	 */
+	public int getColumnType(int columnIndex) {
+		return this.columnTypes[columnIndex - 1];
+	}
+
+	/**
+	 * Return the index of the column with the given name, ignoring case.
+	 * @param columnName the name of the column
+	 * @return the 1-based column index, or -1 if there is no such column
+	 */
+	public int findColumn(String columnName) {
+		Integer index = (Integer) this.columnIndexes.get(columnName.toUpperCase());
+		return (index != null ? index.intValue() : -1);
+	}
+
+	/**
+	 * Read the values of all columns of the current row of the given ResultSet.
+	 * @param rs the ResultSet positioned at the row to read
+	 * @return the column values, indexed from 0
+	 * @throws SQLException if thrown by ResultSet methods
+	 * @see java.sql.ResultSet#getObject(int)
+	 */
+	public Object[] getColumnValues(ResultSet rs) throws SQLException {
+		Object[] values = new Object[this.columnNames.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = rs.getObject(i + 1);
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.util.Map;
+
+import org.springframework.core.CollectionFactory;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * Compact representation of a row of a ResultSet: an array of column values,
+ * sharing a ResultSetColumns instance with all other rows of the same result.
+ * Considerably smaller than a Map per row for wide results, and allows for
+ * access by column index without any lookup.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see ResultSetRowMapper
+ * @see JdbcOperations#queryForRows(String)
+ */
+public class ResultSetRow {
+
+	private final ResultSetColumns columns;
+
+	private final Object[] values;
+
+	/**
+	 * Create a new ResultSetRow.
+	 * @param columns the columns of the result
+	 * @param values the column values, indexed from 0
+	 */
+	public ResultSetRow(ResultSetColumns columns, Object[] values) {
+		this.columns = columns;
+		this.values = values;
+	}
+
+	/**
+	 * Return the columns of the result that this row belongs to.
+	 */
+	public ResultSetColumns getColumns() {
+		return this.columns;
+	}
+
+	/**
+	 * Return the value of the given column.
+	 * @param columnIndex the 1-based column index
+	 */
+	public Object getValue(int columnIndex) {
+		return this.values[columnIndex - 1];
+	}
+
+	/**
+	 * Return the value of the given column.
+	 * @param columnName the name of the column, ignoring case
+	 * @throws InvalidDataAccessApiUsageException if there is no such column
+	 */
+	public Object getValue(String columnName) throws InvalidDataAccessApiUsageException {
+		int columnIndex = this.columns.findColumn(columnName);
+		if (columnIndex == -1) {
+			throw new InvalidDataAccessApiUsageException("No column named '" + columnName + "' in result");
+		}
+		return this.values[columnIndex - 1];
+	}
+
+	/**
+	 * Return the values of this row as Map, with the column names as keys,
+	 * in the order of the columns. Returns a new Map on each invocation.
+	 */
+	public Map toMap() {
+		Map map = CollectionFactory.createLinkedMapIfPossible(this.values.length);
+		for (int i = 0; i < this.values.length; i++) {
+			map.put(this.columns.getColumnName(i + 1), this.values[i]);
+		}
+		return map;
+	}
+
+	public String toString() {
+		return "ResultSetRow: " + toMap();
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * RowMapper implementation that creates a ResultSetRow for each row,
+ * holding all column values in an array. All rows of a ResultSet share
+ * the same ResultSetColumns instance.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see ResultSetRow
+ * @see JdbcOperations#queryForRows(String)
+ */
+public class ResultSetRowMapper extends AbstractColumnRowMapper {
+
+	protected Object createColumnMapping(ResultSetColumns columns) {
+		return columns;
+	}
+
+	protected Object mapRow(ResultSet rs, int rowNum, Object columnMapping) throws SQLException {
+		ResultSetColumns columns = (ResultSetColumns) columnMapping;
+		return new ResultSetRow(columns, columns.getColumnValues(rs));
+	}
+
+}
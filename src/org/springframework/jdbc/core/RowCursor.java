@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.util.Iterator;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Iterator over the rows of an open ResultSet, as returned by JdbcTemplate's
+ * <code>queryForCursor</code> methods. Each call to <code>next</code> advances
+ * the ResultSet by one row and returns the object that the RowMapper created
+ * for it; rows are neither read ahead nor kept. This allows for processing
+ * very large results with memory consumption independent of the number of rows.
+ *
+ * <p>A RowCursor holds the underlying JDBC Statement and ResultSet, and
+ * the Connection unless bound to the current transaction, until it is closed.
+ * It closes itself once the last row has been returned, but needs to be
+ * closed explicitly if not fully iterated, typically in a finally block:
+ *
+ * <pre>
+ * RowCursor cursor = jdbcTemplate.queryForCursor(sql, rowMapper);
+ * try {
+ *   while (cursor.hasNext()) {
+ *     export(cursor.next());
+ *   }
+ * }
+ * finally {
+ *   cursor.close();
+ * }</pre>
+ *
+ * <p>SQLExceptions thrown while advancing the ResultSet or mapping a row
+ * get translated into DataAccessExceptions, like with JdbcTemplate's other
+ * methods, and lead to the cursor being closed.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see JdbcOperations#queryForCursor(String, RowMapper)
+ * @see RowMapper
+ */
+public interface RowCursor extends Iterator {
+
+	/**
+	 * Return whether there is another row, advancing the ResultSet if necessary.
+	 * Returns false once the cursor has been closed.
+	 * @throws DataAccessException if advancing the ResultSet failed
+	 */
+	boolean hasNext() throws DataAccessException;
+
+	/**
+	 * Return the mapped object for the next row.
+	 * @throws java.util.NoSuchElementException if there are no more rows
+	 * @throws DataAccessException if advancing the ResultSet or mapping the row failed
+	 */
+	Object next() throws DataAccessException;
+
+	/**
+	 * Return the number of rows returned so far.
+	 */
+	int getRowCount();
+
+	/**
+	 * Close the underlying ResultSet and Statement, and release the
+	 * JDBC Connection if not bound to the current transaction.
+	 * Can be called multiple times.
+	 */
+	void close();
+
+	/**
+	 * Return whether this cursor has been closed,
+	 * either explicitly or after returning the last row.
+	 */
+	boolean isClosed();
+
+}
@@ -84,7 +84,7 @@ public class RowMapperResultReader implements ResultReader {
 		// Use the more efficient collection if we know how many rows to expect:
 		// ArrayList in case of a known row count, LinkedList if unknown
 		this.results = (rowsExpected > 0) ? (List) new ArrayList(rowsExpected) : (List) new LinkedList();
-		this.rowMapper = rowMapper;
+		this.rowMapper = AbstractColumnRowMapper.getSingleResultMapper(rowMapper);
 	}
 
 	public void processRow(ResultSet rs) throws SQLException {
@@ -0,0 +1,1009 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.support;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.CollectionFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.CallableStatementCallback;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowCursor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JdbcOperations decorator that caches the results of the simple query methods,
+ * for reference data that gets queried far more often than it changes:
+ * <code>queryForList</code>, <code>queryForRows</code>, <code>queryForObject</code>,
+ * <code>queryForInt</code> and <code>queryForLong</code>. All other query methods
+ * are simply delegated to the target JdbcOperations, typically a JdbcTemplate.
+ *
+ * <p>Results are cached in a QueryResultCache, keyed by SQL plus arguments:
+ * by default an LruQueryResultCache of 1000 entries, alternatively an EhCache
+ * Cache via EhCacheQueryResultCache. Cached results are shared between callers:
+ * Returned Lists are unmodifiable, and their elements must not be modified either.
+ *
+ * <p>Invalidation works by table: The tables that a query reads are taken from
+ * its FROM and JOIN clauses, the table that a statement modifies from its
+ * INSERT INTO, UPDATE or DELETE FROM clause. Each table has a generation number
+ * that is part of the cache key of each query that reads the table; modifying
+ * the table increments its generation, so that previously cached results are
+ * not found anymore and get evicted by the cache eventually. Statements whose
+ * table cannot be determined, as well as callback-based operations like
+ * <code>execute(StatementCallback)</code> and <code>call</code>, invalidate
+ * all cached results. Queries whose tables cannot be determined are not cached.
+ *
+ * <p>Queries that do not return the same result for the same table contents
+ * bypass the cache as well: SELECT ... FOR UPDATE queries, queries that access
+ * a sequence (NEXTVAL, CURRVAL, NEXT VALUE FOR), and queries that call common
+ * non-deterministic functions like CURRENT_TIMESTAMP, SYSDATE, NOW or RAND.
+ * Note that other non-deterministic expressions, in particular user-defined
+ * or vendor-specific functions and views based on them, are not detected:
+ * Do not route queries that use them through this class.
+ *
+ * <p>Within a transaction (with transaction synchronization active), tables get
+ * invalidated both when they are modified and again on transaction completion.
+ * Queries on modified tables within the transaction itself bypass the cache,
+ * so that uncommitted changes never get cached. Note that only modifications
+ * performed through this instance are detected.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see QueryResultCache
+ * @see org.springframework.jdbc.core.JdbcTemplate
+ */
+public class CachingJdbcOperations implements JdbcOperations, InitializingBean {
+
+	/**
+	 * Maximum number of SQL statements to keep the parsed tables for.
+	 * When exceeded, the statement that has been cached first gets evicted,
+	 * to avoid unbounded growth in case of dynamically built SQL.
+	 */
+	private static final int STATEMENT_CACHE_LIMIT = 1024;
+
+	/** Keywords that end a FROM clause */
+	private static final Set clauseKeywords = new HashSet(Arrays.asList(new String[] {
+		"WHERE", "GROUP", "ORDER", "HAVING", "ON", "USING", "SET", "VALUES", "LIMIT", "UNION",
+		"EXCEPT", "INTERSECT", "MINUS", "LEFT", "RIGHT", "INNER", "OUTER", "CROSS", "FULL", "NATURAL"}));
+
+	/**
+	 * Pseudo-columns that make a query's result non-deterministic,
+	 * matched against identifiers without schema or sequence prefix
+	 */
+	private static final Set nonDeterministicPseudoColumns = new HashSet(Arrays.asList(new String[] {
+		"NEXTVAL", "CURRVAL", "CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP",
+		"LOCALTIME", "LOCALTIMESTAMP", "SYSDATE", "SYSTIMESTAMP"}));
+
+	/**
+	 * Functions that make a query's result non-deterministic,
+	 * matched against identifiers that are followed by an opening parenthesis
+	 */
+	private static final Set nonDeterministicFunctions = new HashSet(Arrays.asList(new String[] {
+		"NEXTVAL", "CURRVAL", "LASTVAL", "NOW", "GETDATE", "CURDATE", "CURTIME", "RAND", "RANDOM",
+		"UUID", "NEWID", "SYS_GUID", "IDENTITY", "LAST_INSERT_ID"}));
+
+	/** Value cached for null results */
+	private static final Object NULL_RESULT = new NullResult();
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private JdbcOperations targetJdbcOperations;
+
+	private QueryResultCache queryResultCache = new LruQueryResultCache();
+
+	/** ParsedStatement per SQL statement */
+	private final Map statementCache = CollectionFactory.createConcurrentMapIfPossible(64);
+
+	/** Cached SQL statements in insertion order, also serving as monitor for cache updates */
+	private final LinkedList statementOrder = new LinkedList();
+
+	/** Monitor for the generations and counters below */
+	private final Object generationMonitor = new Object();
+
+	/** Generation per table name */
+	private final Map tableGenerations = new HashMap();
+
+	/** Generation of all tables, incremented on unspecific invalidation */
+	private long globalGeneration = 0;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+
+	/**
+	 * Create a new CachingJdbcOperations for bean-style usage.
+	 * @see #setTargetJdbcOperations
+	 * @see #setDataSource
+	 */
+	public CachingJdbcOperations() {
+	}
+
+	/**
+	 * Create a new CachingJdbcOperations for the given target.
+	 * @param targetJdbcOperations the JdbcOperations to delegate to
+	 */
+	public CachingJdbcOperations(JdbcOperations targetJdbcOperations) {
+		setTargetJdbcOperations(targetJdbcOperations);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * Set the JdbcOperations to delegate to, typically a JdbcTemplate.
+	 */
+	public void setTargetJdbcOperations(JdbcOperations targetJdbcOperations) {
+		this.targetJdbcOperations = targetJdbcOperations;
+	}
+
+	/**
+	 * Return the JdbcOperations to delegate to.
+	 */
+	public JdbcOperations getTargetJdbcOperations() {
+		return targetJdbcOperations;
+	}
+
+	/**
+	 * Set the JDBC DataSource to delegate to, creating a new JdbcTemplate for it.
+	 * Alternative to specifying the "targetJdbcOperations".
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.targetJdbcOperations = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Set the cache to store query results in.
+	 * Default is an LruQueryResultCache with 1000 entries and no expiry.
+	 * @see LruQueryResultCache
+	 * @see EhCacheQueryResultCache
+	 */
+	public void setQueryResultCache(QueryResultCache queryResultCache) {
+		this.queryResultCache = queryResultCache;
+	}
+
+	/**
+	 * Return the cache that query results are stored in.
+	 */
+	public QueryResultCache getQueryResultCache() {
+		return queryResultCache;
+	}
+
+	public void afterPropertiesSet() {
+		if (this.targetJdbcOperations == null) {
+			throw new IllegalArgumentException("targetJdbcOperations or dataSource is required");
+		}
+		if (this.queryResultCache == null) {
+			throw new IllegalArgumentException("queryResultCache is required");
+		}
+	}
+
+
+	//-------------------------------------------------------------------------
+	// Cached query methods
+	//-------------------------------------------------------------------------
+
+	public List queryForList(final String sql) throws DataAccessException {
+		return (List) queryWithCache("queryForList", sql, null, null, new QueryCallback() {
+			public Object doQuery() {
+				return targetJdbcOperations.queryForList(sql);
+			}
+		});
+	}
+
+	public List queryForList(final String sql, final Object[] args) throws DataAccessException {
+		return (List) queryWithCache("queryForList", sql, args, null, new QueryCallback() {
+			public Object doQuery() {
+				return targetJdbcOperations.queryForList(sql, args);
+			}
+		});
+	}
+
+	public List queryForRows(final String sql) throws DataAccessException {
+		return (List) queryWithCache("queryForRows", sql, null, null, new QueryCallback() {
+			public Object doQuery() {
+				return targetJdbcOperations.queryForRows(sql);
+			}
+		});
+	}
+
+	public List queryForRows(final String sql, final Object[] args) throws DataAccessException {
+		return (List) queryWithCache("queryForRows", sql, args, null, new QueryCallback() {
+			public Object doQuery() {
+				return targetJdbcOperations.queryForRows(sql, args);
+			}
+		});
+	}
+
+	public Object queryForObject(final String sql, final Class requiredType) throws DataAccessException {
+		return queryWithCache("queryForObject", sql, null, requiredType, new QueryCallback() {
+			public Object doQuery() {
+				return targetJdbcOperations.queryForObject(sql, requiredType);
+			}
+		});
+	}
+
+	public Object queryForObject(final String sql, final Object[] args, final Class requiredType)
+			throws DataAccessException {
+		return queryWithCache("queryForObject", sql, args, requiredType, new QueryCallback() {
+			public Object doQuery() {
+				return targetJdbcOperations.queryForObject(sql, args, requiredType);
+			}
+		});
+	}
+
+	public long queryForLong(final String sql) throws DataAccessException {
+		Number number = (Number) queryWithCache("queryForLong", sql, null, null, new QueryCallback() {
+			public Object doQuery() {
+				return new Long(targetJdbcOperations.queryForLong(sql));
+			}
+		});
+		return number.longValue();
+	}
+
+	public long queryForLong(final String sql, final Object[] args) throws DataAccessException {
+		Number number = (Number) queryWithCache("queryForLong", sql, args, null, new QueryCallback() {
+			public Object doQuery() {
+				return new Long(targetJdbcOperations.queryForLong(sql, args));
+			}
+		});
+		return number.longValue();
+	}
+
+	public int queryForInt(final String sql) throws DataAccessException {
+		Number number = (Number) queryWithCache("queryForInt", sql, null, null, new QueryCallback() {
+			public Object doQuery() {
+				return new Integer(targetJdbcOperations.queryForInt(sql));
+			}
+		});
+		return number.intValue();
+	}
+
+	public int queryForInt(final String sql, final Object[] args) throws DataAccessException {
+		Number number = (Number) queryWithCache("queryForInt", sql, args, null, new QueryCallback() {
+			public Object doQuery() {
+				return new Integer(targetJdbcOperations.queryForInt(sql, args));
+			}
+		});
+		return number.intValue();
+	}
+
+
+	//-------------------------------------------------------------------------
+	// Invalidating methods
+	//-------------------------------------------------------------------------
+
+	public Object execute(StatementCallback action) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.execute(action);
+		}
+		finally {
+			invalidate(getSql(action));
+		}
+	}
+
+	public void execute(String sql) throws DataAccessException {
+		try {
+			this.targetJdbcOperations.execute(sql);
+		}
+		finally {
+			invalidate(sql);
+		}
+	}
+
+	public int update(String sql) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.update(sql);
+		}
+		finally {
+			invalidate(sql);
+		}
+	}
+
+	public Object execute(PreparedStatementCreator psc, PreparedStatementCallback action)
+			throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.execute(psc, action);
+		}
+		finally {
+			invalidate(getSql(psc));
+		}
+	}
+
+	public Object execute(String sql, PreparedStatementCallback action) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.execute(sql, action);
+		}
+		finally {
+			invalidate(sql);
+		}
+	}
+
+	public int update(PreparedStatementCreator psc) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.update(psc);
+		}
+		finally {
+			invalidate(getSql(psc));
+		}
+	}
+
+	public int update(PreparedStatementCreator psc, KeyHolder generatedKeyHolder) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.update(psc, generatedKeyHolder);
+		}
+		finally {
+			invalidate(getSql(psc));
+		}
+	}
+
+	public int update(String sql, PreparedStatementSetter pss) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.update(sql, pss);
+		}
+		finally {
+			invalidate(sql);
+		}
+	}
+
+	public int update(String sql, Object[] args, int[] argTypes) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.update(sql, args, argTypes);
+		}
+		finally {
+			invalidate(sql);
+		}
+	}
+
+	public int update(String sql, Object[] args) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.update(sql, args);
+		}
+		finally {
+			invalidate(sql);
+		}
+	}
+
+	public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.batchUpdate(sql, pss);
+		}
+		finally {
+			invalidate(sql);
+		}
+	}
+
+	public Object execute(CallableStatementCreator csc, CallableStatementCallback action)
+			throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.execute(csc, action);
+		}
+		finally {
+			invalidate(null);
+		}
+	}
+
+	public Object execute(String callString, CallableStatementCallback action) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.execute(callString, action);
+		}
+		finally {
+			invalidate(null);
+		}
+	}
+
+	public Map call(CallableStatementCreator csc, List declaredParameters) throws DataAccessException {
+		try {
+			return this.targetJdbcOperations.call(csc, declaredParameters);
+		}
+		finally {
+			invalidate(null);
+		}
+	}
+
+
+	//-------------------------------------------------------------------------
+	// Delegating query methods
+	//-------------------------------------------------------------------------
+
+	public Object query(String sql, ResultSetExtractor rse) throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, rse);
+	}
+
+	public List query(String sql, RowCallbackHandler rch) throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, rch);
+	}
+
+	public List query(String sql, RowMapper rowMapper) throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, rowMapper);
+	}
+
+	public Object query(PreparedStatementCreator psc, ResultSetExtractor rse) throws DataAccessException {
+		return this.targetJdbcOperations.query(psc, rse);
+	}
+
+	public Object query(String sql, PreparedStatementSetter pss, ResultSetExtractor rse)
+			throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, pss, rse);
+	}
+
+	public Object query(String sql, Object[] args, int[] argTypes, ResultSetExtractor rse)
+			throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, args, argTypes, rse);
+	}
+
+	public Object query(String sql, Object[] args, ResultSetExtractor rse) throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, args, rse);
+	}
+
+	public List query(PreparedStatementCreator psc, RowCallbackHandler rch) throws DataAccessException {
+		return this.targetJdbcOperations.query(psc, rch);
+	}
+
+	public List query(String sql, PreparedStatementSetter pss, RowCallbackHandler rch)
+			throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, pss, rch);
+	}
+
+	public List query(String sql, Object[] args, int[] argTypes, RowCallbackHandler rch)
+			throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, args, argTypes, rch);
+	}
+
+	public List query(String sql, Object[] args, RowCallbackHandler rch) throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, args, rch);
+	}
+
+	public List query(PreparedStatementCreator psc, RowMapper rowMapper) throws DataAccessException {
+		return this.targetJdbcOperations.query(psc, rowMapper);
+	}
+
+	public List query(String sql, PreparedStatementSetter pss, RowMapper rowMapper)
+			throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, pss, rowMapper);
+	}
+
+	public List query(String sql, Object[] args, int[] argTypes, RowMapper rowMapper)
+			throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, args, argTypes, rowMapper);
+	}
+
+	public List query(String sql, Object[] args, RowMapper rowMapper) throws DataAccessException {
+		return this.targetJdbcOperations.query(sql, args, rowMapper);
+	}
+
+	public RowCursor queryForCursor(PreparedStatementCreator psc, RowMapper rowMapper)
+			throws DataAccessException {
+		return this.targetJdbcOperations.queryForCursor(psc, rowMapper);
+	}
+
+	public RowCursor queryForCursor(String sql, RowMapper rowMapper) throws DataAccessException {
+		return this.targetJdbcOperations.queryForCursor(sql, rowMapper);
+	}
+
+	public RowCursor queryForCursor(String sql, PreparedStatementSetter pss, RowMapper rowMapper)
+			throws DataAccessException {
+		return this.targetJdbcOperations.queryForCursor(sql, pss, rowMapper);
+	}
+
+	public RowCursor queryForCursor(String sql, Object[] args, int[] argTypes, RowMapper rowMapper)
+			throws DataAccessException {
+		return this.targetJdbcOperations.queryForCursor(sql, args, argTypes, rowMapper);
+	}
+
+	public RowCursor queryForCursor(String sql, Object[] args, RowMapper rowMapper)
+			throws DataAccessException {
+		return this.targetJdbcOperations.queryForCursor(sql, args, rowMapper);
+	}
+
+
+	//-------------------------------------------------------------------------
+	// Cache handling
+	//-------------------------------------------------------------------------
+
+	/**
+	 * Invalidate all cached query results.
+	 */
+	public void invalidateAll() {
+		invalidateTables(null);
+	}
+
+	/**
+	 * Invalidate all cached results of queries that read the given table.
+	 * @param tableName the name of the table, case-insensitive
+	 */
+	public void invalidateTable(String tableName) {
+		invalidateTables(Collections.singleton(normalizeTableName(tableName)));
+	}
+
+	/**
+	 * Return the number of queries answered from the cache.
+	 */
+	public long getHitCount() {
+		synchronized (this.generationMonitor) {
+			return hitCount;
+		}
+	}
+
+	/**
+	 * Return the number of cacheable queries that were executed
+	 * against the database.
+	 */
+	public long getMissCount() {
+		synchronized (this.generationMonitor) {
+			return missCount;
+		}
+	}
+
+	/**
+	 * Execute the given query via the cache, if the query is cacheable.
+	 * @param kind the kind of query, distinguishing query methods
+	 * @param sql the SQL query
+	 * @param args the query arguments, or null
+	 * @param requiredType the required result type, or null
+	 * @param callback the callback that executes the query
+	 * @return the (possibly cached) query result
+	 */
+	private Object queryWithCache(String kind, String sql, Object[] args, Class requiredType,
+			QueryCallback callback) throws DataAccessException {
+
+		ParsedStatement statement = getParsedStatement(sql);
+		String[] tables = statement.tables;
+		if (tables.length == 0 || !statement.cacheable || !isSelect(sql) || isModifiedInTransaction(tables)) {
+			return callback.doQuery();
+		}
+		QueryKey key = new QueryKey(kind, sql, args, requiredType, getGenerations(tables));
+		Object result = this.queryResultCache.get(key);
+		synchronized (this.generationMonitor) {
+			if (result != null) {
+				this.hitCount++;
+			}
+			else {
+				this.missCount++;
+			}
+		}
+		if (result == null) {
+			result = callback.doQuery();
+			if (result instanceof List) {
+				result = Collections.unmodifiableList(
+						result instanceof Serializable ? (List) result : new ArrayList((List) result));
+			}
+			this.queryResultCache.put(key, (result != null ? result : NULL_RESULT));
+		}
+		return (result != NULL_RESULT ? result : null);
+	}
+
+	/**
+	 * Return the current generation of all tables plus the given tables.
+	 */
+	private long[] getGenerations(String[] tables) {
+		long[] generations = new long[tables.length + 1];
+		synchronized (this.generationMonitor) {
+			generations[0] = this.globalGeneration;
+			for (int i = 0; i < tables.length; i++) {
+				Long generation = (Long) this.tableGenerations.get(tables[i]);
+				generations[i + 1] = (generation != null ? generation.longValue() : 0);
+			}
+		}
+		return generations;
+	}
+
+	/**
+	 * Determine whether any of the given tables has been modified
+	 * within the current transaction.
+	 */
+	private boolean isModifiedInTransaction(String[] tables) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return false;
+		}
+		ModifiedTables modifiedTables = (ModifiedTables) TransactionSynchronizationManager.getResource(this);
+		if (modifiedTables == null) {
+			return false;
+		}
+		if (modifiedTables.all) {
+			return true;
+		}
+		for (int i = 0; i < tables.length; i++) {
+			if (modifiedTables.tables.contains(tables[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Invalidate the tables that the given SQL statement modifies.
+	 * Within a transaction, registers them for invalidation on completion as well.
+	 * @param sql the SQL statement, or null if not known
+	 */
+	private void invalidate(String sql) {
+		if (sql != null && isSelect(sql)) {
+			return;
+		}
+		String[] tables = (sql != null ? getParsedStatement(sql).tables : new String[0]);
+		Set tableSet = (tables.length > 0 ? new HashSet(Arrays.asList(tables)) : null);
+		invalidateTables(tableSet);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			ModifiedTables modifiedTables = (ModifiedTables) TransactionSynchronizationManager.getResource(this);
+			if (modifiedTables == null) {
+				modifiedTables = new ModifiedTables();
+				TransactionSynchronizationManager.bindResource(this, modifiedTables);
+				TransactionSynchronizationManager.registerSynchronization(
+						new InvalidationSynchronization(modifiedTables));
+			}
+			if (tableSet != null) {
+				modifiedTables.tables.addAll(tableSet);
+			}
+			else {
+				modifiedTables.all = true;
+			}
+		}
+	}
+
+	/**
+	 * Increment the generation of the given tables.
+	 * @param tables Set of table names, or null for all tables
+	 */
+	private void invalidateTables(Set tables) {
+		synchronized (this.generationMonitor) {
+			if (tables == null) {
+				this.globalGeneration++;
+				return;
+			}
+			for (Iterator it = tables.iterator(); it.hasNext();) {
+				String table = (String) it.next();
+				Long generation = (Long) this.tableGenerations.get(table);
+				this.tableGenerations.put(table, new Long(generation != null ? generation.longValue() + 1 : 1));
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Invalidated cached query results for tables " + tables);
+		}
+	}
+
+	private String getSql(Object sqlProvider) {
+		return (sqlProvider instanceof SqlProvider ? ((SqlProvider) sqlProvider).getSql() : null);
+	}
+
+
+	//-------------------------------------------------------------------------
+	// SQL parsing
+	//-------------------------------------------------------------------------
+
+	/**
+	 * Return whether the given SQL statement is a SELECT statement.
+	 */
+	private static boolean isSelect(String sql) {
+		int i = 0;
+		while (i < sql.length() && (Character.isWhitespace(sql.charAt(i)) || sql.charAt(i) == '(')) {
+			i++;
+		}
+		return sql.regionMatches(true, i, "SELECT", 0, 6);
+	}
+
+	/**
+	 * Return the parsed form of the given SQL statement,
+	 * from the cache if parsed before.
+	 */
+	private ParsedStatement getParsedStatement(String sql) {
+		ParsedStatement statement = (ParsedStatement) this.statementCache.get(sql);
+		if (statement == null) {
+			List tokens = tokenize(sql);
+			statement = new ParsedStatement(parseTables(tokens), isCacheable(tokens));
+			synchronized (this.statementOrder) {
+				if (!this.statementCache.containsKey(sql)) {
+					if (this.statementOrder.size() >= STATEMENT_CACHE_LIMIT) {
+						this.statementCache.remove(this.statementOrder.removeFirst());
+					}
+					this.statementCache.put(sql, statement);
+					this.statementOrder.add(sql);
+				}
+			}
+		}
+		return statement;
+	}
+
+	/**
+	 * Determine whether the result of the given query only depends on the
+	 * contents of its tables: no FOR UPDATE clause, no sequence access and
+	 * no well-known non-deterministic functions.
+	 * @param tokens the tokens of the SQL statement
+	 */
+	private static boolean isCacheable(List tokens) {
+		String previousToken = "";
+		for (int i = 0; i < tokens.size(); i++) {
+			String upperToken = ((String) tokens.get(i)).toUpperCase();
+			String name = upperToken.substring(upperToken.lastIndexOf('.') + 1);
+			boolean functionCall = (i + 1 < tokens.size() && "(".equals(tokens.get(i + 1)));
+			if ((previousToken.equals("FOR") && upperToken.equals("UPDATE")) ||
+					(previousToken.equals("NEXT") && upperToken.equals("VALUE")) ||
+					nonDeterministicPseudoColumns.contains(name) ||
+					(functionCall && nonDeterministicFunctions.contains(name))) {
+				return false;
+			}
+			previousToken = upperToken;
+		}
+		return true;
+	}
+
+	/**
+	 * Parse the table names from the given SQL statement: the names following
+	 * FROM, JOIN, INTO, UPDATE and DELETE, and the comma-separated names
+	 * within a FROM clause. Errs on the side of too many table names.
+	 * @param tokens the tokens of the SQL statement
+	 */
+	private static String[] parseTables(List tokens) {
+		Set tables = new HashSet();
+		boolean inFrom = false;
+		boolean expectTable = false;
+		for (Iterator it = tokens.iterator(); it.hasNext();) {
+			String token = (String) it.next();
+			String upperToken = token.toUpperCase();
+			if (expectTable) {
+				expectTable = false;
+				if (isIdentifier(token) && !upperToken.equals("FROM") && !clauseKeywords.contains(upperToken)) {
+					tables.add(normalizeTableName(token));
+					continue;
+				}
+			}
+			if (upperToken.equals("FROM")) {
+				inFrom = true;
+				expectTable = true;
+			}
+			else if (upperToken.equals("JOIN") || upperToken.equals("INTO") ||
+					upperToken.equals("UPDATE") || upperToken.equals("DELETE")) {
+				inFrom = false;
+				expectTable = true;
+			}
+			else if (token.equals(",")) {
+				expectTable = inFrom;
+			}
+			else if (clauseKeywords.contains(upperToken)) {
+				inFrom = false;
+			}
+		}
+		return (String[]) tables.toArray(new String[tables.size()]);
+	}
+
+	/**
+	 * Split the given SQL statement into identifiers, quoted identifiers (without
+	 * quotes), commas and parentheses, skipping literals and comments.
+	 */
+	private static List tokenize(String sql) {
+		List tokens = new ArrayList();
+		int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				int end = sql.indexOf('\'', i + 1);
+				i = (end != -1 ? end + 1 : length);
+			}
+			else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				int end = sql.indexOf('\n', i + 2);
+				i = (end != -1 ? end + 1 : length);
+			}
+			else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = (end != -1 ? end + 2 : length);
+			}
+			else if (c == ',' || c == '(' || c == ')') {
+				tokens.add(String.valueOf(c));
+				i++;
+			}
+			else if (c == '"' || Character.isJavaIdentifierPart(c)) {
+				StringBuffer token = new StringBuffer();
+				while (i < length) {
+					c = sql.charAt(i);
+					if (c == '"') {
+						int end = sql.indexOf('"', i + 1);
+						end = (end != -1 ? end : length);
+						token.append(sql.substring(i + 1, end));
+						i = end + 1;
+					}
+					else if (Character.isJavaIdentifierPart(c) || c == '.') {
+						token.append(c);
+						i++;
+					}
+					else {
+						break;
+					}
+				}
+				tokens.add(token.toString());
+			}
+			else {
+				i++;
+			}
+		}
+		return tokens;
+	}
+
+	private static boolean isIdentifier(String token) {
+		return (token.length() > 0 && !Character.isDigit(token.charAt(0)) &&
+				Character.isJavaIdentifierPart(token.charAt(0)));
+	}
+
+	/**
+	 * Normalize the given table name: upper case, without schema prefix.
+	 */
+	private static String normalizeTableName(String tableName) {
+		int dotIndex = tableName.lastIndexOf('.');
+		return (dotIndex != -1 ? tableName.substring(dotIndex + 1) : tableName).toUpperCase();
+	}
+
+
+	/**
+	 * Parsed form of a SQL statement: the tables it reads respectively
+	 * modifies, and whether its results may be cached.
+	 */
+	private static class ParsedStatement {
+
+		private final String[] tables;
+
+		private final boolean cacheable;
+
+		private ParsedStatement(String[] tables, boolean cacheable) {
+			this.tables = tables;
+			this.cacheable = cacheable;
+		}
+	}
+
+
+	/**
+	 * Callback for executing a query against the target JdbcOperations.
+	 */
+	private interface QueryCallback {
+
+		Object doQuery() throws DataAccessException;
+	}
+
+
+	/**
+	 * Cache key for a query result: kind of query, SQL, arguments,
+	 * required type, and the generations of the tables involved.
+	 */
+	private static class QueryKey implements Serializable {
+
+		private final String kind;
+
+		private final String sql;
+
+		private final Object[] args;
+
+		private final Class requiredType;
+
+		private final long[] generations;
+
+		private final int hashCode;
+
+		private QueryKey(String kind, String sql, Object[] args, Class requiredType, long[] generations) {
+			this.kind = kind;
+			this.sql = sql;
+			this.args = (args != null ? (Object[]) args.clone() : null);
+			this.requiredType = requiredType;
+			this.generations = generations;
+			int hashCode = kind.hashCode() * 29 + sql.hashCode();
+			for (int i = 0; this.args != null && i < this.args.length; i++) {
+				hashCode = hashCode * 29 + (this.args[i] != null ? this.args[i].hashCode() : 0);
+			}
+			for (int i = 0; i < generations.length; i++) {
+				hashCode = hashCode * 29 + (int) generations[i];
+			}
+			this.hashCode = hashCode;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof QueryKey)) {
+				return false;
+			}
+			QueryKey otherKey = (QueryKey) other;
+			return (this.hashCode == otherKey.hashCode && this.kind.equals(otherKey.kind) &&
+					this.sql.equals(otherKey.sql) && Arrays.equals(this.args, otherKey.args) &&
+					this.requiredType == otherKey.requiredType && Arrays.equals(this.generations, otherKey.generations));
+		}
+
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		public String toString() {
+			return this.kind + ": " + this.sql + (this.args != null ? " " + Arrays.asList(this.args) : "");
+		}
+	}
+
+
+	/**
+	 * Marker for a cached null result.
+	 */
+	private static class NullResult implements Serializable {
+
+		private Object readResolve() {
+			return NULL_RESULT;
+		}
+	}
+
+
+	/**
+	 * Tables modified within the current transaction.
+	 */
+	private static class ModifiedTables {
+
+		private final Set tables = new HashSet();
+
+		private boolean all = false;
+	}
+
+
+	/**
+	 * Callback that invalidates the tables modified within
+	 * a transaction once more on transaction completion.
+	 */
+	private class InvalidationSynchronization extends TransactionSynchronizationAdapter {
+
+		private final ModifiedTables modifiedTables;
+
+		private InvalidationSynchronization(ModifiedTables modifiedTables) {
+			this.modifiedTables = modifiedTables;
+		}
+
+		public void suspend() {
+			TransactionSynchronizationManager.unbindResource(CachingJdbcOperations.this);
+		}
+
+		public void resume() {
+			TransactionSynchronizationManager.bindResource(CachingJdbcOperations.this, this.modifiedTables);
+		}
+
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResource(CachingJdbcOperations.this);
+			invalidateTables(this.modifiedTables.all ? null : this.modifiedTables.tables);
+		}
+	}
+
+}
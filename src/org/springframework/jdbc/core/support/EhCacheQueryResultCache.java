@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.support;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Element;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * QueryResultCache implementation that stores query results in an EhCache
+ * Cache, typically defined via EhCacheFactoryBean. Size limits and expiry
+ * are configured on the EhCache Cache.
+ *
+ * <p>Only Serializable keys and values can be stored in an EhCache Cache:
+ * Query results or arguments that are not Serializable simply do not get
+ * cached. Note that this requires the Map implementation used by
+ * <code>queryForList</code> to be Serializable, as the standard ones are.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see org.springframework.cache.ehcache.EhCacheFactoryBean
+ */
+public class EhCacheQueryResultCache implements QueryResultCache, InitializingBean {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private Cache cache;
+
+
+	/**
+	 * Create a new EhCacheQueryResultCache for bean-style usage.
+	 * @see #setCache
+	 */
+	public EhCacheQueryResultCache() {
+	}
+
+	/**
+	 * Create a new EhCacheQueryResultCache for the given EhCache Cache.
+	 * @param cache the EhCache Cache to store results in
+	 */
+	public EhCacheQueryResultCache(Cache cache) {
+		setCache(cache);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * Set the EhCache Cache to store results in.
+	 * @see org.springframework.cache.ehcache.EhCacheFactoryBean
+	 */
+	public void setCache(Cache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Return the EhCache Cache that results are stored in.
+	 */
+	public Cache getCache() {
+		return cache;
+	}
+
+	public void afterPropertiesSet() {
+		if (this.cache == null) {
+			throw new IllegalArgumentException("cache is required");
+		}
+	}
+
+
+	public Object get(Object key) {
+		if (!(key instanceof Serializable)) {
+			return null;
+		}
+		try {
+			Element element = this.cache.get((Serializable) key);
+			return (element != null ? element.getValue() : null);
+		}
+		catch (CacheException ex) {
+			throw new DataAccessResourceFailureException("Could not access EhCache cache", ex);
+		}
+	}
+
+	public void put(Object key, Object value) {
+		if (key instanceof Serializable && value instanceof Serializable) {
+			this.cache.put(new Element((Serializable) key, (Serializable) value));
+		}
+		else if (logger.isDebugEnabled()) {
+			logger.debug("Not caching query result because key or value is not Serializable: " + key);
+		}
+	}
+
+	public void clear() {
+		try {
+			this.cache.removeAll();
+		}
+		catch (IOException ex) {
+			throw new DataAccessResourceFailureException("Could not clear EhCache cache", ex);
+		}
+	}
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.support;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory QueryResultCache that holds up to "maxSize" entries, evicting
+ * the least recently used entry when full. Entries optionally expire
+ * "timeToLive" milliseconds after they have been cached.
+ *
+ * <p>Used by CachingJdbcOperations by default. For caches that need
+ * to be configured or monitored externally, consider EhCacheQueryResultCache.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see CachingJdbcOperations#setQueryResultCache
+ */
+public class LruQueryResultCache implements QueryResultCache {
+
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private long timeToLive = 0;
+
+	/** Entry objects keyed by cache key */
+	private final Map entries = new HashMap();
+
+	/** Most recently used entry */
+	private Entry head;
+
+	/** Least recently used entry */
+	private Entry tail;
+
+
+	/**
+	 * Create a new LruQueryResultCache with the default maximum size.
+	 */
+	public LruQueryResultCache() {
+	}
+
+	/**
+	 * Create a new LruQueryResultCache.
+	 * @param maxSize the maximum number of entries
+	 * @param timeToLive the number of milliseconds after which an entry expires,
+	 * or 0 for no expiry
+	 */
+	public LruQueryResultCache(int maxSize, long timeToLive) {
+		setMaxSize(maxSize);
+		setTimeToLive(timeToLive);
+	}
+
+	/**
+	 * Set the maximum number of entries. Default is 1000.
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be greater than 0");
+		}
+		this.maxSize = maxSize;
+		while (this.entries.size() > this.maxSize) {
+			remove(this.tail);
+		}
+	}
+
+	/**
+	 * Return the maximum number of entries.
+	 */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Set the number of milliseconds after which an entry expires.
+	 * Default is 0, i.e. entries only get evicted when the cache is full.
+	 */
+	public synchronized void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Return the number of milliseconds after which an entry expires.
+	 */
+	public synchronized long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * Return the current number of entries, including expired ones
+	 * that have not been accessed since they expired.
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+
+	public synchronized Object get(Object key) {
+		Entry entry = (Entry) this.entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (this.timeToLive > 0 && System.currentTimeMillis() - entry.created >= this.timeToLive) {
+			remove(entry);
+			return null;
+		}
+		unlink(entry);
+		linkFirst(entry);
+		return entry.value;
+	}
+
+	public synchronized void put(Object key, Object value) {
+		Entry entry = (Entry) this.entries.get(key);
+		if (entry != null) {
+			remove(entry);
+		}
+		entry = new Entry(key, value, System.currentTimeMillis());
+		this.entries.put(key, entry);
+		linkFirst(entry);
+		if (this.entries.size() > this.maxSize) {
+			remove(this.tail);
+		}
+	}
+
+	public synchronized void clear() {
+		this.entries.clear();
+		this.head = null;
+		this.tail = null;
+	}
+
+
+	private void remove(Entry entry) {
+		unlink(entry);
+		this.entries.remove(entry.key);
+	}
+
+	private void linkFirst(Entry entry) {
+		entry.previous = null;
+		entry.next = this.head;
+		if (this.head != null) {
+			this.head.previous = entry;
+		}
+		this.head = entry;
+		if (this.tail == null) {
+			this.tail = entry;
+		}
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.previous != null) {
+			entry.previous.next = entry.next;
+		}
+		else if (this.head == entry) {
+			this.head = entry.next;
+		}
+		if (entry.next != null) {
+			entry.next.previous = entry.previous;
+		}
+		else if (this.tail == entry) {
+			this.tail = entry.previous;
+		}
+		entry.previous = null;
+		entry.next = null;
+	}
+
+
+	/**
+	 * Cache entry, linked into the list of entries in order of use.
+	 */
+	private static class Entry {
+
+		private final Object key;
+
+		private final Object value;
+
+		private final long created;
+
+		private Entry previous;
+
+		private Entry next;
+
+		private Entry(Object key, Object value, long created) {
+			this.key = key;
+			this.value = value;
+			this.created = created;
+		}
+	}
+
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.support;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Executes a query for multiple partitions of the data in parallel, each
+ * partition on its own thread and its own JDBC Connection. The SQL is
+ * the same for all partitions, with the partition specified through its
+ * parameters, for example "SELECT ... WHERE id >= ? AND id < ?" with the
+ * bounds of a key range per partition.
+ *
+ * <p>Results get merged through a RowCallbackHandler (in arbitrary partition
+ * order, with calls serialized), concatenated in partition order, or merged
+ * via a Comparator if each partition query returns sorted rows.
+ *
+ * <p>Each worker thread obtains a Connection from the DataSource, marks it
+ * read-only (see "readOnly" property), and binds it to the thread, so that
+ * the JdbcTemplate executes all partitions of that worker on it.
+ * The DataSource should thus be a connection pool with at least
+ * "parallelism" connections available.
+ *
+ * <p>If the calling thread participates in a transaction that has bound a
+ * read-write Connection for the DataSource, all partitions get executed
+ * sequentially on that Connection instead: Other Connections would not see
+ * the uncommitted changes of the transaction. Within a read-only transaction,
+ * partitions get executed in parallel.
+ *
+ * <p>Data access exceptions thrown by the JdbcTemplate, i.e. exceptions
+ * translated by its SQLExceptionTranslator, get rethrown as-is to the caller.
+ * The first failure prevents the execution of further partitions.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #createRangePartitions
+ * @see org.springframework.jdbc.core.JdbcTemplate#query(String, Object[], RowCallbackHandler)
+ */
+public class PartitionedQueryExecutor implements InitializingBean {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private JdbcTemplate jdbcTemplate;
+
+	private int parallelism = 4;
+
+	private boolean readOnly = true;
+
+
+	/**
+	 * Create a new PartitionedQueryExecutor for bean usage.
+	 * @see #setDataSource
+	 * @see #setJdbcTemplate
+	 */
+	public PartitionedQueryExecutor() {
+	}
+
+	/**
+	 * Create a new PartitionedQueryExecutor for the given DataSource.
+	 * @param dataSource the DataSource to obtain Connections from
+	 */
+	public PartitionedQueryExecutor(DataSource dataSource) {
+		setDataSource(dataSource);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * Create a new PartitionedQueryExecutor for the given JdbcTemplate.
+	 * @param jdbcTemplate the JdbcTemplate to execute partition queries with
+	 */
+	public PartitionedQueryExecutor(JdbcTemplate jdbcTemplate) {
+		setJdbcTemplate(jdbcTemplate);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * Set the DataSource to obtain Connections from, creating a JdbcTemplate for it.
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Set the JdbcTemplate to execute partition queries with. Its DataSource
+	 * will be used for obtaining Connections, and its SQLExceptionTranslator
+	 * for translating SQLExceptions.
+	 */
+	public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Return the JdbcTemplate used by this executor.
+	 */
+	public JdbcTemplate getJdbcTemplate() {
+		return jdbcTemplate;
+	}
+
+	/**
+	 * Set the maximum number of partitions to execute in parallel,
+	 * i.e. the maximum number of worker threads and Connections per query.
+	 * Default is 4.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Return the maximum number of partitions to execute in parallel.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Set whether to mark the worker Connections as read-only.
+	 * Default is true, as this executor is intended for queries.
+	 * @see java.sql.Connection#setReadOnly
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Return whether worker Connections are marked as read-only.
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	public void afterPropertiesSet() {
+		if (this.jdbcTemplate == null) {
+			throw new IllegalArgumentException("dataSource or jdbcTemplate is required");
+		}
+		if (this.parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+	}
+
+
+	/**
+	 * Split the given key range into the given number of partitions of
+	 * (nearly) equal size. Each partition is represented by an Object array
+	 * with the inclusive lower bound and the exclusive upper bound as Long,
+	 * for SQL like "WHERE id >= ? AND id < ?".
+	 * @param start the lower bound of the key range (inclusive)
+	 * @param end the upper bound of the key range (exclusive)
+	 * @param partitionCount the number of partitions to create
+	 * @return a List of Object arrays, to be used as partition parameters
+	 */
+	public static List createRangePartitions(long start, long end, int partitionCount) {
+		if (partitionCount < 1) {
+			throw new IllegalArgumentException("partitionCount must be at least 1");
+		}
+		if (end < start) {
+			throw new IllegalArgumentException("end must not be lower than start");
+		}
+		List partitions = new ArrayList(partitionCount);
+		long size = end - start;
+		long lower = start;
+		for (int i = 1; i <= partitionCount; i++) {
+			long upper = (i == partitionCount ? end : start + size * i / partitionCount);
+			partitions.add(new Object[] {new Long(lower), new Long(upper)});
+			lower = upper;
+		}
+		return partitions;
+	}
+
+	/**
+	 * Execute the given query for each partition, passing all rows
+	 * to the given RowCallbackHandler. Rows of different partitions
+	 * arrive in arbitrary order, but calls to the handler are serialized.
+	 * @param sql the SQL query, with placeholders for the partition parameters
+	 * @param partitionArgs List of Object arrays with the parameters per partition
+	 * @param rch the handler for all rows
+	 * @throws DataAccessException if the query failed for any partition
+	 */
+	public void query(String sql, List partitionArgs, final RowCallbackHandler rch) throws DataAccessException {
+		final RowCallbackHandler synchronizedHandler = new RowCallbackHandler() {
+			public void processRow(ResultSet rs) throws SQLException {
+				synchronized (rch) {
+					rch.processRow(rs);
+				}
+			}
+		};
+		execute(sql, partitionArgs, new PartitionQuery() {
+			public Object execute(JdbcTemplate jdbcTemplate, String sql, Object[] args) {
+				return jdbcTemplate.query(sql, args, synchronizedHandler);
+			}
+		});
+	}
+
+	/**
+	 * Execute the given query for each partition, mapping each row via the
+	 * given RowMapper. The result contains the rows of the first partition,
+	 * followed by the rows of the second partition, etc.
+	 * @param sql the SQL query, with placeholders for the partition parameters
+	 * @param partitionArgs List of Object arrays with the parameters per partition
+	 * @param rowMapper the RowMapper to apply to each row (must be thread-safe)
+	 * @return the mapped objects of all partitions
+	 * @throws DataAccessException if the query failed for any partition
+	 */
+	public List query(String sql, List partitionArgs, final RowMapper rowMapper) throws DataAccessException {
+		List[] partitionResults = queryForPartitionResults(sql, partitionArgs, rowMapper);
+		int size = 0;
+		for (int i = 0; i < partitionResults.length; i++) {
+			size += partitionResults[i].size();
+		}
+		List result = new ArrayList(size);
+		for (int i = 0; i < partitionResults.length; i++) {
+			result.addAll(partitionResults[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Execute the given query for each partition, mapping each row via the
+	 * given RowMapper, and merge the sorted partition results into one
+	 * sorted result. The SQL must sort the rows of each partition according
+	 * to the given Comparator, typically through an ORDER BY clause.
+	 * @param sql the SQL query, with placeholders for the partition parameters
+	 * @param partitionArgs List of Object arrays with the parameters per partition
+	 * @param rowMapper the RowMapper to apply to each row (must be thread-safe)
+	 * @param comparator the Comparator for the mapped objects
+	 * @return the mapped objects of all partitions, in the order of the Comparator
+	 * @throws DataAccessException if the query failed for any partition
+	 */
+	public List query(String sql, List partitionArgs, RowMapper rowMapper, Comparator comparator)
+			throws DataAccessException {
+
+		List[] partitionResults = queryForPartitionResults(sql, partitionArgs, rowMapper);
+		int[] positions = new int[partitionResults.length];
+		int size = 0;
+		for (int i = 0; i < partitionResults.length; i++) {
+			size += partitionResults[i].size();
+		}
+		List result = new ArrayList(size);
+		for (int n = 0; n < size; n++) {
+			int minIndex = -1;
+			Object min = null;
+			for (int i = 0; i < partitionResults.length; i++) {
+				if (positions[i] < partitionResults[i].size()) {
+					Object candidate = partitionResults[i].get(positions[i]);
+					if (minIndex == -1 || comparator.compare(candidate, min) < 0) {
+						minIndex = i;
+						min = candidate;
+					}
+				}
+			}
+			result.add(min);
+			positions[minIndex]++;
+		}
+		return result;
+	}
+
+	/**
+	 * Execute the given query for each partition,
+	 * returning the mapped objects per partition.
+	 */
+	private List[] queryForPartitionResults(String sql, List partitionArgs, final RowMapper rowMapper) {
+		Object[] results = execute(sql, partitionArgs, new PartitionQuery() {
+			public Object execute(JdbcTemplate jdbcTemplate, String sql, Object[] args) {
+				return jdbcTemplate.query(sql, args, rowMapper);
+			}
+		});
+		List[] partitionResults = new List[results.length];
+		System.arraycopy(results, 0, partitionResults, 0, results.length);
+		return partitionResults;
+	}
+
+	/**
+	 * Execute the given PartitionQuery for each partition, in parallel
+	 * if possible.
+	 * @return the results of the PartitionQuery per partition
+	 */
+	protected Object[] execute(String sql, List partitionArgs, PartitionQuery partitionQuery)
+			throws DataAccessException {
+
+		Object[][] args = (Object[][]) partitionArgs.toArray(new Object[partitionArgs.size()][]);
+		DataSource dataSource = this.jdbcTemplate.getDataSource();
+		ConnectionHolder conHolder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+		boolean sequential = (this.parallelism == 1 || args.length <= 1);
+		if (!sequential && conHolder != null) {
+			try {
+				sequential = !conHolder.getConnection().isReadOnly();
+			}
+			catch (SQLException ex) {
+				throw this.jdbcTemplate.getExceptionTranslator().translate(
+						"checking read-only flag of transactional Connection", sql, ex);
+			}
+			if (sequential && logger.isDebugEnabled()) {
+				logger.debug("Executing partitions sequentially within read-write transaction");
+			}
+		}
+		if (sequential) {
+			Object[] results = new Object[args.length];
+			for (int i = 0; i < args.length; i++) {
+				results[i] = partitionQuery.execute(this.jdbcTemplate, sql, args[i]);
+			}
+			return results;
+		}
+		return new ParallelExecution(sql, args, partitionQuery).run();
+	}
+
+
+	/**
+	 * Callback for executing the query for a single partition.
+	 */
+	protected interface PartitionQuery {
+
+		/**
+		 * Execute the query for a single partition.
+		 * @param jdbcTemplate the JdbcTemplate to use
+		 * @param sql the SQL query
+		 * @param args the parameters of the partition
+		 * @return the result for the partition
+		 */
+		Object execute(JdbcTemplate jdbcTemplate, String sql, Object[] args) throws DataAccessException;
+	}
+
+
+	/**
+	 * State of a single parallel execution: hands out partitions to worker
+	 * threads and collects results and the first failure.
+	 */
+	private class ParallelExecution {
+
+		private final String sql;
+
+		private final Object[][] args;
+
+		private final PartitionQuery partitionQuery;
+
+		private final Object[] results;
+
+		private int nextPartition = 0;
+
+		private Throwable failure;
+
+		private ParallelExecution(String sql, Object[][] args, PartitionQuery partitionQuery) {
+			this.sql = sql;
+			this.args = args;
+			this.partitionQuery = partitionQuery;
+			this.results = new Object[args.length];
+		}
+
+		private Object[] run() throws DataAccessException {
+			int threadCount = Math.min(parallelism, this.args.length);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Executing " + this.args.length + " partitions with " + threadCount +
+						" threads for SQL [" + this.sql + "]");
+			}
+			Thread[] threads = new Thread[threadCount];
+			for (int i = 0; i < threadCount; i++) {
+				threads[i] = new Thread(new Runnable() {
+					public void run() {
+						runWorker();
+					}
+				}, PartitionedQueryExecutor.class.getName() + " worker " + i);
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+			boolean interrupted = false;
+			for (int i = 0; i < threadCount; i++) {
+				while (threads[i].isAlive()) {
+					try {
+						threads[i].join();
+					}
+					catch (InterruptedException ex) {
+						// stop handing out partitions, but wait for running queries
+						interrupted = true;
+						synchronized (this) {
+							this.nextPartition = this.args.length;
+						}
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+				throw new DataAccessResourceFailureException("Interrupted while executing partitioned query");
+			}
+			synchronized (this) {
+				if (this.failure instanceof RuntimeException) {
+					throw (RuntimeException) this.failure;
+				}
+				if (this.failure instanceof Error) {
+					throw (Error) this.failure;
+				}
+			}
+			return this.results;
+		}
+
+		/**
+		 * Execute partitions on a Connection bound to the current worker thread,
+		 * until there are no partitions left or a partition failed.
+		 */
+		private void runWorker() {
+			DataSource dataSource = jdbcTemplate.getDataSource();
+			Connection con = null;
+			boolean bound = false;
+			try {
+				con = DataSourceUtils.getConnection(dataSource);
+				if (readOnly) {
+					try {
+						con.setReadOnly(true);
+					}
+					catch (Exception ex) {
+						// SQLException or UnsupportedOperationException
+						// -> ignore, it's just a hint anyway
+						logger.debug("Could not set JDBC connection read-only", ex);
+					}
+				}
+				TransactionSynchronizationManager.bindResource(dataSource, new ConnectionHolder(con));
+				bound = true;
+				int index = nextPartition();
+				while (index != -1) {
+					Object result = this.partitionQuery.execute(jdbcTemplate, this.sql, this.args[index]);
+					synchronized (this) {
+						this.results[index] = result;
+					}
+					index = nextPartition();
+				}
+			}
+			catch (Throwable ex) {
+				synchronized (this) {
+					if (this.failure == null) {
+						this.failure = ex;
+					}
+					this.nextPartition = this.args.length;
+				}
+			}
+			finally {
+				if (bound) {
+					TransactionSynchronizationManager.unbindResource(dataSource);
+				}
+				if (con != null) {
+					if (readOnly) {
+						try {
+							con.setReadOnly(false);
+						}
+						catch (Exception ex) {
+							logger.debug("Could not reset read-only flag of JDBC connection", ex);
+						}
+					}
+					DataSourceUtils.closeConnectionIfNecessary(con, dataSource);
+				}
+			}
+		}
+
+		private synchronized int nextPartition() {
+			if (this.nextPartition >= this.args.length) {
+				return -1;
+			}
+			return this.nextPartition++;
+		}
+	}
+
+}
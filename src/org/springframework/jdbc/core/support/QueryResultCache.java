@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.support;
+
+/**
+ * Strategy interface for the cache that CachingJdbcOperations stores
+ * query results in. Implementations need to be thread-safe, and are
+ * responsible for bounding the cache size and expiring entries.
+ *
+ * <p>Keys are opaque to implementations but implement equals and hashCode,
+ * and are Serializable as long as the query arguments are.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see CachingJdbcOperations
+ * @see LruQueryResultCache
+ * @see EhCacheQueryResultCache
+ */
+public interface QueryResultCache {
+
+	/**
+	 * Return the value cached for the given key.
+	 * @param key the cache key
+	 * @return the cached value, or null if none cached or expired
+	 */
+	Object get(Object key);
+
+	/**
+	 * Cache the given value for the given key.
+	 * @param key the cache key
+	 * @param value the value to cache (never null)
+	 */
+	void put(Object key, Object value);
+
+	/**
+	 * Remove all cached values.
+	 */
+	void clear();
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.Constants;
+import org.springframework.transaction.TransactionDefinition;
+
+/**
+ * Proxy for a target DataSource that fetches the actual JDBC Connection lazily,
+ * i.e. not until the first Statement gets created. Connection initialization
+ * properties like auto-commit mode, read-only flag and transaction isolation
+ * are cached and applied to the actual Connection once it gets fetched;
+ * commit and rollback calls are ignored if no actual Connection has been fetched.
+ *
+ * <p>This is particularly useful with DataSourceTransactionManager for
+ * transactions that often do not touch the database at all, for example service
+ * methods that get answered from a cache: Such transactions will neither fetch a
+ * Connection from the pool nor perform any JDBC calls on begin, commit or cleanup.
+ * The transaction manager and all data access code need to work with this proxy
+ * rather than with the target DataSource, to see the same thread-bound Connection:
+ *
+ * <pre>
+ * &lt;bean id="dataSource" class="org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy"&gt;
+ *   &lt;property name="targetDataSource"&gt;&lt;ref bean="targetDataSource"/&gt;&lt;/property&gt;
+ * &lt;/bean&gt;
+ *
+ * &lt;bean id="transactionManager" class="org.springframework.jdbc.datasource.DataSourceTransactionManager"&gt;
+ *   &lt;property name="dataSource"&gt;&lt;ref bean="dataSource"/&gt;&lt;/property&gt;
+ * &lt;/bean&gt;</pre>
+ *
+ * To answer <code>getAutoCommit</code> and <code>getTransactionIsolation</code>
+ * calls without actual Connection, this proxy needs to know the default values of
+ * the target DataSource's Connections. Specify them via the "defaultAutoCommit" and
+ * "defaultTransactionIsolation" properties, else they get determined from a target
+ * Connection on initialization.
+ *
+ * <p><b>NOTE:</b> This DataSource proxy needs to return wrapped Connections to
+ * defer fetching the actual Connection. Therefore, the returned Connections cannot
+ * be cast to a native JDBC Connection type like OracleConnection, respectively to
+ * a connection pool implementation type. Use <code>getTargetConnection</code> on
+ * the ConnectionProxy interface to access the actual Connection.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see ConnectionProxy
+ * @see DataSourceTransactionManager
+ */
+public class LazyConnectionDataSourceProxy extends DelegatingDataSource {
+
+	private static final Constants constants = new Constants(TransactionDefinition.class);
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private Boolean defaultAutoCommit;
+
+	private Integer defaultTransactionIsolation;
+
+
+	/**
+	 * Create a new LazyConnectionDataSourceProxy.
+	 * @see #setTargetDataSource
+	 */
+	public LazyConnectionDataSourceProxy() {
+	}
+
+	/**
+	 * Create a new LazyConnectionDataSourceProxy.
+	 * @param targetDataSource the target DataSource
+	 */
+	public LazyConnectionDataSourceProxy(DataSource targetDataSource) {
+		setTargetDataSource(targetDataSource);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * Set the default auto-commit mode of the target DataSource's Connections.
+	 * If not specified, it gets determined from a target Connection on initialization.
+	 */
+	public void setDefaultAutoCommit(boolean defaultAutoCommit) {
+		this.defaultAutoCommit = (defaultAutoCommit ? Boolean.TRUE : Boolean.FALSE);
+	}
+
+	/**
+	 * Set the default transaction isolation of the target DataSource's Connections,
+	 * as JDBC Connection constant. If not specified, it gets determined from a target
+	 * Connection on initialization.
+	 * @see java.sql.Connection#TRANSACTION_READ_COMMITTED
+	 */
+	public void setDefaultTransactionIsolation(int defaultTransactionIsolation) {
+		this.defaultTransactionIsolation = new Integer(defaultTransactionIsolation);
+	}
+
+	/**
+	 * Set the default transaction isolation by the name of the corresponding
+	 * constant in TransactionDefinition, e.g. "ISOLATION_READ_COMMITTED".
+	 * @see org.springframework.transaction.TransactionDefinition#ISOLATION_READ_COMMITTED
+	 */
+	public void setDefaultTransactionIsolationName(String constantName) {
+		if (constantName == null || !constantName.startsWith(TransactionDefinition.ISOLATION_CONSTANT_PREFIX)) {
+			throw new IllegalArgumentException("Only isolation constants allowed");
+		}
+		setDefaultTransactionIsolation(constants.asNumber(constantName).intValue());
+	}
+
+	public void afterPropertiesSet() {
+		super.afterPropertiesSet();
+		if (this.defaultAutoCommit == null || this.defaultTransactionIsolation == null) {
+			try {
+				Connection con = getTargetDataSource().getConnection();
+				try {
+					checkDefaultConnectionProperties(con);
+				}
+				finally {
+					con.close();
+				}
+			}
+			catch (SQLException ex) {
+				logger.warn("Could not retrieve default auto-commit and transaction isolation settings - " +
+						"will determine them on first Connection access", ex);
+			}
+		}
+	}
+
+	/**
+	 * Determine the default auto-commit mode and transaction isolation
+	 * from the given target Connection, if not specified yet.
+	 */
+	private synchronized void checkDefaultConnectionProperties(Connection con) throws SQLException {
+		if (this.defaultAutoCommit == null) {
+			this.defaultAutoCommit = (con.getAutoCommit() ? Boolean.TRUE : Boolean.FALSE);
+		}
+		if (this.defaultTransactionIsolation == null) {
+			this.defaultTransactionIsolation = new Integer(con.getTransactionIsolation());
+		}
+	}
+
+	private synchronized Boolean getDefaultAutoCommit() {
+		return defaultAutoCommit;
+	}
+
+	private synchronized Integer getDefaultTransactionIsolation() {
+		return defaultTransactionIsolation;
+	}
+
+
+	/**
+	 * Return a Connection proxy that fetches the actual target Connection
+	 * on first Statement creation.
+	 */
+	public Connection getConnection() throws SQLException {
+		return getLazyConnectionProxy(null, null);
+	}
+
+	/**
+	 * Return a Connection proxy that fetches the actual target Connection
+	 * for the given user on first Statement creation.
+	 */
+	public Connection getConnection(String username, String password) throws SQLException {
+		return getLazyConnectionProxy(username, password);
+	}
+
+	/**
+	 * Wrap a lazily fetched target Connection with a proxy.
+	 * @param username the user to fetch the target Connection for,
+	 * or null for the default user
+	 * @param password the password for the given user
+	 * @return the Connection proxy
+	 */
+	protected Connection getLazyConnectionProxy(String username, String password) {
+		return (Connection) Proxy.newProxyInstance(
+				ConnectionProxy.class.getClassLoader(),
+				new Class[] {ConnectionProxy.class},
+				new LazyConnectionInvocationHandler(username, password));
+	}
+
+
+	/**
+	 * Invocation handler that defers fetching the actual JDBC Connection
+	 * until the first Statement gets created.
+	 */
+	private class LazyConnectionInvocationHandler implements InvocationHandler {
+
+		private final String username;
+
+		private final String password;
+
+		private Boolean readOnly = Boolean.FALSE;
+
+		private Boolean autoCommit;
+
+		private Integer transactionIsolation;
+
+		private boolean closed = false;
+
+		private Connection target;
+
+		private LazyConnectionInvocationHandler(String username, String password) {
+			this.username = username;
+			this.password = password;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				// only consider equal when proxies are identical
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				// use hashCode of Connection proxy
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (methodName.equals("toString")) {
+				return "Lazy Connection proxy for target " +
+						(this.target != null ? "[" + this.target + "]" : "DataSource [" + getTargetDataSource() + "]");
+			}
+
+			if (this.target == null) {
+				if (methodName.equals("close")) {
+					this.closed = true;
+					return null;
+				}
+				else if (methodName.equals("isClosed")) {
+					return (this.closed ? Boolean.TRUE : Boolean.FALSE);
+				}
+				else if (this.closed) {
+					throw new SQLException("Illegal operation: connection handle already closed");
+				}
+
+				if (methodName.equals("setReadOnly")) {
+					this.readOnly = (Boolean) args[0];
+					return null;
+				}
+				else if (methodName.equals("isReadOnly")) {
+					return this.readOnly;
+				}
+				else if (methodName.equals("setAutoCommit") && getDefaultAutoCommit() != null) {
+					this.autoCommit = (Boolean) args[0];
+					return null;
+				}
+				else if (methodName.equals("getAutoCommit") && getDefaultAutoCommit() != null) {
+					return (this.autoCommit != null ? this.autoCommit : getDefaultAutoCommit());
+				}
+				else if (methodName.equals("setTransactionIsolation") && getDefaultTransactionIsolation() != null) {
+					this.transactionIsolation = (Integer) args[0];
+					return null;
+				}
+				else if (methodName.equals("getTransactionIsolation") && getDefaultTransactionIsolation() != null) {
+					return (this.transactionIsolation != null ?
+							this.transactionIsolation : getDefaultTransactionIsolation());
+				}
+				else if (methodName.equals("commit") || methodName.equals("rollback") ||
+						methodName.equals("clearWarnings")) {
+					// nothing to commit or roll back without actual Connection
+					return null;
+				}
+				else if (methodName.equals("getWarnings")) {
+					return null;
+				}
+			}
+
+			Connection con = getTarget();
+			if (methodName.equals("getTargetConnection")) {
+				return con;
+			}
+			try {
+				return method.invoke(con, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+
+		/**
+		 * Fetch the target Connection if not fetched yet,
+		 * applying the cached Connection settings to it.
+		 */
+		private Connection getTarget() throws SQLException {
+			if (this.target == null) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Fetching JDBC Connection from DataSource [" + getTargetDataSource() + "]");
+				}
+				Connection con = (this.username != null ?
+						getTargetDataSource().getConnection(this.username, this.password) :
+						getTargetDataSource().getConnection());
+				try {
+					checkDefaultConnectionProperties(con);
+					if (this.readOnly.booleanValue()) {
+						con.setReadOnly(true);
+					}
+					if (this.transactionIsolation != null &&
+							!this.transactionIsolation.equals(getDefaultTransactionIsolation())) {
+						con.setTransactionIsolation(this.transactionIsolation.intValue());
+					}
+					if (this.autoCommit != null && !this.autoCommit.equals(getDefaultAutoCommit())) {
+						con.setAutoCommit(this.autoCommit.booleanValue());
+					}
+				}
+				catch (SQLException ex) {
+					con.close();
+					throw ex;
+				}
+				this.target = con;
+			}
+			return this.target;
+		}
+	}
+
+}
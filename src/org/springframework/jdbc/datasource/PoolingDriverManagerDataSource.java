@@ -0,0 +1,968 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Extension of DriverManagerDataSource that keeps a pool of physical Connections,
+ * for standalone and batch usage without a J2EE container or a separate pool.
+ *
+ * <p>Returned Connections are proxies implementing ConnectionProxy: Closing them
+ * returns the physical Connection to the pool, after rolling back uncommitted work
+ * and restoring auto-commit, read-only and isolation settings that have been
+ * changed through the proxy. Therefore, <code>shouldClose</code> always returns true.
+ * Statements created through the proxy are proxies too: Statements that the
+ * caller left open get closed when the Connection is returned.
+ *
+ * <p>Connections are borrowed most recently used first, within a short critical
+ * section: Physical Connections are created, validated and closed outside of it.
+ * If "maxPoolSize" Connections are in use, <code>getConnection</code> waits up to
+ * "maxWait" milliseconds for a Connection to be returned.
+ *
+ * <p>If a "validationQuery" is specified, it is executed on each idle Connection
+ * before handing it out: Connections that fail get closed and replaced. An idle
+ * Connection only counts as active once it has passed validation.
+ *
+ * <p>A maintenance thread running every "maintenanceInterval" milliseconds closes
+ * Connections that have been idle for longer than "maxIdleTime", refills the pool
+ * to "minPoolSize", and logs Connections that have been in use for longer than the
+ * "leakDetectionThreshold", including the stack trace of the code that obtained them.
+ * The maintenance thread is started by <code>afterPropertiesSet</code>.
+ *
+ * <p>Call <code>destroy</code> to close the pool: A bean factory will do this
+ * automatically on shutdown. Pool metrics are available as bean properties,
+ * for example to be exposed via JMX.
+ *
+ * <p>In a J2EE container, use a JNDI DataSource provided by the container instead.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setMaxPoolSize
+ * @see #setValidationQuery
+ * @see #setMaxIdleTime
+ * @see #setLeakDetectionThreshold
+ */
+public class PoolingDriverManagerDataSource extends DriverManagerDataSource
+		implements InitializingBean, DisposableBean {
+
+	public static final int DEFAULT_MAX_POOL_SIZE = 8;
+
+	public static final long DEFAULT_MAX_WAIT = 30000;
+
+	public static final long DEFAULT_MAINTENANCE_INTERVAL = 30000;
+
+
+	private int minPoolSize = 0;
+
+	private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+
+	private long maxWait = DEFAULT_MAX_WAIT;
+
+	private String validationQuery;
+
+	private long maxIdleTime = 0;
+
+	private long leakDetectionThreshold = 0;
+
+	private long maintenanceInterval = DEFAULT_MAINTENANCE_INTERVAL;
+
+	/** Monitor for all pool state below */
+	private final Object poolMonitor = new Object();
+
+	/** Idle PooledConnections, most recently returned first */
+	private final LinkedList idleConnections = new LinkedList();
+
+	/** PooledConnections that are currently borrowed */
+	private final Set activeConnections = new HashSet();
+
+	/** Number of physical Connections, including the ones being created */
+	private int poolSize;
+
+	private boolean closed;
+
+	private Timer maintenanceTimer;
+
+	private long borrowCount;
+
+	private long waitCount;
+
+	private long createdCount;
+
+	private long destroyedCount;
+
+	private long validationFailureCount;
+
+	private long leakCount;
+
+
+	/**
+	 * Constructor for bean-style configuration.
+	 */
+	public PoolingDriverManagerDataSource() {
+	}
+
+	/**
+	 * Create a new PoolingDriverManagerDataSource with the given standard
+	 * DriverManager parameters. Call <code>afterPropertiesSet</code> after
+	 * configuring the pool settings, to fill the pool and start maintenance.
+	 */
+	public PoolingDriverManagerDataSource(String driverClassName, String url, String username, String password)
+			throws CannotGetJdbcConnectionException {
+		super(driverClassName, url, username, password);
+	}
+
+	/**
+	 * Set the number of Connections to open on initialization and to keep
+	 * open when closing idle Connections. Default is 0.
+	 */
+	public void setMinPoolSize(int minPoolSize) {
+		if (minPoolSize < 0) {
+			throw new IllegalArgumentException("minPoolSize must not be negative");
+		}
+		this.minPoolSize = minPoolSize;
+	}
+
+	/**
+	 * Return the minimum number of Connections to keep open.
+	 */
+	public int getMinPoolSize() {
+		return minPoolSize;
+	}
+
+	/**
+	 * Set the maximum number of open Connections, both idle and in use.
+	 * Default is 8.
+	 */
+	public void setMaxPoolSize(int maxPoolSize) {
+		if (maxPoolSize <= 0) {
+			throw new IllegalArgumentException("maxPoolSize must be greater than 0");
+		}
+		this.maxPoolSize = maxPoolSize;
+	}
+
+	/**
+	 * Return the maximum number of open Connections.
+	 */
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	/**
+	 * Set the maximum number of milliseconds to wait for a Connection to be
+	 * returned when all Connections are in use. Default is 30000; 0 means
+	 * to fail immediately, -1 to wait indefinitely.
+	 */
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * Return the maximum number of milliseconds to wait for a Connection.
+	 */
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * Set a SQL query to validate idle Connections with before handing them out,
+	 * for example "SELECT 1" or "SELECT 1 FROM DUAL". Default is none.
+	 */
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	/**
+	 * Return the SQL query to validate idle Connections with, if any.
+	 */
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	/**
+	 * Set the number of milliseconds after which idle Connections get closed,
+	 * as long as more than "minPoolSize" Connections are open.
+	 * Default is 0, keeping idle Connections open.
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * Return the number of milliseconds after which idle Connections get closed.
+	 */
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	/**
+	 * Set the number of milliseconds after which a Connection that has not been
+	 * returned yet gets logged as a potential leak. Default is 0, not checking
+	 * for leaks. If set, the stack trace of each getConnection call is recorded.
+	 */
+	public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	/**
+	 * Return the number of milliseconds after which a Connection that has
+	 * not been returned yet gets logged as a potential leak.
+	 */
+	public long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	/**
+	 * Set the number of milliseconds between runs of the maintenance thread
+	 * that closes idle Connections, refills the pool and detects leaks.
+	 * Default is 30000; 0 means no maintenance thread.
+	 */
+	public void setMaintenanceInterval(long maintenanceInterval) {
+		this.maintenanceInterval = maintenanceInterval;
+	}
+
+	/**
+	 * Return the number of milliseconds between runs of the maintenance thread.
+	 */
+	public long getMaintenanceInterval() {
+		return maintenanceInterval;
+	}
+
+
+	/**
+	 * Open "minPoolSize" Connections and start the maintenance thread.
+	 */
+	public void afterPropertiesSet() throws SQLException {
+		if (this.minPoolSize > this.maxPoolSize) {
+			throw new IllegalArgumentException("minPoolSize must not be greater than maxPoolSize");
+		}
+		fillPool();
+		if (this.maintenanceInterval > 0) {
+			synchronized (this.poolMonitor) {
+				if (this.maintenanceTimer == null) {
+					this.maintenanceTimer = new Timer(true);
+					this.maintenanceTimer.schedule(
+							new MaintenanceTask(), this.maintenanceInterval, this.maintenanceInterval);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Close the pool: Closes all idle Connections right away, and all
+	 * Connections in use when they get returned.
+	 * <p>As this bean implements DisposableBean, a bean factory will
+	 * automatically invoke this on destruction of its cached singletons.
+	 */
+	public void destroy() {
+		List toClose = null;
+		synchronized (this.poolMonitor) {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			if (this.maintenanceTimer != null) {
+				this.maintenanceTimer.cancel();
+				this.maintenanceTimer = null;
+			}
+			toClose = new ArrayList(this.idleConnections);
+			this.idleConnections.clear();
+			this.poolSize -= toClose.size();
+			this.poolMonitor.notifyAll();
+		}
+		logger.info("Closing JDBC connection pool for [" + getUrl() + "]");
+		closePhysicalConnections(toClose);
+	}
+
+
+	public Connection getConnection() throws SQLException {
+		PooledConnection pooledCon = borrowConnection();
+		if (this.leakDetectionThreshold > 0) {
+			pooledCon.borrowTrace = new Throwable("Connection obtained here");
+		}
+		return (Connection) Proxy.newProxyInstance(
+				ConnectionProxy.class.getClassLoader(),
+				new Class[] {ConnectionProxy.class},
+				new PooledConnectionInvocationHandler(pooledCon));
+	}
+
+	/**
+	 * Specifying a custom username and password doesn't make sense
+	 * with a pool. Returns a pooled Connection if given the same
+	 * username and password, though.
+	 */
+	public Connection getConnection(String username, String password) throws SQLException {
+		if (ObjectUtils.nullSafeEquals(username, getUsername()) &&
+				ObjectUtils.nullSafeEquals(password, getPassword())) {
+			return getConnection();
+		}
+		else {
+			throw new SQLException("PoolingDriverManagerDataSource does not support custom username and password");
+		}
+	}
+
+
+	/**
+	 * Return the number of open Connections, both idle and in use.
+	 */
+	public int getPoolSize() {
+		synchronized (this.poolMonitor) {
+			return this.poolSize;
+		}
+	}
+
+	/**
+	 * Return the number of Connections currently in use.
+	 */
+	public int getActiveCount() {
+		synchronized (this.poolMonitor) {
+			return this.activeConnections.size();
+		}
+	}
+
+	/**
+	 * Return the number of idle Connections.
+	 */
+	public int getIdleCount() {
+		synchronized (this.poolMonitor) {
+			return this.idleConnections.size();
+		}
+	}
+
+	/**
+	 * Return the number of Connections handed out so far.
+	 */
+	public long getBorrowCount() {
+		synchronized (this.poolMonitor) {
+			return this.borrowCount;
+		}
+	}
+
+	/**
+	 * Return the number of getConnection calls that had to wait
+	 * for a Connection to be returned.
+	 */
+	public long getWaitCount() {
+		synchronized (this.poolMonitor) {
+			return this.waitCount;
+		}
+	}
+
+	/**
+	 * Return the number of physical Connections opened so far.
+	 */
+	public long getCreatedCount() {
+		synchronized (this.poolMonitor) {
+			return this.createdCount;
+		}
+	}
+
+	/**
+	 * Return the number of physical Connections closed so far.
+	 */
+	public long getDestroyedCount() {
+		synchronized (this.poolMonitor) {
+			return this.destroyedCount;
+		}
+	}
+
+	/**
+	 * Return the number of idle Connections that failed validation.
+	 */
+	public long getValidationFailureCount() {
+		synchronized (this.poolMonitor) {
+			return this.validationFailureCount;
+		}
+	}
+
+	/**
+	 * Return the number of Connections that have been logged as potential leaks.
+	 */
+	public long getLeakCount() {
+		synchronized (this.poolMonitor) {
+			return this.leakCount;
+		}
+	}
+
+
+	/**
+	 * Take an idle Connection from the pool or open a new one,
+	 * waiting for a Connection to be returned if the pool is exhausted.
+	 */
+	private PooledConnection borrowConnection() throws SQLException {
+		long deadline = (this.maxWait > 0 ? System.currentTimeMillis() + this.maxWait : 0);
+		boolean waited = false;
+		while (true) {
+			PooledConnection pooledCon = null;
+			synchronized (this.poolMonitor) {
+				while (pooledCon == null) {
+					if (this.closed) {
+						throw new SQLException("PoolingDriverManagerDataSource has been closed");
+					}
+					if (!this.idleConnections.isEmpty()) {
+						pooledCon = (PooledConnection) this.idleConnections.removeFirst();
+					}
+					else if (this.poolSize < this.maxPoolSize) {
+						this.poolSize++;
+						break;
+					}
+					else {
+						waitForConnection(deadline);
+						if (!waited) {
+							waited = true;
+							this.waitCount++;
+						}
+					}
+				}
+			}
+
+			if (pooledCon == null) {
+				// reserved a slot for a new Connection
+				pooledCon = createPooledConnection();
+			}
+			else if (this.validationQuery != null && !isValid(pooledCon.connection)) {
+				synchronized (this.poolMonitor) {
+					this.validationFailureCount++;
+				}
+				logger.info("Closing JDBC connection that failed validation: " + pooledCon.connection);
+				discard(pooledCon);
+				continue;
+			}
+			synchronized (this.poolMonitor) {
+				if (!this.closed) {
+					activate(pooledCon);
+					return pooledCon;
+				}
+			}
+			// pool closed while creating or validating the Connection
+			discard(pooledCon);
+			throw new SQLException("PoolingDriverManagerDataSource has been closed");
+		}
+	}
+
+	/**
+	 * Wait for a Connection to be returned, with the lock on the pool monitor held.
+	 */
+	private void waitForConnection(long deadline) throws SQLException {
+		long timeout = 0;
+		if (this.maxWait == 0) {
+			throw new SQLException("No JDBC connection available: all " + this.maxPoolSize + " connections in use");
+		}
+		if (deadline > 0) {
+			timeout = deadline - System.currentTimeMillis();
+			if (timeout <= 0) {
+				throw new SQLException("No JDBC connection available within " + this.maxWait + " ms: all " +
+						this.maxPoolSize + " connections in use");
+			}
+		}
+		try {
+			this.poolMonitor.wait(timeout);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a JDBC connection");
+		}
+	}
+
+	/**
+	 * Open a physical Connection for a slot in the pool that has already been reserved.
+	 * Releases the slot if the Connection cannot be opened.
+	 */
+	private PooledConnection createPooledConnection() throws SQLException {
+		try {
+			PooledConnection pooledCon = new PooledConnection(getConnectionFromDriverManager());
+			synchronized (this.poolMonitor) {
+				this.createdCount++;
+			}
+			return pooledCon;
+		}
+		catch (SQLException ex) {
+			releaseSlot();
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			releaseSlot();
+			throw ex;
+		}
+	}
+
+	private void releaseSlot() {
+		synchronized (this.poolMonitor) {
+			this.poolSize--;
+			this.poolMonitor.notify();
+		}
+	}
+
+	/**
+	 * Mark the given Connection as borrowed.
+	 * To be called with the lock on the pool monitor held.
+	 */
+	private void activate(PooledConnection pooledCon) {
+		this.activeConnections.add(pooledCon);
+		this.borrowCount++;
+		pooledCon.borrowedAt = System.currentTimeMillis();
+		pooledCon.leakReported = false;
+	}
+
+	/**
+	 * Return the given Connection to the pool, closing it if it cannot be reset
+	 * or if the pool has been closed in the meantime.
+	 */
+	private void returnConnection(PooledConnection pooledCon) {
+		int openStatementCount = pooledCon.closeOpenStatements();
+		if (openStatementCount > 0 && logger.isDebugEnabled()) {
+			logger.debug("Closed " + openStatementCount + " JDBC statements that have been left open on " +
+					pooledCon.connection);
+		}
+		boolean reusable = pooledCon.reset();
+		synchronized (this.poolMonitor) {
+			pooledCon.borrowTrace = null;
+			this.activeConnections.remove(pooledCon);
+			if (reusable && !this.closed) {
+				pooledCon.lastUsed = System.currentTimeMillis();
+				this.idleConnections.addFirst(pooledCon);
+				this.poolMonitor.notify();
+				return;
+			}
+		}
+		discard(pooledCon);
+	}
+
+	/**
+	 * Close the physical Connection of the given PooledConnection,
+	 * which is not held in the pool anymore, and release its slot.
+	 */
+	private void discard(PooledConnection pooledCon) {
+		synchronized (this.poolMonitor) {
+			this.activeConnections.remove(pooledCon);
+			this.poolSize--;
+			this.poolMonitor.notify();
+		}
+		closePhysicalConnections(Collections.singletonList(pooledCon));
+	}
+
+	private void closePhysicalConnections(List pooledConnections) {
+		for (Iterator it = pooledConnections.iterator(); it.hasNext();) {
+			PooledConnection pooledCon = (PooledConnection) it.next();
+			try {
+				pooledCon.connection.close();
+			}
+			catch (SQLException ex) {
+				logger.debug("Could not close pooled JDBC connection", ex);
+			}
+			catch (RuntimeException ex) {
+				logger.debug("Unexpected exception on closing pooled JDBC connection", ex);
+			}
+		}
+		synchronized (this.poolMonitor) {
+			this.destroyedCount += pooledConnections.size();
+		}
+	}
+
+	private boolean isValid(Connection con) {
+		Statement stmt = null;
+		try {
+			stmt = con.createStatement();
+			stmt.execute(this.validationQuery);
+			return true;
+		}
+		catch (SQLException ex) {
+			logger.debug("Validation query [" + this.validationQuery + "] failed", ex);
+			return false;
+		}
+		finally {
+			if (stmt != null) {
+				try {
+					stmt.close();
+				}
+				catch (SQLException ex) {
+					logger.debug("Could not close JDBC Statement", ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Open Connections until the pool holds at least "minPoolSize" Connections.
+	 */
+	private void fillPool() throws SQLException {
+		while (true) {
+			synchronized (this.poolMonitor) {
+				if (this.closed || this.poolSize >= this.minPoolSize) {
+					return;
+				}
+				this.poolSize++;
+			}
+			PooledConnection pooledCon = createPooledConnection();
+			synchronized (this.poolMonitor) {
+				pooledCon.lastUsed = System.currentTimeMillis();
+				this.idleConnections.addLast(pooledCon);
+				this.poolMonitor.notify();
+			}
+		}
+	}
+
+	/**
+	 * Close idle Connections beyond "minPoolSize" that have exceeded
+	 * "maxIdleTime", refill the pool, and log leaked Connections.
+	 * Called by the maintenance thread.
+	 */
+	protected void maintainPool() {
+		long now = System.currentTimeMillis();
+		List toClose = new LinkedList();
+		List leaked = new LinkedList();
+		synchronized (this.poolMonitor) {
+			if (this.closed) {
+				return;
+			}
+			if (this.maxIdleTime > 0) {
+				// least recently used Connections are at the end
+				while (this.poolSize > this.minPoolSize && !this.idleConnections.isEmpty() &&
+						now - ((PooledConnection) this.idleConnections.getLast()).lastUsed > this.maxIdleTime) {
+					toClose.add(this.idleConnections.removeLast());
+					this.poolSize--;
+				}
+			}
+			if (this.leakDetectionThreshold > 0) {
+				for (Iterator it = this.activeConnections.iterator(); it.hasNext();) {
+					PooledConnection pooledCon = (PooledConnection) it.next();
+					if (!pooledCon.leakReported && now - pooledCon.borrowedAt > this.leakDetectionThreshold) {
+						pooledCon.leakReported = true;
+						this.leakCount++;
+						leaked.add(pooledCon);
+					}
+				}
+			}
+		}
+		if (!toClose.isEmpty()) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Closing " + toClose.size() + " idle JDBC connections");
+			}
+			closePhysicalConnections(toClose);
+		}
+		for (Iterator it = leaked.iterator(); it.hasNext();) {
+			PooledConnection pooledCon = (PooledConnection) it.next();
+			logger.warn("JDBC connection " + pooledCon.connection + " has been in use for more than " +
+					this.leakDetectionThreshold + " ms: possible connection leak", pooledCon.borrowTrace);
+		}
+		try {
+			fillPool();
+		}
+		catch (SQLException ex) {
+			logger.warn("Could not refill JDBC connection pool to minPoolSize " + this.minPoolSize, ex);
+		}
+	}
+
+
+	/**
+	 * Physical Connection held in the pool, with the settings
+	 * to restore when it gets returned.
+	 */
+	private static class PooledConnection {
+
+		private final Connection connection;
+
+		private final boolean autoCommit;
+
+		private final boolean readOnly;
+
+		private final int transactionIsolation;
+
+		private boolean autoCommitChanged;
+
+		private boolean readOnlyChanged;
+
+		private boolean transactionIsolationChanged;
+
+		private long lastUsed;
+
+		private long borrowedAt;
+
+		private Throwable borrowTrace;
+
+		private boolean leakReported;
+
+		/** Handlers of the Statements created through the current handle and not closed yet */
+		private final Set openStatements = new HashSet();
+
+		public PooledConnection(Connection connection) throws SQLException {
+			this.connection = connection;
+			this.autoCommit = connection.getAutoCommit();
+			this.readOnly = connection.isReadOnly();
+			this.transactionIsolation = connection.getTransactionIsolation();
+		}
+
+		public void statementOpened(PooledStatementInvocationHandler statementHandler) {
+			synchronized (this.openStatements) {
+				this.openStatements.add(statementHandler);
+			}
+		}
+
+		public void statementClosed(PooledStatementInvocationHandler statementHandler) {
+			synchronized (this.openStatements) {
+				this.openStatements.remove(statementHandler);
+			}
+		}
+
+		/**
+		 * Close the statements that have been left open by the current handle.
+		 * @return the number of statements that have been closed
+		 */
+		public int closeOpenStatements() {
+			List toClose = null;
+			synchronized (this.openStatements) {
+				if (this.openStatements.isEmpty()) {
+					return 0;
+				}
+				toClose = new ArrayList(this.openStatements);
+				this.openStatements.clear();
+			}
+			for (Iterator it = toClose.iterator(); it.hasNext();) {
+				try {
+					((PooledStatementInvocationHandler) it.next()).close();
+				}
+				catch (SQLException ex) {
+					// physical Connection not reusable anymore: reset will find out
+				}
+				catch (RuntimeException ex) {
+					// physical Connection not reusable anymore: reset will find out
+				}
+			}
+			return toClose.size();
+		}
+
+		/**
+		 * Roll back uncommitted work and restore changed settings.
+		 * @return whether the Connection can be reused
+		 */
+		public boolean reset() {
+			try {
+				if (this.connection.isClosed()) {
+					return false;
+				}
+				if (!this.connection.getAutoCommit()) {
+					this.connection.rollback();
+				}
+				if (this.autoCommitChanged) {
+					this.connection.setAutoCommit(this.autoCommit);
+					this.autoCommitChanged = false;
+				}
+				if (this.readOnlyChanged) {
+					this.connection.setReadOnly(this.readOnly);
+					this.readOnlyChanged = false;
+				}
+				if (this.transactionIsolationChanged) {
+					this.connection.setTransactionIsolation(this.transactionIsolation);
+					this.transactionIsolationChanged = false;
+				}
+				this.connection.clearWarnings();
+				return true;
+			}
+			catch (SQLException ex) {
+				return false;
+			}
+		}
+	}
+
+
+	/**
+	 * Invocation handler for Connection handles, returning the
+	 * physical Connection to the pool on close.
+	 */
+	private class PooledConnectionInvocationHandler implements InvocationHandler {
+
+		private final PooledConnection pooledConnection;
+
+		private boolean closed;
+
+		public PooledConnectionInvocationHandler(PooledConnection pooledConnection) {
+			this.pooledConnection = pooledConnection;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (methodName.equals("close")) {
+				if (!this.closed) {
+					this.closed = true;
+					returnConnection(this.pooledConnection);
+				}
+				return null;
+			}
+			else if (methodName.equals("isClosed")) {
+				return (this.closed ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("toString")) {
+				return "Pooled connection [" + this.pooledConnection.connection + "]";
+			}
+			if (this.closed) {
+				throw new SQLException("Connection handle has already been closed");
+			}
+			if (methodName.equals("getTargetConnection")) {
+				return this.pooledConnection.connection;
+			}
+			else if (methodName.equals("setAutoCommit")) {
+				this.pooledConnection.autoCommitChanged = true;
+			}
+			else if (methodName.equals("setReadOnly")) {
+				this.pooledConnection.readOnlyChanged = true;
+			}
+			else if (methodName.equals("setTransactionIsolation")) {
+				this.pooledConnection.transactionIsolationChanged = true;
+			}
+			Object retVal = null;
+			try {
+				retVal = method.invoke(this.pooledConnection.connection, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+			if (retVal instanceof Statement) {
+				// track the statement, to close it if left open when the Connection gets returned
+				Statement stmt = (Statement) retVal;
+				PooledStatementInvocationHandler statementHandler =
+						new PooledStatementInvocationHandler(stmt, this.pooledConnection, (Connection) proxy);
+				this.pooledConnection.statementOpened(statementHandler);
+				Class statementType = Statement.class;
+				if (stmt instanceof CallableStatement) {
+					statementType = CallableStatement.class;
+				}
+				else if (stmt instanceof PreparedStatement) {
+					statementType = PreparedStatement.class;
+				}
+				retVal = Proxy.newProxyInstance(
+						statementType.getClassLoader(),
+						new Class[] {statementType},
+						statementHandler);
+			}
+			return retVal;
+		}
+	}
+
+
+	/**
+	 * Invocation handler for Statements created through a Connection handle,
+	 * no longer tracking the Statement once it has been closed.
+	 * Rejects further calls after close.
+	 */
+	private static class PooledStatementInvocationHandler implements InvocationHandler {
+
+		private final Statement target;
+
+		private final PooledConnection pooledConnection;
+
+		private final Connection connectionProxy;
+
+		private boolean closed;
+
+		public PooledStatementInvocationHandler(
+				Statement target, PooledConnection pooledConnection, Connection connectionProxy) {
+			this.target = target;
+			this.pooledConnection = pooledConnection;
+			this.connectionProxy = connectionProxy;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (methodName.equals("close")) {
+				this.pooledConnection.statementClosed(this);
+				close();
+				return null;
+			}
+			else if (methodName.equals("toString")) {
+				return "Pooled statement [" + this.target + "]";
+			}
+			synchronized (this) {
+				if (this.closed) {
+					throw new SQLException("Statement has already been closed");
+				}
+			}
+			if (methodName.equals("getConnection")) {
+				return this.connectionProxy;
+			}
+			try {
+				return method.invoke(this.target, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+
+		/**
+		 * Close the target Statement, unless already closed.
+		 */
+		public void close() throws SQLException {
+			synchronized (this) {
+				if (this.closed) {
+					return;
+				}
+				this.closed = true;
+			}
+			this.target.close();
+		}
+	}
+
+
+	/**
+	 * TimerTask that runs the pool maintenance.
+	 */
+	private class MaintenanceTask extends TimerTask {
+
+		public void run() {
+			try {
+				maintainPool();
+			}
+			catch (RuntimeException ex) {
+				logger.warn("JDBC connection pool maintenance failed", ex);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,749 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.Constants;
+
+/**
+ * DataSource that routes read-only work to a set of replica DataSources
+ * and everything else to a primary DataSource, for example a master database
+ * with several read replicas. Data access code and transaction demarcation
+ * stay the same: Just define DataSourceTransactionManager, JdbcTemplate etc
+ * for this DataSource, and mark read-only transactions as such.
+ *
+ * <p>Returned Connections are proxies implementing ConnectionProxy that fetch
+ * their target Connection lazily, on the first call other than
+ * <code>setReadOnly</code>, <code>isReadOnly</code>, <code>isClosed</code>
+ * or <code>close</code>. If <code>setReadOnly(true)</code> has been called
+ * before, as by DataSourceTransactionManager for a transaction with
+ * <code>TransactionDefinition.isReadOnly()</code>, the target Connection
+ * comes from a replica. Else, it comes from the primary DataSource.
+ * A Connection that is never used does not fetch a target Connection at all.
+ *
+ * <p>Replicas are selected by weighted round robin (see "replicaWeights")
+ * or by the least number of outstanding Connections relative to their weight
+ * (see "loadBalancing"). A replica that fails to return a Connection gets
+ * marked as unavailable, and the next replica is tried; if no replica is
+ * available, read-only work falls back to the primary DataSource (unless
+ * "fallbackToPrimary" is turned off).
+ *
+ * <p>Unavailable replicas get tried again after "healthCheckInterval"
+ * milliseconds. Additionally, <code>afterPropertiesSet</code> starts a health
+ * check thread that obtains a Connection from each replica at that interval,
+ * executing the "validationQuery" if specified, to mark replicas as available
+ * or unavailable before application code runs into them.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setPrimaryDataSource
+ * @see #setReplicaDataSources
+ * @see #setLoadBalancing
+ * @see DataSourceTransactionManager
+ * @see org.springframework.transaction.TransactionDefinition#isReadOnly
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements InitializingBean, DisposableBean {
+
+	/**
+	 * Select replicas by weighted round robin: Each replica receives a share
+	 * of the Connection requests according to its weight.
+	 */
+	public static final int LOAD_BALANCING_WEIGHTED = 0;
+
+	/**
+	 * Select the replica with the least number of outstanding Connections,
+	 * relative to its weight.
+	 */
+	public static final int LOAD_BALANCING_LEAST_OUTSTANDING = 1;
+
+	public static final long DEFAULT_HEALTH_CHECK_INTERVAL = 30000;
+
+
+	/** Constants instance for ReadWriteRoutingDataSource */
+	private static final Constants constants = new Constants(ReadWriteRoutingDataSource.class);
+
+	private DataSource primaryDataSource;
+
+	private List replicaDataSources;
+
+	private int[] replicaWeights;
+
+	private int loadBalancing = LOAD_BALANCING_WEIGHTED;
+
+	private boolean fallbackToPrimary = true;
+
+	private String validationQuery;
+
+	private long healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
+	private Replica[] replicas = new Replica[0];
+
+	/** Monitor for the state of all Replicas and the counters below */
+	private final Object replicaMonitor = new Object();
+
+	/** Start index for the least outstanding selection, to break ties */
+	private int nextStartIndex;
+
+	private Timer healthCheckTimer;
+
+	private long primaryConnectionCount;
+
+	private long replicaConnectionCount;
+
+	private long failoverCount;
+
+
+	/**
+	 * Set the primary DataSource, for all work that is not read-only.
+	 */
+	public void setPrimaryDataSource(DataSource primaryDataSource) {
+		this.primaryDataSource = primaryDataSource;
+	}
+
+	/**
+	 * Return the primary DataSource.
+	 */
+	public DataSource getPrimaryDataSource() {
+		return primaryDataSource;
+	}
+
+	/**
+	 * Set the replica DataSources, for read-only work.
+	 * @param replicaDataSources List of DataSource objects
+	 */
+	public void setReplicaDataSources(List replicaDataSources) {
+		this.replicaDataSources = replicaDataSources;
+		initReplicas();
+	}
+
+	/**
+	 * Return the replica DataSources.
+	 */
+	public List getReplicaDataSources() {
+		return replicaDataSources;
+	}
+
+	/**
+	 * Set the weights of the replica DataSources, in the order of
+	 * the "replicaDataSources" List. Default is a weight of 1 for each.
+	 * <p>For example, weights of 2 and 1 send twice as many Connection requests
+	 * to the first replica when using weighted round robin, respectively allow
+	 * twice as many outstanding Connections when using least outstanding.
+	 */
+	public void setReplicaWeights(int[] replicaWeights) {
+		this.replicaWeights = replicaWeights;
+		initReplicas();
+	}
+
+	/**
+	 * Return the weights of the replica DataSources.
+	 */
+	public int[] getReplicaWeights() {
+		return replicaWeights;
+	}
+
+	/**
+	 * Set the load balancing strategy by the name of the corresponding constant
+	 * in this class, e.g. "LOAD_BALANCING_LEAST_OUTSTANDING".
+	 * @param constantName name of the constant
+	 * @see #LOAD_BALANCING_WEIGHTED
+	 * @see #LOAD_BALANCING_LEAST_OUTSTANDING
+	 */
+	public void setLoadBalancingName(String constantName) {
+		if (constantName == null || !constantName.startsWith("LOAD_BALANCING_")) {
+			throw new IllegalArgumentException("Only load balancing constants allowed");
+		}
+		setLoadBalancing(constants.asNumber(constantName).intValue());
+	}
+
+	/**
+	 * Set the strategy for selecting a replica. Default is weighted round robin.
+	 * @see #LOAD_BALANCING_WEIGHTED
+	 * @see #LOAD_BALANCING_LEAST_OUTSTANDING
+	 */
+	public void setLoadBalancing(int loadBalancing) {
+		if (loadBalancing != LOAD_BALANCING_WEIGHTED && loadBalancing != LOAD_BALANCING_LEAST_OUTSTANDING) {
+			throw new IllegalArgumentException("Invalid load balancing strategy: " + loadBalancing);
+		}
+		this.loadBalancing = loadBalancing;
+	}
+
+	/**
+	 * Return the strategy for selecting a replica.
+	 */
+	public int getLoadBalancing() {
+		return loadBalancing;
+	}
+
+	/**
+	 * Set whether read-only work should fall back to the primary DataSource
+	 * if no replica is available. Default is true.
+	 * <p>Turn this off to throw the SQLException of the last failed replica
+	 * instead, for example to protect the primary from read traffic.
+	 */
+	public void setFallbackToPrimary(boolean fallbackToPrimary) {
+		this.fallbackToPrimary = fallbackToPrimary;
+	}
+
+	/**
+	 * Return whether read-only work falls back to the primary DataSource.
+	 */
+	public boolean isFallbackToPrimary() {
+		return fallbackToPrimary;
+	}
+
+	/**
+	 * Set an SQL query that the health check executes on each replica,
+	 * for example "SELECT 1". Default is none: The health check just
+	 * obtains a Connection then.
+	 */
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	/**
+	 * Return the SQL query that the health check executes on each replica.
+	 */
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	/**
+	 * Set the number of milliseconds after which an unavailable replica gets
+	 * tried again, and between runs of the health check thread. Default is
+	 * 30 seconds. 0 means that unavailable replicas get tried again on each
+	 * selection, and that no health check thread gets started.
+	 */
+	public void setHealthCheckInterval(long healthCheckInterval) {
+		this.healthCheckInterval = healthCheckInterval;
+	}
+
+	/**
+	 * Return the number of milliseconds between health checks.
+	 */
+	public long getHealthCheckInterval() {
+		return healthCheckInterval;
+	}
+
+	/**
+	 * Build the Replica objects for the current DataSources and weights.
+	 */
+	private void initReplicas() {
+		Replica[] newReplicas = new Replica[this.replicaDataSources != null ? this.replicaDataSources.size() : 0];
+		for (int i = 0; i < newReplicas.length; i++) {
+			int weight = (this.replicaWeights != null && i < this.replicaWeights.length ? this.replicaWeights[i] : 1);
+			newReplicas[i] = new Replica(i, (DataSource) this.replicaDataSources.get(i), weight);
+		}
+		synchronized (this.replicaMonitor) {
+			this.replicas = newReplicas;
+		}
+	}
+
+
+	/**
+	 * Check the configuration and start the health check thread.
+	 */
+	public void afterPropertiesSet() {
+		if (this.primaryDataSource == null) {
+			throw new IllegalArgumentException("primaryDataSource is required");
+		}
+		if (this.replicaDataSources != null) {
+			for (Iterator it = this.replicaDataSources.iterator(); it.hasNext();) {
+				if (!(it.next() instanceof DataSource)) {
+					throw new IllegalArgumentException("replicaDataSources must only contain DataSource objects");
+				}
+			}
+		}
+		if (this.replicaWeights != null) {
+			if (this.replicaWeights.length != this.replicas.length) {
+				throw new IllegalArgumentException("replicaWeights must contain one weight per replica DataSource");
+			}
+			for (int i = 0; i < this.replicaWeights.length; i++) {
+				if (this.replicaWeights[i] <= 0) {
+					throw new IllegalArgumentException("replicaWeights must be greater than 0");
+				}
+			}
+		}
+		if (this.healthCheckInterval > 0 && this.replicas.length > 0) {
+			synchronized (this.replicaMonitor) {
+				if (this.healthCheckTimer == null) {
+					this.healthCheckTimer = new Timer(true);
+					this.healthCheckTimer.schedule(
+							new HealthCheckTask(), this.healthCheckInterval, this.healthCheckInterval);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop the health check thread.
+	 * <p>As this bean implements DisposableBean, a bean factory will
+	 * automatically invoke this on destruction of its cached singletons.
+	 */
+	public void destroy() {
+		synchronized (this.replicaMonitor) {
+			if (this.healthCheckTimer != null) {
+				this.healthCheckTimer.cancel();
+				this.healthCheckTimer = null;
+			}
+		}
+	}
+
+
+	/**
+	 * Return a Connection proxy that fetches its target Connection on first use,
+	 * from a replica if it has been marked as read-only, else from the primary.
+	 */
+	public Connection getConnection() throws SQLException {
+		return getRoutingConnectionProxy(null, null);
+	}
+
+	/**
+	 * Return a Connection proxy that fetches its target Connection on first use,
+	 * passing the given credentials to the replica respectively primary DataSource.
+	 */
+	public Connection getConnection(String username, String password) throws SQLException {
+		return getRoutingConnectionProxy(username, password);
+	}
+
+	/**
+	 * Wrap a new RoutingInvocationHandler with a Connection proxy.
+	 * @param username the username to use, or null for the default
+	 * @param password the password to use, or null for the default
+	 * @return the Connection proxy
+	 */
+	protected Connection getRoutingConnectionProxy(String username, String password) {
+		return (Connection) Proxy.newProxyInstance(
+				ConnectionProxy.class.getClassLoader(),
+				new Class[] {ConnectionProxy.class},
+				new RoutingInvocationHandler(username, password));
+	}
+
+	/**
+	 * Obtain a Connection from the given DataSource, with the given credentials if any.
+	 */
+	private Connection getTargetConnection(DataSource dataSource, String username, String password)
+			throws SQLException {
+		if (username != null) {
+			return dataSource.getConnection(username, password);
+		}
+		return dataSource.getConnection();
+	}
+
+	/**
+	 * Obtain a Connection from the primary DataSource.
+	 */
+	private Connection getPrimaryConnection(String username, String password) throws SQLException {
+		if (this.primaryDataSource == null) {
+			throw new IllegalStateException("primaryDataSource is required");
+		}
+		Connection con = getTargetConnection(this.primaryDataSource, username, password);
+		synchronized (this.replicaMonitor) {
+			this.primaryConnectionCount++;
+		}
+		return con;
+	}
+
+	/**
+	 * Select the next available replica, counting a new outstanding Connection for it.
+	 * @param excluded replicas that already failed for the current request
+	 * @return the selected Replica, or null if none is available
+	 */
+	private Replica selectReplica(Replica[] replicas, boolean[] excluded) {
+		if (replicas.length == 0) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		Replica selected = null;
+		synchronized (this.replicaMonitor) {
+			if (this.loadBalancing == LOAD_BALANCING_LEAST_OUTSTANDING) {
+				int start = this.nextStartIndex++ % replicas.length;
+				for (int i = 0; i < replicas.length; i++) {
+					Replica replica = replicas[(start + i) % replicas.length];
+					if (isEligible(replica, excluded, now) && (selected == null ||
+							replica.outstanding * selected.weight < selected.outstanding * replica.weight)) {
+						selected = replica;
+					}
+				}
+			}
+			else {
+				// smooth weighted round robin
+				int totalWeight = 0;
+				for (int i = 0; i < replicas.length; i++) {
+					Replica replica = replicas[i];
+					if (isEligible(replica, excluded, now)) {
+						replica.currentWeight += replica.weight;
+						totalWeight += replica.weight;
+						if (selected == null || replica.currentWeight > selected.currentWeight) {
+							selected = replica;
+						}
+					}
+				}
+				if (selected != null) {
+					selected.currentWeight -= totalWeight;
+				}
+			}
+			if (selected != null) {
+				selected.outstanding++;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Determine whether the given replica may be selected: It must not
+	 * have failed for the current request, and it must be available or
+	 * due for another try. Needs to be called with the replica monitor held.
+	 */
+	private boolean isEligible(Replica replica, boolean[] excluded, long now) {
+		return (!excluded[replica.index] &&
+				(replica.available || now - replica.unavailableSince >= this.healthCheckInterval));
+	}
+
+	/**
+	 * Obtain a Connection from the next available replica,
+	 * falling back to the primary if none is available.
+	 * @param handler the handler to register the selected Replica with
+	 */
+	private Connection getReplicaConnection(RoutingInvocationHandler handler) throws SQLException {
+		Replica[] replicas = this.replicas;
+		boolean[] excluded = new boolean[replicas.length];
+		SQLException lastEx = null;
+		Replica replica = null;
+		while ((replica = selectReplica(replicas, excluded)) != null) {
+			try {
+				Connection con = getTargetConnection(replica.dataSource, handler.username, handler.password);
+				markAvailable(replica);
+				synchronized (this.replicaMonitor) {
+					this.replicaConnectionCount++;
+				}
+				handler.replica = replica;
+				return con;
+			}
+			catch (SQLException ex) {
+				releaseReplica(replica);
+				markUnavailable(replica, ex);
+				excluded[replica.index] = true;
+				lastEx = ex;
+			}
+		}
+		if (!this.fallbackToPrimary && replicas.length > 0) {
+			throw (lastEx != null ? lastEx : new SQLException("No replica DataSource available"));
+		}
+		if (replicas.length > 0) {
+			synchronized (this.replicaMonitor) {
+				this.failoverCount++;
+			}
+			logger.debug("No replica DataSource available - falling back to primary DataSource");
+		}
+		return getPrimaryConnection(handler.username, handler.password);
+	}
+
+	/**
+	 * Count an outstanding Connection of the given replica as closed.
+	 */
+	private void releaseReplica(Replica replica) {
+		synchronized (this.replicaMonitor) {
+			replica.outstanding--;
+		}
+	}
+
+	private void markAvailable(Replica replica) {
+		boolean changed = false;
+		synchronized (this.replicaMonitor) {
+			changed = !replica.available;
+			replica.available = true;
+		}
+		if (changed) {
+			logger.info("Replica DataSource " + replica.index + " is available again");
+		}
+	}
+
+	private void markUnavailable(Replica replica, Throwable ex) {
+		boolean changed = false;
+		synchronized (this.replicaMonitor) {
+			changed = replica.available;
+			replica.available = false;
+			replica.unavailableSince = System.currentTimeMillis();
+		}
+		if (changed) {
+			logger.warn("Replica DataSource " + replica.index + " failed - marking it as unavailable", ex);
+		}
+	}
+
+	/**
+	 * Check each replica: Obtain a Connection and execute the validation query,
+	 * if any, marking the replica as available or unavailable accordingly.
+	 * Invoked by the health check thread.
+	 */
+	protected void checkReplicas() {
+		Replica[] replicas = this.replicas;
+		for (int i = 0; i < replicas.length; i++) {
+			Connection con = null;
+			try {
+				con = replicas[i].dataSource.getConnection();
+				if (this.validationQuery != null) {
+					Statement stmt = con.createStatement();
+					try {
+						stmt.execute(this.validationQuery);
+					}
+					finally {
+						stmt.close();
+					}
+				}
+				markAvailable(replicas[i]);
+			}
+			catch (SQLException ex) {
+				markUnavailable(replicas[i], ex);
+			}
+			finally {
+				if (con != null) {
+					try {
+						con.close();
+					}
+					catch (SQLException ex) {
+						logger.debug("Could not close health check Connection", ex);
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Return the number of replicas that are currently considered available.
+	 */
+	public int getAvailableReplicaCount() {
+		synchronized (this.replicaMonitor) {
+			int count = 0;
+			for (int i = 0; i < this.replicas.length; i++) {
+				if (this.replicas[i].available) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Return the number of currently open Connections of the given replica.
+	 * @param replicaIndex the index of the replica in the "replicaDataSources" List
+	 */
+	public int getOutstandingCount(int replicaIndex) {
+		synchronized (this.replicaMonitor) {
+			return this.replicas[replicaIndex].outstanding;
+		}
+	}
+
+	/**
+	 * Return the number of target Connections obtained from the primary DataSource.
+	 */
+	public long getPrimaryConnectionCount() {
+		synchronized (this.replicaMonitor) {
+			return primaryConnectionCount;
+		}
+	}
+
+	/**
+	 * Return the number of target Connections obtained from replicas.
+	 */
+	public long getReplicaConnectionCount() {
+		synchronized (this.replicaMonitor) {
+			return replicaConnectionCount;
+		}
+	}
+
+	/**
+	 * Return the number of times that read-only work fell back
+	 * to the primary DataSource because no replica was available.
+	 */
+	public long getFailoverCount() {
+		synchronized (this.replicaMonitor) {
+			return failoverCount;
+		}
+	}
+
+
+	/**
+	 * State of a replica DataSource. Guarded by the replica monitor.
+	 */
+	private static class Replica {
+
+		private final int index;
+
+		private final DataSource dataSource;
+
+		private final int weight;
+
+		/** Current weight for smooth weighted round robin */
+		private int currentWeight;
+
+		private int outstanding;
+
+		private boolean available = true;
+
+		private long unavailableSince;
+
+		private Replica(int index, DataSource dataSource, int weight) {
+			this.index = index;
+			this.dataSource = dataSource;
+			this.weight = weight;
+		}
+	}
+
+
+	/**
+	 * Invocation handler that fetches the target Connection on first use,
+	 * routing it according to the read-only flag set before.
+	 */
+	private class RoutingInvocationHandler implements InvocationHandler {
+
+		private final String username;
+
+		private final String password;
+
+		private boolean readOnly = false;
+
+		private boolean closed = false;
+
+		private Connection target;
+
+		/** Replica that the target Connection came from, or null for the primary */
+		private Replica replica;
+
+		private RoutingInvocationHandler(String username, String password) {
+			this.username = username;
+			this.password = password;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				// only consider equal when proxies are identical
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				// use hashCode of Connection proxy
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (methodName.equals("toString")) {
+				return "Read/write routing Connection proxy for target [" + this.target + "]";
+			}
+			else if (methodName.equals("close")) {
+				close();
+				return null;
+			}
+			else if (methodName.equals("isClosed")) {
+				return (this.closed ? Boolean.TRUE : (this.target != null ? method.invoke(this.target, args) : Boolean.FALSE));
+			}
+			else if (this.target == null) {
+				if (methodName.equals("setReadOnly")) {
+					this.readOnly = ((Boolean) args[0]).booleanValue();
+					return null;
+				}
+				else if (methodName.equals("isReadOnly")) {
+					return (this.readOnly ? Boolean.TRUE : Boolean.FALSE);
+				}
+			}
+
+			if (this.closed) {
+				throw new SQLException("Illegal operation: connection handle already closed");
+			}
+			Connection con = getTarget();
+			if (methodName.equals("getTargetConnection")) {
+				return con;
+			}
+			try {
+				return method.invoke(con, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+
+		/**
+		 * Fetch the target Connection if not fetched yet.
+		 */
+		private Connection getTarget() throws SQLException {
+			if (this.target == null) {
+				Connection con = (this.readOnly ? getReplicaConnection(this) :
+						getPrimaryConnection(this.username, this.password));
+				if (this.readOnly) {
+					try {
+						con.setReadOnly(true);
+					}
+					catch (Exception ex) {
+						// SQLException or UnsupportedOperationException
+						// -> ignore, it's just a hint anyway
+						logger.debug("Could not set JDBC connection read-only", ex);
+					}
+				}
+				this.target = con;
+			}
+			return this.target;
+		}
+
+		private void close() throws SQLException {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			if (this.target != null) {
+				try {
+					this.target.close();
+				}
+				finally {
+					if (this.replica != null) {
+						releaseReplica(this.replica);
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * TimerTask that runs the replica health check.
+	 */
+	private class HealthCheckTask extends TimerTask {
+
+		public void run() {
+			try {
+				checkReplicas();
+			}
+			catch (RuntimeException ex) {
+				logger.warn("Replica health check failed", ex);
+			}
+		}
+	}
+
+}
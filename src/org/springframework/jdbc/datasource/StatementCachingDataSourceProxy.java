@@ -0,0 +1,740 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Proxy for a target DataSource that caches PreparedStatements per JDBC
+ * Connection, for drivers and connection pools that do not cache statements
+ * themselves. Avoids re-parsing the same SQL for every JdbcTemplate operation
+ * that runs on the same Connection, for example within a transaction.
+ *
+ * <p>Each physical Connection gets an LRU cache of up to "cacheSize"
+ * PreparedStatements, keyed by SQL and ResultSet type and concurrency.
+ * Only <code>prepareStatement(String)</code> and
+ * <code>prepareStatement(String, int, int)</code> are cached; all other
+ * Connection methods are passed through.
+ *
+ * <p>Returned Connections are proxies implementing ConnectionProxy.
+ * Returned PreparedStatements are proxies too, returning the underlying
+ * statement to the cache when closed: with cleared parameters, warnings
+ * and batch, and with fetch size, max rows, max field size and query timeout
+ * reset to their initial values. A PreparedStatement that is currently in use
+ * will not be handed out again; a second, uncached one is created instead.
+ * ResultSets obtained from such a statement are wrapped as well, returning
+ * the statement proxy from <code>getStatement()</code>: Closing the statement
+ * of a ResultSet returns it to the cache instead of closing the cached one.
+ *
+ * <p>The cache of a Connection is kept as long as the Connection is open:
+ * It survives close calls that leave the physical Connection open, for example
+ * on a SingleConnectionDataSource or within a transaction, and can also be
+ * used through a TransactionAwareDataSourceProxy on top of this proxy, as
+ * statements are cached for the target of ConnectionProxy chains. Statements
+ * get prepared on that physical Connection too, so that a connection pool
+ * like PoolingDriverManagerDataSource does not close them along with the
+ * Connection handle that they have been prepared through.
+ *
+ * <p>Hit, miss and eviction counts are available as bean properties,
+ * for example to be exposed via JMX.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #setCacheSize
+ * @see ConnectionProxy
+ * @see TransactionAwareDataSourceProxy
+ */
+public class StatementCachingDataSourceProxy extends DelegatingDataSource implements SmartDataSource {
+
+	public static final int DEFAULT_CACHE_SIZE = 50;
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private int cacheSize = DEFAULT_CACHE_SIZE;
+
+	/** StatementCache objects keyed by physical Connection */
+	private final Map statementCaches = new HashMap();
+
+	private final Object statisticsMonitor = new Object();
+
+	private long hitCount;
+
+	private long missCount;
+
+	private long evictionCount;
+
+
+	/**
+	 * Create a new StatementCachingDataSourceProxy.
+	 * @see #setTargetDataSource
+	 */
+	public StatementCachingDataSourceProxy() {
+	}
+
+	/**
+	 * Create a new StatementCachingDataSourceProxy.
+	 * @param targetDataSource the target DataSource
+	 */
+	public StatementCachingDataSourceProxy(DataSource targetDataSource) {
+		setTargetDataSource(targetDataSource);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * Set the maximum number of PreparedStatements to cache per Connection.
+	 * Default is 50.
+	 */
+	public void setCacheSize(int cacheSize) {
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("cacheSize must be greater than 0");
+		}
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Return the maximum number of PreparedStatements to cache per Connection.
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * Return the number of prepareStatement calls that were served from the cache.
+	 */
+	public long getHitCount() {
+		synchronized (this.statisticsMonitor) {
+			return this.hitCount;
+		}
+	}
+
+	/**
+	 * Return the number of prepareStatement calls that had to prepare a
+	 * statement on the target Connection.
+	 */
+	public long getMissCount() {
+		synchronized (this.statisticsMonitor) {
+			return this.missCount;
+		}
+	}
+
+	/**
+	 * Return the number of cached statements that got closed to make room
+	 * for other statements.
+	 */
+	public long getEvictionCount() {
+		synchronized (this.statisticsMonitor) {
+			return this.evictionCount;
+		}
+	}
+
+	/**
+	 * Return the number of PreparedStatements currently cached,
+	 * summed up over all open Connections.
+	 */
+	public int getCachedStatementCount() {
+		int count = 0;
+		synchronized (this.statementCaches) {
+			for (Iterator it = this.statementCaches.values().iterator(); it.hasNext();) {
+				count += ((StatementCache) it.next()).size();
+			}
+		}
+		return count;
+	}
+
+
+	public Connection getConnection() throws SQLException {
+		return getStatementCachingConnectionProxy(getTargetDataSource().getConnection());
+	}
+
+	public Connection getConnection(String username, String password) throws SQLException {
+		return getStatementCachingConnectionProxy(getTargetDataSource().getConnection(username, password));
+	}
+
+	/**
+	 * Delegates to the target DataSource if it is a SmartDataSource,
+	 * passing in the target Connection. Returns true else.
+	 */
+	public boolean shouldClose(Connection con) {
+		if (!(getTargetDataSource() instanceof SmartDataSource)) {
+			return true;
+		}
+		Connection conToUse = con;
+		if (Proxy.isProxyClass(con.getClass()) &&
+				Proxy.getInvocationHandler(con) instanceof StatementCachingInvocationHandler) {
+			conToUse = ((ConnectionProxy) con).getTargetConnection();
+		}
+		return ((SmartDataSource) getTargetDataSource()).shouldClose(conToUse);
+	}
+
+	/**
+	 * Wrap the given Connection with a proxy that caches PreparedStatements
+	 * in the StatementCache for the physical Connection.
+	 * @param target the original Connection to wrap
+	 * @return the wrapped Connection
+	 */
+	protected Connection getStatementCachingConnectionProxy(Connection target) {
+		return (Connection) Proxy.newProxyInstance(
+				ConnectionProxy.class.getClassLoader(),
+				new Class[] {ConnectionProxy.class},
+				new StatementCachingInvocationHandler(target));
+	}
+
+	/**
+	 * Return the physical Connection for the given Connection:
+	 * the innermost target of a ConnectionProxy chain.
+	 */
+	private Connection getPhysicalConnection(Connection con) {
+		Connection physicalCon = con;
+		while (physicalCon instanceof ConnectionProxy) {
+			physicalCon = ((ConnectionProxy) physicalCon).getTargetConnection();
+		}
+		return physicalCon;
+	}
+
+	/**
+	 * Return the StatementCache for the given physical Connection,
+	 * creating a new one if necessary.
+	 */
+	private StatementCache getStatementCache(Connection physicalCon) {
+		synchronized (this.statementCaches) {
+			StatementCache cache = (StatementCache) this.statementCaches.get(physicalCon);
+			if (cache == null) {
+				removeStatementCachesForClosedConnections();
+				cache = new StatementCache();
+				this.statementCaches.put(physicalCon, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Remove the caches of Connections that have been closed without going
+	 * through this proxy, for example by a connection pool.
+	 * To be called with the lock on the statementCaches map held.
+	 */
+	private void removeStatementCachesForClosedConnections() {
+		for (Iterator it = this.statementCaches.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry) it.next();
+			if (isClosed((Connection) entry.getKey())) {
+				it.remove();
+				((StatementCache) entry.getValue()).closeAll();
+			}
+		}
+	}
+
+	/**
+	 * Called after a Connection handle has been closed: Removes the cache of the
+	 * physical Connection if the latter has been closed too.
+	 */
+	private void connectionClosed(Connection physicalCon) {
+		if (isClosed(physicalCon)) {
+			StatementCache cache = null;
+			synchronized (this.statementCaches) {
+				cache = (StatementCache) this.statementCaches.remove(physicalCon);
+			}
+			if (cache != null) {
+				cache.closeAll();
+			}
+		}
+	}
+
+	private boolean isClosed(Connection con) {
+		try {
+			return con.isClosed();
+		}
+		catch (SQLException ex) {
+			return true;
+		}
+	}
+
+	private void closeStatement(PreparedStatement ps) {
+		try {
+			ps.close();
+		}
+		catch (SQLException ex) {
+			logger.debug("Could not close cached JDBC PreparedStatement", ex);
+		}
+	}
+
+
+	/**
+	 * Invocation handler for Connection proxies, serving prepareStatement
+	 * calls from the StatementCache of the physical Connection.
+	 */
+	private class StatementCachingInvocationHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		/** Innermost target of the ConnectionProxy chain, resolved on first use */
+		private Connection physicalConnection;
+
+		private StatementCache statementCache;
+
+		private boolean closed;
+
+		public StatementCachingInvocationHandler(Connection target) {
+			this.target = target;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("getTargetConnection")) {
+				return this.target;
+			}
+			else if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (methodName.equals("close")) {
+				if (!this.closed) {
+					this.closed = true;
+					// resolve before closing: a closed pool handle does not expose its target anymore;
+					// caches of Connections that did not prepare through this handle get removed lazily
+					Connection physicalCon = (this.statementCache != null ? getPhysicalConnection() : null);
+					this.target.close();
+					if (physicalCon != null) {
+						connectionClosed(physicalCon);
+					}
+				}
+				return null;
+			}
+			else if (methodName.equals("isClosed") && this.closed) {
+				return Boolean.TRUE;
+			}
+			else if (methodName.equals("prepareStatement") && !this.closed) {
+				Class[] paramTypes = method.getParameterTypes();
+				if (paramTypes.length == 1) {
+					return prepareStatement((Connection) proxy,
+							new StatementKey((String) args[0], ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY),
+							method, args);
+				}
+				if (paramTypes.length == 3 && paramTypes[1] == int.class && paramTypes[2] == int.class) {
+					return prepareStatement((Connection) proxy,
+							new StatementKey((String) args[0], ((Integer) args[1]).intValue(), ((Integer) args[2]).intValue()),
+							method, args);
+				}
+			}
+			try {
+				return method.invoke(this.target, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+
+		private PreparedStatement prepareStatement(Connection proxy, StatementKey key, Method method, Object[] args)
+				throws Throwable {
+			if (this.statementCache == null) {
+				this.statementCache = getStatementCache(getPhysicalConnection());
+			}
+			CachedStatement cachedStatement = this.statementCache.checkOut(key);
+			if (cachedStatement == null) {
+				PreparedStatement ps = null;
+				try {
+					// prepare on the physical Connection that the statement is cached for,
+					// not on a handle that might close its statements when closed itself
+					ps = (PreparedStatement) method.invoke(getPhysicalConnection(), args);
+				}
+				catch (InvocationTargetException ex) {
+					throw ex.getTargetException();
+				}
+				cachedStatement = this.statementCache.add(key, ps);
+			}
+			return (PreparedStatement) Proxy.newProxyInstance(
+					PreparedStatement.class.getClassLoader(),
+					new Class[] {PreparedStatement.class},
+					new CachedStatementInvocationHandler(cachedStatement, this.statementCache, proxy));
+		}
+
+		private Connection getPhysicalConnection() {
+			if (this.physicalConnection == null) {
+				this.physicalConnection = StatementCachingDataSourceProxy.this.getPhysicalConnection(this.target);
+			}
+			return this.physicalConnection;
+		}
+	}
+
+
+	/**
+	 * LRU cache of the PreparedStatements of a single physical Connection.
+	 * The entries form a doubly linked list, most recently used first.
+	 */
+	private class StatementCache {
+
+		/** CachedStatement objects keyed by StatementKey */
+		private final Map statements = new HashMap();
+
+		private CachedStatement head;
+
+		private CachedStatement tail;
+
+		/**
+		 * Check out the cached statement for the given key.
+		 * @return the cached statement, or null if none cached or currently in use
+		 */
+		public synchronized CachedStatement checkOut(StatementKey key) {
+			CachedStatement cachedStatement = (CachedStatement) this.statements.get(key);
+			if (cachedStatement == null || cachedStatement.inUse) {
+				synchronized (statisticsMonitor) {
+					missCount++;
+				}
+				return null;
+			}
+			synchronized (statisticsMonitor) {
+				hitCount++;
+			}
+			unlink(cachedStatement);
+			linkFirst(cachedStatement);
+			cachedStatement.inUse = true;
+			return cachedStatement;
+		}
+
+		/**
+		 * Add the given newly prepared statement, evicting the least
+		 * recently used statement if the cache is full.
+		 * @return the CachedStatement, already checked out
+		 */
+		public synchronized CachedStatement add(StatementKey key, PreparedStatement ps) throws SQLException {
+			CachedStatement cachedStatement = new CachedStatement(key, ps);
+			cachedStatement.inUse = true;
+			if (this.statements.containsKey(key)) {
+				// cached statement currently in use: don't cache a second one
+				cachedStatement.evicted = true;
+				return cachedStatement;
+			}
+			this.statements.put(key, cachedStatement);
+			linkFirst(cachedStatement);
+			if (this.statements.size() > cacheSize) {
+				CachedStatement eldest = this.tail;
+				unlink(eldest);
+				this.statements.remove(eldest.key);
+				eldest.evicted = true;
+				synchronized (statisticsMonitor) {
+					evictionCount++;
+				}
+				if (!eldest.inUse) {
+					closeStatement(eldest.statement);
+				}
+			}
+			return cachedStatement;
+		}
+
+		/**
+		 * Return the given statement to the cache, or close it if evicted
+		 * or not reusable.
+		 */
+		public synchronized void checkIn(CachedStatement cachedStatement) {
+			if (cachedStatement.evicted) {
+				closeStatement(cachedStatement.statement);
+				return;
+			}
+			try {
+				if (cachedStatement.reusable) {
+					cachedStatement.reset();
+					cachedStatement.inUse = false;
+					return;
+				}
+			}
+			catch (SQLException ex) {
+				logger.debug("Could not reset cached JDBC PreparedStatement", ex);
+			}
+			unlink(cachedStatement);
+			this.statements.remove(cachedStatement.key);
+			closeStatement(cachedStatement.statement);
+		}
+
+		public synchronized int size() {
+			return this.statements.size();
+		}
+
+		/**
+		 * Close all cached statements. Called when the Connection has been closed.
+		 */
+		public synchronized void closeAll() {
+			for (Iterator it = this.statements.values().iterator(); it.hasNext();) {
+				CachedStatement cachedStatement = (CachedStatement) it.next();
+				cachedStatement.evicted = true;
+				if (!cachedStatement.inUse) {
+					closeStatement(cachedStatement.statement);
+				}
+			}
+			this.statements.clear();
+			this.head = null;
+			this.tail = null;
+		}
+
+		private void linkFirst(CachedStatement cachedStatement) {
+			cachedStatement.previous = null;
+			cachedStatement.next = this.head;
+			if (this.head != null) {
+				this.head.previous = cachedStatement;
+			}
+			this.head = cachedStatement;
+			if (this.tail == null) {
+				this.tail = cachedStatement;
+			}
+		}
+
+		private void unlink(CachedStatement cachedStatement) {
+			if (cachedStatement.previous != null) {
+				cachedStatement.previous.next = cachedStatement.next;
+			}
+			else if (this.head == cachedStatement) {
+				this.head = cachedStatement.next;
+			}
+			if (cachedStatement.next != null) {
+				cachedStatement.next.previous = cachedStatement.previous;
+			}
+			else if (this.tail == cachedStatement) {
+				this.tail = cachedStatement.previous;
+			}
+			cachedStatement.previous = null;
+			cachedStatement.next = null;
+		}
+	}
+
+
+	/**
+	 * Cache key for a PreparedStatement: SQL plus ResultSet type and concurrency.
+	 */
+	private static class StatementKey {
+
+		private final String sql;
+
+		private final int resultSetType;
+
+		private final int resultSetConcurrency;
+
+		public StatementKey(String sql, int resultSetType, int resultSetConcurrency) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof StatementKey)) {
+				return false;
+			}
+			StatementKey otherKey = (StatementKey) other;
+			return (this.sql.equals(otherKey.sql) && this.resultSetType == otherKey.resultSetType &&
+					this.resultSetConcurrency == otherKey.resultSetConcurrency);
+		}
+
+		public int hashCode() {
+			return this.sql.hashCode() * 29 + this.resultSetType * 7 + this.resultSetConcurrency;
+		}
+	}
+
+
+	/**
+	 * PreparedStatement held in a StatementCache, with its initial settings
+	 * and its state within the cache.
+	 */
+	private static class CachedStatement {
+
+		private final StatementKey key;
+
+		private final PreparedStatement statement;
+
+		private final int fetchSize;
+
+		private final int maxRows;
+
+		private final int maxFieldSize;
+
+		private final int queryTimeout;
+
+		private boolean inUse;
+
+		private boolean evicted;
+
+		private boolean reusable = true;
+
+		private boolean settingsChanged;
+
+		private boolean batchUsed;
+
+		private CachedStatement previous;
+
+		private CachedStatement next;
+
+		public CachedStatement(StatementKey key, PreparedStatement statement) throws SQLException {
+			this.key = key;
+			this.statement = statement;
+			this.fetchSize = statement.getFetchSize();
+			this.maxRows = statement.getMaxRows();
+			this.maxFieldSize = statement.getMaxFieldSize();
+			this.queryTimeout = statement.getQueryTimeout();
+		}
+
+		/**
+		 * Reset the statement for the next user.
+		 */
+		public void reset() throws SQLException {
+			this.statement.clearParameters();
+			this.statement.clearWarnings();
+			if (this.batchUsed) {
+				this.statement.clearBatch();
+				this.batchUsed = false;
+			}
+			if (this.settingsChanged) {
+				this.statement.setFetchSize(this.fetchSize);
+				this.statement.setMaxRows(this.maxRows);
+				this.statement.setMaxFieldSize(this.maxFieldSize);
+				this.statement.setQueryTimeout(this.queryTimeout);
+				this.settingsChanged = false;
+			}
+		}
+	}
+
+
+	/**
+	 * Invocation handler for PreparedStatement proxies, returning the
+	 * underlying statement to the cache on close.
+	 */
+	private class CachedStatementInvocationHandler implements InvocationHandler {
+
+		private final CachedStatement cachedStatement;
+
+		private final StatementCache statementCache;
+
+		private final Connection connectionProxy;
+
+		private boolean closed;
+
+		public CachedStatementInvocationHandler(
+				CachedStatement cachedStatement, StatementCache statementCache, Connection connectionProxy) {
+			this.cachedStatement = cachedStatement;
+			this.statementCache = statementCache;
+			this.connectionProxy = connectionProxy;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (methodName.equals("close")) {
+				if (!this.closed) {
+					this.closed = true;
+					this.statementCache.checkIn(this.cachedStatement);
+				}
+				return null;
+			}
+			else if (methodName.equals("isClosed")) {
+				return (this.closed ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("toString")) {
+				return "Cached statement [" + this.cachedStatement.statement + "]";
+			}
+			if (this.closed) {
+				throw new SQLException("PreparedStatement has already been closed");
+			}
+			if (methodName.equals("getConnection")) {
+				return this.connectionProxy;
+			}
+			else if (methodName.equals("setFetchSize") || methodName.equals("setMaxRows") ||
+					methodName.equals("setMaxFieldSize") || methodName.equals("setQueryTimeout")) {
+				this.cachedStatement.settingsChanged = true;
+			}
+			else if (methodName.equals("addBatch")) {
+				this.cachedStatement.batchUsed = true;
+			}
+			else if (methodName.equals("setFetchDirection") || methodName.equals("setEscapeProcessing") ||
+					methodName.equals("setCursorName") || methodName.equals("setPoolable")) {
+				// settings that we don't reset: don't reuse this statement
+				this.cachedStatement.reusable = false;
+			}
+			Object retVal = null;
+			try {
+				retVal = method.invoke(this.cachedStatement.statement, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+			if (retVal instanceof ResultSet) {
+				// expose this proxy rather than the cached statement as the ResultSet's statement
+				retVal = Proxy.newProxyInstance(
+						ResultSet.class.getClassLoader(),
+						new Class[] {ResultSet.class},
+						new ResultSetInvocationHandler((ResultSet) retVal, (PreparedStatement) proxy));
+			}
+			return retVal;
+		}
+	}
+
+
+	/**
+	 * Invocation handler for ResultSets of cached statements,
+	 * returning the PreparedStatement proxy from getStatement.
+	 */
+	private static class ResultSetInvocationHandler implements InvocationHandler {
+
+		private final ResultSet target;
+
+		private final PreparedStatement statementProxy;
+
+		public ResultSetInvocationHandler(ResultSet target, PreparedStatement statementProxy) {
+			this.target = target;
+			this.statementProxy = statementProxy;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("equals")) {
+				return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+			}
+			else if (methodName.equals("hashCode")) {
+				return new Integer(System.identityHashCode(proxy));
+			}
+			else if (methodName.equals("getStatement")) {
+				return this.statementProxy;
+			}
+			try {
+				return method.invoke(this.target, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+	}
+
+}
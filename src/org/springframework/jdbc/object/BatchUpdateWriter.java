@@ -0,0 +1,600 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.object;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Buffers inserts and updates for multiple SQL statements and executes them
+ * as JDBC batches. Each statement is defined by a BatchSqlUpdate object,
+ * which specifies the SQL and the declared parameters.
+ *
+ * <p>Entries for a statement get flushed automatically when the batch size
+ * is reached or when the oldest pending entry is older than the flush interval.
+ * Statements get flushed in the order in which they have been added to this
+ * writer, so that, for example, inserts into a master table get executed
+ * before inserts into a detail table that references it.
+ *
+ * <p>Within a transaction with active transaction synchronization (for example,
+ * with DataSourceTransactionManager or JtaTransactionManager), each transaction
+ * has its own buffer. Pending entries get flushed before the transaction commits,
+ * and one PreparedStatement per SQL statement gets reused for all flushes
+ * within the transaction. Outside of a transaction, all threads share a buffer,
+ * and a new PreparedStatement gets created for each flush.
+ *
+ * <p>In contrast to BatchSqlUpdate, this class is thread-safe. It keeps
+ * aggregated counts per statement rather than individual update counts.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see BatchSqlUpdate
+ * @see #addStatement
+ * @see #write
+ * @see #flush
+ */
+public class BatchUpdateWriter implements InitializingBean {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private JdbcTemplate jdbcTemplate = new JdbcTemplate();
+
+	private int batchSize = BatchSqlUpdate.DEFAULT_BATCH_SIZE;
+
+	private long flushInterval = 0;
+
+	/** List of BatchSqlUpdate objects, in registration order */
+	private final List statements = new ArrayList();
+
+	/** Map from SQL String to statement index */
+	private final Map statementIndexes = new HashMap();
+
+	/** Set on first write: no statements can be added after that */
+	private boolean active = false;
+
+	/** Buffer used outside of transactions, shared by all threads */
+	private WriteBuffer sharedBuffer;
+
+	private Boolean supportsBatchUpdates;
+
+	private final Object countMonitor = new Object();
+
+	private int[] executionCounts;
+
+	private int[] rowCounts;
+
+
+	/**
+	 * Set the JDBC DataSource to obtain connections from.
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.jdbcTemplate.setDataSource(dataSource);
+	}
+
+	/**
+	 * Set the JdbcTemplate for this writer. Used for its DataSource
+	 * and its SQLExceptionTranslator.
+	 */
+	public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Return the JdbcTemplate used by this writer.
+	 */
+	public JdbcTemplate getJdbcTemplate() {
+		return jdbcTemplate;
+	}
+
+	/**
+	 * Set the number of pending entries for a statement that will trigger
+	 * an automatic flush. Default is BatchSqlUpdate's default batch size.
+	 * @see BatchSqlUpdate#DEFAULT_BATCH_SIZE
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Return the number of pending entries that will trigger an automatic flush.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds that an entry may be pending
+	 * before it gets flushed. Default is 0, for no time-based flushing.
+	 * <p>This is checked on each <code>write</code> call: There is no
+	 * background flushing, as a transactional JDBC Connection is bound
+	 * to the thread that performs the transaction.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Return the maximum time in milliseconds that an entry may be pending.
+	 */
+	public long getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * Set the statements for this writer, as list of BatchSqlUpdate objects.
+	 * @see #addStatement(BatchSqlUpdate)
+	 */
+	public void setStatements(List statements) {
+		for (Iterator it = statements.iterator(); it.hasNext();) {
+			addStatement((BatchSqlUpdate) it.next());
+		}
+	}
+
+	/**
+	 * Add a statement for the given SQL and anonymous parameter types.
+	 * @param sql the SQL statement
+	 * @param types the SQL types of the parameters, as defined in java.sql.Types
+	 */
+	public void addStatement(String sql, int[] types) {
+		BatchSqlUpdate statement = new BatchSqlUpdate();
+		statement.setJdbcTemplate(this.jdbcTemplate);
+		statement.setSql(sql);
+		statement.setTypes(types);
+		addStatement(statement);
+	}
+
+	/**
+	 * Add a statement to this writer. The statement will be compiled
+	 * if necessary, but executed by this writer: Its own queue will not be used.
+	 * Statements get flushed in the order in which they have been added.
+	 * @param statement the BatchSqlUpdate object that defines the statement
+	 * @throws InvalidDataAccessApiUsageException if writing already started,
+	 * or if there is already a statement with the same SQL
+	 */
+	public synchronized void addStatement(BatchSqlUpdate statement) throws InvalidDataAccessApiUsageException {
+		if (this.active) {
+			throw new InvalidDataAccessApiUsageException("Cannot add statements once writing started");
+		}
+		if (this.statementIndexes.containsKey(statement.getSql())) {
+			throw new InvalidDataAccessApiUsageException(
+					"Duplicate statement with SQL [" + statement.getSql() + "]");
+		}
+		statement.compile();
+		this.statementIndexes.put(statement.getSql(), new Integer(this.statements.size()));
+		this.statements.add(statement);
+	}
+
+	public void afterPropertiesSet() {
+		if (this.jdbcTemplate.getDataSource() == null) {
+			throw new IllegalArgumentException("dataSource or jdbcTemplate is required");
+		}
+		if (this.batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be greater than 0");
+		}
+	}
+
+
+	/**
+	 * Add the given parameters for the given statement to the buffer.
+	 * Executes pending entries if the batch size or the flush interval
+	 * has been reached.
+	 * <p>Note that you need to call <code>flush</code> at the end, or let
+	 * the transaction commit, to guarantee that all entries get executed.
+	 * @param sql the SQL of a statement added to this writer
+	 * @param args the parameters for the statement (a new array for each call)
+	 * @throws DataAccessException in case of a failed automatic flush
+	 * @see #flush
+	 */
+	public void write(String sql, Object[] args) throws DataAccessException {
+		int index = 0;
+		BatchSqlUpdate statement = null;
+		WriteBuffer sharedBuffer = null;
+		synchronized (this) {
+			index = findStatementIndex(sql);
+			statement = (BatchSqlUpdate) this.statements.get(index);
+			sharedBuffer = activate();
+		}
+		statement.validateParameters(args);
+		WriteBuffer buffer = getWriteBuffer(sharedBuffer);
+		synchronized (buffer) {
+			buffer.add(index, args);
+		}
+	}
+
+	/**
+	 * Execute all pending entries of the current transaction respectively,
+	 * outside of a transaction, all pending entries of the shared buffer.
+	 */
+	public void flush() throws DataAccessException {
+		WriteBuffer buffer = getWriteBuffer(getSharedBuffer());
+		synchronized (buffer) {
+			buffer.flush(this.statements.size() - 1);
+		}
+	}
+
+	/**
+	 * Return the number of pending entries in the current buffer,
+	 * i.e. the buffer of the current transaction respectively
+	 * the shared buffer outside of a transaction.
+	 */
+	public int getQueueCount() {
+		WriteBuffer buffer = getWriteBuffer(getSharedBuffer());
+		synchronized (buffer) {
+			return buffer.getCount();
+		}
+	}
+
+	/**
+	 * Return the number of entries executed for the given statement,
+	 * across all buffers, since creation respectively the last <code>reset</code>.
+	 * @param sql the SQL of a statement added to this writer
+	 */
+	public int getExecutionCount(String sql) {
+		int index = getStatementIndex(sql);
+		synchronized (this.countMonitor) {
+			return (this.executionCounts != null ? this.executionCounts[index] : 0);
+		}
+	}
+
+	/**
+	 * Return the total number of rows affected by the given statement,
+	 * across all buffers, since creation respectively the last <code>reset</code>.
+	 * Does not include rows for drivers that do not report row counts
+	 * for batch statements.
+	 * @param sql the SQL of a statement added to this writer
+	 */
+	public int getRowsAffected(String sql) {
+		int index = getStatementIndex(sql);
+		synchronized (this.countMonitor) {
+			return (this.rowCounts != null ? this.rowCounts[index] : 0);
+		}
+	}
+
+	/**
+	 * Reset the execution counts and row counts of all statements.
+	 * Does not affect pending entries.
+	 */
+	public void reset() {
+		synchronized (this.countMonitor) {
+			if (this.executionCounts != null) {
+				this.executionCounts = new int[this.executionCounts.length];
+				this.rowCounts = new int[this.rowCounts.length];
+			}
+		}
+	}
+
+
+	private synchronized int getStatementIndex(String sql) throws InvalidDataAccessApiUsageException {
+		return findStatementIndex(sql);
+	}
+
+	/**
+	 * Look up the index of the statement with the given SQL.
+	 * To be called with the lock on this writer held.
+	 */
+	private int findStatementIndex(String sql) throws InvalidDataAccessApiUsageException {
+		Integer index = (Integer) this.statementIndexes.get(sql);
+		if (index == null) {
+			throw new InvalidDataAccessApiUsageException("No statement with SQL [" + sql + "] added to this writer");
+		}
+		return index.intValue();
+	}
+
+	private synchronized WriteBuffer getSharedBuffer() {
+		return activate();
+	}
+
+	/**
+	 * Start writing on first use: From then on, no statements can be added.
+	 * To be called with the lock on this writer held.
+	 * @return the buffer shared by all threads outside of transactions
+	 */
+	private WriteBuffer activate() {
+		if (!this.active) {
+			afterPropertiesSet();
+			synchronized (this.countMonitor) {
+				this.executionCounts = new int[this.statements.size()];
+				this.rowCounts = new int[this.statements.size()];
+			}
+			this.sharedBuffer = new WriteBuffer(false);
+			this.active = true;
+		}
+		return this.sharedBuffer;
+	}
+
+	/**
+	 * Return the buffer for the current transaction, if transaction
+	 * synchronization is active, or the given shared buffer else.
+	 */
+	private WriteBuffer getWriteBuffer(WriteBuffer sharedBuffer) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return sharedBuffer;
+		}
+		WriteBuffer buffer = (WriteBuffer) TransactionSynchronizationManager.getResource(this);
+		if (buffer == null) {
+			buffer = new WriteBuffer(true);
+			TransactionSynchronizationManager.bindResource(this, buffer);
+			TransactionSynchronizationManager.registerSynchronization(new WriteBufferSynchronization(buffer));
+		}
+		return buffer;
+	}
+
+	private boolean supportsBatchUpdates(Connection con) throws SQLException {
+		if (this.supportsBatchUpdates == null) {
+			boolean supported = false;
+			DatabaseMetaData dbmd = con.getMetaData();
+			if (dbmd != null) {
+				try {
+					supported = dbmd.supportsBatchUpdates();
+				}
+				catch (AbstractMethodError err) {
+					logger.warn("Driver does not support JDBC 2.0 method supportsBatchUpdates");
+				}
+			}
+			this.supportsBatchUpdates = new Boolean(supported);
+		}
+		return this.supportsBatchUpdates.booleanValue();
+	}
+
+	private void addCounts(int index, int executionCount, int rowCount) {
+		synchronized (this.countMonitor) {
+			this.executionCounts[index] += executionCount;
+			this.rowCounts[index] += rowCount;
+		}
+	}
+
+
+	/**
+	 * Pending entries and, within a transaction, prepared statements
+	 * for all statements of this writer.
+	 */
+	private class WriteBuffer {
+
+		private final boolean transactional;
+
+		/** Pending parameter arrays per statement, up to the batch size */
+		private final Object[][][] entries;
+
+		private final int[] counts;
+
+		private final long[] firstEntryTimes;
+
+		/** Reused statements, if transactional */
+		private final PreparedStatement[] preparedStatements;
+
+		private Connection connection;
+
+		private WriteBuffer(boolean transactional) {
+			int statementCount = statements.size();
+			this.transactional = transactional;
+			this.entries = new Object[statementCount][][];
+			this.counts = new int[statementCount];
+			this.firstEntryTimes = new long[statementCount];
+			this.preparedStatements = (transactional ? new PreparedStatement[statementCount] : null);
+		}
+
+		private void add(int index, Object[] args) throws DataAccessException {
+			if (this.entries[index] == null) {
+				this.entries[index] = new Object[batchSize][];
+			}
+			int count = this.counts[index];
+			if (count > 0 && this.entries[index][count - 1] == args) {
+				throw new InvalidDataAccessApiUsageException("Object array containing the parameters cannot be reused -- " +
+				                                             "you must create a new object array for each call to write");
+			}
+			this.entries[index][count] = args;
+			this.counts[index] = ++count;
+
+			if (count == batchSize) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Triggering auto-flush because statement reached batch size of " + batchSize);
+				}
+				flush(index);
+			}
+			else if (flushInterval > 0) {
+				long now = System.currentTimeMillis();
+				if (count == 1) {
+					this.firstEntryTimes[index] = now;
+				}
+				int lastExpired = -1;
+				for (int i = 0; i < this.counts.length; i++) {
+					if (this.counts[i] > 0 && now - this.firstEntryTimes[i] >= flushInterval) {
+						lastExpired = i;
+					}
+				}
+				if (lastExpired != -1) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Triggering auto-flush because entries reached flush interval of " + flushInterval);
+					}
+					flush(lastExpired);
+				}
+			}
+		}
+
+		/**
+		 * Execute the pending entries of all statements up to the given index,
+		 * in registration order.
+		 */
+		private void flush(int lastIndex) throws DataAccessException {
+			boolean pending = false;
+			for (int i = 0; i <= lastIndex && !pending; i++) {
+				pending = (this.counts[i] > 0);
+			}
+			if (!pending) {
+				return;
+			}
+			DataSource dataSource = jdbcTemplate.getDataSource();
+			Connection con = DataSourceUtils.getConnection(dataSource);
+			try {
+				if (this.transactional && con != this.connection) {
+					closeStatements();
+					this.connection = con;
+				}
+				for (int i = 0; i <= lastIndex; i++) {
+					if (this.counts[i] > 0) {
+						execute(con, i);
+					}
+				}
+			}
+			finally {
+				DataSourceUtils.closeConnectionIfNecessary(con, dataSource);
+			}
+		}
+
+		/**
+		 * Execute the pending entries of the given statement as one batch.
+		 * Pending entries get discarded even if execution fails; a cached
+		 * statement gets closed then, as it might still hold batched entries.
+		 */
+		private void execute(Connection con, int index) throws DataAccessException {
+			BatchSqlUpdate statement = (BatchSqlUpdate) statements.get(index);
+			Object[][] batch = this.entries[index];
+			int count = this.counts[index];
+			if (logger.isDebugEnabled()) {
+				logger.debug("Executing batch of " + count + " entries for SQL [" + statement.getSql() + "]");
+			}
+			PreparedStatement ps = null;
+			int rowCount = 0;
+			boolean success = false;
+			try {
+				ps = (this.transactional ? this.preparedStatements[index] : null);
+				if (ps == null) {
+					ps = con.prepareStatement(statement.getSql());
+					if (this.transactional) {
+						this.preparedStatements[index] = ps;
+					}
+				}
+				DataSourceUtils.applyTransactionTimeout(ps, jdbcTemplate.getDataSource());
+				if (supportsBatchUpdates(con)) {
+					for (int i = 0; i < count; i++) {
+						statement.newPreparedStatementSetter(batch[i]).setValues(ps);
+						ps.addBatch();
+					}
+					int[] rowsAffected = ps.executeBatch();
+					for (int i = 0; i < rowsAffected.length; i++) {
+						statement.checkRowsAffected(rowsAffected[i]);
+						if (rowsAffected[i] > 0) {
+							rowCount += rowsAffected[i];
+						}
+					}
+				}
+				else {
+					for (int i = 0; i < count; i++) {
+						statement.newPreparedStatementSetter(batch[i]).setValues(ps);
+						int rowsAffected = ps.executeUpdate();
+						statement.checkRowsAffected(rowsAffected);
+						rowCount += rowsAffected;
+					}
+				}
+				success = true;
+			}
+			catch (SQLException ex) {
+				throw jdbcTemplate.getExceptionTranslator().translate(
+						"executing batch for BatchUpdateWriter", statement.getSql(), ex);
+			}
+			finally {
+				for (int i = 0; i < count; i++) {
+					batch[i] = null;
+				}
+				this.counts[index] = 0;
+				if (!this.transactional) {
+					JdbcUtils.closeStatement(ps);
+				}
+				else if (!success && ps != null) {
+					// don't let the next flush in this transaction execute leftover entries
+					this.preparedStatements[index] = null;
+					JdbcUtils.closeStatement(ps);
+				}
+			}
+			addCounts(index, count, rowCount);
+		}
+
+		private int getCount() {
+			int count = 0;
+			for (int i = 0; i < this.counts.length; i++) {
+				count += this.counts[i];
+			}
+			return count;
+		}
+
+		private void closeStatements() {
+			if (this.transactional) {
+				for (int i = 0; i < this.preparedStatements.length; i++) {
+					JdbcUtils.closeStatement(this.preparedStatements[i]);
+					this.preparedStatements[i] = null;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Callback that flushes a transactional buffer before commit,
+	 * and closes its statements at transaction completion.
+	 */
+	private class WriteBufferSynchronization extends TransactionSynchronizationAdapter {
+
+		private final WriteBuffer buffer;
+
+		private WriteBufferSynchronization(WriteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public void suspend() {
+			TransactionSynchronizationManager.unbindResource(BatchUpdateWriter.this);
+		}
+
+		public void resume() {
+			TransactionSynchronizationManager.bindResource(BatchUpdateWriter.this, this.buffer);
+		}
+
+		public void beforeCommit(boolean readOnly) {
+			this.buffer.flush(statements.size() - 1);
+		}
+
+		public void beforeCompletion() {
+			TransactionSynchronizationManager.unbindResource(BatchUpdateWriter.this);
+			int discarded = this.buffer.getCount();
+			if (discarded > 0) {
+				logger.info("Discarding " + discarded + " pending entries on transaction rollback");
+			}
+			this.buffer.closeStatements();
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.object;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.ResultReader;
+import org.springframework.jdbc.core.RowMapperResultReader;
+
+/**
+ * MappingSqlQuery that maps each row to an instance of the given bean class,
+ * populating bean properties from columns with matching names. Column names
+ * are matched with bean properties once per query execution, not for each row.
+ *
+ * <p>This is a concrete class, which there is normally no need to subclass.
+ * Like all RdbmsOperation objects, BeanPropertyMappingSqlQuery objects are
+ * threadsafe once compiled.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see org.springframework.jdbc.core.BeanPropertyRowMapper
+ */
+public class BeanPropertyMappingSqlQuery extends MappingSqlQuery {
+
+	private BeanPropertyRowMapper rowMapper;
+
+	/**
+	 * Constructor to allow use as a JavaBean.
+	 * A DataSource, SQL, mapped class and any parameters must be supplied
+	 * before invoking the compile() method and using this object.
+	 * @see #setMappedClass
+	 */
+	public BeanPropertyMappingSqlQuery() {
+	}
+
+	/**
+	 * Create a new BeanPropertyMappingSqlQuery.
+	 * @param ds DataSource to use to obtain connections
+	 * @param sql SQL to run
+	 * @param mappedClass the class to create an instance of for each row
+	 */
+	public BeanPropertyMappingSqlQuery(DataSource ds, String sql, Class mappedClass) {
+		super(ds, sql);
+		setMappedClass(mappedClass);
+	}
+
+	/**
+	 * Set the class to create an instance of for each row.
+	 * The class needs to be a JavaBean with a public no-arg constructor.
+	 */
+	public void setMappedClass(Class mappedClass) {
+		if (isCompiled()) {
+			throw new InvalidDataAccessApiUsageException("Cannot change mapped class once compiled");
+		}
+		this.rowMapper = new BeanPropertyRowMapper(mappedClass);
+	}
+
+	/**
+	 * Return the class to create an instance of for each row.
+	 */
+	public Class getMappedClass() {
+		return (this.rowMapper != null ? this.rowMapper.getMappedClass() : null);
+	}
+
+	public void afterPropertiesSet() {
+		if (this.rowMapper == null) {
+			throw new InvalidDataAccessApiUsageException("mappedClass is required");
+		}
+		super.afterPropertiesSet();
+	}
+
+	/**
+	 * Uses a RowMapperResultReader for the BeanPropertyRowMapper, which
+	 * matches the columns with bean properties once for this execution.
+	 */
+	protected ResultReader newResultReader(int rowsExpected, Object[] parameters, Map context) {
+		return new RowMapperResultReader(this.rowMapper, rowsExpected);
+	}
+
+	/**
+	 * Delegates to the BeanPropertyRowMapper for the mapped class.
+	 * Not used for query executions, which go through newResultReader.
+	 * @see #newResultReader
+	 */
+	protected final Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+		return this.rowMapper.mapRow(rs, rowNum);
+	}
+
+}
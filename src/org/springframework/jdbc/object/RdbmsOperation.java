@@ -84,6 +84,12 @@ public abstract class RdbmsOperation implements InitializingBean {
 	 * but subclasses may also implement their own custom validation.
 	 */
 	private boolean compiled;
+
+	/** Number of declared in parameters, determined at compilation time */
+	private int declaredInParameterCount;
+
+	/** Whether a BLOB or CLOB in parameter has been declared */
+	private boolean lobParameterDeclared;
 	
 	
 	/**
@@ -270,6 +276,7 @@ public abstract class RdbmsOperation implements InitializingBean {
 			}	
 		
 			compileInternal();
+			countDeclaredInParameters();
 			this.compiled = true;
 			logger.info("RdbmsOperation with SQL [" + getSql() + "] compiled");
 		}
@@ -307,22 +314,11 @@ public abstract class RdbmsOperation implements InitializingBean {
 			compile();
 		}
 
-		int declaredInParameters = 0;
-		if (this.declaredParameters != null) {
-			Iterator iter = this.declaredParameters.iterator();
-			while (iter.hasNext()) {
-				Object param = iter.next();
-				if (!(param instanceof SqlOutParameter) && !(param instanceof SqlReturnResultSet)) {
-					if (!supportsLobParameters() &&
-							(((SqlParameter)param).getSqlType() == Types.BLOB ||
-							((SqlParameter)param).getSqlType() == Types.CLOB)) {
-						throw new InvalidDataAccessApiUsageException("BLOB or CLOB parameters are not allowed " +
-																												 "for this kind of operation.");
-					}
-					declaredInParameters++;
-				}
-			}
+		if (this.lobParameterDeclared && !supportsLobParameters()) {
+			throw new InvalidDataAccessApiUsageException("BLOB or CLOB parameters are not allowed " +
+			                                             "for this kind of operation.");
 		}
+		int declaredInParameters = this.declaredInParameterCount;
 
 		if (parameters != null) {
 			if (this.declaredParameters == null) {
@@ -347,6 +343,27 @@ public abstract class RdbmsOperation implements InitializingBean {
 		}
 	}
 
+	/**
+	 * Determine the number of declared in parameters once, rather than
+	 * on each <code>validateParameters</code> call.
+	 */
+	private void countDeclaredInParameters() {
+		int count = 0;
+		boolean lobDeclared = false;
+		if (this.declaredParameters != null) {
+			for (Iterator it = this.declaredParameters.iterator(); it.hasNext();) {
+				Object param = it.next();
+				if (!(param instanceof SqlOutParameter) && !(param instanceof SqlReturnResultSet)) {
+					int sqlType = ((SqlParameter) param).getSqlType();
+					lobDeclared = lobDeclared || sqlType == Types.BLOB || sqlType == Types.CLOB;
+					count++;
+				}
+			}
+		}
+		this.declaredInParameterCount = count;
+		this.lobParameterDeclared = lobDeclared;
+	}
+
 	/**
 	 * Return whether BLOB or CLOB parameters are supported
 	 * for this kind of operation. Default is true.
@@ -16,10 +16,17 @@
 
 package org.springframework.jdbc.object;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.NamedParameterUtils;
+import org.springframework.jdbc.core.ParsedSql;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
 import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.support.JdbcUtils;
 
 /**
@@ -29,6 +36,12 @@ import org.springframework.jdbc.support.JdbcUtils;
  * <p>Configures a PreparedStatementCreatorFactory based on the
  * declared parameters.
  *
+ * <p>The SQL may either use "?" placeholders or named parameters (":name").
+ * Named parameters get resolved against the declared parameters by name once,
+ * at compilation time; the operation is then executed with a Map from
+ * parameter name to value. Collection and object array values get expanded,
+ * for IN lists.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  */
@@ -40,6 +53,12 @@ public abstract class SqlOperation extends RdbmsOperation {
 	 */
 	private PreparedStatementCreatorFactory preparedStatementFactory;
 
+	/** Parsed SQL, if the SQL contains named parameters */
+	private ParsedSql parsedSql;
+
+	/** Declared parameter per named parameter slot */
+	private SqlParameter[] slotParameters;
+
 
 	/**
 	 * Overridden method to configure the PreparedStatementCreatorFactory
@@ -55,22 +74,42 @@ public abstract class SqlOperation extends RdbmsOperation {
 			// transform JDBC-agnostic error to data access error
 			throw new InvalidDataAccessApiUsageException(ex.getMessage());
 		}
-		if (bindVarCount != getDeclaredParameters().size())
-			throw new InvalidDataAccessApiUsageException("SQL '" + getSql() + "' requires " + bindVarCount +
-			                                             " bind variables, but " + getDeclaredParameters().size() +
-																									 " variables were declared for this object");
-
-		this.preparedStatementFactory = new PreparedStatementCreatorFactory(getSql(), getDeclaredParameters());
-		this.preparedStatementFactory.setResultSetType(getResultSetType());
-		this.preparedStatementFactory.setUpdatableResults(isUpdatableResults());
-		this.preparedStatementFactory.setReturnGeneratedKeys(isReturnGeneratedKeys());
-		if (getGeneratedKeysColumnNames() != null)
-			this.preparedStatementFactory.setGeneratedKeysColumnNames(getGeneratedKeysColumnNames());
-		this.preparedStatementFactory.setNativeJdbcExtractor(getJdbcTemplate().getNativeJdbcExtractor());
+
+		// only treat ":name" as named parameters if parameters have been declared for them:
+		// SQL without declared parameters gets passed to the driver as-is, as before
+		if (bindVarCount == 0 && !getDeclaredParameters().isEmpty() &&
+				NamedParameterUtils.hasNamedParameters(getSql())) {
+			this.parsedSql = NamedParameterUtils.parseSqlStatement(getSql());
+			this.slotParameters = this.parsedSql.resolveParameters(getDeclaredParameters());
+			this.preparedStatementFactory =
+					createPreparedStatementFactory(this.parsedSql.getSql(), Arrays.asList(this.slotParameters));
+		}
+		else {
+			if (bindVarCount != getDeclaredParameters().size())
+				throw new InvalidDataAccessApiUsageException("SQL '" + getSql() + "' requires " + bindVarCount +
+				                                             " bind variables, but " + getDeclaredParameters().size() +
+																										 " variables were declared for this object");
+			this.preparedStatementFactory = createPreparedStatementFactory(getSql(), getDeclaredParameters());
+		}
 
 		onCompileInternal();
 	}
 
+	/**
+	 * Create a PreparedStatementCreatorFactory for the given SQL and parameters,
+	 * configured according to this operation's settings.
+	 */
+	private PreparedStatementCreatorFactory createPreparedStatementFactory(String sql, List declaredParameters) {
+		PreparedStatementCreatorFactory factory = new PreparedStatementCreatorFactory(sql, declaredParameters);
+		factory.setResultSetType(getResultSetType());
+		factory.setUpdatableResults(isUpdatableResults());
+		factory.setReturnGeneratedKeys(isReturnGeneratedKeys());
+		if (getGeneratedKeysColumnNames() != null)
+			factory.setGeneratedKeysColumnNames(getGeneratedKeysColumnNames());
+		factory.setNativeJdbcExtractor(getJdbcTemplate().getNativeJdbcExtractor());
+		return factory;
+	}
+
 	/**
 	 * Hook method that subclasses may override to post-process compilation.
 	 * This implementation does nothing.
@@ -97,4 +136,64 @@ public abstract class SqlOperation extends RdbmsOperation {
 		return this.preparedStatementFactory.newPreparedStatementSetter(params);
 	}
 
+
+	/**
+	 * Validate the named parameter values passed to an execute method.
+	 * Subclasses should invoke this method before every execution
+	 * with named parameters.
+	 * @param paramMap Map from parameter name to value
+	 * @throws InvalidDataAccessApiUsageException if the SQL does not
+	 * contain named parameters or if a value is missing
+	 */
+	protected void validateNamedParameters(Map paramMap) throws InvalidDataAccessApiUsageException {
+		if (!isCompiled()) {
+			logger.info("SQL operation not compiled before execution - invoking compile");
+			compile();
+		}
+		if (this.parsedSql == null) {
+			throw new InvalidDataAccessApiUsageException("SQL [" + getSql() + "] does not contain named parameters");
+		}
+		for (int i = 0; i < this.parsedSql.getParameterCount(); i++) {
+			String name = this.parsedSql.getParameterName(i);
+			if (paramMap == null || !paramMap.containsKey(name)) {
+				throw new InvalidDataAccessApiUsageException("No value supplied for SQL parameter '" + name + "'");
+			}
+		}
+	}
+
+	/**
+	 * Return the values for the given named parameters,
+	 * in the order of the placeholders in the SQL.
+	 * @param paramMap Map from parameter name to value
+	 */
+	protected final Object[] getNamedParameterValues(Map paramMap) {
+		return this.parsedSql.getValues(paramMap);
+	}
+
+	/**
+	 * Return a PreparedStatementCreator to perform an operation
+	 * with the given named parameters.
+	 * @param paramMap Map from parameter name to value
+	 */
+	protected final PreparedStatementCreator newPreparedStatementCreator(Map paramMap) {
+		return newPreparedStatementCreator(paramMap, getNamedParameterValues(paramMap));
+	}
+
+	/**
+	 * Return a PreparedStatementCreator to perform an operation with the
+	 * given named parameters, reusing values that have already been determined.
+	 * @param paramMap Map from parameter name to value
+	 * @param values the values as returned by <code>getNamedParameterValues</code>
+	 * for the same Map
+	 * @see #getNamedParameterValues
+	 */
+	protected final PreparedStatementCreator newPreparedStatementCreator(Map paramMap, Object[] values) {
+		if (!this.parsedSql.requiresExpansion(paramMap)) {
+			return this.preparedStatementFactory.newPreparedStatementCreator(values);
+		}
+		PreparedStatementCreatorFactory factory = createPreparedStatementFactory(
+				this.parsedSql.getSql(paramMap), this.parsedSql.getParameters(this.slotParameters, paramMap));
+		return factory.newPreparedStatementCreator(values);
+	}
+
 }
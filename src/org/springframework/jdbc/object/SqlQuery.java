@@ -205,6 +205,32 @@ public abstract class SqlQuery extends SqlOperation {
 		return execute(p1, null);
 	}
 
+	/**
+	 * Central execution method for named parameters. All named parameter
+	 * execution goes through this method.
+	 * @param paramMap Map from parameter name to value, for the named
+	 * parameters (":name") in the SQL
+	 * @param context contextual information passed to the callback mapRow method.
+	 * This parameter doesn't rely on the JDBC request itself, but can be useful
+	 * for creating the objects of the result list.
+	 * @return a List of objects, one per row of the ResultSet. Normally all these
+	 * will be of the same class, although it is possible to use different types.
+	 */
+	public List executeByNamedParam(Map paramMap, Map context) throws DataAccessException {
+		validateNamedParameters(paramMap);
+		Object[] values = getNamedParameterValues(paramMap);
+		ResultReader rr = newResultReader(this.rowsExpected, values, context);
+		return getJdbcTemplate().query(newPreparedStatementCreator(paramMap, values), rr);
+	}
+
+	/**
+	 * Convenient method to execute with named parameters, without context.
+	 * @param paramMap Map from parameter name to value
+	 */
+	public List executeByNamedParam(Map paramMap) throws DataAccessException {
+		return executeByNamedParam(paramMap, null);
+	}
+
 	/**
 	 * Generic findObject method, used by all other findObject() methods.
 	 * findObject() methods are like EJB entity bean finders, in that it is
@@ -286,6 +312,27 @@ public abstract class SqlQuery extends SqlOperation {
 	}
 
 
+	/**
+	 * Generic object finder method for named parameters.
+	 * @param paramMap Map from parameter name to value
+	 * @param context contextual information passed to the callback mapRow method
+	 * @return the single result object, or null if not found
+	 * @see #executeByNamedParam(Map, Map)
+	 */
+	public Object findObjectByNamedParam(Map paramMap, Map context) throws DataAccessException {
+		List results = executeByNamedParam(paramMap, context);
+		return DataAccessUtils.uniqueResult(results);
+	}
+
+	/**
+	 * Convenient method to find a single object with named parameters, without context.
+	 * @param paramMap Map from parameter name to value
+	 */
+	public Object findObjectByNamedParam(Map paramMap) throws DataAccessException {
+		return findObjectByNamedParam(paramMap, null);
+	}
+
+
 	//-------------------------------------------------------------------------
 	// Methods to be implemented by subclasses
 	//-------------------------------------------------------------------------
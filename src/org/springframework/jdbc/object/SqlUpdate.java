@@ -16,6 +16,8 @@
 
 package org.springframework.jdbc.object;
 
+import java.util.Map;
+
 import javax.sql.DataSource;
 
 import org.springframework.dao.DataAccessException;
@@ -168,6 +170,33 @@ public class SqlUpdate extends SqlOperation {
 		return rowsAffected;
 	}
 
+	/**
+	 * Generic method to execute the update given named parameters.
+	 * @param paramMap Map from parameter name to value, for the named
+	 * parameters (":name") in the SQL
+	 * @return the number of rows affected by the update
+	 */
+	public int updateByNamedParam(Map paramMap) throws DataAccessException {
+		validateNamedParameters(paramMap);
+		int rowsAffected = getJdbcTemplate().update(newPreparedStatementCreator(paramMap));
+		checkRowsAffected(rowsAffected);
+		return rowsAffected;
+	}
+
+	/**
+	 * Method to execute the update given named parameters and
+	 * retrieve the generated keys using a KeyHolder.
+	 * @param paramMap Map from parameter name to value
+	 * @param generatedKeyHolder KeyHolder that will hold the generated keys
+	 * @return the number of rows affected by the update
+	 */
+	public int updateByNamedParam(Map paramMap, KeyHolder generatedKeyHolder) throws DataAccessException {
+		validateNamedParameters(paramMap);
+		int rowsAffected = getJdbcTemplate().update(newPreparedStatementCreator(paramMap), generatedKeyHolder);
+		checkRowsAffected(rowsAffected);
+		return rowsAffected;
+	}
+
 	/**
 	 * Convenience method to execute an update with no parameters.
 	 */
@@ -19,7 +19,12 @@ package org.springframework.jdbc.support;
 import java.lang.reflect.Constructor;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.sql.DataSource;
 
@@ -48,9 +53,17 @@ import org.springframework.jdbc.BadSqlGrammarException;
  * <li>Fallback to fallback translator. SQLStateSQLExceptionTranslator is the default
  * fallback translator.
  * </ul>
+ *
+ * <p>As of Spring 1.1.2, the SQLErrorCodes get compiled into a lookup table
+ * once, mapping each error code to its translation. Translating an exception
+ * is then a single binary search over an int array (or a single HashMap lookup
+ * when translating by SQLState), without further logging at info level.
+ * Note that changes to the codes of an SQLErrorCodes instance will not be
+ * noticed after it has been passed to this translator.
  * 
  * @author Rod Johnson
  * @author Thomas Risberg
+ * @author Juergen Hoeller
  * @see org.springframework.jdbc.support.SQLErrorCodesFactory
  */
 public class SQLErrorCodeSQLExceptionTranslator implements SQLExceptionTranslator {
@@ -60,6 +73,14 @@ public class SQLErrorCodeSQLExceptionTranslator implements SQLExceptionTranslato
 	private static final int MESSAGE_SQLEX_CONSTRUCTOR = 3;
 	private static final int MESSAGE_SQL_THROWABLE_CONSTRUCTOR = 4;
 	private static final int MESSAGE_SQL_SQLEX_CONSTRUCTOR = 5;
+
+	private static final int BAD_SQL_GRAMMAR = 1;
+	private static final int DATA_INTEGRITY_VIOLATION = 2;
+	private static final int DATA_RETRIEVAL_FAILURE = 3;
+	private static final int OPTIMISTIC_LOCKING_FAILURE = 4;
+	private static final int CANNOT_ACQUIRE_LOCK = 5;
+	private static final int DATA_ACCESS_RESOURCE_FAILURE = 6;
+
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	/** Error codes available to subclasses */
@@ -68,6 +89,9 @@ public class SQLErrorCodeSQLExceptionTranslator implements SQLExceptionTranslato
 	/** Fallback translator to use if SQLError code matching doesn't work */
 	private SQLExceptionTranslator fallback = new SQLStateSQLExceptionTranslator();
 
+	/** Lookup table compiled from the current SQLErrorCodes */
+	private TranslationTable translationTable;
+
 
 	/**
 	 * Constructor for use as a JavaBean.
@@ -82,13 +106,14 @@ public class SQLErrorCodeSQLExceptionTranslator implements SQLExceptionTranslato
 	 * @param sec error codes
 	 */
 	public SQLErrorCodeSQLExceptionTranslator(SQLErrorCodes sec) {
-		this.sqlErrorCodes = sec;		
+		setSqlErrorCodes(sec);
 	}
 	
 	/**
 	 * Create a SQLErrorCode translator for the given DataSource.
 	 * Invoking this constructor will cause a connection to be obtained from the 
-	 * DataSource to get the metadata
+	 * DataSource to get the metadata, unless the SQLErrorCodesFactory
+	 * has already looked up the error codes for this DataSource.
 	 * @param ds DataSource to use to find metadata and establish which error
 	 * codes are usable
 	 */
@@ -102,17 +127,19 @@ public class SQLErrorCodeSQLExceptionTranslator implements SQLExceptionTranslato
 	 */
 	public void setSqlErrorCodes(SQLErrorCodes sec) {
 		this.sqlErrorCodes = sec;
+		this.translationTable = (sec != null ? new TranslationTable(sec) : null);
 	}
 
 	/**
 	 * Set the DataSource.
 	 * <p>Setting this property will cause a connection to be obtained
-	 * from the DataSource to get the metadata.
+	 * from the DataSource to get the metadata, unless the SQLErrorCodesFactory
+	 * has already looked up the error codes for this DataSource.
 	 * @param ds DataSource to use to find metadata and establish which error
 	 * codes are usable
 	 */
 	public void setDataSource(DataSource ds) {
-		this.sqlErrorCodes = SQLErrorCodesFactory.getInstance().getErrorCodes(ds);
+		setSqlErrorCodes(SQLErrorCodesFactory.getInstance().getErrorCodes(ds));
 	}
 	
 	/**
@@ -140,144 +167,52 @@ public class SQLErrorCodeSQLExceptionTranslator implements SQLExceptionTranslato
 		}
 		
 		// now try error code
-		String errorCode;
-		if (this.sqlErrorCodes != null && this.sqlErrorCodes.isUseSqlStateForTranslation()) {
-			errorCode = sqlex.getSQLState();
-		}
-		else {
-			errorCode = Integer.toString(sqlex.getErrorCode());
+		TranslationEntry entry = null;
+		if (this.sqlErrorCodes != null) {
+			TranslationTable table = this.translationTable;
+			if (table == null || table.sqlErrorCodes != this.sqlErrorCodes) {
+				// error codes have been replaced by a subclass
+				table = new TranslationTable(this.sqlErrorCodes);
+				this.translationTable = table;
+			}
+			entry = table.getEntry(sqlex);
 		}
 
-		if (this.sqlErrorCodes != null && errorCode != null) {
+		if (entry != null) {
 			// look for defined custom translations first
-			if (!this.sqlErrorCodes.getCustomTranslations().isEmpty()) {
-				Iterator customIter = this.sqlErrorCodes.getCustomTranslations().iterator();
-				while (customIter.hasNext()) {
-					CustomSQLErrorCodesTranslation customCode = (CustomSQLErrorCodesTranslation) customIter.next();
-					if (Arrays.binarySearch(customCode.getErrorCodes(), errorCode) >= 0) {
-						Class exceptionClass = null;
-						DataAccessException customException = null;
-						try {
-							ClassLoader cl = Thread.currentThread().getContextClassLoader();
-							exceptionClass = cl.loadClass(customCode.getExceptionClass());
-						}
-						catch (ClassNotFoundException ex) {
-							logger.warn("Unable to load custom exception class: " + customCode.getExceptionClass());
-						}
-						if (exceptionClass != null) {
-							try {
-								int constructorType = 0;
-								Constructor[] constructors = exceptionClass.getConstructors();
-								for (int i = 0; i < constructors.length; i++) {
-									Class[] parameterTypes = constructors[i].getParameterTypes();
-									if (parameterTypes.length == 1 && parameterTypes[0].equals(String.class)) {
-										if (constructorType < MESSAGE_ONLY_CONSTRUCTOR)
-											constructorType = MESSAGE_ONLY_CONSTRUCTOR;
-									}
-									if (parameterTypes.length == 2 && parameterTypes[0].equals(String.class) &&
-											parameterTypes[1].equals(Throwable.class)) {
-										if (constructorType < MESSAGE_THROWABLE_CONSTRUCTOR)
-											constructorType = MESSAGE_THROWABLE_CONSTRUCTOR;
-									}
-									if (parameterTypes.length == 2 && parameterTypes[0].equals(String.class) &&
-											parameterTypes[1].equals(SQLException.class)) {
-										if (constructorType < MESSAGE_SQLEX_CONSTRUCTOR)
-											constructorType = MESSAGE_SQLEX_CONSTRUCTOR;
-									}
-									if (parameterTypes.length == 3 && parameterTypes[0].equals(String.class) &&
-											parameterTypes[1].equals(String.class) && parameterTypes[2].equals(Throwable.class)) {
-										if (constructorType < MESSAGE_SQL_THROWABLE_CONSTRUCTOR)
-											constructorType = MESSAGE_SQL_THROWABLE_CONSTRUCTOR;
-									}
-									if (parameterTypes.length == 3 && parameterTypes[0].equals(String.class) &&
-											parameterTypes[1].equals(String.class) && parameterTypes[2].equals(SQLException.class)) {
-										if (constructorType < MESSAGE_SQL_SQLEX_CONSTRUCTOR)
-											constructorType = MESSAGE_SQL_SQLEX_CONSTRUCTOR;
-									}
-								}
-								Constructor exceptionConstructor = null;
-								switch(constructorType) {
-									case MESSAGE_SQL_SQLEX_CONSTRUCTOR:
-										Class[] messageAndSqlAndSqlExArgsClass = new Class[] {String.class, String.class, SQLException.class};
-										Object[] messageAndSqlAndSqlExArgs = new Object[] {task, sql, sqlex};
-										exceptionConstructor = exceptionClass.getConstructor(messageAndSqlAndSqlExArgsClass);
-										customException = (DataAccessException)exceptionConstructor.newInstance(messageAndSqlAndSqlExArgs);
-										break;
-									case MESSAGE_SQL_THROWABLE_CONSTRUCTOR:
-										Class[] messageAndSqlAndThrowableArgsClass = new Class[] {String.class, String.class, Throwable.class};
-										Object[] messageAndSqlAndThrowableArgs = new Object[] {task, sql, sqlex};
-										exceptionConstructor = exceptionClass.getConstructor(messageAndSqlAndThrowableArgsClass);
-										customException = (DataAccessException)exceptionConstructor.newInstance(messageAndSqlAndThrowableArgs);
-										break;
-									case MESSAGE_SQLEX_CONSTRUCTOR:
-										Class[] messageAndSqlExArgsClass = new Class[] {String.class, SQLException.class};
-										Object[] messageAndSqlExArgs = new Object[] {task + ": " + sqlex.getMessage(), sqlex};
-										exceptionConstructor = exceptionClass.getConstructor(messageAndSqlExArgsClass);
-										customException = (DataAccessException)exceptionConstructor.newInstance(messageAndSqlExArgs);
-										break;
-									case MESSAGE_THROWABLE_CONSTRUCTOR:
-										Class[] messageAndThrowableArgsClass = new Class[] {String.class, Throwable.class};
-										Object[] messageAndThrowableArgs = new Object[] {task + ": " + sqlex.getMessage(), sqlex};
-										exceptionConstructor = exceptionClass.getConstructor(messageAndThrowableArgsClass);
-										customException = (DataAccessException)exceptionConstructor.newInstance(messageAndThrowableArgs);
-										break;
-									case MESSAGE_ONLY_CONSTRUCTOR:
-										Class[] messageOnlyArgsClass = new Class[] {String.class};
-										Object[] messageOnlyArgs = new Object[] {task + ": " + sqlex.getMessage()};
-										exceptionConstructor = exceptionClass.getConstructor(messageOnlyArgsClass);
-										customException = (DataAccessException)exceptionConstructor.newInstance(messageOnlyArgs);
-										break;
-									default:
-										logger.warn("Unable to find necessary constructor for custom exception class [" +
-																customCode.getExceptionClass() + "]");
-									}
-							}
-							catch (ClassCastException ex) {
-								logger.warn("Unable to instantiate custom exception class [" + customCode.getExceptionClass() +
-														"]. It is not a subclass of [" + DataAccessException.class + "].");
-							}
-							catch (Exception ex) {
-								logger.warn("Unable to instantiate custom exception class [" + customCode.getExceptionClass() + "]", ex);
-							}
-							if (customException != null) {
-								logTranslation(task, sql, sqlex, true);
-								return customException;
-							}
-						}
-					}
+			for (int i = 0; i < entry.customTranslations.length; i++) {
+				DataAccessException customException = entry.customTranslations[i].createException(task, sql, sqlex);
+				if (customException != null) {
+					logTranslation(task, sql, sqlex, true);
+					return customException;
 				}
 			}
-				
+
 			//next, look for grouped exceptions
-			if (Arrays.binarySearch(this.sqlErrorCodes.getBadSqlGrammarCodes(), errorCode) >= 0) {
+			if (entry.category != 0) {
 				logTranslation(task, sql, sqlex, false);
-				return new BadSqlGrammarException(task, sql, sqlex);
 			}
-			else if (Arrays.binarySearch(this.sqlErrorCodes.getDataIntegrityViolationCodes() , errorCode) >= 0) {
-				logTranslation(task, sql, sqlex, false);
-				return new DataIntegrityViolationException(task + ": " + sqlex.getMessage(), sqlex);
-			}
-			else if (Arrays.binarySearch(this.sqlErrorCodes.getDataRetrievalFailureCodes() , errorCode) >= 0) {
-				logTranslation(task, sql, sqlex, false);
-				return new DataRetrievalFailureException(task + ": " + sqlex.getMessage(), sqlex);
-			}
-			else if (Arrays.binarySearch(this.sqlErrorCodes.getOptimisticLockingFailureCodes() , errorCode) >= 0) {
-				logTranslation(task, sql, sqlex, false);
-				return new OptimisticLockingFailureException(task + ": " + sqlex.getMessage(), sqlex);
-			}
-			else if (Arrays.binarySearch(this.sqlErrorCodes.getCannotAcquireLockCodes() , errorCode) >= 0) {
-				logTranslation(task, sql, sqlex, false);
-				return new CannotAcquireLockException(task + ": " + sqlex.getMessage(), sqlex);
-			}
-			else if (Arrays.binarySearch(this.sqlErrorCodes.getDataAccessResourceFailureCodes() , errorCode) >= 0) {
-				logTranslation(task, sql, sqlex, false);
-				return new DataAccessResourceFailureException(task + ": " + sqlex.getMessage(), sqlex);
+			switch (entry.category) {
+				case BAD_SQL_GRAMMAR:
+					return new BadSqlGrammarException(task, sql, sqlex);
+				case DATA_INTEGRITY_VIOLATION:
+					return new DataIntegrityViolationException(task + ": " + sqlex.getMessage(), sqlex);
+				case DATA_RETRIEVAL_FAILURE:
+					return new DataRetrievalFailureException(task + ": " + sqlex.getMessage(), sqlex);
+				case OPTIMISTIC_LOCKING_FAILURE:
+					return new OptimisticLockingFailureException(task + ": " + sqlex.getMessage(), sqlex);
+				case CANNOT_ACQUIRE_LOCK:
+					return new CannotAcquireLockException(task + ": " + sqlex.getMessage(), sqlex);
+				case DATA_ACCESS_RESOURCE_FAILURE:
+					return new DataAccessResourceFailureException(task + ": " + sqlex.getMessage(), sqlex);
 			}
 		}
 
 		// we couldn't identify it more precisely - let's hand it over to the SQLState fallback translator
-		logger.warn("Unable to translate SQLException with errorCode '" + sqlex.getErrorCode() +
-		            "', will now try the fallback translator");
+		if (logger.isDebugEnabled()) {
+			logger.debug("Unable to translate SQLException with errorCode '" + sqlex.getErrorCode() +
+					"', will now try the fallback translator");
+		}
 		return this.fallback.translate(task, sql, sqlex);
 	}
 
@@ -297,12 +232,264 @@ public class SQLErrorCodeSQLExceptionTranslator implements SQLExceptionTranslato
 	}
 
 	private void logTranslation(String task, String sql, SQLException sqlex, boolean custom) {
-		if (logger.isInfoEnabled()) {
+		if (logger.isDebugEnabled()) {
 			String intro = custom ? "Custom translation of" : "Translating";
-			logger.info(intro + " SQLException with SQLState '" + sqlex.getSQLState() +
+			logger.debug(intro + " SQLException with SQLState '" + sqlex.getSQLState() +
 									"' and errorCode '" + sqlex.getErrorCode() + "' and message [" + sqlex.getMessage() +
 									"]; SQL was [" + sql + "] for task [" + task + "]");
 		}
 	}
 
+
+	/**
+	 * Lookup table for a given SQLErrorCodes instance, mapping each
+	 * error code or SQLState to its TranslationEntry.
+	 */
+	private class TranslationTable {
+
+		private final SQLErrorCodes sqlErrorCodes;
+
+		/** Sorted int error codes, if translating by error code */
+		private final int[] errorCodes;
+
+		/** TranslationEntry per int error code, in the same order */
+		private final TranslationEntry[] errorCodeEntries;
+
+		/** Map from SQLState to TranslationEntry, if translating by SQLState */
+		private final Map sqlStateEntries;
+
+		public TranslationTable(SQLErrorCodes sec) {
+			this.sqlErrorCodes = sec;
+			Map entries = new HashMap();
+			if (sec.getCustomTranslations() != null) {
+				for (Iterator it = sec.getCustomTranslations().iterator(); it.hasNext();) {
+					CustomTranslation customTranslation = new CustomTranslation((CustomSQLErrorCodesTranslation) it.next());
+					String[] codes = customTranslation.customCode.getErrorCodes();
+					for (int i = 0; codes != null && i < codes.length; i++) {
+						getOrCreateEntry(entries, codes[i]).customTranslationList.add(customTranslation);
+					}
+				}
+			}
+			addCategory(entries, sec.getBadSqlGrammarCodes(), BAD_SQL_GRAMMAR);
+			addCategory(entries, sec.getDataIntegrityViolationCodes(), DATA_INTEGRITY_VIOLATION);
+			addCategory(entries, sec.getDataRetrievalFailureCodes(), DATA_RETRIEVAL_FAILURE);
+			addCategory(entries, sec.getOptimisticLockingFailureCodes(), OPTIMISTIC_LOCKING_FAILURE);
+			addCategory(entries, sec.getCannotAcquireLockCodes(), CANNOT_ACQUIRE_LOCK);
+			addCategory(entries, sec.getDataAccessResourceFailureCodes(), DATA_ACCESS_RESOURCE_FAILURE);
+			for (Iterator it = entries.values().iterator(); it.hasNext();) {
+				TranslationEntry entry = (TranslationEntry) it.next();
+				entry.customTranslations = (CustomTranslation[])
+						entry.customTranslationList.toArray(new CustomTranslation[entry.customTranslationList.size()]);
+				entry.customTranslationList = null;
+			}
+
+			if (sec.isUseSqlStateForTranslation()) {
+				this.errorCodes = null;
+				this.errorCodeEntries = null;
+				this.sqlStateEntries = entries;
+			}
+			else {
+				// Only codes in canonical int format can ever match an int error code.
+				Map sortedEntries = new TreeMap();
+				for (Iterator it = entries.entrySet().iterator(); it.hasNext();) {
+					Map.Entry mapEntry = (Map.Entry) it.next();
+					String code = (String) mapEntry.getKey();
+					try {
+						Integer errorCode = new Integer(code);
+						if (errorCode.toString().equals(code)) {
+							sortedEntries.put(errorCode, mapEntry.getValue());
+						}
+					}
+					catch (NumberFormatException ex) {
+						logger.debug("Ignoring non-numeric error code '" + code + "'");
+					}
+				}
+				this.errorCodes = new int[sortedEntries.size()];
+				this.errorCodeEntries = new TranslationEntry[sortedEntries.size()];
+				int i = 0;
+				for (Iterator it = sortedEntries.entrySet().iterator(); it.hasNext(); i++) {
+					Map.Entry mapEntry = (Map.Entry) it.next();
+					this.errorCodes[i] = ((Integer) mapEntry.getKey()).intValue();
+					this.errorCodeEntries[i] = (TranslationEntry) mapEntry.getValue();
+				}
+				this.sqlStateEntries = null;
+			}
+		}
+
+		private TranslationEntry getOrCreateEntry(Map entries, String code) {
+			TranslationEntry entry = (TranslationEntry) entries.get(code);
+			if (entry == null) {
+				entry = new TranslationEntry();
+				entries.put(code, entry);
+			}
+			return entry;
+		}
+
+		private void addCategory(Map entries, String[] codes, int category) {
+			for (int i = 0; codes != null && i < codes.length; i++) {
+				TranslationEntry entry = getOrCreateEntry(entries, codes[i]);
+				// the first category that lists a code wins
+				if (entry.category == 0) {
+					entry.category = category;
+				}
+			}
+		}
+
+		/**
+		 * Return the TranslationEntry for the given SQLException, or null if none.
+		 */
+		public TranslationEntry getEntry(SQLException sqlex) {
+			if (this.sqlStateEntries != null) {
+				String sqlState = sqlex.getSQLState();
+				return (sqlState != null ? (TranslationEntry) this.sqlStateEntries.get(sqlState) : null);
+			}
+			int index = Arrays.binarySearch(this.errorCodes, sqlex.getErrorCode());
+			return (index >= 0 ? this.errorCodeEntries[index] : null);
+		}
+	}
+
+
+	/**
+	 * Translations for a single error code: custom translations
+	 * in order of declaration, plus the grouped exception category.
+	 */
+	private static class TranslationEntry {
+
+		private List customTranslationList = new LinkedList();
+
+		private CustomTranslation[] customTranslations;
+
+		private int category = 0;
+	}
+
+
+	/**
+	 * Creates exceptions for a CustomSQLErrorCodesTranslation.
+	 * Resolves the exception class and its constructor only once
+	 * for each exception class name.
+	 */
+	private class CustomTranslation {
+
+		private final CustomSQLErrorCodesTranslation customCode;
+
+		private ResolvedConstructor resolvedConstructor;
+
+		public CustomTranslation(CustomSQLErrorCodesTranslation customCode) {
+			this.customCode = customCode;
+		}
+
+		/**
+		 * Create the custom exception for the given SQLException.
+		 * @return the custom exception, or null if it could not be created
+		 */
+		public DataAccessException createException(String task, String sql, SQLException sqlex) {
+			String className = this.customCode.getExceptionClass();
+			if (className == null) {
+				return null;
+			}
+			ResolvedConstructor resolved = this.resolvedConstructor;
+			if (resolved == null || !className.equals(resolved.className)) {
+				resolved = resolveConstructor(className);
+				this.resolvedConstructor = resolved;
+			}
+			if (resolved.constructor == null) {
+				return null;
+			}
+			Object[] args = null;
+			switch (resolved.constructorType) {
+				case MESSAGE_SQL_SQLEX_CONSTRUCTOR:
+				case MESSAGE_SQL_THROWABLE_CONSTRUCTOR:
+					args = new Object[] {task, sql, sqlex};
+					break;
+				case MESSAGE_SQLEX_CONSTRUCTOR:
+				case MESSAGE_THROWABLE_CONSTRUCTOR:
+					args = new Object[] {task + ": " + sqlex.getMessage(), sqlex};
+					break;
+				default:
+					args = new Object[] {task + ": " + sqlex.getMessage()};
+			}
+			try {
+				return (DataAccessException) resolved.constructor.newInstance(args);
+			}
+			catch (Exception ex) {
+				logger.warn("Unable to instantiate custom exception class [" + className + "]", ex);
+				return null;
+			}
+		}
+
+		private ResolvedConstructor resolveConstructor(String className) {
+			Class exceptionClass = null;
+			try {
+				ClassLoader cl = Thread.currentThread().getContextClassLoader();
+				exceptionClass = cl.loadClass(className);
+			}
+			catch (ClassNotFoundException ex) {
+				logger.warn("Unable to load custom exception class: " + className);
+				return new ResolvedConstructor(className, null, 0);
+			}
+			if (!DataAccessException.class.isAssignableFrom(exceptionClass)) {
+				logger.warn("Unable to instantiate custom exception class [" + className +
+										"]. It is not a subclass of [" + DataAccessException.class + "].");
+				return new ResolvedConstructor(className, null, 0);
+			}
+			int constructorType = 0;
+			Constructor exceptionConstructor = null;
+			Constructor[] constructors = exceptionClass.getConstructors();
+			for (int i = 0; i < constructors.length; i++) {
+				int type = getConstructorType(constructors[i].getParameterTypes());
+				if (type > constructorType) {
+					constructorType = type;
+					exceptionConstructor = constructors[i];
+				}
+			}
+			if (exceptionConstructor == null) {
+				logger.warn("Unable to find necessary constructor for custom exception class [" + className + "]");
+			}
+			return new ResolvedConstructor(className, exceptionConstructor, constructorType);
+		}
+
+		private int getConstructorType(Class[] parameterTypes) {
+			if (parameterTypes.length == 1 && parameterTypes[0].equals(String.class)) {
+				return MESSAGE_ONLY_CONSTRUCTOR;
+			}
+			if (parameterTypes.length == 2 && parameterTypes[0].equals(String.class)) {
+				if (parameterTypes[1].equals(Throwable.class)) {
+					return MESSAGE_THROWABLE_CONSTRUCTOR;
+				}
+				if (parameterTypes[1].equals(SQLException.class)) {
+					return MESSAGE_SQLEX_CONSTRUCTOR;
+				}
+			}
+			if (parameterTypes.length == 3 && parameterTypes[0].equals(String.class) &&
+					parameterTypes[1].equals(String.class)) {
+				if (parameterTypes[2].equals(Throwable.class)) {
+					return MESSAGE_SQL_THROWABLE_CONSTRUCTOR;
+				}
+				if (parameterTypes[2].equals(SQLException.class)) {
+					return MESSAGE_SQL_SQLEX_CONSTRUCTOR;
+				}
+			}
+			return 0;
+		}
+	}
+
+
+	/**
+	 * Holder for the resolved constructor of a custom exception class.
+	 */
+	private static class ResolvedConstructor {
+
+		private final String className;
+
+		private final Constructor constructor;
+
+		private final int constructorType;
+
+		public ResolvedConstructor(String className, Constructor constructor, int constructorType) {
+			this.className = className;
+			this.constructor = constructor;
+			this.constructorType = constructorType;
+		}
+	}
+
 }
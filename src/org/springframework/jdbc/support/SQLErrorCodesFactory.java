@@ -77,10 +77,10 @@ public class SQLErrorCodesFactory {
 
 
 	/**
-	 * Map to hold database product name retrieved from database metadata.
-	 * Key is the DataSource, value is the database product name.
+	 * Map to cache the SQLErrorCodes instance per DataSource.
+	 * Key is the DataSource, value is the SQLErrorCodes instance.
 	 */
-	private final Map dataSourceProductName = new HashMap(10);
+	private final Map dataSourceCache = new HashMap(16);
 
 	/**
 	 * Map to hold error codes for all databases defined in the config file.
@@ -191,20 +191,25 @@ public class SQLErrorCodesFactory {
 	 * Return SQLErrorCodes for the given DataSource,
 	 * evaluating databaseProductName from DatabaseMetaData,
 	 * or an empty error codes instance if no SQLErrorCodes were found.
+	 * <p>The result gets cached per DataSource, so DatabaseMetaData is only
+	 * accessed once for each DataSource. A failed metadata lookup is not
+	 * cached, to be retried on the next call.
 	 * @see java.sql.DatabaseMetaData#getDatabaseProductName
 	 */
 	public SQLErrorCodes getErrorCodes(DataSource ds) {
-		logger.info("Looking up default SQLErrorCodes for DataSource");
-		
 		// Let's avoid looking up database product info if we can.
-		String dataSourceDbName = (String) this.dataSourceProductName.get(ds);
-		if (dataSourceDbName != null) {
-			logger.info("Database product name found in cache for DataSource [" +
-			            ds + "]. Name is '" + dataSourceDbName + "'.");
-			return getErrorCodes(dataSourceDbName);
+		synchronized (this.dataSourceCache) {
+			SQLErrorCodes sec = (SQLErrorCodes) this.dataSourceCache.get(ds);
+			if (sec != null) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("SQLErrorCodes found in cache for DataSource [" + ds + "]");
+				}
+				return sec;
+			}
 		}
 
 		// We could not find it - got to look it up.
+		logger.debug("Looking up default SQLErrorCodes for DataSource");
 		try {
 			Map dbmdInfo = (Map) JdbcUtils.extractDatabaseMetaData(ds, new DatabaseMetaDataCallback() {
 				public Object processMetaData(DatabaseMetaData dbmd) throws SQLException {
@@ -259,14 +264,16 @@ public class SQLErrorCodesFactory {
 				}
 
 				if (dbName != null) {
-					this.dataSourceProductName.put(ds, dbName);
 					logger.info("Database Product Name is " + dbName);
 					logger.info("Driver Version is " + driverVersion);
-					SQLErrorCodes sec = (SQLErrorCodes) this.rdbmsErrorCodes.get(dbName);
-					if (sec != null) {
-						return sec;
+					SQLErrorCodes sec = getErrorCodes(dbName);
+					synchronized (this.dataSourceCache) {
+						this.dataSourceCache.put(ds, sec);
+					}
+					if (!this.rdbmsErrorCodes.containsKey(dbName)) {
+						logger.info("Error Codes for " + dbName + " not found");
 					}
-					logger.info("Error Codes for " + dbName + " not found");
+					return sec;
 				}
 			}
 		}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.support.incrementer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * Abstract base class for incrementers that allocate blocks of values from
+ * a target incrementer, for example a database sequence, and hand out the
+ * values of the current block without accessing the database.
+ * Works with any DataFieldMaxValueIncrementer as target.
+ *
+ * <p>Values get handed out within a very short critical section: The target
+ * incrementer is only called outside of it, when a new block is needed.
+ * If a "prefetchThreshold" is specified, the next block gets allocated by
+ * a background thread as soon as the current block has that many values
+ * left, so that callers usually don't have to wait for the database.
+ *
+ * <p>Values of a block that have not been handed out when the application
+ * stops are lost: The maximum hole size in numbering is the block size
+ * (twice the block size with prefetching).
+ *
+ * <p>Subclasses determine how a value of the target incrementer
+ * maps to a block of values.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #getBlockStart
+ * @see HiLoMaxValueIncrementer
+ * @see PooledSequenceMaxValueIncrementer
+ */
+public abstract class AbstractBlockAllocatingMaxValueIncrementer
+		implements DataFieldMaxValueIncrementer, InitializingBean {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private DataFieldMaxValueIncrementer targetIncrementer;
+
+	private int blockSize = 0;
+
+	private int prefetchThreshold = 0;
+
+	/** The length to which a string result should be pre-pended with zeroes */
+	private int paddingLength = 0;
+
+	/** Monitor for handing out values of the current block */
+	private final Object blockMonitor = new Object();
+
+	/** The next value to hand out */
+	private long nextValue = 0;
+
+	/** The last value of the current block */
+	private long maxValue = -1;
+
+	/** Whether the prefetch of the block after the current block has been triggered */
+	private boolean prefetchTriggered = false;
+
+	/** Monitor for allocating blocks, always acquired before the blockMonitor */
+	private final Object allocationMonitor = new Object();
+
+	private boolean prefetching = false;
+
+	private boolean prefetched = false;
+
+	private long prefetchedBlockStart;
+
+
+	/**
+	 * Set the target incrementer to allocate blocks from.
+	 */
+	public void setTargetIncrementer(DataFieldMaxValueIncrementer targetIncrementer) {
+		this.targetIncrementer = targetIncrementer;
+	}
+
+	/**
+	 * Return the target incrementer to allocate blocks from.
+	 */
+	public DataFieldMaxValueIncrementer getTargetIncrementer() {
+		return targetIncrementer;
+	}
+
+	/**
+	 * Set the number of values in each block.
+	 */
+	public void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Return the number of values in each block.
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Set the number of remaining values in the current block at which
+	 * the next block gets allocated in a background thread.
+	 * Default is 0, allocating the next block when it is needed.
+	 */
+	public void setPrefetchThreshold(int prefetchThreshold) {
+		this.prefetchThreshold = prefetchThreshold;
+	}
+
+	/**
+	 * Return the number of remaining values at which the next block gets allocated.
+	 */
+	public int getPrefetchThreshold() {
+		return prefetchThreshold;
+	}
+
+	/**
+	 * Set the padding length, i.e. the length to which a string result
+	 * should be pre-pended with zeroes.
+	 */
+	public void setPaddingLength(int paddingLength) {
+		this.paddingLength = paddingLength;
+	}
+
+	/**
+	 * Return the padding length for String values.
+	 */
+	public int getPaddingLength() {
+		return paddingLength;
+	}
+
+	public void afterPropertiesSet() {
+		if (this.targetIncrementer == null) {
+			throw new IllegalArgumentException("targetIncrementer is required");
+		}
+		if (this.blockSize <= 0) {
+			throw new IllegalArgumentException("blockSize must be greater than 0");
+		}
+		if (this.prefetchThreshold < 0 || this.prefetchThreshold >= this.blockSize) {
+			throw new IllegalArgumentException("prefetchThreshold must be between 0 and blockSize - 1");
+		}
+	}
+
+
+	/**
+	 * Return the next value as int.
+	 * @throws DataAccessResourceFailureException if the value exceeds the int range
+	 */
+	public int nextIntValue() throws DataAccessException {
+		long value = nextLongValue();
+		if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+			throw new DataAccessResourceFailureException("Value " + value + " exceeds int range");
+		}
+		return (int) value;
+	}
+
+	public long nextLongValue() throws DataAccessException {
+		while (true) {
+			long value = 0;
+			boolean available = false;
+			boolean triggerPrefetch = false;
+			synchronized (this.blockMonitor) {
+				if (this.nextValue <= this.maxValue) {
+					value = this.nextValue++;
+					available = true;
+					if (this.prefetchThreshold > 0 && !this.prefetchTriggered &&
+							this.maxValue - value <= this.prefetchThreshold) {
+						this.prefetchTriggered = true;
+						triggerPrefetch = true;
+					}
+				}
+			}
+			if (available) {
+				if (triggerPrefetch) {
+					startPrefetch();
+				}
+				return value;
+			}
+			switchToNextBlock();
+		}
+	}
+
+	public String nextStringValue() throws DataAccessException {
+		String s = Long.toString(nextLongValue());
+		int len = s.length();
+		if (len < this.paddingLength) {
+			StringBuffer buf = new StringBuffer(this.paddingLength);
+			for (int i = 0; i < this.paddingLength - len; i++) {
+				buf.append('0');
+			}
+			buf.append(s);
+			s = buf.toString();
+		}
+		return s;
+	}
+
+
+	/**
+	 * Make the next block the current block, if the current block is still exhausted.
+	 * Uses a prefetched block if available, waits for a running prefetch,
+	 * or allocates a block from the target incrementer else.
+	 */
+	private void switchToNextBlock() throws DataAccessException {
+		synchronized (this.allocationMonitor) {
+			while (true) {
+				synchronized (this.blockMonitor) {
+					if (this.nextValue <= this.maxValue) {
+						// another thread has switched already
+						return;
+					}
+				}
+				if (!this.prefetching) {
+					break;
+				}
+				// waiting releases the allocation monitor: check the current block again afterwards
+				try {
+					this.allocationMonitor.wait();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new DataAccessResourceFailureException("Interrupted while waiting for next block of values");
+				}
+			}
+			long blockStart = 0;
+			if (this.prefetched) {
+				blockStart = this.prefetchedBlockStart;
+				this.prefetched = false;
+			}
+			else {
+				blockStart = allocateBlock();
+			}
+			synchronized (this.blockMonitor) {
+				this.nextValue = blockStart;
+				this.maxValue = blockStart + this.blockSize - 1;
+				this.prefetchTriggered = false;
+			}
+		}
+	}
+
+	/**
+	 * Start allocating the next block in a background thread,
+	 * unless already running or done.
+	 */
+	private void startPrefetch() {
+		synchronized (this.allocationMonitor) {
+			if (this.prefetching || this.prefetched) {
+				return;
+			}
+			this.prefetching = true;
+		}
+		Thread prefetchThread = new Thread(new Runnable() {
+			public void run() {
+				prefetch();
+			}
+		}, getClass().getName() + " prefetch");
+		prefetchThread.setDaemon(true);
+		prefetchThread.start();
+	}
+
+	/**
+	 * Allocate the next block, to be used when the current block is exhausted.
+	 * If allocation fails, the next block will be allocated on demand.
+	 */
+	private void prefetch() {
+		boolean success = false;
+		long blockStart = 0;
+		try {
+			blockStart = allocateBlock();
+			success = true;
+		}
+		catch (RuntimeException ex) {
+			logger.warn("Could not prefetch next block of values", ex);
+		}
+		finally {
+			synchronized (this.allocationMonitor) {
+				this.prefetching = false;
+				if (success) {
+					this.prefetched = true;
+					this.prefetchedBlockStart = blockStart;
+				}
+				this.allocationMonitor.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Allocate a new block via the target incrementer.
+	 * @return the first value of the new block
+	 */
+	protected long allocateBlock() throws DataAccessException {
+		long targetValue = this.targetIncrementer.nextLongValue();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Allocating block of " + this.blockSize + " values for target value " + targetValue);
+		}
+		return getBlockStart(targetValue);
+	}
+
+	/**
+	 * Determine the first value of the block that belongs to the given
+	 * value of the target incrementer. The block consists of this value
+	 * and the following "blockSize - 1" values.
+	 * @param targetValue the value obtained from the target incrementer
+	 * @return the first value of the block
+	 */
+	protected abstract long getBlockStart(long targetValue);
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.support.incrementer;
+
+/**
+ * Block-allocating incrementer that implements the hi/lo algorithm:
+ * Each value of the target incrementer is a "hi" value, multiplied with
+ * the block size to get the first value of the block. The target incrementer
+ * is supposed to return consecutive values, like a sequence with increment 1.
+ *
+ * <p>Example: With a block size of 100, the target value 5 results in
+ * the values 500 to 599.
+ *
+ * <p>Note that the generated values are not related to the values of the
+ * target incrementer anymore: Do not mix this incrementer with other users
+ * of the same sequence that don't apply the same algorithm.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see PooledSequenceMaxValueIncrementer
+ */
+public class HiLoMaxValueIncrementer extends AbstractBlockAllocatingMaxValueIncrementer {
+
+	/**
+	 * Default constructor.
+	 **/
+	public HiLoMaxValueIncrementer() {
+	}
+
+	/**
+	 * Convenience constructor.
+	 * @param targetIncrementer the incrementer to obtain hi values from
+	 * @param blockSize the number of values per hi value
+	 */
+	public HiLoMaxValueIncrementer(DataFieldMaxValueIncrementer targetIncrementer, int blockSize) {
+		setTargetIncrementer(targetIncrementer);
+		setBlockSize(blockSize);
+		afterPropertiesSet();
+	}
+
+	protected long getBlockStart(long targetValue) {
+		return targetValue * getBlockSize();
+	}
+
+}
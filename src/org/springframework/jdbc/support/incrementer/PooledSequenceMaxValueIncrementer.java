@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.support.incrementer;
+
+/**
+ * Block-allocating incrementer for a database sequence whose increment
+ * equals the block size: Each value of the target incrementer is the first
+ * value of a block, and the block extends up to the next sequence value.
+ *
+ * <p>Example: For an Oracle sequence created via
+ * "create sequence myseq start with 1 increment by 100"
+ * and a block size of 100, the first block consists of the values 1 to 100,
+ * the second block of 101 to 200, etc.
+ *
+ * <p>In contrast to the hi/lo algorithm, the values in the database remain
+ * meaningful: Other users of the same sequence that simply take the sequence
+ * value as key do not conflict with this incrementer.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see OracleSequenceMaxValueIncrementer
+ * @see PostgreSQLSequenceMaxValueIncrementer
+ * @see HiLoMaxValueIncrementer
+ */
+public class PooledSequenceMaxValueIncrementer extends AbstractBlockAllocatingMaxValueIncrementer {
+
+	/**
+	 * Default constructor.
+	 **/
+	public PooledSequenceMaxValueIncrementer() {
+	}
+
+	/**
+	 * Convenience constructor.
+	 * @param targetIncrementer the incrementer for the sequence
+	 * @param blockSize the increment of the sequence
+	 */
+	public PooledSequenceMaxValueIncrementer(DataFieldMaxValueIncrementer targetIncrementer, int blockSize) {
+		setTargetIncrementer(targetIncrementer);
+		setBlockSize(blockSize);
+		afterPropertiesSet();
+	}
+
+	protected long getBlockStart(long targetValue) {
+		return targetValue;
+	}
+
+}
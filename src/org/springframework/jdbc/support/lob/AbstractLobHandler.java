@@ -0,0 +1,202 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.support.lob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Abstract base class for LobHandler implementations.
+ *
+ * <p>Implements the streaming copy methods on top of the
+ * <code>getBlobAsBinaryStream</code> and <code>getClobAsCharacterStream</code>
+ * methods that subclasses provide. Content gets copied through a fixed-size
+ * buffer, so memory consumption does not depend on the size of the LOB.
+ * Buffers get reused across copy operations, up to a fixed number of
+ * buffers that are kept for concurrent use.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see #getBlobAsBinaryStream
+ * @see #getClobAsCharacterStream
+ */
+public abstract class AbstractLobHandler implements LobHandler {
+
+	/** Default size of copy buffers: 8 KB */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** Maximum number of idle buffers to keep per buffer type */
+	private static final int MAX_IDLE_BUFFERS = 8;
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	private final LinkedList idleByteBuffers = new LinkedList();
+
+	private final LinkedList idleCharBuffers = new LinkedList();
+
+
+	/**
+	 * Set the size of the buffers used for streaming copy operations,
+	 * in bytes respectively characters. Default is 8 KB.
+	 * @see #copyBlobToStream
+	 * @see #copyClobToWriter
+	 */
+	public void setBufferSize(int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be greater than 0");
+		}
+		synchronized (this.idleByteBuffers) {
+			this.idleByteBuffers.clear();
+		}
+		synchronized (this.idleCharBuffers) {
+			this.idleCharBuffers.clear();
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Return the size of the buffers used for streaming copy operations.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+
+	public long copyBlobToStream(ResultSet rs, int columnIndex, OutputStream out)
+			throws SQLException, IOException {
+		InputStream in = getBlobAsBinaryStream(rs, columnIndex);
+		if (in == null) {
+			return -1;
+		}
+		byte[] buffer = obtainByteBuffer();
+		long count = 0;
+		try {
+			int bytesRead = -1;
+			while ((bytesRead = in.read(buffer)) != -1) {
+				out.write(buffer, 0, bytesRead);
+				count += bytesRead;
+			}
+			out.flush();
+		}
+		finally {
+			releaseByteBuffer(buffer);
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				logger.warn("Could not close BLOB stream", ex);
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Copied " + count + " bytes from BLOB to stream");
+		}
+		return count;
+	}
+
+	public long copyClobToWriter(ResultSet rs, int columnIndex, Writer out)
+			throws SQLException, IOException {
+		Reader in = getClobAsCharacterStream(rs, columnIndex);
+		if (in == null) {
+			return -1;
+		}
+		char[] buffer = obtainCharBuffer();
+		long count = 0;
+		try {
+			int charsRead = -1;
+			while ((charsRead = in.read(buffer)) != -1) {
+				out.write(buffer, 0, charsRead);
+				count += charsRead;
+			}
+			out.flush();
+		}
+		finally {
+			releaseCharBuffer(buffer);
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				logger.warn("Could not close CLOB stream", ex);
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Copied " + count + " characters from CLOB to writer");
+		}
+		return count;
+	}
+
+
+	/**
+	 * Return an idle byte buffer, or a new one if none is available.
+	 */
+	private byte[] obtainByteBuffer() {
+		synchronized (this.idleByteBuffers) {
+			if (!this.idleByteBuffers.isEmpty()) {
+				return (byte[]) this.idleByteBuffers.removeFirst();
+			}
+		}
+		return new byte[this.bufferSize];
+	}
+
+	/**
+	 * Return the given byte buffer to the idle buffers,
+	 * unless enough buffers are kept already.
+	 */
+	private void releaseByteBuffer(byte[] buffer) {
+		synchronized (this.idleByteBuffers) {
+			if (buffer.length == this.bufferSize && this.idleByteBuffers.size() < MAX_IDLE_BUFFERS) {
+				this.idleByteBuffers.addFirst(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Return an idle char buffer, or a new one if none is available.
+	 */
+	private char[] obtainCharBuffer() {
+		synchronized (this.idleCharBuffers) {
+			if (!this.idleCharBuffers.isEmpty()) {
+				return (char[]) this.idleCharBuffers.removeFirst();
+			}
+		}
+		return new char[this.bufferSize];
+	}
+
+	/**
+	 * Return the given char buffer to the idle buffers,
+	 * unless enough buffers are kept already.
+	 */
+	private void releaseCharBuffer(char[] buffer) {
+		synchronized (this.idleCharBuffers) {
+			if (buffer.length == this.bufferSize && this.idleCharBuffers.size() < MAX_IDLE_BUFFERS) {
+				this.idleCharBuffers.addFirst(buffer);
+			}
+		}
+	}
+
+}
@@ -22,9 +22,6 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
 /**
  * Default implementation of the LobHandler interface. Invokes the direct accessor
  * methods that java.sql.ResultSet and java.sql.PreparedStatement offer.
@@ -45,9 +42,7 @@ import org.apache.commons.logging.LogFactory;
  * @see java.sql.PreparedStatement#setAsciiStream
  * @see java.sql.PreparedStatement#setCharacterStream
  */
-public class DefaultLobHandler implements LobHandler {
-
-	protected final Log logger = LogFactory.getLog(getClass());
+public class DefaultLobHandler extends AbstractLobHandler {
 
 	public byte[] getBlobAsBytes(ResultSet rs, int columnIndex) throws SQLException {
 		logger.debug("Returning BLOB as bytes");
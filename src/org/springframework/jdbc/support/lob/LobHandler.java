@@ -16,8 +16,11 @@
 
 package org.springframework.jdbc.support.lob;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.Writer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -41,6 +44,10 @@ import java.sql.SQLException;
  * you need to use OracleLobHandler there, which uses Oracle's BLOB/CLOB API
  * for both all access.
  *
+ * <p>Large content can be copied to an OutputStream or Writer via
+ * <code>copyBlobToStream</code> and <code>copyClobToWriter</code>, for example
+ * straight to an HTTP response, without holding the entire content in memory.
+ *
  * <p>Of course, you need to declare different field types for each database.
  * In Oracle, any binary content needs to go into a BLOB, and all character content
  * beyond 4000 bytes needs to go into a CLOB. In MySQL, there is no notion of a
@@ -50,6 +57,7 @@ import java.sql.SQLException;
  *
  * @author Juergen Hoeller
  * @since 23.12.2003
+ * @see AbstractLobHandler
  * @see DefaultLobHandler
  * @see OracleLobHandler
  * @see java.sql.ResultSet#getBytes
@@ -115,6 +123,34 @@ public interface LobHandler {
 	 */
 	Reader getClobAsCharacterStream(ResultSet rs, int columnIndex) throws SQLException;
 
+	/**
+	 * Copy the given BLOB column from the given ResultSet to the given stream,
+	 * through a fixed-size buffer rather than materializing the full content.
+	 * Closes the BLOB stream but leaves the given OutputStream open.
+	 * @param rs the ResultSet to retrieve the content from
+	 * @param columnIndex the column index to use
+	 * @param out the stream to copy the content to
+	 * @return the number of bytes copied, or -1 in case of SQL NULL
+	 * @throws SQLException if thrown by JDBC methods
+	 * @throws IOException in case of I/O errors
+	 * @since 1.1.2
+	 */
+	long copyBlobToStream(ResultSet rs, int columnIndex, OutputStream out) throws SQLException, IOException;
+
+	/**
+	 * Copy the given CLOB column from the given ResultSet to the given Writer,
+	 * through a fixed-size buffer rather than materializing the full content.
+	 * Closes the CLOB stream but leaves the given Writer open.
+	 * @param rs the ResultSet to retrieve the content from
+	 * @param columnIndex the column index to use
+	 * @param out the Writer to copy the content to
+	 * @return the number of characters copied, or -1 in case of SQL NULL
+	 * @throws SQLException if thrown by JDBC methods
+	 * @throws IOException in case of I/O errors
+	 * @since 1.1.2
+	 */
+	long copyClobToWriter(ResultSet rs, int columnIndex, Writer out) throws SQLException, IOException;
+
 	/**
 	 * Create a new LobCreator instance, i.e. a session for creating BLOBs
 	 * and CLOBs. Needs to be closed after the created LOBs are not needed
@@ -34,9 +34,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
@@ -73,7 +70,7 @@ import org.springframework.util.FileCopyUtils;
  * @see oracle.sql.BLOB
  * @see oracle.sql.CLOB
  */
-public class OracleLobHandler implements LobHandler {
+public class OracleLobHandler extends AbstractLobHandler {
 
 	private static final String CONNECTION_CLASS_NAME = "oracle.jdbc.OracleConnection";
 
@@ -86,8 +83,6 @@ public class OracleLobHandler implements LobHandler {
 	private static final String MODE_READWRITE_FIELD_NAME = "MODE_READWRITE";
 
 
-	protected final Log logger = LogFactory.getLog(getClass());
-
 	private final Class connectionClass;
 
 	private final Class blobClass;
@@ -18,15 +18,16 @@ package org.springframework.transaction.interceptor;
 
 import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.aop.support.AopUtils;
+import org.springframework.core.CollectionFactory;
 import org.springframework.metadata.Attributes;
 
 /**
@@ -43,6 +44,10 @@ import org.springframework.metadata.Attributes;
  * (unlikely) caching could be made configurable. Caching is desirable because
  * of the cost of evaluating rollback rules.
  *
+ * <p>The cache is keyed by Method first and target class second, so a lookup
+ * does not need to build a key object. Both levels are concurrent maps if
+ * available (JDK 1.5 or util.concurrent), making cache hits lock-free.
+ *
  * @author Rod Johnson
  */
 public abstract class AbstractFallbackTransactionAttributeSource implements TransactionAttributeSource {
@@ -57,9 +62,16 @@ public abstract class AbstractFallbackTransactionAttributeSource implements Tran
 	
 	
 	/**
-	 * Cache of TransactionAttributes, keyed by Method and target class
+	 * Key used in the per-method cache for invocations without target class.
+	 */
+	private final static Object NO_TARGET_CLASS = new Object();
+	
+	
+	/**
+	 * Cache of TransactionAttributes: Method --> Map from target class
+	 * (or NO_TARGET_CLASS) to TransactionAttribute (or NULL_TX_ATTRIBUTE)
 	 */
-	private HashMap cache = new HashMap();
+	private final Map cache = CollectionFactory.createConcurrentMapIfPossible(64);
 
 
 	/**
@@ -72,8 +84,9 @@ public abstract class AbstractFallbackTransactionAttributeSource implements Tran
 	 */
 	public final TransactionAttribute getTransactionAttribute(Method method, Class targetClass) {
 		// First, see if we have a cached value
-		Object cacheKey = cacheKey(method, targetClass);
-		Object cached = cache.get(cacheKey);
+		Map methodCache = getMethodCache(method);
+		Object cacheKey = (targetClass != null ? (Object) targetClass : NO_TARGET_CLASS);
+		Object cached = methodCache.get(cacheKey);
 		if (cached != null) {
 			// Value will either be canonical value indicating there is no transaction attribute,
 			// or an actual transaction attribute
@@ -89,18 +102,31 @@ public abstract class AbstractFallbackTransactionAttributeSource implements Tran
 			TransactionAttribute txAtt = computeTransactionAttribute(method, targetClass);
 			// Put it in the cache
 			if (txAtt == null) {
-				cache.put(cacheKey, NULL_TX_ATTRIBUTE);
+				methodCache.put(cacheKey, NULL_TX_ATTRIBUTE);
 			}
 			else {
-				cache.put(cacheKey, txAtt);
+				methodCache.put(cacheKey, txAtt);
 			}
 			return txAtt;
 		}
 	}
 	
-	private Object cacheKey(Method method, Class targetClass) {
-		// Class may be null, method can't
-		return targetClass + "" + System.identityHashCode(method);
+	/**
+	 * Return the cache of transaction attributes for the given method,
+	 * keyed by target class. Creates a new cache if none exists yet.
+	 */
+	private Map getMethodCache(Method method) {
+		Map methodCache = (Map) this.cache.get(method);
+		if (methodCache == null) {
+			synchronized (this.cache) {
+				methodCache = (Map) this.cache.get(method);
+				if (methodCache == null) {
+					methodCache = CollectionFactory.createConcurrentMapIfPossible(4);
+					this.cache.put(method, methodCache);
+				}
+			}
+		}
+		return methodCache;
 	}
 	
 	/**
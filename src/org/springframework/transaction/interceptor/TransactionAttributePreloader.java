@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.transaction.interceptor;
+
+import java.lang.reflect.Method;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+/**
+ * Listener that resolves the transaction attributes for all methods of all
+ * transactional proxies when the application context gets refreshed.
+ * To be registered as bean in the application context.
+ *
+ * <p>Considers every non-lazy singleton that is an Advised proxy with a
+ * TransactionInterceptor (or other TransactionAspectSupport advice), like
+ * the proxies created by TransactionProxyFactoryBean or by auto-proxy creators.
+ * The transaction attribute for each proxied method is requested once from the
+ * interceptor's TransactionAttributeSource, which leads to the attributes
+ * being cached by caching sources like AttributesTransactionAttributeSource.
+ * Hence, attribute resolution does not happen on the first invocation of
+ * each method anymore.
+ *
+ * <p>Lazy-init singletons and prototypes are not touched, to avoid
+ * instantiating them early. Opaque proxies cannot be inspected either.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see AbstractFallbackTransactionAttributeSource
+ * @see TransactionProxyFactoryBean
+ * @see org.springframework.context.event.ContextRefreshedEvent
+ */
+public class TransactionAttributePreloader implements ApplicationListener {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	public void onApplicationEvent(ApplicationEvent event) {
+		if (event instanceof ContextRefreshedEvent) {
+			ApplicationContext applicationContext = ((ContextRefreshedEvent) event).getApplicationContext();
+			if (applicationContext instanceof ConfigurableApplicationContext) {
+				preloadTransactionAttributes((ConfigurableApplicationContext) applicationContext);
+			}
+		}
+	}
+
+	/**
+	 * Resolve the transaction attributes for all transactional proxies
+	 * among the non-lazy singletons of the given application context.
+	 * @param applicationContext the application context to process
+	 */
+	protected void preloadTransactionAttributes(ConfigurableApplicationContext applicationContext) {
+		ConfigurableListableBeanFactory beanFactory = applicationContext.getBeanFactory();
+		String[] beanNames = beanFactory.getBeanDefinitionNames();
+		int count = 0;
+		for (int i = 0; i < beanNames.length; i++) {
+			BeanDefinition bd = beanFactory.getBeanDefinition(beanNames[i]);
+			if (!bd.isAbstract() && !bd.isLazyInit() && beanFactory.isSingleton(beanNames[i])) {
+				Object bean = beanFactory.getBean(beanNames[i]);
+				if (bean instanceof Advised) {
+					count += preloadTransactionAttributes((Advised) bean);
+				}
+			}
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Preloaded " + count + " transaction attributes in application context [" +
+					applicationContext.getDisplayName() + "]");
+		}
+	}
+
+	/**
+	 * Resolve the transaction attributes for all methods of the given proxy,
+	 * for every TransactionAspectSupport advice that the proxy applies.
+	 * @param advised the proxy to process
+	 * @return the number of transactional methods found
+	 */
+	protected int preloadTransactionAttributes(Advised advised) {
+		Class targetClass = advised.getTargetSource().getTargetClass();
+		Method[] methods = getProxiedMethods(advised, targetClass);
+		Advisor[] advisors = advised.getAdvisors();
+		int count = 0;
+		for (int i = 0; i < advisors.length; i++) {
+			if (advisors[i].getAdvice() instanceof TransactionAspectSupport) {
+				TransactionAttributeSource tas =
+						((TransactionAspectSupport) advisors[i].getAdvice()).getTransactionAttributeSource();
+				if (tas != null) {
+					for (int j = 0; j < methods.length; j++) {
+						if (tas.getTransactionAttribute(methods[j], targetClass) != null) {
+							count++;
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Determine the methods that can be invoked on the given proxy:
+	 * the methods of the proxied interfaces, or all public methods of
+	 * the target class in case of a target class proxy.
+	 */
+	private Method[] getProxiedMethods(Advised advised, Class targetClass) {
+		Class[] interfaces = advised.getProxiedInterfaces();
+		if (advised.getProxyTargetClass() || interfaces.length == 0) {
+			return (targetClass != null ? targetClass.getMethods() : new Method[0]);
+		}
+		int methodCount = 0;
+		Method[][] interfaceMethods = new Method[interfaces.length][];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaceMethods[i] = (Advised.class.equals(interfaces[i]) ? new Method[0] : interfaces[i].getMethods());
+			methodCount += interfaceMethods[i].length;
+		}
+		Method[] methods = new Method[methodCount];
+		int pos = 0;
+		for (int i = 0; i < interfaceMethods.length; i++) {
+			System.arraycopy(interfaceMethods[i], 0, methods, pos, interfaceMethods[i].length);
+			pos += interfaceMethods[i].length;
+		}
+		return methods;
+	}
+
+}
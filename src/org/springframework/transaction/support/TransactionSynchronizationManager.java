@@ -16,8 +16,9 @@
 
 package org.springframework.transaction.support;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,8 @@ import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.core.OrderComparator;
+
 /**
  * Internal class that manages resources and transaction synchronizations per thread.
  * Supports one resource per key without overwriting, i.e. a resource needs to
@@ -67,9 +70,30 @@ public abstract class TransactionSynchronizationManager {
 
 	private static final Log logger = LogFactory.getLog(TransactionSynchronizationManager.class);
 
-	private static ThreadLocal resources = new ThreadLocal();
+	private static final TransactionSynchronization[] EMPTY_SYNCHRONIZATIONS = new TransactionSynchronization[0];
+
+	private static final Comparator synchronizationComparator = new OrderComparator();
+
+	/**
+	 * Holds a TransactionContext per thread. The context gets created on first use
+	 * and reused for all subsequent transactions on the same thread, with its slots
+	 * cleared when resources get unbound and synchronization gets deactivated.
+	 */
+	private static final ThreadLocal contextHolder = new ThreadLocal();
 
-	private static final ThreadLocal synchronizations = new ThreadLocal();
+
+	/**
+	 * Return the TransactionContext for the current thread,
+	 * creating and binding a new one if necessary.
+	 */
+	private static TransactionContext getContext() {
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		if (context == null) {
+			context = new TransactionContext();
+			contextHolder.set(context);
+		}
+		return context;
+	}
 
 
 	//-------------------------------------------------------------------------
@@ -81,13 +105,16 @@ public abstract class TransactionSynchronizationManager {
 	 * <p>Mainly for debugging purposes. Resource managers should always invoke
 	 * hasResource for a specific resource key that they are interested in.
 	 * @return Map with resource keys and resource objects,
-	 * or null if currently none bound
+	 * or an empty Map if currently none bound
 	 * @see #hasResource
 	 */
 	public static Map getResourceMap() {
-		Map map = (Map) resources.get();
-		if (map == null) {
-			map = new HashMap();
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		Map map = new HashMap();
+		if (context != null) {
+			for (int i = 0; i < context.resourceCount; i++) {
+				map.put(context.resourceKeys[i], context.resourceValues[i]);
+			}
 		}
 		return Collections.unmodifiableMap(map);
 	}
@@ -98,8 +125,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @return if there is a value bound to the current thread
 	 */
 	public static boolean hasResource(Object key) {
-		Map map = (Map) resources.get();
-		return (map != null && map.containsKey(key));
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		return (context != null && context.indexOfResource(key) != -1);
 	}
 
 	/**
@@ -108,14 +135,18 @@ public abstract class TransactionSynchronizationManager {
 	 * @return a value bound to the current thread, or null if none
 	 */
 	public static Object getResource(Object key) {
-		Map map = (Map) resources.get();
-		if (map == null) {
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		if (context == null) {
+			return null;
+		}
+		int index = context.indexOfResource(key);
+		if (index == -1) {
 			return null;
 		}
-		Object value = map.get(key);
-		if (value != null && logger.isDebugEnabled()) {
-			logger.debug("Retrieved value [" + value + "] for key [" + key + "] bound to thread [" +
-									 Thread.currentThread().getName() + "]");
+		Object value = context.resourceValues[index];
+		if (value != null && logger.isTraceEnabled()) {
+			logger.trace("Retrieved value [" + value + "] for key [" + key + "] bound to thread [" +
+					Thread.currentThread().getName() + "]");
 		}
 		return value;
 	}
@@ -127,19 +158,15 @@ public abstract class TransactionSynchronizationManager {
 	 * @throws IllegalStateException if there is already a value bound to the thread
 	 */
 	public static void bindResource(Object key, Object value) throws IllegalStateException {
-		Map map = (Map) resources.get();
-		// set ThreadLocal Map if none found
-		if (map == null) {
-			map = new HashMap();
-			resources.set(map);
-		}
-		if (map.containsKey(key)) {
-			throw new IllegalStateException("Already value [" + map.get(key) + "] for key [" + key +
-					"] bound to thread [" + Thread.currentThread().getName() + "]");
-		}
-		map.put(key, value);
-		if (logger.isDebugEnabled()) {
-			logger.debug("Bound value [" + value + "] for key [" + key + "] to thread [" +
+		TransactionContext context = getContext();
+		int index = context.indexOfResource(key);
+		if (index != -1) {
+			throw new IllegalStateException("Already value [" + context.resourceValues[index] + "] for key [" +
+					key + "] bound to thread [" + Thread.currentThread().getName() + "]");
+		}
+		context.addResource(key, value);
+		if (logger.isTraceEnabled()) {
+			logger.trace("Bound value [" + value + "] for key [" + key + "] to thread [" +
 					Thread.currentThread().getName() + "]");
 		}
 	}
@@ -151,18 +178,15 @@ public abstract class TransactionSynchronizationManager {
 	 * @throws IllegalStateException if there is no value bound to the thread
 	 */
 	public static Object unbindResource(Object key) throws IllegalStateException {
-		Map map = (Map) resources.get();
-		if (map == null || !map.containsKey(key)) {
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		int index = (context != null ? context.indexOfResource(key) : -1);
+		if (index == -1) {
 			throw new IllegalStateException(
 					"No value for key [" + key + "] bound to thread [" + Thread.currentThread().getName() + "]");
 		}
-		Object value = map.remove(key);
-		// remove entire ThreadLocal if empty
-		if (map.isEmpty()) {
-			resources.set(null);
-		}
-		if (logger.isDebugEnabled()) {
-			logger.debug("Removed value [" + value + "] for key [" + key + "] from thread [" +
+		Object value = context.removeResource(index);
+		if (logger.isTraceEnabled()) {
+			logger.trace("Removed value [" + value + "] for key [" + key + "] from thread [" +
 					Thread.currentThread().getName() + "]");
 		}
 		return value;
@@ -179,7 +203,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #registerSynchronization
 	 */
 	public static boolean isSynchronizationActive() {
-		return (synchronizations.get() != null);
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		return (context != null && context.synchronizations != null);
 	}
 
 	/**
@@ -188,38 +213,58 @@ public abstract class TransactionSynchronizationManager {
 	 * @throws IllegalStateException if synchronization is already active
 	 */
 	public static void initSynchronization() throws IllegalStateException {
-		if (isSynchronizationActive()) {
+		TransactionContext context = getContext();
+		if (context.synchronizations != null) {
 			throw new IllegalStateException("Cannot activate transaction synchronization - already active");
 		}
 		logger.debug("Initializing transaction synchronization");
-		synchronizations.set(new ArrayList());
+		context.setSynchronizations(EMPTY_SYNCHRONIZATIONS);
 	}
 
 	/**
 	 * Register a new transaction synchronization for the current thread.
 	 * Typically called by resource management code.
+	 * <p>Synchronizations that implement the Ordered interface get sorted by their
+	 * order value on registration; others get invoked after all Ordered ones,
+	 * in registration order.
 	 * @throws IllegalStateException if synchronization is not active
+	 * @see org.springframework.core.Ordered
 	 */
 	public static void registerSynchronization(TransactionSynchronization synchronization)
 	    throws IllegalStateException {
-		if (!isSynchronizationActive()) {
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		if (context == null || context.synchronizations == null) {
 			throw new IllegalStateException("Transaction synchronization is not active");
 		}
-		((List) synchronizations.get()).add(synchronization);
+		TransactionSynchronization[] current = context.synchronizations;
+		// insert after all synchronizations with the same or a lower order value
+		int index = current.length;
+		while (index > 0 && synchronizationComparator.compare(current[index - 1], synchronization) > 0) {
+			index--;
+		}
+		// copy on write: lists returned by getSynchronizations remain unaffected
+		TransactionSynchronization[] updated = new TransactionSynchronization[current.length + 1];
+		System.arraycopy(current, 0, updated, 0, index);
+		updated[index] = synchronization;
+		System.arraycopy(current, index, updated, index + 1, current.length - index);
+		context.setSynchronizations(updated);
 	}
 
 	/**
 	 * Return an unmodifiable list of all registered synchronizations
-	 * for the current thread.
+	 * for the current thread, sorted by order value.
+	 * <p>The returned list is a snapshot: Synchronizations registered
+	 * later on will not show up in it.
 	 * @return unmodifiable List of TransactionSynchronization instances
 	 * @throws IllegalStateException if synchronization is not active
 	 * @see TransactionSynchronization
 	 */
 	public static List getSynchronizations() throws IllegalStateException {
-		if (!isSynchronizationActive()) {
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		if (context == null || context.synchronizations == null) {
 			throw new IllegalStateException("Transaction synchronization is not active");
 		}
-		return Collections.unmodifiableList(new ArrayList((List) synchronizations.get()));
+		return context.synchronizationList;
 	}
 
 	/**
@@ -228,11 +273,83 @@ public abstract class TransactionSynchronizationManager {
 	 * @throws IllegalStateException if synchronization is not active
 	 */
 	public static void clearSynchronization() throws IllegalStateException {
-		if (!isSynchronizationActive()) {
+		TransactionContext context = (TransactionContext) contextHolder.get();
+		if (context == null || context.synchronizations == null) {
 			throw new IllegalStateException("Cannot deactivate transaction synchronization - not active");
 		}
 		logger.debug("Clearing transaction synchronization");
-		synchronizations.set(null);
+		context.setSynchronizations(null);
+	}
+
+
+	/**
+	 * Resources and synchronizations of a thread. Resources are kept in small
+	 * parallel arrays, as there are typically just one or two per transaction;
+	 * synchronizations in an array that gets replaced on each registration.
+	 */
+	private static class TransactionContext {
+
+		private Object[] resourceKeys = new Object[4];
+
+		private Object[] resourceValues = new Object[4];
+
+		private int resourceCount = 0;
+
+		/** null if synchronization is not active */
+		private TransactionSynchronization[] synchronizations;
+
+		/** Unmodifiable List view of the current synchronizations array */
+		private List synchronizationList;
+
+		private int indexOfResource(Object key) {
+			for (int i = 0; i < this.resourceCount; i++) {
+				Object candidate = this.resourceKeys[i];
+				if (candidate == key || (key != null && key.equals(candidate))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private void addResource(Object key, Object value) {
+			if (this.resourceCount == this.resourceKeys.length) {
+				Object[] newKeys = new Object[this.resourceCount * 2];
+				Object[] newValues = new Object[this.resourceCount * 2];
+				System.arraycopy(this.resourceKeys, 0, newKeys, 0, this.resourceCount);
+				System.arraycopy(this.resourceValues, 0, newValues, 0, this.resourceCount);
+				this.resourceKeys = newKeys;
+				this.resourceValues = newValues;
+			}
+			this.resourceKeys[this.resourceCount] = key;
+			this.resourceValues[this.resourceCount] = value;
+			this.resourceCount++;
+		}
+
+		private Object removeResource(int index) {
+			Object value = this.resourceValues[index];
+			int moved = this.resourceCount - index - 1;
+			System.arraycopy(this.resourceKeys, index + 1, this.resourceKeys, index, moved);
+			System.arraycopy(this.resourceValues, index + 1, this.resourceValues, index, moved);
+			this.resourceCount--;
+			// release references for garbage collection
+			this.resourceKeys[this.resourceCount] = null;
+			this.resourceValues[this.resourceCount] = null;
+			return value;
+		}
+
+		private void setSynchronizations(TransactionSynchronization[] synchronizations) {
+			this.synchronizations = synchronizations;
+			if (synchronizations == null) {
+				this.synchronizationList = null;
+			}
+			else if (synchronizations.length == 0) {
+				// no allocation on initialization of each transaction's synchronization
+				this.synchronizationList = Collections.EMPTY_LIST;
+			}
+			else {
+				this.synchronizationList = Collections.unmodifiableList(Arrays.asList(synchronizations));
+			}
+		}
 	}
 
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled representation of an Ant-style path pattern, as supported by
+ * PathMatcher. The pattern gets split into its path segments once, with each
+ * segment compiled into a matcher for its kind: literal, "*", prefix like
+ * "test*", suffix like "*.html", "**", or general pattern with '*' and '?'.
+ *
+ * <p>Matching a path does not create any objects: The path segments are
+ * determined by index while walking the path, with "**" segments handled
+ * through backtracking to the last "**" seen.
+ *
+ * <p>Instances are immutable and thus thread-safe. Use
+ * <code>PathMatcher.compile</code> to obtain cached instances
+ * for frequently used patterns.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see PathMatcher#compile
+ * @see PathMatcher#match
+ */
+public final class AntPathPattern {
+
+	private static final int LITERAL = 0;
+
+	private static final int ANY = 1;
+
+	private static final int PREFIX = 2;
+
+	private static final int SUFFIX = 3;
+
+	private static final int WILDCARD = 4;
+
+	private static final int DOUBLE_WILDCARD = 5;
+
+
+	private final String pattern;
+
+	private final boolean absolute;
+
+	private final int[] types;
+
+	/** Literal text for LITERAL, PREFIX and SUFFIX segments, full segment else */
+	private final String[] texts;
+
+
+	/**
+	 * Compile the given Ant-style path pattern.
+	 * @param pattern the pattern to compile
+	 */
+	public AntPathPattern(String pattern) {
+		this.pattern = pattern;
+		this.absolute = pattern.startsWith("/");
+		List segments = new ArrayList();
+		int pos = 0;
+		while ((pos = skipSlashes(pattern, pos)) < pattern.length()) {
+			int end = segmentEnd(pattern, pos);
+			segments.add(pattern.substring(pos, end));
+			pos = end;
+		}
+		this.types = new int[segments.size()];
+		this.texts = new String[segments.size()];
+		for (int i = 0; i < segments.size(); i++) {
+			String segment = (String) segments.get(i);
+			this.types[i] = getSegmentType(segment);
+			if (this.types[i] == PREFIX) {
+				this.texts[i] = segment.substring(0, segment.length() - 1);
+			}
+			else if (this.types[i] == SUFFIX) {
+				this.texts[i] = segment.substring(1);
+			}
+			else {
+				this.texts[i] = segment;
+			}
+		}
+	}
+
+	private static int getSegmentType(String segment) {
+		if (segment.equals("**")) {
+			return DOUBLE_WILDCARD;
+		}
+		if (segment.equals("*")) {
+			return ANY;
+		}
+		if (segment.indexOf('?') == -1) {
+			int starIndex = segment.indexOf('*');
+			if (starIndex == -1) {
+				return LITERAL;
+			}
+			if (starIndex == segment.length() - 1) {
+				return PREFIX;
+			}
+			if (starIndex == 0 && segment.indexOf('*', 1) == -1) {
+				return SUFFIX;
+			}
+		}
+		return WILDCARD;
+	}
+
+	/**
+	 * Return the original pattern String.
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Match the given path against this pattern.
+	 * @param path the path to test
+	 * @return whether the path matches this pattern
+	 */
+	public boolean matches(String path) {
+		if (path.startsWith("/") != this.absolute) {
+			return false;
+		}
+		int segmentCount = this.types.length;
+		int segIdx = 0;
+		int pos = skipSlashes(path, 0);
+		// position of the last "**" in the pattern and the path position it started at
+		int starSegIdx = -1;
+		int starPos = 0;
+		while (pos < path.length()) {
+			if (segIdx < segmentCount && this.types[segIdx] == DOUBLE_WILDCARD) {
+				starSegIdx = segIdx++;
+				starPos = pos;
+				continue;
+			}
+			int end = segmentEnd(path, pos);
+			if (segIdx < segmentCount && matchSegment(segIdx, path, pos, end)) {
+				segIdx++;
+				pos = skipSlashes(path, end);
+			}
+			else if (starSegIdx != -1) {
+				// let the last "**" consume one more path segment
+				segIdx = starSegIdx + 1;
+				starPos = skipSlashes(path, segmentEnd(path, starPos));
+				pos = starPos;
+			}
+			else {
+				return false;
+			}
+		}
+		// path exhausted: only match if the rest of the pattern is **'s
+		while (segIdx < segmentCount && this.types[segIdx] == DOUBLE_WILDCARD) {
+			segIdx++;
+		}
+		return (segIdx == segmentCount);
+	}
+
+	private boolean matchSegment(int segIdx, String path, int start, int end) {
+		String text = this.texts[segIdx];
+		switch (this.types[segIdx]) {
+			case LITERAL:
+				return (end - start == text.length() && path.regionMatches(start, text, 0, text.length()));
+			case ANY:
+				return true;
+			case PREFIX:
+				return (end - start >= text.length() && path.regionMatches(start, text, 0, text.length()));
+			case SUFFIX:
+				return (end - start >= text.length() &&
+						path.regionMatches(end - text.length(), text, 0, text.length()));
+			default:
+				return matchSegment(text, path, start, end);
+		}
+	}
+
+	public boolean equals(Object other) {
+		return (this == other ||
+				(other instanceof AntPathPattern && this.pattern.equals(((AntPathPattern) other).pattern)));
+	}
+
+	public int hashCode() {
+		return this.pattern.hashCode();
+	}
+
+	public String toString() {
+		return this.pattern;
+	}
+
+
+	/**
+	 * Match the given region of the given string against the given segment
+	 * pattern, which may contain '*' (zero or more characters) and '?'
+	 * (exactly one character). Does not treat '/' specially.
+	 * <p>Useful for path lookup structures that determine
+	 * path segments by index themselves.
+	 * @param pattern the segment pattern
+	 * @param str the string containing the region to test
+	 * @param start the start index of the region (inclusive)
+	 * @param end the end index of the region (exclusive)
+	 * @return whether the region matches the pattern
+	 */
+	public static boolean matchSegment(String pattern, String str, int start, int end) {
+		int patIdx = 0;
+		int strIdx = start;
+		int starIdx = -1;
+		int starMatchIdx = start;
+		int patLength = pattern.length();
+		while (strIdx < end) {
+			char patChar = (patIdx < patLength ? pattern.charAt(patIdx) : 0);
+			if (patIdx < patLength && patChar == '*') {
+				starIdx = patIdx++;
+				starMatchIdx = strIdx;
+			}
+			else if (patIdx < patLength && (patChar == '?' || patChar == str.charAt(strIdx))) {
+				patIdx++;
+				strIdx++;
+			}
+			else if (starIdx != -1) {
+				// let the last * consume one more character
+				patIdx = starIdx + 1;
+				strIdx = ++starMatchIdx;
+			}
+			else {
+				return false;
+			}
+		}
+		while (patIdx < patLength && pattern.charAt(patIdx) == '*') {
+			patIdx++;
+		}
+		return (patIdx == patLength);
+	}
+
+	private static int skipSlashes(String str, int pos) {
+		while (pos < str.length() && str.charAt(pos) == '/') {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static int segmentEnd(String str, int pos) {
+		int end = str.indexOf('/', pos);
+		return (end != -1 ? end : str.length());
+	}
+
+}
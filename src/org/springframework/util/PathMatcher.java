@@ -16,9 +16,9 @@
 
 package org.springframework.util;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.StringTokenizer;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
 
 /**
  * Utility for matching paths with patterns in an Ant-like way.
@@ -45,12 +45,35 @@ import java.util.StringTokenizer;
  * but also org/springframework/testing/servlet/bla.jsp and com/servlet/bla.jsp</li>
  * </ul>
  *
+ * <p>Patterns get compiled into AntPathPattern objects, which are cached
+ * for up to 1024 distinct patterns, evicting the pattern cached first when
+ * full. Matching against a compiled pattern does not create any objects.
+ *
  * @author Alef Arendsen
  * @author Juergen Hoeller
  * @since 16.07.2003
+ * @see AntPathPattern
  */
 public abstract class PathMatcher {
 
+	/**
+	 * Maximum number of compiled patterns to cache. When exceeded, the
+	 * pattern that has been cached first gets evicted, to avoid unbounded
+	 * growth in case of dynamically built patterns.
+	 */
+	private static final int CACHE_LIMIT = 1024;
+
+	/**
+	 * Cache of AntPathPattern objects, keyed by pattern String. Never modified
+	 * once published: replaced with an extended copy on each addition, so that
+	 * it can be read without synchronization.
+	 */
+	private static volatile Map patternCache = new HashMap();
+
+	/** Cached patterns in insertion order, also serving as monitor for cache updates */
+	private static final LinkedList patternOrder = new LinkedList();
+
+
 	/**
 	 * Return if the given string represents a pattern to be matched
 	 * via this class: If not, the "match" method does not have to be
@@ -70,276 +93,33 @@ public abstract class PathMatcher {
 	 * @return whether the arguments matched
 	 */
 	public static boolean match(String pattern, String str) {
-		if (str.startsWith("/") != pattern.startsWith("/")) {
-			return false;
-		}
-
-		List patDirs = tokenizePath(pattern);
-		List strDirs = tokenizePath(str);
-
-		int patIdxStart = 0;
-		int patIdxEnd = patDirs.size() - 1;
-		int strIdxStart = 0;
-		int strIdxEnd = strDirs.size() - 1;
-
-		// match all elements up to the first **
-		while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
-			String patDir = (String) patDirs.get(patIdxStart);
-			if (patDir.equals("**")) {
-				break;
-			}
-			if (!matchStrings(patDir, (String) strDirs.get(strIdxStart))) {
-				return false;
-			}
-			patIdxStart++;
-			strIdxStart++;
-		}
-
-		if (strIdxStart > strIdxEnd) {
-			// String is exhausted, only match if rest of pattern is **'s
-			for (int i = patIdxStart; i <= patIdxEnd; i++) {
-				if (!patDirs.get(i).equals("**")) {
-					return false;
-				}
-			}
-			return true;
-		}
-		else {
-			if (patIdxStart > patIdxEnd) {
-				// String not exhausted, but pattern is. Failure.
-				return false;
-			}
-		}
-
-		// up to last '**'
-		while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
-			String patDir = (String) patDirs.get(patIdxEnd);
-			if (patDir.equals("**")) {
-				break;
-			}
-			if (!matchStrings(patDir, (String) strDirs.get(strIdxEnd))) {
-				return false;
-			}
-			patIdxEnd--;
-			strIdxEnd--;
-		}
-		if (strIdxStart > strIdxEnd) {
-			// String is exhausted
-			for (int i = patIdxStart; i <= patIdxEnd; i++) {
-				if (!patDirs.get(i).equals("**")) {
-					return false;
-				}
-			}
-			return true;
-		}
-
-		while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
-			int patIdxTmp = -1;
-			for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
-				if (patDirs.get(i).equals("**")) {
-					patIdxTmp = i;
-					break;
-				}
-			}
-			if (patIdxTmp == patIdxStart + 1) {
-				// '**/**' situation, so skip one
-				patIdxStart++;
-				continue;
-			}
-			// Find the pattern between padIdxStart & padIdxTmp in str between
-			// strIdxStart & strIdxEnd
-			int patLength = (patIdxTmp - patIdxStart - 1);
-			int strLength = (strIdxEnd - strIdxStart + 1);
-			int foundIdx = -1;
-			strLoop:
-			    for (int i = 0; i <= strLength - patLength; i++) {
-				    for (int j = 0; j < patLength; j++) {
-					    String subPat = (String) patDirs.get(patIdxStart + j + 1);
-					    String subStr = (String) strDirs.get(strIdxStart + i + j);
-					    if (!matchStrings(subPat, subStr)) {
-						    continue strLoop;
-					    }
-				    }
-
-				    foundIdx = strIdxStart + i;
-				    break;
-			    }
-
-			if (foundIdx == -1) {
-				return false;
-			}
-
-			patIdxStart = patIdxTmp;
-			strIdxStart = foundIdx + patLength;
-		}
-
-		for (int i = patIdxStart; i <= patIdxEnd; i++) {
-			if (!patDirs.get(i).equals("**")) {
-				return false;
-			}
-		}
-
-		return true;
+		return compile(pattern).matches(str);
 	}
 
-
 	/**
-	 * Tests whether or not a string matches against a pattern.
-	 * The pattern may contain two special characters:<br>
-	 * '*' means zero or more characters<br>
-	 * '?' means one and only one character
-	 * @param pattern pattern to match against.
-	 * Must not be <code>null</code>.
-	 * @param str string which must be matched against the pattern.
-	 * Must not be <code>null</code>.
-	 * @return <code>true</code> if the string matches against the
-	 * pattern, or <code>false</code> otherwise.
+	 * Return the compiled form of the given pattern, from the cache if
+	 * compiled before. Callers that match against the same pattern
+	 * many times may also hold on to the returned object themselves.
+	 * @param pattern the pattern to compile
+	 * @return the compiled pattern
 	 */
-	private static boolean matchStrings(String pattern, String str) {
-		char[] patArr = pattern.toCharArray();
-		char[] strArr = str.toCharArray();
-		int patIdxStart = 0;
-		int patIdxEnd = patArr.length - 1;
-		int strIdxStart = 0;
-		int strIdxEnd = strArr.length - 1;
-		char ch;
-
-		boolean containsStar = false;
-		for (int i = 0; i < patArr.length; i++) {
-			if (patArr[i] == '*') {
-				containsStar = true;
-				break;
-			}
-		}
-
-		if (!containsStar) {
-			// No '*'s, so we make a shortcut
-			if (patIdxEnd != strIdxEnd) {
-				return false; // Pattern and string do not have the same size
-			}
-			for (int i = 0; i <= patIdxEnd; i++) {
-				ch = patArr[i];
-				if (ch != '?') {
-					if (ch != strArr[i]) {
-						return false;// Character mismatch
-					}
-				}
-			}
-			return true; // String matches against pattern
-		}
-
-
-		if (patIdxEnd == 0) {
-			return true; // Pattern contains only '*', which matches anything
-		}
-
-		// Process characters before first star
-		while ((ch = patArr[patIdxStart]) != '*' && strIdxStart <= strIdxEnd) {
-			if (ch != '?') {
-				if (ch != strArr[strIdxStart]) {
-					return false;// Character mismatch
-				}
-			}
-			patIdxStart++;
-			strIdxStart++;
-		}
-		if (strIdxStart > strIdxEnd) {
-			// All characters in the string are used. Check if only '*'s are
-			// left in the pattern. If so, we succeeded. Otherwise failure.
-			for (int i = patIdxStart; i <= patIdxEnd; i++) {
-				if (patArr[i] != '*') {
-					return false;
-				}
-			}
-			return true;
-		}
-
-		// Process characters after last star
-		while ((ch = patArr[patIdxEnd]) != '*' && strIdxStart <= strIdxEnd) {
-			if (ch != '?') {
-				if (ch != strArr[strIdxEnd]) {
-					return false;// Character mismatch
-				}
-			}
-			patIdxEnd--;
-			strIdxEnd--;
-		}
-		if (strIdxStart > strIdxEnd) {
-			// All characters in the string are used. Check if only '*'s are
-			// left in the pattern. If so, we succeeded. Otherwise failure.
-			for (int i = patIdxStart; i <= patIdxEnd; i++) {
-				if (patArr[i] != '*') {
-					return false;
-				}
-			}
-			return true;
-		}
-
-		// process pattern between stars. padIdxStart and patIdxEnd point
-		// always to a '*'.
-		while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
-			int patIdxTmp = -1;
-			for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
-				if (patArr[i] == '*') {
-					patIdxTmp = i;
-					break;
-				}
-			}
-			if (patIdxTmp == patIdxStart + 1) {
-				// Two stars next to each other, skip the first one.
-				patIdxStart++;
-				continue;
-			}
-			// Find the pattern between padIdxStart & padIdxTmp in str between
-			// strIdxStart & strIdxEnd
-			int patLength = (patIdxTmp - patIdxStart - 1);
-			int strLength = (strIdxEnd - strIdxStart + 1);
-			int foundIdx = -1;
-			strLoop:
-			for (int i = 0; i <= strLength - patLength; i++) {
-				for (int j = 0; j < patLength; j++) {
-					ch = patArr[patIdxStart + j + 1];
-					if (ch != '?') {
-						if (ch != strArr[strIdxStart + i + j]) {
-							continue strLoop;
-						}
+	public static AntPathPattern compile(String pattern) {
+		AntPathPattern compiled = (AntPathPattern) patternCache.get(pattern);
+		if (compiled == null) {
+			compiled = new AntPathPattern(pattern);
+			synchronized (patternOrder) {
+				if (!patternCache.containsKey(pattern)) {
+					Map newCache = new HashMap(patternCache);
+					if (patternOrder.size() >= CACHE_LIMIT) {
+						newCache.remove(patternOrder.removeFirst());
 					}
+					newCache.put(pattern, compiled);
+					patternOrder.add(pattern);
+					patternCache = newCache;
 				}
-
-				foundIdx = strIdxStart + i;
-				break;
 			}
-
-			if (foundIdx == -1) {
-				return false;
-			}
-
-			patIdxStart = patIdxTmp;
-			strIdxStart = foundIdx + patLength;
-		}
-
-		// All characters in the string are used. Check if only '*'s are left
-		// in the pattern. If so, we succeeded. Otherwise failure.
-		for (int i = patIdxStart; i <= patIdxEnd; i++) {
-			if (patArr[i] != '*') {
-				return false;
-			}
-		}
-		return true;
-	}
-
-	/**
-	 * Break up a given path in a List of elements.
-	 * @param path Path to tokenize. Must not be <code>null</code>.
-	 * @return a List of path elements from the tokenized path
-	 */
-	private static List tokenizePath(String path) {
-		List ret = new ArrayList();
-		StringTokenizer st = new StringTokenizer(path, "/");
-		while (st.hasMoreTokens()) {
-			ret.add(st.nextToken());
 		}
-		return ret;
+		return compiled;
 	}
 
 }
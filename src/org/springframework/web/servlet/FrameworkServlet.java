@@ -27,7 +27,9 @@ import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContextException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.AsyncEventPublisher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.context.ConfigurableWebApplicationContext;
 import org.springframework.web.context.WebApplicationContext;
@@ -63,6 +65,11 @@ import org.springframework.web.util.WebUtils;
  * If not explicitly specified, the context implementation is supposed to build a
  * default location from the namespace of the servlet.
  *
+ * <p>RequestHandledEvents are published on the request thread by default, so
+ * that slow event listeners add to request latency. Set "publishEventsAsynchronously"
+ * to hand them to a background thread instead, which publishes them in batches;
+ * "eventBufferCapacity" and "eventOverflowPolicy" control the event buffer.
+ *
  * <p>Note: In case of multiple config locations, later bean definitions will
  * override ones defined in earlier loaded files, at least when using one of
  * Spring's default ApplicationContext implementations. This can be leveraged
@@ -80,6 +87,7 @@ import org.springframework.web.util.WebUtils;
  * @see #setContextClass
  * @see #setContextConfigLocation
  * @see #setNamespace
+ * @see #setPublishEventsAsynchronously
  */
 public abstract class FrameworkServlet extends HttpServletBean {
 
@@ -115,9 +123,21 @@ public abstract class FrameworkServlet extends HttpServletBean {
 	/** Should we publish the context as a ServletContext attribute? */
 	private boolean publishContext = true;
 
+	/** Should we publish RequestHandledEvents on a background thread? */
+	private boolean publishEventsAsynchronously = false;
+
+	/** Maximum number of RequestHandledEvents to buffer for the background thread */
+	private int eventBufferCapacity = AsyncEventPublisher.DEFAULT_CAPACITY;
+
+	/** Name of the AsyncEventPublisher overflow policy constant */
+	private String eventOverflowPolicy;
+
 	/** WebApplicationContext for this servlet */
 	private WebApplicationContext webApplicationContext;
 
+	/** Publisher for RequestHandledEvents, if asynchronous */
+	private AsyncEventPublisher asyncEventPublisher;
+
 
 	/**
 	 * Set a custom context class. This class must be of type WebApplicationContext;
@@ -185,6 +205,66 @@ public abstract class FrameworkServlet extends HttpServletBean {
 		return publishContext;
 	}
 
+	/**
+	 * Set whether to publish a RequestHandledEvent for each request on a
+	 * background thread, so that event listeners do not add to request latency.
+	 * Default is false, publishing the events on the request thread.
+	 * <p>Events are buffered until the background thread publishes them,
+	 * in batches and in request completion order. Listeners that aggregate
+	 * statistics, like PerformanceMonitorListener, thus do their work
+	 * off the request path.
+	 * @see #setEventBufferCapacity
+	 * @see #setEventOverflowPolicy
+	 * @see org.springframework.context.event.AsyncEventPublisher
+	 * @see org.springframework.web.context.support.PerformanceMonitorListener
+	 */
+	public void setPublishEventsAsynchronously(boolean publishEventsAsynchronously) {
+		this.publishEventsAsynchronously = publishEventsAsynchronously;
+	}
+
+	/**
+	 * Return whether to publish RequestHandledEvents on a background thread.
+	 */
+	public boolean isPublishEventsAsynchronously() {
+		return publishEventsAsynchronously;
+	}
+
+	/**
+	 * Set the maximum number of RequestHandledEvents to buffer for asynchronous
+	 * publication. Default is 1024.
+	 * @see #setPublishEventsAsynchronously
+	 */
+	public void setEventBufferCapacity(int eventBufferCapacity) {
+		this.eventBufferCapacity = eventBufferCapacity;
+	}
+
+	/**
+	 * Return the maximum number of RequestHandledEvents to buffer
+	 * for asynchronous publication.
+	 */
+	public int getEventBufferCapacity() {
+		return eventBufferCapacity;
+	}
+
+	/**
+	 * Set the policy to apply when the event buffer is full, as name of an
+	 * overflow policy constant in AsyncEventPublisher: "OVERFLOW_DISCARD_NEWEST"
+	 * (the default), "OVERFLOW_DISCARD_OLDEST" or "OVERFLOW_CALLER_RUNS".
+	 * @see #setPublishEventsAsynchronously
+	 * @see org.springframework.context.event.AsyncEventPublisher#setOverflowPolicyName
+	 */
+	public void setEventOverflowPolicy(String eventOverflowPolicy) {
+		this.eventOverflowPolicy = eventOverflowPolicy;
+	}
+
+	/**
+	 * Return the name of the policy to apply when the event buffer is full,
+	 * or null for the AsyncEventPublisher default.
+	 */
+	public String getEventOverflowPolicy() {
+		return eventOverflowPolicy;
+	}
+
 
 	/**
 	 * Overridden method of HttpServletBean, invoked after any bean properties
@@ -198,6 +278,9 @@ public abstract class FrameworkServlet extends HttpServletBean {
 
 		try {
 			this.webApplicationContext = initWebApplicationContext();
+			if (this.publishEventsAsynchronously) {
+				this.asyncEventPublisher = createAsyncEventPublisher(this.webApplicationContext);
+			}
 			initFrameworkServlet();
 		}
 		catch (ServletException ex) {
@@ -283,6 +366,25 @@ public abstract class FrameworkServlet extends HttpServletBean {
 		return wac;
 	}
 
+	/**
+	 * Create the publisher for asynchronous publication of RequestHandledEvents,
+	 * and start its background thread.
+	 * @param wac the WebApplicationContext to publish the events to
+	 * @return the AsyncEventPublisher instance
+	 * @see #setPublishEventsAsynchronously
+	 */
+	protected AsyncEventPublisher createAsyncEventPublisher(WebApplicationContext wac) {
+		AsyncEventPublisher publisher = new AsyncEventPublisher();
+		publisher.setTargetPublisher(wac);
+		publisher.setCapacity(this.eventBufferCapacity);
+		if (this.eventOverflowPolicy != null) {
+			publisher.setOverflowPolicyName(this.eventOverflowPolicy);
+		}
+		publisher.setThreadName("RequestHandledEvent publisher for servlet '" + getServletName() + "'");
+		publisher.afterPropertiesSet();
+		return publisher;
+	}
+
 	/**
 	 * Return the ServletContext attribute name for this servlet's
 	 * WebApplicationContext.
@@ -345,7 +447,9 @@ public abstract class FrameworkServlet extends HttpServletBean {
 				logger.debug("Successfully completed request");
 			}
 			// whether or not we succeeded, publish an event
-			this.webApplicationContext.publishEvent(
+			ApplicationEventPublisher eventPublisher = (this.asyncEventPublisher != null ?
+					(ApplicationEventPublisher) this.asyncEventPublisher : this.webApplicationContext);
+			eventPublisher.publishEvent(
 					new RequestHandledEvent(this, request.getRequestURI(), processingTime, request.getRemoteAddr(),
 																	request.getMethod(), getServletConfig().getServletName(),
 																	WebUtils.getSessionId(request), getUsernameForRequest(request),
@@ -379,10 +483,14 @@ public abstract class FrameworkServlet extends HttpServletBean {
 
 
 	/**
-	 * Close the WebApplicationContext of this servlet.
+	 * Publish buffered RequestHandledEvents, if any,
+	 * and close the WebApplicationContext of this servlet.
 	 * @see org.springframework.context.ConfigurableApplicationContext#close
 	 */
 	public void destroy() {
+		if (this.asyncEventPublisher != null) {
+			this.asyncEventPublisher.destroy();
+		}
 		getServletContext().log("Closing WebApplicationContext of servlet '" + getServletName() + "'");
 		if (this.webApplicationContext instanceof ConfigurableApplicationContext) {
 			((ConfigurableApplicationContext) this.webApplicationContext).close();
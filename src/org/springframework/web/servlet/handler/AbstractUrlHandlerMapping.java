@@ -17,14 +17,12 @@
 package org.springframework.web.servlet.handler;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContextException;
-import org.springframework.util.PathMatcher;
 import org.springframework.web.util.UrlPathHelper;
 
 /**
@@ -38,6 +36,12 @@ import org.springframework.web.util.UrlPathHelper;
  * "/test" directory, "/test/**" matches all paths below "/test".
  * For details, see the PathMatcher class.
  *
+ * <p>If several patterns match, the most specific one wins: the one with the
+ * longest run of literal path segments from the left, e.g. "/test/view/*"
+ * wins over "/test/&#42;&#42;" and "/test/*&#47;*" for "/test/view/1". Patterns
+ * get compiled into a segment trie on registration, so that lookup cost
+ * depends on the length of the path rather than the number of patterns.
+ *
  * @author Juergen Hoeller
  * @since 16.04.2003
  * @see #setAlwaysUseFullPath
@@ -52,6 +56,8 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
 
 	private final Map handlerMap = new HashMap();
 
+	private final UrlPathTrie handlerTrie = new UrlPathTrie();
+
 
 	/**
 	 * Set if URL lookup should always use full path within current servlet
@@ -122,6 +128,7 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
 	 * <p>Supports direct matches, e.g. a registered "/test" matches "/test",
 	 * and various Ant-style pattern matches, e.g. a registered "/t*" matches
 	 * both "/test" and "/team". For details, see the PathMatcher class.
+	 * <p>If several patterns match, the most specific one wins.
 	 * @param urlPath URL the bean is mapped to
 	 * @return the associated handler instance, or null if not found
 	 * @see org.springframework.util.PathMatcher
@@ -131,12 +138,7 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
 		Object handler = this.handlerMap.get(urlPath);
 		if (handler == null) {
 			// pattern match?
-			for (Iterator it = this.handlerMap.keySet().iterator(); it.hasNext();) {
-				String registeredPath = (String) it.next();
-				if (PathMatcher.match(registeredPath, urlPath)) {
-					handler = this.handlerMap.get(registeredPath);
-				}
-			}
+			handler = this.handlerTrie.lookup(urlPath);
 		}
 		return handler;
 	}
@@ -167,6 +169,10 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping {
 		}
 		else {
 			this.handlerMap.put(urlPath, handler);
+			if (!this.handlerTrie.add(urlPath, handler)) {
+				logger.warn("URL path [" + urlPath + "] only differs in slashes from an already mapped path - " +
+						"will only be used for exact matches");
+			}
 			if (logger.isInfoEnabled()) {
 				logger.info("Mapped URL path [" + urlPath + "] onto handler [" + handler + "]");
 			}
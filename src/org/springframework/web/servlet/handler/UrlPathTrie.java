@@ -0,0 +1,373 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.handler;
+
+import org.springframework.util.AntPathPattern;
+
+/**
+ * Segment trie of Ant-style URL path patterns, for looking up the value
+ * registered for the most specific pattern that matches a given path.
+ * Matching follows the semantics of PathMatcher, but each pattern is split
+ * into its path segments only once, on registration.
+ *
+ * <p>Patterns sharing a prefix share trie nodes. Each node has literal children,
+ * found via hash lookup on the path segment, wildcard children for segments
+ * containing '*' or '?', and at most one '**' child. A lookup walks the path
+ * once from left to right without creating substrings, trying literal children
+ * first, then wildcard children, then '**'; the first complete match wins.
+ * Hence the most specific pattern is the one with the longest run of literal
+ * segments from the left, e.g. "/shop/cart/*" wins over "/shop/&#42;&#42;" and
+ * "/shop/*&#47;view" for "/shop/cart/view". Among wildcard segments, the one
+ * with more literal characters wins, e.g. "*.html" wins over "*".
+ *
+ * <p>A lookup remembers, for each '**' node, the path position from which
+ * on its subtree did not match. A '**' node never tries a remaining path
+ * position twice within a lookup, hence patterns with several '**'
+ * segments do not cause backtracking over all ways of splitting the path.
+ *
+ * <p>Not thread-safe for registration: Patterns are supposed to be added
+ * on initialization, with concurrent lookups only happening afterwards.
+ *
+ * @author agent
+ * @since 1.1.2
+ * @see org.springframework.util.PathMatcher
+ * @see org.springframework.util.AntPathPattern
+ * @see AbstractUrlHandlerMapping#lookupHandler
+ */
+final class UrlPathTrie {
+
+	private static final String DOUBLE_WILDCARD = "**";
+
+	/** Root node for patterns that start with a slash */
+	private final Node absoluteRoot = new Node();
+
+	/** Root node for patterns that do not start with a slash */
+	private final Node relativeRoot = new Node();
+
+	private int size = 0;
+
+	/** Number of '**' nodes, for the per-lookup match state */
+	private int doubleWildcardCount = 0;
+
+
+	/**
+	 * Register the given value for the given path pattern.
+	 * <p>Patterns that only differ in duplicate or trailing slashes, like "/test"
+	 * and "/test/", are equivalent, as PathMatcher ignores empty path segments.
+	 * The first registration wins for such patterns.
+	 * @param pattern the Ant-style path pattern
+	 * @param value the value to register
+	 * @return whether the value has been registered, or an equivalent
+	 * pattern had been registered before
+	 */
+	public boolean add(String pattern, Object value) {
+		Node node = (pattern.startsWith("/") ? this.absoluteRoot : this.relativeRoot);
+		int pos = 0;
+		while ((pos = skipSlashes(pattern, pos)) < pattern.length()) {
+			int end = segmentEnd(pattern, pos);
+			node = node.getOrCreateChild(pattern.substring(pos, end));
+			if (node.doubleWildcardIndex == Node.NOT_INDEXED && node.segment.equals(DOUBLE_WILDCARD)) {
+				node.doubleWildcardIndex = this.doubleWildcardCount++;
+			}
+			pos = end;
+		}
+		if (node.pattern != null) {
+			return false;
+		}
+		node.pattern = pattern;
+		node.value = value;
+		this.size++;
+		return true;
+	}
+
+	/**
+	 * Look up the value registered for the most specific pattern
+	 * that matches the given path.
+	 * @param path the path to match
+	 * @return the value, or null if no pattern matches
+	 */
+	public Object lookup(String path) {
+		Node node = lookupNode(path);
+		return (node != null ? node.value : null);
+	}
+
+	/**
+	 * Return the most specific pattern that matches the given path.
+	 * @param path the path to match
+	 * @return the pattern, or null if no pattern matches
+	 */
+	public String lookupPattern(String path) {
+		Node node = lookupNode(path);
+		return (node != null ? node.pattern : null);
+	}
+
+	/**
+	 * Return the number of registered patterns.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private Node lookupNode(String path) {
+		Node root = (path.startsWith("/") ? this.absoluteRoot : this.relativeRoot);
+		return match(root, path, 0, new int[this.doubleWildcardCount]);
+	}
+
+
+	/**
+	 * Match the remainder of the given path, starting at the given position,
+	 * against the subtree of the given node.
+	 * @param failedFrom for each '**' node, 1 + the lowest path position from
+	 * which on its subtree is known not to match, or 0 if not known yet
+	 * @return the node of the most specific matching pattern, or null if none
+	 */
+	private static Node match(Node node, String path, int pos, int[] failedFrom) {
+		int start = skipSlashes(path, pos);
+		if (start == path.length()) {
+			// path exhausted: only match if the rest of the pattern is **'s
+			while (node != null && node.pattern == null) {
+				node = node.doubleWildcardChild;
+			}
+			return node;
+		}
+		int end = segmentEnd(path, start);
+
+		Node child = node.getLiteralChild(path, start, end);
+		if (child != null) {
+			Node result = match(child, path, end, failedFrom);
+			if (result != null) {
+				return result;
+			}
+		}
+
+		for (int i = 0; i < node.wildcardChildren.length; i++) {
+			child = node.wildcardChildren[i];
+			if (AntPathPattern.matchSegment(child.segment, path, start, end)) {
+				Node result = match(child, path, end, failedFrom);
+				if (result != null) {
+					return result;
+				}
+			}
+		}
+
+		child = node.doubleWildcardChild;
+		if (child != null) {
+			// let ** consume as few segments as possible,
+			// up to the position from which on it failed before
+			int failedStart = failedFrom[child.doubleWildcardIndex] - 1;
+			if (failedStart == -1 || start < failedStart) {
+				int segmentStart = start;
+				while (failedStart == -1 || segmentStart < failedStart) {
+					Node result = match(child, path, segmentStart, failedFrom);
+					if (result != null) {
+						return result;
+					}
+					if (segmentStart == path.length()) {
+						break;
+					}
+					segmentStart = skipSlashes(path, segmentEnd(path, segmentStart));
+				}
+				failedFrom[child.doubleWildcardIndex] = start + 1;
+			}
+		}
+		return null;
+	}
+
+	private static int skipSlashes(String str, int pos) {
+		while (pos < str.length() && str.charAt(pos) == '/') {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static int segmentEnd(String str, int pos) {
+		int end = str.indexOf('/', pos);
+		return (end != -1 ? end : str.length());
+	}
+
+	/**
+	 * Compute the String hash code of the given region of the given string.
+	 */
+	private static int regionHashCode(String str, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + str.charAt(i);
+		}
+		return hash;
+	}
+
+
+	/**
+	 * Trie node, representing a pattern segment.
+	 */
+	private static class Node {
+
+		private static final Node[] NO_NODES = new Node[0];
+
+		private static final int NOT_INDEXED = -1;
+
+		/** Pattern segment that this node represents, null for a root node */
+		private final String segment;
+
+		/** Specificity of the segment, for wildcard segments */
+		private final int literalCount;
+
+		/** Pattern ending at this node, if any */
+		private String pattern;
+
+		/** Value registered for the pattern ending at this node */
+		private Object value;
+
+		/** Open-addressing hash table of literal children, keyed by segment */
+		private Node[] literalChildren = NO_NODES;
+
+		private int literalChildCount = 0;
+
+		/** Wildcard children, sorted by specificity */
+		private Node[] wildcardChildren = NO_NODES;
+
+		private Node doubleWildcardChild;
+
+		/** Index of this '**' node in the per-lookup match state */
+		private int doubleWildcardIndex = NOT_INDEXED;
+
+		private Node() {
+			this(null);
+		}
+
+		private Node(String segment) {
+			this.segment = segment;
+			int literalCount = 0;
+			for (int i = 0; segment != null && i < segment.length(); i++) {
+				char c = segment.charAt(i);
+				if (c != '*' && c != '?') {
+					literalCount++;
+				}
+			}
+			this.literalCount = literalCount;
+		}
+
+		private boolean isWildcard() {
+			return (this.segment.indexOf('*') != -1 || this.segment.indexOf('?') != -1);
+		}
+
+		private Node getOrCreateChild(String segment) {
+			if (segment.equals(DOUBLE_WILDCARD)) {
+				if (this.doubleWildcardChild == null) {
+					this.doubleWildcardChild = new Node(segment);
+				}
+				return this.doubleWildcardChild;
+			}
+			Node child = new Node(segment);
+			if (child.isWildcard()) {
+				for (int i = 0; i < this.wildcardChildren.length; i++) {
+					if (this.wildcardChildren[i].segment.equals(segment)) {
+						return this.wildcardChildren[i];
+					}
+				}
+				addWildcardChild(child);
+				return child;
+			}
+			Node existing = getLiteralChild(segment, 0, segment.length());
+			if (existing != null) {
+				return existing;
+			}
+			addLiteralChild(child);
+			return child;
+		}
+
+		private Node getLiteralChild(String path, int start, int end) {
+			if (this.literalChildCount == 0) {
+				return null;
+			}
+			int length = end - start;
+			int mask = this.literalChildren.length - 1;
+			int index = regionHashCode(path, start, end) & mask;
+			Node child;
+			while ((child = this.literalChildren[index]) != null) {
+				if (child.segment.length() == length && path.regionMatches(start, child.segment, 0, length)) {
+					return child;
+				}
+				index = (index + 1) & mask;
+			}
+			return null;
+		}
+
+		private void addLiteralChild(Node child) {
+			// keep the table at most half full
+			if ((this.literalChildCount + 1) * 2 > this.literalChildren.length) {
+				Node[] oldChildren = this.literalChildren;
+				this.literalChildren = new Node[Math.max(4, oldChildren.length * 2)];
+				for (int i = 0; i < oldChildren.length; i++) {
+					if (oldChildren[i] != null) {
+						insertLiteralChild(oldChildren[i]);
+					}
+				}
+			}
+			insertLiteralChild(child);
+			this.literalChildCount++;
+		}
+
+		private void insertLiteralChild(Node child) {
+			int mask = this.literalChildren.length - 1;
+			int index = child.segment.hashCode() & mask;
+			while (this.literalChildren[index] != null) {
+				index = (index + 1) & mask;
+			}
+			this.literalChildren[index] = child;
+		}
+
+		private void addWildcardChild(Node child) {
+			Node[] newChildren = new Node[this.wildcardChildren.length + 1];
+			int index = 0;
+			while (index < this.wildcardChildren.length && this.wildcardChildren[index].compareTo(child) <= 0) {
+				index++;
+			}
+			System.arraycopy(this.wildcardChildren, 0, newChildren, 0, index);
+			newChildren[index] = child;
+			System.arraycopy(this.wildcardChildren, index, newChildren, index + 1, this.wildcardChildren.length - index);
+			this.wildcardChildren = newChildren;
+		}
+
+		/**
+		 * Compare wildcard segments by specificity: more literal characters first,
+		 * then fewer '*' characters, then alphabetically for determinism.
+		 */
+		private int compareTo(Node other) {
+			if (this.literalCount != other.literalCount) {
+				return (this.literalCount > other.literalCount ? -1 : 1);
+			}
+			int starCount = countStars(this.segment);
+			int otherStarCount = countStars(other.segment);
+			if (starCount != otherStarCount) {
+				return (starCount < otherStarCount ? -1 : 1);
+			}
+			return this.segment.compareTo(other.segment);
+		}
+
+		private static int countStars(String segment) {
+			int count = 0;
+			for (int i = 0; i < segment.length(); i++) {
+				if (segment.charAt(i) == '*') {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+}
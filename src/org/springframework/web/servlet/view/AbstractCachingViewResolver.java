@@ -16,8 +16,9 @@
 
 package org.springframework.web.servlet.view;
 
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Locale;
 import java.util.Map;
 
@@ -31,6 +32,17 @@ import org.springframework.web.servlet.ViewResolver;
  * Caches views once resolved: This means that view resolution won't be a
  * performance problem, no matter how costly initial view retrieval is.
  *
+ * <p>The cache is organized by view name first and locale second, so that
+ * lookups neither build a combined key nor acquire a lock: Cache contents
+ * never get modified once published but replaced with modified copies.
+ * Subclasses that override <code>getCacheKey</code> get their views cached
+ * by the returned key instead, as before.
+ *
+ * <p>View names that the subclass cannot resolve are cached as well, as
+ * unresolved, to avoid asking the subclass again in ViewResolver chains.
+ * Their number is limited separately, by default to 256 entries, as
+ * unresolved names may well be built dynamically.
+ *
  * <p>View retrieval is deferred to subclasses via the <code>loadView</code>
  * template method.
  *
@@ -40,12 +52,71 @@ import org.springframework.web.servlet.ViewResolver;
  */
 public abstract class AbstractCachingViewResolver extends WebApplicationObjectSupport implements ViewResolver {
 
-	/** View name --> View instance */
-	private final Map viewMap = Collections.synchronizedMap(new HashMap());
+	public static final int DEFAULT_UNRESOLVED_CACHE_LIMIT = 256;
+
+	/** Marker for view names that could not be resolved, in the cache */
+	private static final Object UNRESOLVED_VIEW = new Object();
+
+	/** Cache key for views that are not resolved for a specific locale */
+	private static final Object NO_LOCALE = new Object();
+
 
 	/** Whether we should cache views, once resolved */
 	private boolean cache = true;
 
+	/** Whether we should cache view names that could not be resolved */
+	private boolean cacheUnresolved = true;
+
+	/** Maximum number of cached views, 0 for unlimited */
+	private int cacheLimit = 0;
+
+	/** Maximum number of cached unresolved view names, 0 for unlimited */
+	private int unresolvedCacheLimit = DEFAULT_UNRESOLVED_CACHE_LIMIT;
+
+	/** Whether a subclass overrides getCacheKey, which then determines cache identity */
+	private final boolean cacheKeyOverridden;
+
+	/**
+	 * View name (or overridden cache key) --> LocaleViews. Never modified once
+	 * published: replaced with a modified copy on each change, so that it can
+	 * be read without synchronization.
+	 */
+	private volatile Map viewCache = new HashMap();
+
+	/** Cached views as view name and locale key pairs, in insertion order */
+	private final LinkedList cacheOrder = new LinkedList();
+
+	/** Cached unresolved view names as key pairs, in insertion order */
+	private final LinkedList unresolvedOrder = new LinkedList();
+
+	private final Object cacheMonitor = new Object();
+
+	private volatile long cacheHitCount = 0;
+
+	private volatile long cacheMissCount = 0;
+
+
+	public AbstractCachingViewResolver() {
+		this.cacheKeyOverridden = isCacheKeyOverridden();
+	}
+
+	/**
+	 * Determine whether a subclass overrides <code>getCacheKey</code>.
+	 */
+	private boolean isCacheKeyOverridden() {
+		Class[] paramTypes = new Class[] {String.class, Locale.class};
+		for (Class clazz = getClass(); clazz != AbstractCachingViewResolver.class; clazz = clazz.getSuperclass()) {
+			try {
+				clazz.getDeclaredMethod("getCacheKey", paramTypes);
+				return true;
+			}
+			catch (NoSuchMethodException ex) {
+				// not declared on this class: check superclass
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Enable respectively disable caching. Disable this only for debugging
 	 * and development. Default is for caching to be enabled.
@@ -64,27 +135,135 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
 		return cache;
 	}
 
+	/**
+	 * Set whether view names that could not be resolved, i.e. for which
+	 * <code>loadView</code> returned null, should be cached too, avoiding
+	 * repeated <code>loadView</code> calls for them. Default is true.
+	 * Their number is limited by the unresolved cache limit.
+	 * <p>Turn this off if this resolver may be able to resolve a view
+	 * later on that it could not resolve before.
+	 */
+	public void setCacheUnresolved(boolean cacheUnresolved) {
+		this.cacheUnresolved = cacheUnresolved;
+	}
+
+	/**
+	 * Return if view names that could not be resolved are cached.
+	 */
+	public boolean isCacheUnresolved() {
+		return cacheUnresolved;
+	}
+
+	/**
+	 * Set the maximum number of cached views, including unresolved view names.
+	 * When exceeded, the views that have been cached first are removed from the
+	 * cache. Default is 0, for an unlimited number of views.
+	 * <p>Specify a limit if view names are built dynamically, for example from
+	 * request parameters, to avoid unbounded cache growth.
+	 */
+	public void setCacheLimit(int cacheLimit) {
+		this.cacheLimit = cacheLimit;
+	}
+
+	/**
+	 * Return the maximum number of cached views, 0 for unlimited.
+	 */
+	public int getCacheLimit() {
+		return cacheLimit;
+	}
+
+	/**
+	 * Set the maximum number of cached unresolved view names. When exceeded,
+	 * the unresolved view names that have been cached first are removed from
+	 * the cache. Default is 256; 0 means an unlimited number.
+	 * @see #setCacheUnresolved
+	 */
+	public void setUnresolvedCacheLimit(int unresolvedCacheLimit) {
+		this.unresolvedCacheLimit = unresolvedCacheLimit;
+	}
+
+	/**
+	 * Return the maximum number of cached unresolved view names, 0 for unlimited.
+	 */
+	public int getUnresolvedCacheLimit() {
+		return unresolvedCacheLimit;
+	}
+
+
 	public View resolveViewName(String viewName, Locale locale) throws Exception {
 		if (!this.cache) {
 			logger.warn("View caching is SWITCHED OFF -- DEVELOPMENT SETTING ONLY: This can severely impair performance");
+			this.cacheMissCount++;
 			return loadAndConfigureView(viewName, locale);
 		}
 		else {
-			String cacheKey = getCacheKey(viewName, locale);
-			// no synchronization, as we can live with occasional double caching
-			View view = (View) this.viewMap.get(cacheKey);
-			if (view == null) {
+			Object cacheKey = getPrimaryCacheKey(viewName, locale);
+			Object localeKey = getLocaleKey(locale);
+			Object view = null;
+			LocaleViews localeViews = (LocaleViews) this.viewCache.get(cacheKey);
+			if (localeViews != null) {
+				view = localeViews.views.get(localeKey);
+			}
+			if (view != null) {
+				this.cacheHitCount++;
+			}
+			else {
+				this.cacheMissCount++;
 				// ask the subclass to load the View
+				// no synchronization, as we can live with occasional double loading
 				view = loadAndConfigureView(viewName, locale);
-				this.viewMap.put(cacheKey, view);
-				if (logger.isInfoEnabled()) {
-					logger.info("Cached view '" + cacheKey + "'");
+				if (view != null || this.cacheUnresolved) {
+					if (view == null) {
+						view = UNRESOLVED_VIEW;
+					}
+					addToCache(cacheKey, localeKey, view);
+					if (logger.isInfoEnabled()) {
+						logger.info("Cached " + (view != UNRESOLVED_VIEW ? "view" : "unresolved view") +
+								" '" + getCacheKey(viewName, locale) + "'");
+					}
+				}
+			}
+			return (view != UNRESOLVED_VIEW ? (View) view : null);
+		}
+	}
+
+	/**
+	 * Add the given view to the cache, removing the views (respectively
+	 * unresolved view names) that have been cached first if the cache limit
+	 * (respectively the unresolved cache limit) is exceeded.
+	 */
+	private void addToCache(Object cacheKey, Object localeKey, Object view) {
+		synchronized (this.cacheMonitor) {
+			LocaleViews localeViews = (LocaleViews) this.viewCache.get(cacheKey);
+			if (localeViews == null) {
+				localeViews = new LocaleViews();
+				Map newCache = new HashMap(this.viewCache);
+				newCache.put(cacheKey, localeViews);
+				this.viewCache = newCache;
+			}
+			if (!localeViews.views.containsKey(localeKey)) {
+				Map newViews = new HashMap(localeViews.views);
+				newViews.put(localeKey, view);
+				localeViews.views = newViews;
+				Object[] key = new Object[] {cacheKey, localeKey};
+				this.cacheOrder.add(key);
+				if (view == UNRESOLVED_VIEW) {
+					this.unresolvedOrder.add(key);
+					while (this.unresolvedCacheLimit > 0 && this.unresolvedOrder.size() > this.unresolvedCacheLimit) {
+						Object[] eldest = (Object[]) this.unresolvedOrder.removeFirst();
+						this.cacheOrder.remove(eldest);
+						removeFromCacheInternal(eldest[0], eldest[1]);
+					}
+				}
+				while (this.cacheLimit > 0 && this.cacheOrder.size() > this.cacheLimit) {
+					Object[] eldest = (Object[]) this.cacheOrder.removeFirst();
+					this.unresolvedOrder.remove(eldest);
+					removeFromCacheInternal(eldest[0], eldest[1]);
 				}
 			}
-			return view;
 		}
 	}
-	
+
 	/**
 	 * Provides functionality to clear the cache for a certain view.
 	 * This can be handy in case developer are able to modify views
@@ -93,24 +272,113 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
 	 */
 	public void removeFromCache(String viewName, Locale locale) {
 		if (!this.cache) {
-			logger.warn("View caching is SWITCHED OFF -- removal not necessary");			
+			logger.warn("View caching is SWITCHED OFF -- removal not necessary");
 		}
 		else {
 			String cacheKey = getCacheKey(viewName, locale);
-			if (viewMap.remove(cacheKey) == null) {
+			Object primaryKey = getPrimaryCacheKey(viewName, locale);
+			Object localeKey = getLocaleKey(locale);
+			boolean removed;
+			synchronized (this.cacheMonitor) {
+				removed = removeFromCacheInternal(primaryKey, localeKey);
+				if (removed) {
+					removeFromOrder(this.cacheOrder, primaryKey, localeKey);
+					removeFromOrder(this.unresolvedOrder, primaryKey, localeKey);
+				}
+			}
+			if (!removed) {
 				// some debug output might be useful
 				if (logger.isDebugEnabled()) {
 					logger.debug("No cached instance for view " + cacheKey + " was found");
 				}
-			} 
+			}
 			else {
 				if (logger.isDebugEnabled()) {
-					logger.debug("Cach for view " + cacheKey + " has been cleared");
+					logger.debug("Cache for view " + cacheKey + " has been cleared");
 				}
 			}
 		}
 	}
 
+	/**
+	 * Remove the key pair for the given view from the given insertion order list.
+	 * To be called with the cache monitor held.
+	 */
+	private void removeFromOrder(LinkedList order, Object cacheKey, Object localeKey) {
+		for (Iterator it = order.iterator(); it.hasNext();) {
+			Object[] key = (Object[]) it.next();
+			if (key[0].equals(cacheKey) && key[1].equals(localeKey)) {
+				it.remove();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Remove the given view from the cache maps.
+	 * To be called with the cache monitor held.
+	 * @return whether the view had been cached
+	 */
+	private boolean removeFromCacheInternal(Object cacheKey, Object localeKey) {
+		LocaleViews localeViews = (LocaleViews) this.viewCache.get(cacheKey);
+		if (localeViews == null || !localeViews.views.containsKey(localeKey)) {
+			return false;
+		}
+		if (localeViews.views.size() == 1) {
+			Map newCache = new HashMap(this.viewCache);
+			newCache.remove(cacheKey);
+			this.viewCache = newCache;
+		}
+		else {
+			Map newViews = new HashMap(localeViews.views);
+			newViews.remove(localeKey);
+			localeViews.views = newViews;
+		}
+		return true;
+	}
+
+	/**
+	 * Clear the entire view cache, removing all cached views
+	 * and unresolved view names.
+	 */
+	public void clearCache() {
+		synchronized (this.cacheMonitor) {
+			this.viewCache = new HashMap();
+			this.cacheOrder.clear();
+			this.unresolvedOrder.clear();
+		}
+		logger.debug("View cache has been cleared");
+	}
+
+	/**
+	 * Return the number of currently cached views,
+	 * including unresolved view names.
+	 */
+	public int getCacheSize() {
+		synchronized (this.cacheMonitor) {
+			return this.cacheOrder.size();
+		}
+	}
+
+	/**
+	 * Return the number of view resolutions that have been answered from the cache.
+	 * <p>Maintained without synchronization, hence only approximate
+	 * in case of concurrent view resolution.
+	 */
+	public long getCacheHitCount() {
+		return cacheHitCount;
+	}
+
+	/**
+	 * Return the number of view resolutions that had to ask the subclass,
+	 * including all resolutions while caching is switched off.
+	 * <p>Maintained without synchronization, hence only approximate
+	 * in case of concurrent view resolution.
+	 */
+	public long getCacheMissCount() {
+		return cacheMissCount;
+	}
+
 	/**
 	 * Load and configure the given View. Only invoked once per View.
 	 * Delegates to the loadView template method for actual loading.
@@ -125,13 +393,54 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
 		return view;
 	}
 
+	/**
+	 * Return the first-level cache key for the given view: the view name,
+	 * or the key returned by an overridden <code>getCacheKey</code> method.
+	 */
+	private Object getPrimaryCacheKey(String viewName, Locale locale) {
+		return (this.cacheKeyOverridden ? getCacheKey(viewName, locale) : viewName);
+	}
+
+	/**
+	 * Return the second-level cache key for the given locale. Not used if
+	 * <code>getCacheKey</code> is overridden, as the locale is then part of
+	 * the first-level key.
+	 */
+	private Object getLocaleKey(Locale locale) {
+		if (this.cacheKeyOverridden) {
+			return NO_LOCALE;
+		}
+		Locale cacheLocale = getCacheLocale(locale);
+		return (cacheLocale != null ? (Object) cacheLocale : NO_LOCALE);
+	}
+
+	/**
+	 * Return the locale to cache views for, given the locale that a view
+	 * has been requested for. Views are cached per distinct return value.
+	 * <p>The default implementation returns the given locale, as a different
+	 * locale can lead to a different view. Can be overridden in subclasses
+	 * that do not support localized resolution, to return null: All locales
+	 * will then share the view that has been resolved first.
+	 * @param locale the Locale that a view has been requested for
+	 * @return the Locale to cache the view for, or null if the view
+	 * does not depend on the locale
+	 */
+	protected Locale getCacheLocale(Locale locale) {
+		return locale;
+	}
+
 	/**
 	 * Return the cache key for the given viewName and the given locale.
-	 * Needs to regard the locale in general, as a different locale can lead to a
-	 * different view! Can be overridden in subclasses.
+	 * <p>By default, views are cached by view name and the locale returned by
+	 * <code>getCacheLocale</code>, and this key is just used for log messages.
+	 * If a subclass overrides this method, views are cached by the returned key
+	 * instead, which needs to be built for each lookup: Prefer overriding
+	 * <code>getCacheLocale</code> where it suffices.
+	 * @see #getCacheLocale
 	 */
 	protected String getCacheKey(String viewName, Locale locale) {
-		return viewName + "_" + locale;
+		Locale cacheLocale = getCacheLocale(locale);
+		return (cacheLocale != null ? viewName + "_" + cacheLocale : viewName);
 	}
 
 	/**
@@ -151,4 +460,15 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
 	 */
 	protected abstract View loadView(String viewName, Locale locale) throws Exception;
 
+
+	/**
+	 * Holder for the views cached for a view name, keyed by locale.
+	 * With an overridden getCacheKey, there is just one view per holder.
+	 */
+	private static class LocaleViews {
+
+		/** Never modified once published, see viewCache */
+		private volatile Map views = new HashMap();
+	}
+
 }
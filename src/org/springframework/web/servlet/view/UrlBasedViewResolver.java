@@ -132,11 +132,11 @@ public class UrlBasedViewResolver extends AbstractCachingViewResolver {
 
 
 	/**
-	 * This implementation returns just the view name,
+	 * This implementation returns null, caching views for all locales,
 	 * as this ViewResolver doesn't support localized resolution.
 	 */
-	protected String getCacheKey(String viewName, Locale locale) {
-		return viewName;
+	protected Locale getCacheLocale(Locale locale) {
+		return null;
 	}
 
 	protected View loadView(String viewName, Locale locale) throws BeansException {
@@ -89,11 +89,11 @@ public class XmlViewResolver extends AbstractCachingViewResolver implements Orde
 	}
 
 	/**
-	 * This implementation returns just the view name,
+	 * This implementation returns null, caching views for all locales,
 	 * as XmlViewResolver doesn't support localized resolution.
 	 */
-	protected String getCacheKey(String viewName, Locale locale) {
-		return viewName;
+	protected Locale getCacheLocale(Locale locale) {
+		return null;
 	}
 
 	protected View loadView(String viewName, Locale locale) throws BeansException {
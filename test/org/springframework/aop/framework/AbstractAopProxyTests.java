@@ -982,6 +982,57 @@ public abstract class AbstractAopProxyTests extends TestCase {
 		assertEquals(1, advised.getAdvisors().length);
 	}
 	
+	public void testFrozenProxyWithStaticTarget() throws Throwable {
+		TestBean target = new TestBean();
+		target.setAge(21);
+		ProxyFactory pc = new ProxyFactory(target);
+		NopInterceptor nop = new NopInterceptor();
+		pc.addAdvisor(new DefaultPointcutAdvisor(new NameMatchMethodPointcut().addMethodName("getAge"), nop));
+		pc.setFrozen(true);
+		ITestBean proxied = (ITestBean) createProxy(pc);
+
+		assertEquals(21, proxied.getAge());
+		assertEquals(1, nop.getCount());
+		proxied.setAge(22);
+		assertEquals(1, nop.getCount());
+		assertEquals(22, proxied.getAge());
+		assertEquals(2, nop.getCount());
+	}
+
+	public void testFrozenProxyInvocationOverhead() throws Throwable {
+		int howmany = 100000;
+		TestBean target = new TestBean();
+		ProxyFactory pc = new ProxyFactory(target);
+		for (int i = 0; i < 4; i++) {
+			pc.addAdvice(new NopInterceptor());
+		}
+		ITestBean proxied = (ITestBean) createProxy(pc);
+		ProxyFactory frozenPc = new ProxyFactory(target);
+		for (int i = 0; i < 4; i++) {
+			frozenPc.addAdvice(new NopInterceptor());
+		}
+		frozenPc.setFrozen(true);
+		ITestBean frozenProxied = (ITestBean) createProxy(frozenPc);
+
+		StopWatch sw = new StopWatch();
+		sw.start("direct");
+		for (int i = 0; i < howmany; i++) {
+			target.getAge();
+		}
+		sw.stop();
+		sw.start("proxy with 4 interceptors");
+		for (int i = 0; i < howmany; i++) {
+			proxied.getAge();
+		}
+		sw.stop();
+		sw.start("frozen proxy with 4 interceptors");
+		for (int i = 0; i < howmany; i++) {
+			frozenProxied.getAge();
+		}
+		sw.stop();
+		System.out.println(sw.prettyPrint());
+	}
+
 	public void testCannotRemoveAdvisorWhenFrozen() throws Throwable {
 		TestBean target = new TestBean();
 		target.setAge(21);
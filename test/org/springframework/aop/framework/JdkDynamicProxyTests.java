@@ -19,8 +19,12 @@ package org.springframework.aop.framework;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.easymock.MockControl;
+import org.springframework.aop.TargetSource;
 import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.aop.interceptor.NopInterceptor;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.NameMatchMethodPointcut;
 import org.springframework.beans.IOther;
 import org.springframework.beans.ITestBean;
 import org.springframework.beans.TestBean;
@@ -42,7 +46,59 @@ public class JdkDynamicProxyTests extends AbstractAopProxyTests {
 	protected AopProxy createAopProxy(AdvisedSupport as) {
 		return new JdkDynamicAopProxy(as);
 	}
+
+	/**
+	 * JDK proxies check their precompiled chains on each invocation,
+	 * in contrast to CGLIB proxies with fixed callbacks for frozen configurations.
+	 */
+	public void testFrozenProxyWithChangedAdvice() throws Throwable {
+		TestBean target = new TestBean();
+		ProxyFactory pc = new ProxyFactory(target);
+		NopInterceptor nop = new NopInterceptor();
+		pc.addAdvisor(new DefaultPointcutAdvisor(new NameMatchMethodPointcut().addMethodName("getAge"), nop));
+		pc.setFrozen(true);
+		ITestBean proxied = (ITestBean) createProxy(pc);
+		proxied.setAge(22);
+		assertEquals(22, proxied.getAge());
+		assertEquals(1, nop.getCount());
+
+		// unfreeze and change advice: must not use stale chains
+		pc.setFrozen(false);
+		NopInterceptor nop2 = new NopInterceptor();
+		pc.addAdvice(nop2);
+		pc.setFrozen(true);
+		proxied.setAge(23);
+		assertEquals(1, nop.getCount());
+		assertEquals(1, nop2.getCount());
+		assertEquals(23, proxied.getAge());
+		assertEquals(2, nop.getCount());
+		assertEquals(2, nop2.getCount());
+	}
 	
+	public void testFrozenProxyUsesPrecompiledChains() throws Throwable {
+		CountingStaticTargetSource targetSource = new CountingStaticTargetSource(new TestBean());
+		ProxyFactory pc = new ProxyFactory();
+		pc.addInterface(ITestBean.class);
+		pc.setTargetSource(targetSource);
+		NopInterceptor nop = new NopInterceptor();
+		pc.addAdvisor(new DefaultPointcutAdvisor(new NameMatchMethodPointcut().addMethodName("getAge"), nop));
+		pc.setFrozen(true);
+		ITestBean proxied = (ITestBean) createProxy(pc);
+		assertEquals("Target obtained once on proxy creation", 1, targetSource.getTargetCount);
+		for (int i = 0; i < 10; i++) {
+			proxied.setAge(i);
+			assertEquals(i, proxied.getAge());
+		}
+		assertEquals(10, nop.getCount());
+		assertEquals("Target not obtained per invocation", 1, targetSource.getTargetCount);
+
+		// changed advice: back to per-invocation lookup
+		pc.setFrozen(false);
+		pc.addAdvice(new NopInterceptor());
+		proxied.getAge();
+		assertEquals(2, targetSource.getTargetCount);
+	}
+
 	public void testNullConfig() {
 		try {
 			JdkDynamicAopProxy aop = new JdkDynamicAopProxy(null);
@@ -126,4 +182,33 @@ public class JdkDynamicProxyTests extends AbstractAopProxyTests {
 		//assertTrue("invoked on iother, not " + minv.getMethod().getDeclaringClass(), minv.getMethod().getDeclaringClass() == IOther.class);
 		//assertTrue(target.invocation == tii.invocation);
 		}
+
+
+	private static class CountingStaticTargetSource implements TargetSource {
+
+		private final Object target;
+
+		private int getTargetCount = 0;
+
+		public CountingStaticTargetSource(Object target) {
+			this.target = target;
+		}
+
+		public Class getTargetClass() {
+			return this.target.getClass();
+		}
+
+		public boolean isStatic() {
+			return true;
+		}
+
+		public Object getTarget() {
+			this.getTargetCount++;
+			return this.target;
+		}
+
+		public void releaseTarget(Object target) {
+		}
+	}
+
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class CachedIntrospectionResultsTests extends TestCase {
+
+	public void testPreloadAndHitCount() {
+		CachedIntrospectionResults.preload(new Class[] {Employee.class, Person.class});
+		long hits = CachedIntrospectionResults.getHitCount();
+		long misses = CachedIntrospectionResults.getMissCount();
+
+		CachedIntrospectionResults results = CachedIntrospectionResults.forClass(Employee.class);
+		assertSame(results, CachedIntrospectionResults.forClass(Employee.class));
+		assertNotNull(results.getPropertyDescriptor("company"));
+		new BeanWrapperImpl(new Employee());
+
+		assertEquals(hits + 3, CachedIntrospectionResults.getHitCount());
+		assertEquals(misses, CachedIntrospectionResults.getMissCount());
+	}
+
+	public void testClassFromOtherClassLoader() throws Exception {
+		ClassLoader classLoader = new ChildFirstClassLoader(TestBean.class);
+		Class otherClass = classLoader.loadClass(TestBean.class.getName());
+		assertNotSame(TestBean.class, otherClass);
+
+		long misses = CachedIntrospectionResults.getMissCount();
+		CachedIntrospectionResults results = CachedIntrospectionResults.forClass(otherClass);
+		assertEquals(misses + 1, CachedIntrospectionResults.getMissCount());
+		assertSame(otherClass, results.getBeanClass());
+		assertNotSame(results, CachedIntrospectionResults.forClass(TestBean.class));
+		assertSame(results, CachedIntrospectionResults.forClass(otherClass));
+
+		BeanWrapper bw = new BeanWrapperImpl(otherClass);
+		bw.setPropertyValue("name", "rod");
+		assertEquals("rod", bw.getPropertyValue("name"));
+	}
+
+
+	/**
+	 * ClassLoader that loads the given class itself,
+	 * delegating to its parent for all other classes.
+	 */
+	private static class ChildFirstClassLoader extends URLClassLoader {
+
+		private final String className;
+
+		public ChildFirstClassLoader(Class clazz) {
+			super(new URL[] {clazz.getProtectionDomain().getCodeSource().getLocation()}, clazz.getClassLoader());
+			this.className = clazz.getName();
+		}
+
+		protected synchronized Class loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (this.className.equals(name)) {
+				Class clazz = findLoadedClass(name);
+				if (clazz == null) {
+					clazz = findClass(name);
+				}
+				if (resolve) {
+					resolveClass(clazz);
+				}
+				return clazz;
+			}
+			return super.loadClass(name, resolve);
+		}
+	}
+
+}
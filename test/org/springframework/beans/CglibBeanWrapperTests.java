@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.support.DerivedFromProtectedBaseBean;
+import org.springframework.util.StopWatch;
+
+/**
+ * Tests for BeanWrapperImpl with CGLIB-generated property accessors,
+ * including a timing comparison with reflective property access.
+ * @author agent
+ * @since 1.1.2
+ */
+public class CglibBeanWrapperTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(CglibBeanWrapperTests.class);
+
+	private static final int ITERATIONS = 100000;
+
+	private BeanWrapperImpl createBeanWrapper(Object target) {
+		BeanWrapperImpl bw = new BeanWrapperImpl(target);
+		bw.setUseCglibAccessors(true);
+		return bw;
+	}
+
+	public void testSimpleProperties() {
+		TestBean tb = new TestBean();
+		BeanWrapperImpl bw = createBeanWrapper(tb);
+		bw.setPropertyValue("name", "rod");
+		bw.setPropertyValue("age", "31");
+		bw.setPropertyValue("touchy", "valid");
+		assertEquals("rod", tb.getName());
+		assertEquals(31, tb.getAge());
+		assertEquals("rod", bw.getPropertyValue("name"));
+		assertEquals(new Integer(31), bw.getPropertyValue("age"));
+		assertEquals("valid", bw.getPropertyValue("touchy"));
+	}
+
+	public void testNestedAndIndexedProperties() {
+		IndexedTestBean bean = new IndexedTestBean();
+		BeanWrapperImpl bw = createBeanWrapper(bean);
+		assertTrue(bw.isUseCglibAccessors());
+		bw.setPropertyValue("array[0].name", "name5");
+		bw.setPropertyValue("list[1].name", "name6");
+		bw.setPropertyValue("map['key1'].name", "name7");
+		bw.setPropertyValue("map[key2].age", "77");
+		assertEquals("name5", bean.getArray()[0].getName());
+		assertEquals("name6", ((TestBean) bean.getList().get(1)).getName());
+		assertEquals("name7", bw.getPropertyValue("map[\"key1\"].name"));
+		assertEquals(new Integer(77), bw.getPropertyValue("map[key2].age"));
+	}
+
+	public void testPropertiesInProtectedBaseBean() {
+		DerivedFromProtectedBaseBean bean = new DerivedFromProtectedBaseBean();
+		BeanWrapperImpl bw = createBeanWrapper(bean);
+		bw.setPropertyValue("someProperty", "someValue");
+		assertEquals("someValue", bw.getPropertyValue("someProperty"));
+		assertEquals("someValue", bean.getSomeProperty());
+	}
+
+	public void testExceptionInSetter() {
+		TestBean tb = new TestBean();
+		BeanWrapperImpl bw = createBeanWrapper(tb);
+		try {
+			bw.setPropertyValue("touchy", "invalid.value");
+			fail("Should have thrown MethodInvocationException");
+		}
+		catch (MethodInvocationException ex) {
+			// expected
+		}
+	}
+
+	public void testCglibAccessorGeneratedOncePerClass() {
+		CachedIntrospectionResults results = CachedIntrospectionResults.forClass(TestBean.class);
+		CglibPropertyAccessor accessor = results.getCglibPropertyAccessor();
+		assertSame(accessor, results.getCglibPropertyAccessor());
+		if (accessor != null) {
+			assertTrue(accessor.isOptimized(results.getPropertyDescriptor("name").getReadMethod()));
+			assertTrue(accessor.isOptimized(results.getPropertyDescriptor("age").getWriteMethod()));
+		}
+		else {
+			logger.info("CGLIB not able to generate accessor in this environment - using reflection");
+		}
+	}
+
+	public void testPropertyAccessTiming() {
+		StopWatch sw = new StopWatch();
+		sw.start("reflective property access");
+		runPropertyAccess(new BeanWrapperImpl(new TestBean()));
+		sw.stop();
+		sw.start("CGLIB property access");
+		runPropertyAccess(createBeanWrapper(new TestBean()));
+		sw.stop();
+		logger.info(ITERATIONS + " nested property writes and reads: " + sw.prettyPrint());
+	}
+
+	private void runPropertyAccess(BeanWrapperImpl bw) {
+		bw.setPropertyValue("spouse", new TestBean());
+		Integer age = new Integer(42);
+		for (int i = 0; i < ITERATIONS; i++) {
+			bw.setPropertyValue("spouse.age", age);
+			bw.setPropertyValue("name", "rod");
+			assertEquals(age, bw.getPropertyValue("spouse.age"));
+			bw.getPropertyValue("name");
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.ChildBeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.util.StopWatch;
+
+/**
+ * Startup benchmark for bean factories with large numbers of bean definitions.
+ * Every generated bean is autowired by type, followed by one lookup by type per
+ * bean the way auto-proxy creators and BeanFactoryUtils perform them. This used
+ * to lead to quadratic startup time, as every lookup checked every bean definition.
+ * Kept small enough for the regular test run; call doTestStartup with
+ * larger counts, e.g. 20000, for actual measurements.
+ * @author agent
+ * @since 1.1.2
+ */
+public class BeanFactoryStartupBenchmarkTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(BeanFactoryStartupBenchmarkTests.class);
+
+	public void testStartupWith1000Beans() {
+		doTestStartup(1000);
+	}
+
+	public void testStartupWith2000Beans() {
+		doTestStartup(2000);
+	}
+
+	private void doTestStartup(int beanCount) {
+		StopWatch sw = new StopWatch();
+		sw.start("register " + beanCount + " bean definitions");
+		DefaultListableBeanFactory lbf = createBeanFactory(beanCount);
+		sw.stop();
+
+		sw.start("pre-instantiate " + beanCount + " singletons");
+		lbf.preInstantiateSingletons();
+		sw.stop();
+
+		sw.start("look up " + beanCount + " beans by type");
+		for (int i = 0; i < beanCount; i++) {
+			BeanFactoryUtils.beanNamesIncludingAncestors(lbf, BeanPostProcessor.class);
+			BeanFactoryUtils.beanOfType(lbf, Service.class);
+		}
+		sw.stop();
+
+		// including the abstract parent definition
+		assertEquals(beanCount + 1, lbf.getBeanDefinitionNames(GeneratedBean.class).length);
+		assertEquals(beanCount / 2 + 1, lbf.getBeanDefinitionNames(GeneratedChildBean.class).length);
+		Service service = (Service) lbf.getBean("service");
+		for (int i = 0; i < beanCount; i += beanCount / 10) {
+			assertSame(service, ((GeneratedBean) lbf.getBean("bean" + i)).getService());
+		}
+		logger.info(sw.prettyPrint());
+	}
+
+	private DefaultListableBeanFactory createBeanFactory(int beanCount) {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		lbf.registerBeanDefinition("service", new RootBeanDefinition(Service.class, null));
+		RootBeanDefinition parent = new RootBeanDefinition(GeneratedChildBean.class, RootBeanDefinition.AUTOWIRE_BY_TYPE);
+		parent.setAbstract(true);
+		lbf.registerBeanDefinition("parent", parent);
+		for (int i = 0; i < beanCount; i++) {
+			if (i % 2 == 0) {
+				lbf.registerBeanDefinition("bean" + i,
+						new RootBeanDefinition(GeneratedBean.class, RootBeanDefinition.AUTOWIRE_BY_TYPE));
+			}
+			else {
+				lbf.registerBeanDefinition("bean" + i, new ChildBeanDefinition("parent", null));
+			}
+		}
+		return lbf;
+	}
+
+
+	public static class Service {
+	}
+
+
+	public static class GeneratedBean {
+
+		private Service service;
+
+		public Service getService() {
+			return service;
+		}
+
+		public void setService(Service service) {
+			this.service = service;
+		}
+	}
+
+
+	public static class GeneratedChildBean extends GeneratedBean {
+	}
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.TestBean;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+/**
+ * Tests for singleton creation and retrieval from multiple threads,
+ * including parallel pre-instantiation of singletons.
+ * @author agent
+ * @since 1.1.2
+ */
+public class ConcurrentSingletonCreationTests extends TestCase {
+
+	private static final int THREAD_COUNT = 8;
+
+	private static final int LOOKUPS_PER_THREAD = 10000;
+
+	private DefaultListableBeanFactory factory;
+
+	protected void setUp() {
+		this.factory = new DefaultListableBeanFactory();
+		SlowBean.reset();
+		RecordingBean.reset();
+	}
+
+	public void testConcurrentRequestsCreateSingletonOnce() throws Exception {
+		this.factory.registerBeanDefinition("slow", new RootBeanDefinition(SlowBean.class, null));
+		GetBeanThread[] threads = new GetBeanThread[THREAD_COUNT];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new GetBeanThread(this.factory, "slow");
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+			assertNull(threads[i].exception);
+			assertSame(threads[0].bean, threads[i].bean);
+		}
+		assertEquals(1, SlowBean.instanceCount);
+	}
+
+	public void testSlowSingletonDoesNotBlockUnrelatedSingleton() throws Exception {
+		this.factory.registerBeanDefinition("slow", new RootBeanDefinition(SlowBean.class, null));
+		this.factory.registerBeanDefinition("fast", new RootBeanDefinition(TestBean.class, null));
+		GetBeanThread thread = new GetBeanThread(this.factory, "slow");
+		thread.start();
+		Thread.sleep(SlowBean.DELAY / 4);
+		long start = System.currentTimeMillis();
+		assertNotNull(this.factory.getBean("fast"));
+		assertTrue("Creation of unrelated singleton not blocked",
+				System.currentTimeMillis() - start < SlowBean.DELAY / 2);
+		thread.join();
+		assertNull(thread.exception);
+		assertNotNull(thread.bean);
+	}
+
+	public void testCircularReferenceCreatedByDifferentThreads() throws Exception {
+		MutablePropertyValues pvs1 = new MutablePropertyValues();
+		pvs1.addPropertyValue("other", new RuntimeBeanReference("circular2"));
+		this.factory.registerBeanDefinition("circular1", new RootBeanDefinition(SlowBean.class, pvs1));
+		MutablePropertyValues pvs2 = new MutablePropertyValues();
+		pvs2.addPropertyValue("other", new RuntimeBeanReference("circular1"));
+		this.factory.registerBeanDefinition("circular2", new RootBeanDefinition(SlowBean.class, pvs2));
+
+		GetBeanThread thread1 = new GetBeanThread(this.factory, "circular1");
+		GetBeanThread thread2 = new GetBeanThread(this.factory, "circular2");
+		thread1.start();
+		thread2.start();
+		thread1.join(SlowBean.DELAY * 20);
+		thread2.join(SlowBean.DELAY * 20);
+		assertFalse("Threads did not deadlock", thread1.isAlive() || thread2.isAlive());
+		assertNull(thread1.exception);
+		assertNull(thread2.exception);
+
+		SlowBean bean1 = (SlowBean) this.factory.getBean("circular1");
+		SlowBean bean2 = (SlowBean) this.factory.getBean("circular2");
+		assertSame(bean1, thread1.bean);
+		assertSame(bean2, thread2.bean);
+		assertSame(bean2, bean1.getOther());
+		assertSame(bean1, bean2.getOther());
+		assertEquals(2, SlowBean.instanceCount);
+	}
+
+	public void testParallelPreInstantiation() throws Exception {
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			this.factory.registerBeanDefinition("slow" + i, new RootBeanDefinition(SlowBean.class, null));
+		}
+		this.factory.setPreInstantiationThreadCount(THREAD_COUNT);
+		long start = System.currentTimeMillis();
+		this.factory.preInstantiateSingletons();
+		long time = System.currentTimeMillis() - start;
+		assertEquals(THREAD_COUNT, SlowBean.instanceCount);
+		assertTrue("Singletons created in parallel", time < SlowBean.DELAY * THREAD_COUNT / 2);
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			assertNotNull(this.factory.getBean("slow" + i));
+		}
+		assertEquals(THREAD_COUNT, SlowBean.instanceCount);
+	}
+
+	public void testParallelPreInstantiationRespectsDependencies() throws Exception {
+		RootBeanDefinition dependent = new RootBeanDefinition(RecordingBean.class, null);
+		dependent.setDependsOn(new String[] {"slow"});
+		this.factory.registerBeanDefinition("dependent", dependent);
+		MutablePropertyValues pvs = new MutablePropertyValues();
+		pvs.addPropertyValue("other", new RuntimeBeanReference("dependent"));
+		this.factory.registerBeanDefinition("referrer", new RootBeanDefinition(RecordingBean.class, pvs));
+		// "slow" waits for "independent" to be created on another thread
+		this.factory.registerBeanDefinition("slow", new RootBeanDefinition(WaitingRecordingBean.class, null));
+		this.factory.registerBeanDefinition("independent", new RootBeanDefinition(RecordingBean.class, null));
+
+		this.factory.setPreInstantiationThreadCount(THREAD_COUNT);
+		this.factory.preInstantiateSingletons();
+		List order = RecordingBean.creationOrder;
+		assertEquals(4, order.size());
+		assertEquals("independent", order.get(0));
+		assertEquals("slow", order.get(1));
+		assertEquals("dependent", order.get(2));
+		assertEquals("referrer", order.get(3));
+	}
+
+	public void testParallelPreInstantiationWithCircularReference() throws Exception {
+		MutablePropertyValues pvs1 = new MutablePropertyValues();
+		pvs1.addPropertyValue("other", new RuntimeBeanReference("circular2"));
+		this.factory.registerBeanDefinition("circular1", new RootBeanDefinition(SlowBean.class, pvs1));
+		MutablePropertyValues pvs2 = new MutablePropertyValues();
+		pvs2.addPropertyValue("other", new RuntimeBeanReference("circular1"));
+		this.factory.registerBeanDefinition("circular2", new RootBeanDefinition(SlowBean.class, pvs2));
+		this.factory.registerBeanDefinition("slow", new RootBeanDefinition(SlowBean.class, null));
+
+		this.factory.setPreInstantiationThreadCount(THREAD_COUNT);
+		this.factory.preInstantiateSingletons();
+		SlowBean bean1 = (SlowBean) this.factory.getBean("circular1");
+		SlowBean bean2 = (SlowBean) this.factory.getBean("circular2");
+		assertSame(bean2, bean1.getOther());
+		assertSame(bean1, bean2.getOther());
+		assertEquals(3, SlowBean.instanceCount);
+	}
+
+	public void testParallelPreInstantiationFailsWithCreationException() throws Exception {
+		this.factory.registerBeanDefinition("failing", new RootBeanDefinition(FailingBean.class, null));
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			this.factory.registerBeanDefinition("slow" + i, new RootBeanDefinition(SlowBean.class, null));
+		}
+		this.factory.setPreInstantiationThreadCount(THREAD_COUNT / 2);
+		try {
+			this.factory.preInstantiateSingletons();
+			fail("Should have thrown BeanCreationException");
+		}
+		catch (BeanCreationException ex) {
+			// expected
+			assertTrue(ex.getMessage().indexOf("'failing'") != -1);
+		}
+		assertTrue("Pre-instantiation aborted", SlowBean.instanceCount < THREAD_COUNT);
+		assertEquals(0, this.factory.getSingletonNames(null).length);
+	}
+
+	public void testSingletonLookupsNotBlockedBySingletonCreation() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			this.factory.registerBeanDefinition("bean" + i, new RootBeanDefinition(TestBean.class, null));
+		}
+		this.factory.preInstantiateSingletons();
+		this.factory.registerBeanDefinition("slow", new RootBeanDefinition(SlowBean.class, null));
+		final Object[] singletons = new Object[100];
+		for (int i = 0; i < singletons.length; i++) {
+			singletons[i] = this.factory.getBean("bean" + i);
+		}
+
+		GetBeanThread slowThread = new GetBeanThread(this.factory, "slow");
+		slowThread.start();
+		Thread.sleep(SlowBean.DELAY / 4);
+
+		final Throwable[] failure = new Throwable[1];
+		Thread[] threads = new Thread[THREAD_COUNT];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < LOOKUPS_PER_THREAD; j++) {
+							int index = j % singletons.length;
+							if (factory.getBean("bean" + index) != singletons[index]) {
+								throw new IllegalStateException("Wrong singleton returned");
+							}
+						}
+					}
+					catch (Throwable ex) {
+						failure[0] = ex;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertNull(failure[0]);
+		assertTrue("Lookups completed while singleton creation still in progress", slowThread.isAlive());
+		slowThread.join();
+		assertNull(slowThread.exception);
+		assertEquals(1, SlowBean.instanceCount);
+	}
+
+
+	private static class GetBeanThread extends Thread {
+
+		private final BeanFactory beanFactory;
+
+		private final String beanName;
+
+		private Object bean;
+
+		private Throwable exception;
+
+		public GetBeanThread(BeanFactory beanFactory, String beanName) {
+			this.beanFactory = beanFactory;
+			this.beanName = beanName;
+		}
+
+		public void run() {
+			try {
+				this.bean = this.beanFactory.getBean(this.beanName);
+			}
+			catch (Throwable ex) {
+				this.exception = ex;
+			}
+		}
+	}
+
+
+	public static class RecordingBean implements BeanNameAware {
+
+		private static final List creationOrder = Collections.synchronizedList(new LinkedList());
+
+		private RecordingBean other;
+
+		public static void reset() {
+			creationOrder.clear();
+		}
+
+		public void setBeanName(String name) {
+			synchronized (creationOrder) {
+				creationOrder.add(name);
+				creationOrder.notifyAll();
+			}
+		}
+
+		public RecordingBean getOther() {
+			return other;
+		}
+
+		public void setOther(RecordingBean other) {
+			this.other = other;
+		}
+	}
+
+
+	/**
+	 * Bean whose creation does not complete before a bean named
+	 * "independent" has been created, which thus has to happen in parallel.
+	 */
+	public static class WaitingRecordingBean extends RecordingBean {
+
+		public WaitingRecordingBean() throws InterruptedException {
+			long deadline = System.currentTimeMillis() + SlowBean.DELAY * 25;
+			synchronized (RecordingBean.creationOrder) {
+				while (!RecordingBean.creationOrder.contains("independent")) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						throw new IllegalStateException("Bean 'independent' has not been created in parallel");
+					}
+					RecordingBean.creationOrder.wait(remaining);
+				}
+			}
+		}
+	}
+
+
+	public static class FailingBean {
+
+		public FailingBean() {
+			throw new IllegalStateException("Cannot be created");
+		}
+	}
+
+
+	public static class SlowBean {
+
+		public static final long DELAY = 400;
+
+		private static int instanceCount;
+
+		private SlowBean other;
+
+		public static synchronized void reset() {
+			instanceCount = 0;
+		}
+
+		public SlowBean() throws InterruptedException {
+			synchronized (SlowBean.class) {
+				instanceCount++;
+			}
+			Thread.sleep(DELAY);
+		}
+
+		public SlowBean getOther() {
+			return other;
+		}
+
+		public void setOther(SlowBean other) {
+			this.other = other;
+		}
+	}
+
+}
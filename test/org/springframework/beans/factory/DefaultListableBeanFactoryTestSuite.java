@@ -32,6 +32,7 @@ import org.springframework.beans.PropertyValue;
 import org.springframework.beans.TestBean;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.ChildBeanDefinition;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.PropertiesBeanDefinitionReader;
 import org.springframework.beans.factory.support.RootBeanDefinition;
@@ -315,6 +316,46 @@ public class DefaultListableBeanFactoryTestSuite extends TestCase {
 		}
 	}
 
+	public void testBeanDefinitionNamesForTypeAfterOverriding() throws BeansException {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		lbf.registerBeanDefinition("test", new RootBeanDefinition(TestBean.class, null));
+		lbf.registerBeanDefinition("other", new RootBeanDefinition(NestedTestBean.class, null));
+		assertEquals(1, lbf.getBeanDefinitionNames(ITestBean.class).length);
+		assertEquals(1, lbf.getBeanDefinitionNames(NestedTestBean.class).length);
+
+		lbf.registerBeanDefinition("test", new RootBeanDefinition(NestedTestBean.class, null));
+		assertEquals(0, lbf.getBeanDefinitionNames(ITestBean.class).length);
+		String[] names = lbf.getBeanDefinitionNames(NestedTestBean.class);
+		assertEquals(2, names.length);
+		assertEquals("test", names[0]);
+		assertEquals("other", names[1]);
+
+		lbf.registerBeanDefinition("another", new RootBeanDefinition(TestBean.class, null));
+		names = lbf.getBeanDefinitionNames(ITestBean.class);
+		assertEquals(1, names.length);
+		assertEquals("another", names[0]);
+		assertEquals(1, lbf.getBeansOfType(ITestBean.class, false, false).size());
+	}
+
+	public void testBeanDefinitionNamesForTypeWithOverriddenParent() throws BeansException {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		lbf.registerBeanDefinition("parent", new RootBeanDefinition(TestBean.class, null));
+		lbf.registerBeanDefinition("child", new ChildBeanDefinition("parent", null));
+		assertEquals(2, lbf.getBeanDefinitionNames(ITestBean.class).length);
+
+		lbf.registerBeanDefinition("parent", new RootBeanDefinition(NestedTestBean.class, null));
+		assertEquals(0, lbf.getBeanDefinitionNames(ITestBean.class).length);
+		assertEquals(2, lbf.getBeanDefinitionNames(NestedTestBean.class).length);
+	}
+
+	public void testBeanDefinitionNamesForTypeNotAffectedByCallers() throws BeansException {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		lbf.registerBeanDefinition("test", new RootBeanDefinition(TestBean.class, null));
+		String[] names = lbf.getBeanDefinitionNames(TestBean.class);
+		names[0] = "modified";
+		assertEquals("test", lbf.getBeanDefinitionNames(TestBean.class)[0]);
+	}
+
 	public void testBeanReferenceWithNewSyntax() {
 		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
 		lbf = new DefaultListableBeanFactory();
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.TestListener;
+import org.springframework.web.context.support.RequestHandledEvent;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class AsyncEventPublisherTests extends TestCase {
+
+	public void testEventsPublishedInOrderOnBackgroundThread() {
+		RecordingPublisher target = new RecordingPublisher();
+		AsyncEventPublisher publisher = new AsyncEventPublisher();
+		publisher.setTargetPublisher(target);
+		publisher.setBatchSize(3);
+		publisher.afterPropertiesSet();
+		for (int i = 0; i < 100; i++) {
+			publisher.publishEvent(createEvent(i));
+		}
+		publisher.destroy();
+
+		assertEquals(100, target.events.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, ((RequestHandledEvent) target.events.get(i)).getProcessingTimeMillis());
+		}
+		assertEquals(1, target.threads.size());
+		assertNotSame(Thread.currentThread(), target.threads.get(0));
+		assertEquals(100, publisher.getPublishedCount());
+		assertEquals(0, publisher.getDiscardedCount());
+	}
+
+	public void testOverflowDiscardNewest() throws InterruptedException {
+		BlockingPublisher target = new BlockingPublisher();
+		AsyncEventPublisher publisher = createBlockedPublisher(target, "OVERFLOW_DISCARD_NEWEST");
+		publisher.publishEvent(createEvent(1));
+		publisher.publishEvent(createEvent(2));
+		publisher.publishEvent(createEvent(3));
+		assertEquals(1, publisher.getDiscardedCount());
+		target.release();
+		publisher.destroy();
+		assertEventTimes(target.events, new long[] {0, 1, 2});
+	}
+
+	public void testOverflowDiscardOldest() throws InterruptedException {
+		BlockingPublisher target = new BlockingPublisher();
+		AsyncEventPublisher publisher = createBlockedPublisher(target, "OVERFLOW_DISCARD_OLDEST");
+		publisher.publishEvent(createEvent(1));
+		publisher.publishEvent(createEvent(2));
+		publisher.publishEvent(createEvent(3));
+		assertEquals(1, publisher.getDiscardedCount());
+		target.release();
+		publisher.destroy();
+		assertEventTimes(target.events, new long[] {0, 2, 3});
+	}
+
+	public void testOverflowCallerRuns() throws InterruptedException {
+		BlockingPublisher target = new BlockingPublisher();
+		final AsyncEventPublisher publisher = createBlockedPublisher(target, "OVERFLOW_CALLER_RUNS");
+		publisher.publishEvent(createEvent(1));
+		publisher.publishEvent(createEvent(2));
+		Thread caller = new Thread() {
+			public void run() {
+				publisher.publishEvent(createEvent(3));
+			}
+		};
+		caller.start();
+		caller.join(200);
+		assertTrue("Caller waits for the background thread's delivery", caller.isAlive());
+		assertEventTimes(target.events, new long[] {0});
+		target.release();
+		caller.join();
+		publisher.destroy();
+		assertEquals(4, target.events.size());
+		assertEquals(0, publisher.getDiscardedCount());
+		assertEquals(4, publisher.getPublishedCount());
+	}
+
+	public void testCallerRunsDeliveryNotConcurrent() {
+		OverlapDetectingPublisher target = new OverlapDetectingPublisher();
+		AsyncEventPublisher publisher = new AsyncEventPublisher();
+		publisher.setTargetPublisher(target);
+		publisher.setCapacity(1);
+		publisher.setOverflowPolicy(AsyncEventPublisher.OVERFLOW_CALLER_RUNS);
+		publisher.afterPropertiesSet();
+		for (int i = 0; i < 100; i++) {
+			publisher.publishEvent(createEvent(i));
+		}
+		publisher.destroy();
+		assertEquals(100, target.eventCount);
+		assertEquals(1, target.maxConcurrentDeliveries);
+	}
+
+	public void testPublisherThreadSurvivesError() {
+		final RecordingPublisher recorder = new RecordingPublisher();
+		AsyncEventPublisher publisher = new AsyncEventPublisher(new ApplicationEventPublisher() {
+			public void publishEvent(ApplicationEvent event) {
+				if (((RequestHandledEvent) event).getProcessingTimeMillis() == 0) {
+					throw new AssertionError("listener failure");
+				}
+				recorder.publishEvent(event);
+			}
+		});
+		publisher.publishEvent(createEvent(0));
+		publisher.publishEvent(createEvent(1));
+		publisher.destroy();
+		assertEventTimes(recorder.events, new long[] {1});
+		assertNotSame(Thread.currentThread(), recorder.threads.get(0));
+	}
+
+	public void testPublishAfterDestroy() {
+		RecordingPublisher target = new RecordingPublisher();
+		AsyncEventPublisher publisher = new AsyncEventPublisher(target);
+		publisher.destroy();
+		publisher.publishEvent(createEvent(1));
+		assertEquals(1, target.events.size());
+		assertSame(Thread.currentThread(), target.threads.get(0));
+	}
+
+	public void testInvalidOverflowPolicyName() {
+		AsyncEventPublisher publisher = new AsyncEventPublisher();
+		try {
+			publisher.setOverflowPolicyName("DEFAULT_CAPACITY");
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testPublishToListeners() {
+		final SimpleApplicationEventMulticaster multicaster = new SimpleApplicationEventMulticaster();
+		TestListener listener = new TestListener();
+		multicaster.addApplicationListener(listener);
+		AsyncEventPublisher publisher = new AsyncEventPublisher(new ApplicationEventPublisher() {
+			public void publishEvent(ApplicationEvent event) {
+				multicaster.multicastEvent(event);
+			}
+		});
+		for (int i = 0; i < 10; i++) {
+			publisher.publishEvent(createEvent(i));
+		}
+		publisher.destroy();
+		assertEquals(10, listener.getEventCount());
+	}
+
+
+	/**
+	 * Create a publisher with a buffer capacity of 2, whose background thread
+	 * is blocked in the target publisher on the event with processing time 0.
+	 */
+	private AsyncEventPublisher createBlockedPublisher(BlockingPublisher target, String overflowPolicy)
+			throws InterruptedException {
+		AsyncEventPublisher publisher = new AsyncEventPublisher();
+		publisher.setTargetPublisher(target);
+		publisher.setCapacity(2);
+		publisher.setOverflowPolicyName(overflowPolicy);
+		publisher.afterPropertiesSet();
+		publisher.publishEvent(createEvent(0));
+		target.awaitBlocked();
+		return publisher;
+	}
+
+	private static RequestHandledEvent createEvent(long processingTime) {
+		return new RequestHandledEvent(new Object(), "/test", processingTime, "127.0.0.1", "GET", "servlet");
+	}
+
+	private static void assertEventTimes(List events, long[] expectedTimes) {
+		assertEquals(expectedTimes.length, events.size());
+		for (int i = 0; i < expectedTimes.length; i++) {
+			assertEquals(expectedTimes[i], ((RequestHandledEvent) events.get(i)).getProcessingTimeMillis());
+		}
+	}
+
+
+	private static class RecordingPublisher implements ApplicationEventPublisher {
+
+		protected final List events = new ArrayList();
+
+		protected final List threads = new ArrayList();
+
+		public synchronized void publishEvent(ApplicationEvent event) {
+			this.events.add(event);
+			if (!this.threads.contains(Thread.currentThread())) {
+				this.threads.add(Thread.currentThread());
+			}
+		}
+	}
+
+
+	/**
+	 * Publisher that records the maximum number of threads calling it at the same time.
+	 */
+	private static class OverlapDetectingPublisher implements ApplicationEventPublisher {
+
+		private int eventCount = 0;
+
+		private int concurrentDeliveries = 0;
+
+		private int maxConcurrentDeliveries = 0;
+
+		public void publishEvent(ApplicationEvent event) {
+			synchronized (this) {
+				this.eventCount++;
+				this.concurrentDeliveries++;
+				this.maxConcurrentDeliveries = Math.max(this.maxConcurrentDeliveries, this.concurrentDeliveries);
+			}
+			try {
+				Thread.sleep(1);
+			}
+			catch (InterruptedException ex) {
+				// ignore
+			}
+			synchronized (this) {
+				this.concurrentDeliveries--;
+			}
+		}
+	}
+
+
+	/**
+	 * Publisher that blocks the first thread calling it until released.
+	 */
+	private static class BlockingPublisher implements ApplicationEventPublisher {
+
+		private final List events = new ArrayList();
+
+		private boolean blocked = false;
+
+		private boolean released = false;
+
+		public void publishEvent(ApplicationEvent event) {
+			synchronized (this) {
+				this.events.add(event);
+				if (!this.blocked) {
+					this.blocked = true;
+					notifyAll();
+					while (!this.released) {
+						try {
+							wait();
+						}
+						catch (InterruptedException ex) {
+							// keep waiting until released
+						}
+					}
+				}
+			}
+		}
+
+		private synchronized void awaitBlocked() throws InterruptedException {
+			while (!this.blocked) {
+				wait();
+			}
+		}
+
+		private synchronized void release() {
+			this.released = true;
+			notifyAll();
+		}
+	}
+
+}
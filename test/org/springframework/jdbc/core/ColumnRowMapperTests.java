@@ -0,0 +1,256 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.TestBean;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.object.BeanPropertyMappingSqlQuery;
+import org.springframework.util.StopWatch;
+
+/**
+ * Tests for ResultSetRowMapper, BeanPropertyRowMapper and JdbcTemplate's
+ * queryForRows methods against an in-memory HSQLDB database, including
+ * a timing comparison with Map-based rows and lookups by column name.
+ * @author agent
+ * @since 1.1.2
+ */
+public class ColumnRowMapperTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(ColumnRowMapperTests.class);
+
+	private static final int ROW_COUNT = 10000;
+
+	private DriverManagerDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Keeps the HSQLDB in-memory database open for all tests: HSQLDB drops it
+	 * when its last connection gets closed, and a dropped database that gets
+	 * finalized later on unregisters the current database of the same name.
+	 */
+	private static Connection keepAliveConnection;
+
+	protected void setUp() throws SQLException {
+		this.dataSource = new DriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		if (keepAliveConnection == null) {
+			keepAliveConnection = this.dataSource.getConnection();
+		}
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.jdbcTemplate.execute("CREATE TABLE person (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(50), " +
+				"age INTEGER, my_float REAL, touchy VARCHAR(50), extra VARCHAR(50))");
+		this.jdbcTemplate.update("INSERT INTO person VALUES (1, 'rod', 31, 1.5, 'valid', 'x')");
+		this.jdbcTemplate.update("INSERT INTO person VALUES (2, 'juergen', NULL, NULL, 'ok', NULL)");
+	}
+
+	protected void tearDown() throws SQLException {
+		this.jdbcTemplate.execute("DROP TABLE person");
+	}
+
+	public void testQueryForRows() {
+		List rows = this.jdbcTemplate.queryForRows("SELECT id, name, age FROM person ORDER BY id");
+		assertEquals(2, rows.size());
+		ResultSetRow row1 = (ResultSetRow) rows.get(0);
+		ResultSetRow row2 = (ResultSetRow) rows.get(1);
+		assertSame(row1.getColumns(), row2.getColumns());
+		assertEquals(3, row1.getColumns().getColumnCount());
+		assertEquals(2, row1.getColumns().findColumn("Name"));
+		assertEquals(-1, row1.getColumns().findColumn("extra"));
+		assertEquals(Types.INTEGER, row1.getColumns().getColumnType(3));
+		assertEquals("rod", row1.getValue(2));
+		assertEquals("rod", row1.getValue("name"));
+		assertEquals(new Integer(31), row1.getValue("AGE"));
+		assertNull(row2.getValue("age"));
+		try {
+			row1.getValue("extra");
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+
+		Map map = row1.toMap();
+		Iterator it = map.keySet().iterator();
+		assertEquals("ID", it.next());
+		assertEquals("NAME", it.next());
+		assertEquals("AGE", it.next());
+		Map listedMap = (Map) this.jdbcTemplate.queryForList("SELECT id, name, age FROM person ORDER BY id").get(0);
+		assertEquals(listedMap, map);
+	}
+
+	public void testQueryForRowsWithArguments() {
+		List rows = this.jdbcTemplate.queryForRows("SELECT name FROM person WHERE id = ?", new Object[] {new Integer(2)});
+		assertEquals(1, rows.size());
+		assertEquals("juergen", ((ResultSetRow) rows.get(0)).getValue(1));
+	}
+
+	public void testBeanPropertyRowMapper() {
+		BeanPropertyRowMapper rowMapper = new BeanPropertyRowMapper(TestBean.class);
+		List beans = this.jdbcTemplate.query("SELECT * FROM person ORDER BY id", rowMapper);
+		assertEquals(2, beans.size());
+		TestBean tb1 = (TestBean) beans.get(0);
+		assertEquals("rod", tb1.getName());
+		assertEquals(31, tb1.getAge());
+		assertEquals(new Float(1.5f), tb1.getMyFloat());
+		assertEquals("valid", tb1.getTouchy());
+		TestBean tb2 = (TestBean) beans.get(1);
+		assertEquals("juergen", tb2.getName());
+		assertEquals(0, tb2.getAge());
+		assertNull(tb2.getMyFloat());
+
+		// same mapper, different columns
+		beans = this.jdbcTemplate.query("SELECT touchy, name FROM person WHERE id = 1", rowMapper);
+		assertEquals("rod", ((TestBean) beans.get(0)).getName());
+		assertEquals("valid", ((TestBean) beans.get(0)).getTouchy());
+		assertEquals(0, ((TestBean) beans.get(0)).getAge());
+	}
+
+	public void testColumnMappingCreatedOncePerExecution() {
+		final int[] mappingCount = new int[1];
+		final AbstractColumnRowMapper rowMapper = new AbstractColumnRowMapper() {
+			protected Object createColumnMapping(ResultSetColumns columns) {
+				mappingCount[0]++;
+				return new Integer(columns.findColumn("name"));
+			}
+			protected Object mapRow(ResultSet rs, int rowNum, Object columnMapping) throws SQLException {
+				return rs.getString(((Integer) columnMapping).intValue());
+			}
+		};
+		List names = this.jdbcTemplate.query("SELECT id, name FROM person ORDER BY id", rowMapper);
+		assertEquals(2, names.size());
+		assertEquals("juergen", names.get(1));
+		assertEquals(1, mappingCount[0]);
+
+		// nested execution with the same mapper and a different column layout
+		names = this.jdbcTemplate.query("SELECT name, id FROM person ORDER BY id", new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				List nested = jdbcTemplate.query("SELECT age, name FROM person WHERE id = 1", rowMapper);
+				return rs.getString(1) + "/" + nested.get(0);
+			}
+		});
+		assertEquals("rod/rod", names.get(0));
+		assertEquals("juergen/rod", names.get(1));
+		assertEquals(3, mappingCount[0]);
+	}
+
+	public void testBeanPropertyRowMapperWithExceptionInSetter() {
+		this.jdbcTemplate.update("UPDATE person SET touchy = 'in.valid' WHERE id = 2");
+		try {
+			this.jdbcTemplate.query("SELECT * FROM person", new BeanPropertyRowMapper(TestBean.class));
+			fail("Should have thrown DataRetrievalFailureException");
+		}
+		catch (DataRetrievalFailureException ex) {
+			assertTrue(ex.getMessage().indexOf("touchy") != -1);
+		}
+	}
+
+	public void testBeanPropertyMappingSqlQuery() {
+		BeanPropertyMappingSqlQuery query =
+				new BeanPropertyMappingSqlQuery(this.dataSource, "SELECT name, age FROM person WHERE id = ?", TestBean.class);
+		query.declareParameter(new SqlParameter(Types.INTEGER));
+		query.compile();
+		TestBean tb = (TestBean) query.findObject(1);
+		assertEquals("rod", tb.getName());
+		assertEquals(31, tb.getAge());
+		assertEquals(TestBean.class, query.getMappedClass());
+	}
+
+	public void testBeanPropertyMappingSqlQueryWithoutMappedClass() {
+		BeanPropertyMappingSqlQuery query = new BeanPropertyMappingSqlQuery();
+		query.setDataSource(this.dataSource);
+		query.setSql("SELECT name FROM person");
+		try {
+			query.afterPropertiesSet();
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	public void testMappingTiming() {
+		this.jdbcTemplate.update("DELETE FROM person");
+		for (int i = 0; i < ROW_COUNT; i++) {
+			this.jdbcTemplate.update("INSERT INTO person VALUES (?, ?, ?, ?, ?, ?)", new Object[] {
+					new Integer(i), "name" + i, new Integer(i % 100), new Float(i), "touchy" + i, "extra" + i});
+		}
+		String sql = "SELECT id, name, age, my_float FROM person";
+		for (int i = 0; i < 3; i++) {
+			doTestMappingTiming(sql);
+		}
+	}
+
+	private void doTestMappingTiming(String sql) {
+		StopWatch sw = new StopWatch();
+		sw.start("queryForList");
+		assertEquals(ROW_COUNT, this.jdbcTemplate.queryForList(sql).size());
+		sw.stop();
+		sw.start("queryForRows");
+		assertEquals(ROW_COUNT, this.jdbcTemplate.queryForRows(sql).size());
+		sw.stop();
+		sw.start("RowMapper with column lookup by name");
+		List beans = this.jdbcTemplate.query(sql, new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				TestBean tb = new TestBean();
+				tb.setName(rs.getString("name"));
+				tb.setAge(rs.getInt("age"));
+				tb.setMyFloat(new Float(rs.getFloat("my_float")));
+				return tb;
+			}
+		});
+		assertEquals(ROW_COUNT, beans.size());
+		sw.stop();
+		sw.start("AbstractColumnRowMapper with cached column indexes");
+		beans = this.jdbcTemplate.query(sql, new AbstractColumnRowMapper() {
+			protected Object createColumnMapping(ResultSetColumns columns) {
+				return new int[] {columns.findColumn("name"), columns.findColumn("age"),
+						columns.findColumn("my_float")};
+			}
+			protected Object mapRow(ResultSet rs, int rowNum, Object columnMapping) throws SQLException {
+				int[] indexes = (int[]) columnMapping;
+				TestBean tb = new TestBean();
+				tb.setName(rs.getString(indexes[0]));
+				tb.setAge(rs.getInt(indexes[1]));
+				tb.setMyFloat(new Float(rs.getFloat(indexes[2])));
+				return tb;
+			}
+		});
+		assertEquals(ROW_COUNT, beans.size());
+		sw.stop();
+		sw.start("BeanPropertyRowMapper");
+		beans = this.jdbcTemplate.query(sql, new BeanPropertyRowMapper(TestBean.class));
+		assertEquals(ROW_COUNT, beans.size());
+		sw.stop();
+		assertEquals("name" + (ROW_COUNT - 1), ((TestBean) beans.get(ROW_COUNT - 1)).getName());
+		logger.info(ROW_COUNT + " rows: " + sw.prettyPrint());
+	}
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tests for JdbcTemplate's queryForCursor methods against an in-memory
+ * HSQLDB database.
+ * @author agent
+ * @since 1.1.2
+ */
+public class JdbcTemplateCursorTests extends TestCase {
+
+	private static final int ROW_COUNT = 1000;
+
+	/** Size of each mapped row object: 1 MB, i.e. 1 GB for all rows */
+	private static final int ROW_SIZE = 1024 * 1024;
+
+	private RecordingDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Keeps the HSQLDB in-memory database open for all tests: HSQLDB drops it
+	 * when its last connection gets closed, and a dropped database that gets
+	 * finalized later on unregisters the current database of the same name.
+	 */
+	private static Connection keepAliveConnection;
+
+	protected void setUp() throws SQLException {
+		this.dataSource = new RecordingDataSource();
+		if (keepAliveConnection == null) {
+			keepAliveConnection = this.dataSource.getConnection();
+		}
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.jdbcTemplate.execute("CREATE TABLE cursor_test (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(50))");
+		this.jdbcTemplate.update("INSERT INTO cursor_test VALUES (-1, 'first')");
+		for (int i = 0; i < ROW_COUNT - 1; i++) {
+			this.jdbcTemplate.update("INSERT INTO cursor_test VALUES (?, ?)",
+					new Object[] {new Integer(i), "name" + i});
+		}
+		this.dataSource.connections.clear();
+	}
+
+	protected void tearDown() throws SQLException {
+		this.jdbcTemplate.execute("DROP TABLE cursor_test");
+	}
+
+	public void testIterateWithBoundedMemory() {
+		this.jdbcTemplate.setFetchSize(50);
+		RowCursor cursor = this.jdbcTemplate.queryForCursor(
+				"SELECT id, name FROM cursor_test ORDER BY id", new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return new LargeRow(rs.getInt(1), rs.getString(2), rowNum);
+			}
+		});
+		assertFalse(cursor.isClosed());
+
+		LargeRow row = (LargeRow) cursor.next();
+		assertEquals(-1, row.id);
+		assertEquals("first", row.name);
+		assertEquals(0, row.rowNum);
+		WeakReference firstRow = new WeakReference(row);
+		row = null;
+
+		int count = 1;
+		while (cursor.hasNext()) {
+			row = (LargeRow) cursor.next();
+			assertEquals(count - 1, row.id);
+			assertEquals(count, row.rowNum);
+			count++;
+		}
+		row = null;
+		System.gc();
+
+		assertEquals(ROW_COUNT, count);
+		assertEquals(ROW_COUNT, cursor.getRowCount());
+		assertNull("First row object retained by cursor", firstRow.get());
+		assertTrue(cursor.isClosed());
+		assertFalse(cursor.hasNext());
+		assertAllConnectionsClosed();
+	}
+
+	public void testQueryWithArguments() {
+		RowCursor cursor = this.jdbcTemplate.queryForCursor(
+				"SELECT name FROM cursor_test WHERE id < ? ORDER BY id", new Object[] {new Integer(2)},
+				new StringRowMapper());
+		List names = new ArrayList();
+		while (cursor.hasNext()) {
+			names.add(cursor.next());
+		}
+		assertEquals(3, names.size());
+		assertEquals("first", names.get(0));
+		assertEquals("name1", names.get(2));
+		try {
+			cursor.next();
+			fail("Should have thrown NoSuchElementException");
+		}
+		catch (NoSuchElementException ex) {
+			// expected
+		}
+		assertAllConnectionsClosed();
+	}
+
+	public void testCloseReleasesConnection() throws SQLException {
+		RowCursor cursor = this.jdbcTemplate.queryForCursor("SELECT name FROM cursor_test", new StringRowMapper());
+		assertTrue(cursor.hasNext());
+		assertTrue(cursor.hasNext());
+		cursor.next();
+		assertEquals(1, this.dataSource.connections.size());
+		assertFalse(((Connection) this.dataSource.connections.get(0)).isClosed());
+
+		cursor.close();
+		assertTrue(cursor.isClosed());
+		assertFalse(cursor.hasNext());
+		cursor.close();
+		assertAllConnectionsClosed();
+	}
+
+	public void testBadSqlReleasesConnection() {
+		try {
+			this.jdbcTemplate.queryForCursor("SELECT no_such_column FROM cursor_test", new StringRowMapper());
+			fail("Should have thrown BadSqlGrammarException");
+		}
+		catch (BadSqlGrammarException ex) {
+			// expected
+		}
+		assertAllConnectionsClosed();
+	}
+
+	public void testMappingExceptionClosesCursor() {
+		final RuntimeException failure = new IllegalStateException();
+		RowCursor cursor = this.jdbcTemplate.queryForCursor("SELECT name FROM cursor_test", new RowMapper() {
+			public Object mapRow(ResultSet rs, int rowNum) {
+				throw failure;
+			}
+		});
+		try {
+			cursor.hasNext();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			assertSame(failure, ex);
+		}
+		assertTrue(cursor.isClosed());
+		assertAllConnectionsClosed();
+	}
+
+	public void testCursorWithinTransaction() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				jdbcTemplate.update("DELETE FROM cursor_test WHERE id >= 0");
+				RowCursor cursor = jdbcTemplate.queryForCursor("SELECT name FROM cursor_test", new StringRowMapper());
+				assertTrue(cursor.hasNext());
+				assertEquals("first", cursor.next());
+				assertFalse(cursor.hasNext());
+				assertTrue(cursor.isClosed());
+				assertEquals(1, dataSource.connections.size());
+				assertEquals(1, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM cursor_test"));
+				status.setRollbackOnly();
+			}
+		});
+		assertAllConnectionsClosed();
+		assertEquals(ROW_COUNT, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM cursor_test"));
+	}
+
+	private void assertAllConnectionsClosed() {
+		try {
+			for (int i = 0; i < this.dataSource.connections.size(); i++) {
+				assertTrue(((Connection) this.dataSource.connections.get(i)).isClosed());
+			}
+		}
+		catch (SQLException ex) {
+			fail(ex.getMessage());
+		}
+	}
+
+
+	private static class RecordingDataSource extends DriverManagerDataSource {
+
+		private final List connections = new ArrayList();
+
+		public RecordingDataSource() {
+			super("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		}
+
+		protected Connection getConnectionFromDriverManager(String url, String username, String password)
+				throws SQLException {
+			Connection con = super.getConnectionFromDriverManager(url, username, password);
+			this.connections.add(con);
+			return con;
+		}
+	}
+
+
+	private static class StringRowMapper implements RowMapper {
+
+		public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+			return rs.getString(1);
+		}
+	}
+
+
+	private static class LargeRow {
+
+		private final int id;
+
+		private final String name;
+
+		private final int rowNum;
+
+		private final byte[] payload = new byte[ROW_SIZE];
+
+		public LargeRow(int id, String name, int rowNum) {
+			this.id = id;
+			this.name = name;
+			this.rowNum = rowNum;
+		}
+	}
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.object.MappingSqlQuery;
+import org.springframework.jdbc.object.SqlUpdate;
+
+/**
+ * Tests for NamedParameterJdbcTemplate and for SqlQuery and SqlUpdate
+ * with named parameters, against an in-memory HSQLDB database.
+ * @author agent
+ * @since 1.1.2
+ */
+public class NamedParameterJdbcTemplateTests extends TestCase {
+
+	/**
+	 * Keeps the HSQLDB in-memory database open for all tests: HSQLDB drops it
+	 * when its last connection gets closed, and a dropped database that gets
+	 * finalized later on unregisters the current database of the same name.
+	 */
+	private static Connection keepAliveConnection;
+
+	private DriverManagerDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private NamedParameterJdbcTemplate namedTemplate;
+
+	protected void setUp() throws SQLException {
+		this.dataSource = new DriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		if (keepAliveConnection == null) {
+			keepAliveConnection = this.dataSource.getConnection();
+		}
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.jdbcTemplate.execute("CREATE TABLE named_test (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(50))");
+		this.jdbcTemplate.update("INSERT INTO named_test VALUES (1, 'rod')");
+		this.jdbcTemplate.update("INSERT INTO named_test VALUES (2, 'juergen')");
+		this.jdbcTemplate.update("INSERT INTO named_test VALUES (3, 'keith')");
+		this.namedTemplate = new NamedParameterJdbcTemplate(this.jdbcTemplate);
+	}
+
+	protected void tearDown() {
+		this.jdbcTemplate.execute("DROP TABLE named_test");
+	}
+
+	public void testQueryWithNamedParameters() {
+		Map paramMap = new HashMap();
+		paramMap.put("id", new Integer(2));
+		assertEquals("juergen", this.namedTemplate.queryForObject(
+				"SELECT name FROM named_test WHERE id = :id", paramMap, String.class));
+		assertEquals(1, this.namedTemplate.queryForInt(
+				"SELECT COUNT(*) FROM named_test WHERE id = :id OR id = :id", paramMap));
+		assertEquals(1, this.namedTemplate.queryForList(
+				"SELECT * FROM named_test WHERE id = :id", paramMap).size());
+
+		List names = this.namedTemplate.query("SELECT name FROM named_test WHERE id >= :id ORDER BY id",
+				paramMap, new RowMapper() {
+					public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+						return rs.getString(1);
+					}
+				});
+		assertEquals(Arrays.asList(new String[] {"juergen", "keith"}), names);
+	}
+
+	public void testQueryWithInList() {
+		Map paramMap = new HashMap();
+		paramMap.put("ids", Arrays.asList(new Integer[] {new Integer(1), new Integer(3), new Integer(4)}));
+		paramMap.put("name", "keith");
+		assertEquals(1, this.namedTemplate.queryForLong(
+				"SELECT COUNT(*) FROM named_test WHERE id IN (:ids) AND name <> :name", paramMap));
+		paramMap.put("ids", new Object[] {new Integer(2)});
+		assertEquals(2, this.namedTemplate.queryForLong(
+				"SELECT COUNT(*) FROM named_test WHERE id NOT IN (:ids) AND name <> ':ids'", paramMap));
+	}
+
+	public void testUpdateWithNamedParameters() {
+		Map paramMap = new HashMap();
+		paramMap.put("name", "colin");
+		paramMap.put("ids", new Integer[] {new Integer(1), new Integer(2)});
+		assertEquals(2, this.namedTemplate.update("UPDATE named_test SET name = :name WHERE id IN (:ids)", paramMap));
+		assertEquals(2, this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM named_test WHERE name = 'colin'"));
+	}
+
+	public void testMissingParameter() {
+		try {
+			this.namedTemplate.update("UPDATE named_test SET name = :name", new HashMap());
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	public void testSqlQueryWithNamedParameters() {
+		NameQuery query = new NameQuery();
+		Map paramMap = new HashMap();
+		paramMap.put("minId", new Integer(2));
+		paramMap.put("names", Arrays.asList(new String[] {"rod", "keith"}));
+		assertEquals(Arrays.asList(new String[] {"keith"}), query.executeByNamedParam(paramMap));
+		paramMap.put("names", new String[] {"juergen"});
+		assertEquals("juergen", query.findObjectByNamedParam(paramMap));
+		paramMap.put("minId", new Integer(1));
+		paramMap.put("names", "rod");
+		assertEquals("rod", query.findObjectByNamedParam(paramMap));
+
+		try {
+			query.execute(new Object[] {new Integer(1), "rod", "keith"});
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	public void testSqlUpdateWithNamedParameters() {
+		SqlUpdate update = new SqlUpdate(this.dataSource, "UPDATE named_test SET name = :name WHERE id = :id");
+		update.declareParameter(new SqlParameter("id", Types.INTEGER));
+		update.declareParameter(new SqlParameter("name", Types.VARCHAR));
+		update.compile();
+		Map paramMap = new HashMap();
+		paramMap.put("id", new Integer(3));
+		paramMap.put("name", "colin");
+		assertEquals(1, update.updateByNamedParam(paramMap));
+		assertEquals("colin", this.jdbcTemplate.queryForObject(
+				"SELECT name FROM named_test WHERE id = 3", String.class));
+
+		SqlUpdate positionalUpdate = new SqlUpdate(this.dataSource, "UPDATE named_test SET name = ?",
+				new int[] {Types.VARCHAR});
+		try {
+			positionalUpdate.updateByNamedParam(paramMap);
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	public void testSqlUpdateWithUndeclaredNamedParameter() {
+		SqlUpdate update = new SqlUpdate(this.dataSource, "UPDATE named_test SET name = :name WHERE id = :id");
+		update.declareParameter(new SqlParameter("name", Types.VARCHAR));
+		try {
+			update.compile();
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+
+	public void testSqlUpdateWithoutDeclaredParameters() {
+		// no declared parameters: SQL passed to the driver as-is
+		SqlUpdate update = new SqlUpdate(this.dataSource, "UPDATE named_test SET name = :name");
+		update.compile();
+		try {
+			update.updateByNamedParam(new HashMap());
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	private class NameQuery extends MappingSqlQuery {
+
+		public NameQuery() {
+			super(dataSource, "SELECT name FROM named_test WHERE id >= :minId AND name IN (:names) ORDER BY id");
+			declareParameter(new SqlParameter("names", Types.VARCHAR));
+			declareParameter(new SqlParameter("minId", Types.INTEGER));
+			compile();
+		}
+
+		protected Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+			return rs.getString(1);
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class NamedParameterUtilsTests extends TestCase {
+
+	public void testParseSqlStatement() {
+		String sql = "SELECT * FROM person WHERE name = :name AND age > :minAge OR age < :minAge";
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		assertEquals(sql, parsedSql.getOriginalSql());
+		assertEquals(3, parsedSql.getParameterCount());
+		assertEquals(2, parsedSql.getDistinctParameterCount());
+		assertEquals("name", parsedSql.getParameterName(0));
+		assertEquals("minAge", parsedSql.getParameterName(1));
+		assertEquals("minAge", parsedSql.getParameterName(2));
+		assertEquals("SELECT * FROM person WHERE name = ? AND age > ? OR age < ?", parsedSql.getSql());
+		assertSame("Cached", parsedSql, NamedParameterUtils.parseSqlStatement(sql));
+	}
+
+	public void testCacheEvictsEldestStatements() {
+		String firstSql = "SELECT * FROM cached WHERE id = :id";
+		ParsedSql firstParsedSql = NamedParameterUtils.parseSqlStatement(firstSql);
+		for (int i = 0; i < 2000; i++) {
+			NamedParameterUtils.parseSqlStatement("SELECT * FROM dynamic WHERE id = :id AND x = " + i);
+		}
+		assertNotSame("Evicted", firstParsedSql, NamedParameterUtils.parseSqlStatement(firstSql));
+		String sql = "SELECT * FROM cached WHERE name = :name";
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		assertSame("Cached after cache limit reached", parsedSql, NamedParameterUtils.parseSqlStatement(sql));
+	}
+
+	public void testParseSqlStatementWithLiteralsAndComments() {
+		String sql = "SELECT ':notParam', \"a:b\" FROM t -- :comment\n" +
+				"WHERE x = :x /* :other */ AND y = CAST(:y AS VARCHAR) AND z::text = :z_1";
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		assertEquals(3, parsedSql.getParameterCount());
+		assertEquals("x", parsedSql.getParameterName(0));
+		assertEquals("y", parsedSql.getParameterName(1));
+		assertEquals("z_1", parsedSql.getParameterName(2));
+		assertEquals("SELECT ':notParam', \"a:b\" FROM t -- :comment\n" +
+				"WHERE x = ? /* :other */ AND y = CAST(? AS VARCHAR) AND z::text = ?", parsedSql.getSql());
+	}
+
+	public void testHasNamedParameters() {
+		assertTrue(NamedParameterUtils.hasNamedParameters("SELECT * FROM t WHERE x = :x"));
+		assertFalse(NamedParameterUtils.hasNamedParameters("SELECT * FROM t WHERE x = ?"));
+		assertFalse(NamedParameterUtils.hasNamedParameters("SELECT ':x' FROM t"));
+	}
+
+	public void testMixedPlaceholders() {
+		try {
+			NamedParameterUtils.parseSqlStatement("SELECT * FROM t WHERE x = :x AND y = ?");
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	public void testGetValues() {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement("UPDATE t SET a = :a WHERE b = :b OR c = :a");
+		Map paramMap = new HashMap();
+		paramMap.put("a", "x");
+		paramMap.put("b", null);
+		assertFalse(parsedSql.requiresExpansion(paramMap));
+		assertSame(parsedSql.getSql(), parsedSql.getSql(paramMap));
+		assertTrue(Arrays.equals(new Object[] {"x", null, "x"}, parsedSql.getValues(paramMap)));
+
+		paramMap.remove("b");
+		try {
+			parsedSql.getValues(paramMap);
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	public void testCollectionExpansion() {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(
+				"SELECT * FROM t WHERE id IN (:ids) AND name IN (:names) AND x = :x");
+		List ids = new ArrayList();
+		ids.add(new Integer(1));
+		ids.add(new Integer(2));
+		ids.add(new Integer(3));
+		Map paramMap = new HashMap();
+		paramMap.put("ids", ids);
+		paramMap.put("names", new String[] {"rod", "juergen"});
+		paramMap.put("x", new byte[] {1, 2});
+		assertTrue(parsedSql.requiresExpansion(paramMap));
+		assertEquals("SELECT * FROM t WHERE id IN (?, ?, ?) AND name IN (?, ?) AND x = ?", parsedSql.getSql(paramMap));
+		Object[] values = parsedSql.getValues(paramMap);
+		assertEquals(6, values.length);
+		assertEquals(new Integer(3), values[2]);
+		assertEquals("juergen", values[4]);
+		assertTrue(values[5] instanceof byte[]);
+
+		SqlParameter idParam = new SqlParameter("ids", Types.INTEGER);
+		SqlParameter nameParam = new SqlParameter("names", Types.VARCHAR);
+		SqlParameter xParam = new SqlParameter("x", Types.BINARY);
+		List declaredParameters = Arrays.asList(new SqlParameter[] {xParam, nameParam, idParam});
+		SqlParameter[] slotParameters = parsedSql.resolveParameters(declaredParameters);
+		assertSame(idParam, slotParameters[0]);
+		assertSame(nameParam, slotParameters[1]);
+		assertSame(xParam, slotParameters[2]);
+		List parameters = parsedSql.getParameters(slotParameters, paramMap);
+		assertEquals(6, parameters.size());
+		assertSame(idParam, parameters.get(2));
+		assertSame(nameParam, parameters.get(3));
+		assertSame(xParam, parameters.get(5));
+
+		paramMap.put("ids", new ArrayList());
+		try {
+			parsedSql.getSql(paramMap);
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	public void testResolveUndeclaredParameter() {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement("SELECT * FROM t WHERE x = :x");
+		try {
+			parsedSql.resolveParameters(Arrays.asList(new SqlParameter[] {new SqlParameter("y", Types.INTEGER)}));
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+}
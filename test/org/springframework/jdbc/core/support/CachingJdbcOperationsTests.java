@@ -0,0 +1,255 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.support;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tests for CachingJdbcOperations against an in-memory HSQLDB database.
+ * @author agent
+ * @since 1.1.2
+ */
+public class CachingJdbcOperationsTests extends TestCase {
+
+	private static final String COUNT_QUERY = "SELECT COUNT(*) FROM cache_item WHERE category = ?";
+
+	private static final String NAME_QUERY = "SELECT name FROM cache_category WHERE id = ?";
+
+	/**
+	 * Keeps the HSQLDB in-memory database open for all tests: HSQLDB drops it
+	 * when its last connection gets closed, and a dropped database that gets
+	 * finalized later on unregisters the current database of the same name.
+	 */
+	private static Connection keepAliveConnection;
+
+	private DriverManagerDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private CachingJdbcOperations cachingOperations;
+
+	protected void setUp() throws SQLException {
+		this.dataSource = new DriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		if (keepAliveConnection == null) {
+			keepAliveConnection = this.dataSource.getConnection();
+		}
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.jdbcTemplate.execute("CREATE TABLE cache_category (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(50))");
+		this.jdbcTemplate.execute("CREATE TABLE cache_item (id INTEGER NOT NULL PRIMARY KEY, category INTEGER)");
+		this.jdbcTemplate.update("INSERT INTO cache_category VALUES (1, 'books')");
+		this.jdbcTemplate.update("INSERT INTO cache_item VALUES (1, 1)");
+		this.jdbcTemplate.update("INSERT INTO cache_item VALUES (2, 1)");
+		this.cachingOperations = new CachingJdbcOperations(this.jdbcTemplate);
+	}
+
+	protected void tearDown() {
+		this.jdbcTemplate.execute("DROP TABLE cache_item");
+		this.jdbcTemplate.execute("DROP TABLE cache_category");
+	}
+
+	public void testQueryResultsCached() {
+		Object[] args = new Object[] {new Integer(1)};
+		assertEquals(2, this.cachingOperations.queryForInt(COUNT_QUERY, args));
+		assertEquals(2, this.cachingOperations.queryForInt(COUNT_QUERY, args));
+		assertEquals(2L, this.cachingOperations.queryForLong(COUNT_QUERY, args));
+		assertEquals(0, this.cachingOperations.queryForInt(COUNT_QUERY, new Object[] {new Integer(2)}));
+		assertEquals(1, this.cachingOperations.getHitCount());
+		assertEquals(3, this.cachingOperations.getMissCount());
+
+		assertEquals("books", this.cachingOperations.queryForObject(NAME_QUERY, args, String.class));
+		assertEquals("books", this.cachingOperations.queryForObject(NAME_QUERY, args, String.class));
+		assertEquals(2, this.cachingOperations.getHitCount());
+	}
+
+	public void testCachedListIsUnmodifiable() {
+		List items = this.cachingOperations.queryForList("SELECT id FROM cache_item ORDER BY id");
+		assertEquals(2, items.size());
+		assertSame(items, this.cachingOperations.queryForList("SELECT id FROM cache_item ORDER BY id"));
+		try {
+			items.clear();
+			fail("Should have thrown UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException ex) {
+			// expected
+		}
+	}
+
+	public void testStatementCacheEvictsEldestStatements() throws Exception {
+		Field statementCacheField = CachingJdbcOperations.class.getDeclaredField("statementCache");
+		statementCacheField.setAccessible(true);
+		Map statementCache = (Map) statementCacheField.get(this.cachingOperations);
+		String firstSql = "SELECT id FROM cache_item WHERE id = 0";
+		this.cachingOperations.queryForList(firstSql);
+		for (int i = 1; i <= 2000; i++) {
+			this.cachingOperations.queryForList("SELECT id FROM cache_item WHERE id = " + i);
+		}
+		assertEquals(1024, statementCache.size());
+		assertFalse("Evicted", statementCache.containsKey(firstSql));
+		assertTrue(statementCache.containsKey("SELECT id FROM cache_item WHERE id = 2000"));
+		this.cachingOperations.queryForList(firstSql);
+		assertTrue("Cached after cache limit reached", statementCache.containsKey(firstSql));
+		assertEquals(1024, statementCache.size());
+	}
+
+	public void testNonDeterministicQueriesBypassCache() {
+		final int[] queryCount = new int[1];
+		CachingJdbcOperations cachingOperations = new CachingJdbcOperations(new JdbcTemplate(this.dataSource) {
+			public List queryForList(String sql) throws DataAccessException {
+				queryCount[0]++;
+				return Collections.EMPTY_LIST;
+			}
+		});
+		String[] bypassed = new String[] {
+			"SELECT id FROM cache_item WHERE id = 1 FOR UPDATE",
+			"SELECT id FROM cache_item FOR UPDATE OF category",
+			"SELECT item_seq.NEXTVAL FROM dual",
+			"SELECT NEXT VALUE FOR item_seq FROM cache_item",
+			"SELECT nextval('item_seq')",
+			"SELECT CURRENT_TIMESTAMP FROM cache_item",
+			"SELECT id, SYSDATE FROM cache_item",
+			"SELECT id FROM cache_item WHERE category < RAND() * 10",
+			"SELECT NOW() FROM cache_item",
+			"SELECT 1"};
+		for (int i = 0; i < bypassed.length; i++) {
+			cachingOperations.queryForList(bypassed[i]);
+			cachingOperations.queryForList(bypassed[i]);
+			assertEquals(bypassed[i], 2 * (i + 1), queryCount[0]);
+		}
+		assertEquals(0, cachingOperations.getHitCount());
+		assertEquals(0, cachingOperations.getMissCount());
+
+		// identifiers that merely resemble function names are fine
+		cachingOperations.queryForList("SELECT uuid, now_playing FROM cache_item");
+		cachingOperations.queryForList("SELECT uuid, now_playing FROM cache_item");
+		assertEquals(2 * bypassed.length + 1, queryCount[0]);
+		assertEquals(1, cachingOperations.getHitCount());
+	}
+
+	public void testUpdateInvalidatesTable() {
+		Object[] args = new Object[] {new Integer(1)};
+		this.cachingOperations.queryForInt(COUNT_QUERY, args);
+		this.cachingOperations.queryForObject(NAME_QUERY, args, String.class);
+
+		this.cachingOperations.update("INSERT INTO cache_item VALUES (3, 1)");
+		assertEquals(3, this.cachingOperations.queryForInt(COUNT_QUERY, args));
+		assertEquals("books", this.cachingOperations.queryForObject(NAME_QUERY, args, String.class));
+		assertEquals("Unrelated table still cached", 1, this.cachingOperations.getHitCount());
+		assertEquals(3, this.cachingOperations.getMissCount());
+	}
+
+	public void testJoinInvalidatedByEitherTable() {
+		String joinQuery = "SELECT COUNT(*) FROM cache_item i INNER JOIN cache_category c ON i.category = c.id";
+		String commaQuery = "SELECT COUNT(*) FROM cache_item i, cache_category c WHERE i.category = c.id";
+		assertEquals(2, this.cachingOperations.queryForInt(joinQuery));
+		assertEquals(2, this.cachingOperations.queryForInt(commaQuery));
+
+		this.cachingOperations.update("UPDATE \"CACHE_CATEGORY\" SET name = 'media' WHERE id = ?",
+				new Object[] {new Integer(1)});
+		this.cachingOperations.queryForInt(joinQuery);
+		this.cachingOperations.queryForInt(commaQuery);
+		assertEquals(0, this.cachingOperations.getHitCount());
+
+		this.cachingOperations.update("DELETE FROM cache_item WHERE id = 2");
+		assertEquals(1, this.cachingOperations.queryForInt(joinQuery));
+		assertEquals(1, this.cachingOperations.queryForInt(commaQuery));
+		assertEquals(0, this.cachingOperations.getHitCount());
+	}
+
+	public void testUnknownStatementInvalidatesAll() {
+		this.cachingOperations.queryForInt(COUNT_QUERY, new Object[] {new Integer(1)});
+		this.cachingOperations.execute("CHECKPOINT");
+		this.cachingOperations.queryForInt(COUNT_QUERY, new Object[] {new Integer(1)});
+		assertEquals(0, this.cachingOperations.getHitCount());
+	}
+
+	public void testWritesWithinTransactionBypassCache() {
+		final Object[] args = new Object[] {new Integer(1)};
+		this.cachingOperations.queryForInt(COUNT_QUERY, args);
+		this.cachingOperations.queryForObject(NAME_QUERY, args, String.class);
+
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertEquals(2, cachingOperations.queryForInt(COUNT_QUERY, args));
+				assertEquals(1, cachingOperations.getHitCount());
+				cachingOperations.update("INSERT INTO cache_item VALUES (3, 1)");
+				assertEquals(3, cachingOperations.queryForInt(COUNT_QUERY, args));
+				assertEquals(3, cachingOperations.queryForInt(COUNT_QUERY, args));
+				assertEquals("books", cachingOperations.queryForObject(NAME_QUERY, args, String.class));
+				assertEquals("Modified table not looked up", 2, cachingOperations.getHitCount());
+				assertEquals("Modified table not cached", 2, cachingOperations.getMissCount());
+				status.setRollbackOnly();
+			}
+		});
+
+		assertEquals("Uncommitted count not cached", 2, this.cachingOperations.queryForInt(COUNT_QUERY, args));
+		assertEquals(3, this.cachingOperations.getMissCount());
+	}
+
+	public void testInvalidationOnCommit() {
+		final Object[] args = new Object[] {new Integer(1)};
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				cachingOperations.update("INSERT INTO cache_item VALUES (3, 1)");
+			}
+		});
+		assertEquals(3, this.cachingOperations.queryForInt(COUNT_QUERY, args));
+		assertEquals(3, this.cachingOperations.queryForInt(COUNT_QUERY, args));
+		assertEquals(1, this.cachingOperations.getHitCount());
+	}
+
+	public void testLruEviction() {
+		LruQueryResultCache cache = new LruQueryResultCache(2, 0);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		assertEquals("1", cache.get("a"));
+		cache.put("c", "3");
+		assertEquals(2, cache.size());
+		assertNull("Least recently used entry evicted", cache.get("b"));
+		assertEquals("1", cache.get("a"));
+		assertEquals("3", cache.get("c"));
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNull(cache.get("a"));
+	}
+
+	public void testTimeToLive() throws InterruptedException {
+		LruQueryResultCache cache = new LruQueryResultCache(10, 50);
+		cache.put("a", "1");
+		assertEquals("1", cache.get("a"));
+		Thread.sleep(100);
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+	}
+
+}
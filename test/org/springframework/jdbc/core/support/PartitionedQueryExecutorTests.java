@@ -0,0 +1,183 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.support;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tests for PartitionedQueryExecutor against an in-memory HSQLDB database.
+ * @author agent
+ * @since 1.1.2
+ */
+public class PartitionedQueryExecutorTests extends TestCase {
+
+	private static final int ROW_COUNT = 100;
+
+	private static final String RANGE_QUERY = "SELECT id FROM partition_test WHERE id >= ? AND id < ? ORDER BY id";
+
+	/**
+	 * Keeps the HSQLDB in-memory database open for all tests: HSQLDB drops it
+	 * when its last connection gets closed, and a dropped database that gets
+	 * finalized later on unregisters the current database of the same name.
+	 */
+	private static Connection keepAliveConnection;
+
+	private DriverManagerDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private PartitionedQueryExecutor executor;
+
+	private final Set mappingThreads = Collections.synchronizedSet(new HashSet());
+
+	private final Set readOnlyFlags = Collections.synchronizedSet(new HashSet());
+
+	private final RowMapper idMapper = new RowMapper() {
+		public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+			mappingThreads.add(Thread.currentThread());
+			readOnlyFlags.add(new Boolean(rs.getStatement().getConnection().isReadOnly()));
+			return new Integer(rs.getInt(1));
+		}
+	};
+
+	protected void setUp() throws SQLException {
+		this.dataSource = new DriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		if (keepAliveConnection == null) {
+			keepAliveConnection = this.dataSource.getConnection();
+		}
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.jdbcTemplate.execute("CREATE TABLE partition_test (id INTEGER NOT NULL PRIMARY KEY)");
+		for (int i = 1; i <= ROW_COUNT; i++) {
+			this.jdbcTemplate.update("INSERT INTO partition_test VALUES (" + i + ")");
+		}
+		this.executor = new PartitionedQueryExecutor(this.jdbcTemplate);
+	}
+
+	protected void tearDown() {
+		this.jdbcTemplate.execute("DROP TABLE partition_test");
+	}
+
+	public void testCreateRangePartitions() {
+		List partitions = PartitionedQueryExecutor.createRangePartitions(1, 11, 3);
+		assertEquals(3, partitions.size());
+		assertEquals(new Long(1), ((Object[]) partitions.get(0))[0]);
+		assertEquals(new Long(4), ((Object[]) partitions.get(0))[1]);
+		assertEquals(new Long(4), ((Object[]) partitions.get(1))[0]);
+		assertEquals(new Long(7), ((Object[]) partitions.get(1))[1]);
+		assertEquals(new Long(7), ((Object[]) partitions.get(2))[0]);
+		assertEquals(new Long(11), ((Object[]) partitions.get(2))[1]);
+	}
+
+	public void testQueryInPartitionOrder() {
+		List result = this.executor.query(
+				RANGE_QUERY, PartitionedQueryExecutor.createRangePartitions(1, ROW_COUNT + 1, 7), this.idMapper);
+		assertSequence(result);
+		assertFalse(this.mappingThreads.contains(Thread.currentThread()));
+		assertFalse(this.readOnlyFlags.contains(Boolean.FALSE));
+	}
+
+	public void testQueryWithOrderedMerge() {
+		List partitions = new ArrayList();
+		for (int i = 0; i < 4; i++) {
+			partitions.add(new Object[] {new Integer(4), new Integer(i)});
+		}
+		List result = this.executor.query("SELECT id FROM partition_test WHERE MOD(id, ?) = ? ORDER BY id",
+				partitions, this.idMapper, new Comparator() {
+					public int compare(Object o1, Object o2) {
+						return ((Integer) o1).intValue() - ((Integer) o2).intValue();
+					}
+				});
+		assertSequence(result);
+	}
+
+	public void testQueryWithRowCallbackHandler() {
+		final int[] count = new int[1];
+		this.executor.query(RANGE_QUERY, PartitionedQueryExecutor.createRangePartitions(1, ROW_COUNT + 1, 5),
+				new RowCallbackHandler() {
+					public void processRow(ResultSet rs) {
+						count[0]++;
+					}
+				});
+		assertEquals(ROW_COUNT, count[0]);
+	}
+
+	public void testQueryWithBadSql() {
+		try {
+			this.executor.query("SELECT id FROM partition_tset WHERE id >= ? AND id < ?",
+					PartitionedQueryExecutor.createRangePartitions(1, ROW_COUNT + 1, 4), this.idMapper);
+			fail("Should have thrown BadSqlGrammarException");
+		}
+		catch (BadSqlGrammarException ex) {
+			// expected
+		}
+	}
+
+	public void testQueryWithinReadWriteTransaction() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				jdbcTemplate.update("INSERT INTO partition_test VALUES (" + (ROW_COUNT + 1) + ")");
+				List result = executor.query(
+						RANGE_QUERY, PartitionedQueryExecutor.createRangePartitions(1, ROW_COUNT + 2, 4), idMapper);
+				assertEquals("Sees uncommitted row", ROW_COUNT + 1, result.size());
+				status.setRollbackOnly();
+			}
+		});
+		assertEquals(Collections.singleton(Thread.currentThread()), this.mappingThreads);
+	}
+
+	public void testQueryWithinReadOnlyTransaction() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.setReadOnly(true);
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				List result = executor.query(
+						RANGE_QUERY, PartitionedQueryExecutor.createRangePartitions(1, ROW_COUNT + 1, 4), idMapper);
+				assertSequence(result);
+			}
+		});
+		assertFalse(this.mappingThreads.contains(Thread.currentThread()));
+	}
+
+	private void assertSequence(List result) {
+		assertEquals(ROW_COUNT, result.size());
+		for (int i = 0; i < ROW_COUNT; i++) {
+			assertEquals(new Integer(i + 1), result.get(i));
+		}
+	}
+
+}
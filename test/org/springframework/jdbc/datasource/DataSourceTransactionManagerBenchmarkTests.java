@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StopWatch;
+
+/**
+ * Benchmark for the begin/commit cost of many short DataSourceTransactionManager
+ * transactions against a stub DataSource, measuring the transaction infrastructure
+ * itself: resource binding and transaction synchronization per thread.
+ * @author agent
+ * @since 1.1.2
+ */
+public class DataSourceTransactionManagerBenchmarkTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(DataSourceTransactionManagerBenchmarkTests.class);
+
+	private static final int TRANSACTION_COUNT = 100000;
+
+	private int connectionCount;
+
+	private int commitCount;
+
+	private int afterCompletionCount;
+
+	private final StubDataSource dataSource = new StubDataSource();
+
+	public void testBeginCommit() {
+		final TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		final TransactionTemplate innerTt = new TransactionTemplate(tt.getTransactionManager());
+		innerTt.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		StopWatch sw = new StopWatch();
+
+		sw.start(TRANSACTION_COUNT + " transactions");
+		for (int i = 0; i < TRANSACTION_COUNT; i++) {
+			tt.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					DataSourceUtils.getConnection(dataSource);
+				}
+			});
+		}
+		sw.stop();
+
+		sw.start(TRANSACTION_COUNT + " transactions with synchronization");
+		for (int i = 0; i < TRANSACTION_COUNT; i++) {
+			tt.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					DataSourceUtils.getConnection(dataSource);
+					TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+						public void afterCompletion(int status) {
+							afterCompletionCount++;
+						}
+					});
+				}
+			});
+		}
+		sw.stop();
+
+		sw.start(TRANSACTION_COUNT / 10 + " transactions with suspended outer transaction");
+		for (int i = 0; i < TRANSACTION_COUNT / 10; i++) {
+			tt.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					innerTt.execute(new TransactionCallbackWithoutResult() {
+						protected void doInTransactionWithoutResult(TransactionStatus status) {
+							DataSourceUtils.getConnection(dataSource);
+						}
+					});
+				}
+			});
+		}
+		sw.stop();
+
+		int expectedCount = 2 * TRANSACTION_COUNT + 2 * (TRANSACTION_COUNT / 10);
+		assertEquals(expectedCount, this.connectionCount);
+		assertEquals(expectedCount, this.commitCount);
+		assertEquals(TRANSACTION_COUNT, this.afterCompletionCount);
+		assertTrue(TransactionSynchronizationManager.getResourceMap().isEmpty());
+		assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+		logger.info(sw.prettyPrint());
+	}
+
+
+	/**
+	 * DataSource that returns Connection stubs, counting Connections and commits.
+	 */
+	private class StubDataSource extends AbstractDataSource {
+
+		private final InvocationHandler handler = new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("commit")) {
+					commitCount++;
+				}
+				else if (method.getName().equals("getAutoCommit")) {
+					return Boolean.TRUE;
+				}
+				else if (method.getName().equals("isReadOnly")) {
+					return Boolean.FALSE;
+				}
+				else if (method.getName().equals("getTransactionIsolation")) {
+					return new Integer(Connection.TRANSACTION_READ_COMMITTED);
+				}
+				return null;
+			}
+		};
+
+		public Connection getConnection() {
+			connectionCount++;
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class[] {Connection.class}, this.handler);
+		}
+
+		public Connection getConnection(String username, String password) throws SQLException {
+			return getConnection();
+		}
+	}
+
+}
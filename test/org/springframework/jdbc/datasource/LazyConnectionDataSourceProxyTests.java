@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class LazyConnectionDataSourceProxyTests extends TestCase {
+
+	private StubDataSource targetDataSource;
+
+	private LazyConnectionDataSourceProxy dataSource;
+
+	protected void setUp() {
+		this.targetDataSource = new StubDataSource();
+		this.dataSource = new LazyConnectionDataSourceProxy(this.targetDataSource);
+		this.targetDataSource.calls.clear();
+		this.targetDataSource.connectionCount = 0;
+	}
+
+	public void testDefaultsDeterminedOnInitialization() throws SQLException {
+		LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+		proxy.setTargetDataSource(this.targetDataSource);
+		proxy.setDefaultAutoCommit(true);
+		proxy.setDefaultTransactionIsolationName("ISOLATION_SERIALIZABLE");
+		proxy.afterPropertiesSet();
+		assertEquals("No Connection needed if defaults specified", 0, this.targetDataSource.connectionCount);
+		assertEquals(Connection.TRANSACTION_SERIALIZABLE, proxy.getConnection().getTransactionIsolation());
+
+		Connection con = this.dataSource.getConnection();
+		assertTrue(con.getAutoCommit());
+		assertEquals(Connection.TRANSACTION_READ_COMMITTED, con.getTransactionIsolation());
+		assertEquals(0, this.targetDataSource.connectionCount);
+	}
+
+	public void testTransactionWithoutStatementDoesNotFetchConnection() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.setReadOnly(true);
+		tt.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				DataSourceUtils.getConnection(dataSource);
+			}
+		});
+		assertEquals(0, this.targetDataSource.connectionCount);
+		assertTrue(this.targetDataSource.calls.isEmpty());
+	}
+
+	public void testTransactionWithStatement() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.setReadOnly(true);
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				Connection con = DataSourceUtils.getConnection(dataSource);
+				try {
+					con.createStatement();
+				}
+				catch (SQLException ex) {
+					fail(ex.getMessage());
+				}
+			}
+		});
+		assertEquals(1, this.targetDataSource.connectionCount);
+		List expectedCalls = new ArrayList();
+		expectedCalls.add("setReadOnly");
+		expectedCalls.add("setAutoCommit");
+		expectedCalls.add("createStatement");
+		expectedCalls.add("commit");
+		assertEquals(expectedCalls, this.targetDataSource.calls.subList(0, 4));
+		assertTrue(this.targetDataSource.calls.contains("close"));
+	}
+
+	public void testClosedProxy() throws SQLException {
+		Connection con = this.dataSource.getConnection();
+		con.close();
+		assertTrue(con.isClosed());
+		try {
+			con.createStatement();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+		assertEquals(0, this.targetDataSource.connectionCount);
+	}
+
+	public void testGetTargetConnection() throws SQLException {
+		Connection con = this.dataSource.getConnection();
+		Connection target = ((ConnectionProxy) con).getTargetConnection();
+		assertEquals(1, this.targetDataSource.connectionCount);
+		assertSame(this.targetDataSource.lastConnection, target);
+		con.close();
+		assertEquals("close", this.targetDataSource.calls.get(this.targetDataSource.calls.size() - 1));
+	}
+
+
+	/**
+	 * DataSource that returns Connection stubs, recording the methods invoked on them.
+	 */
+	private static class StubDataSource extends AbstractDataSource {
+
+		private final List calls = new ArrayList();
+
+		private int connectionCount;
+
+		private Connection lastConnection;
+
+		public Connection getConnection() {
+			this.connectionCount++;
+			this.lastConnection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class[] {Connection.class}, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							String methodName = method.getName();
+							if (methodName.equals("getAutoCommit")) {
+								return Boolean.TRUE;
+							}
+							else if (methodName.equals("getTransactionIsolation")) {
+								return new Integer(Connection.TRANSACTION_READ_COMMITTED);
+							}
+							else if (methodName.equals("isReadOnly")) {
+								return Boolean.FALSE;
+							}
+							else if (methodName.equals("hashCode")) {
+								return new Integer(System.identityHashCode(proxy));
+							}
+							else if (methodName.equals("equals")) {
+								return (proxy == args[0] ? Boolean.TRUE : Boolean.FALSE);
+							}
+							calls.add(methodName);
+							return null;
+						}
+					});
+			return this.lastConnection;
+		}
+
+		public Connection getConnection(String username, String password) throws SQLException {
+			return getConnection();
+		}
+	}
+
+}
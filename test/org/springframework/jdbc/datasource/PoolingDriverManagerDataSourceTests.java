@@ -0,0 +1,350 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StopWatch;
+
+/**
+ * Tests for PoolingDriverManagerDataSource against an in-memory HSQLDB database,
+ * including a concurrency comparison with DriverManagerDataSource.
+ * @author agent
+ * @since 1.1.2
+ */
+public class PoolingDriverManagerDataSourceTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(PoolingDriverManagerDataSourceTests.class);
+
+	private static final int THREAD_COUNT = 200;
+
+	private static final int OPERATIONS_PER_THREAD = 50;
+
+	/**
+	 * Keeps the HSQLDB in-memory database open for all tests: HSQLDB drops it
+	 * when its last connection gets closed, and a dropped database that gets
+	 * finalized later on unregisters the current database of the same name.
+	 */
+	private static Connection keepAliveConnection;
+
+	private DriverManagerDataSource plainDataSource;
+
+	private PoolingDriverManagerDataSource dataSource;
+
+	protected void setUp() throws SQLException {
+		this.plainDataSource = new DriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		if (keepAliveConnection == null) {
+			keepAliveConnection = this.plainDataSource.getConnection();
+		}
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(this.plainDataSource);
+		jdbcTemplate.execute("CREATE TABLE pool_test (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(50))");
+		jdbcTemplate.update("INSERT INTO pool_test VALUES (1, 'rod')");
+		this.dataSource = new PoolingDriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		this.dataSource.setMaintenanceInterval(0);
+	}
+
+	protected void tearDown() {
+		this.dataSource.destroy();
+		new JdbcTemplate(this.plainDataSource).execute("DROP TABLE pool_test");
+	}
+
+	public void testConnectionReuse() throws SQLException {
+		this.dataSource.setMinPoolSize(2);
+		this.dataSource.afterPropertiesSet();
+		assertEquals(2, this.dataSource.getPoolSize());
+		assertEquals(2, this.dataSource.getIdleCount());
+
+		Connection con1 = this.dataSource.getConnection();
+		assertTrue(con1 instanceof ConnectionProxy);
+		Connection target1 = ((ConnectionProxy) con1).getTargetConnection();
+		assertEquals(1, this.dataSource.getActiveCount());
+		con1.close();
+		assertTrue(con1.isClosed());
+		con1.close();
+		assertEquals(0, this.dataSource.getActiveCount());
+		try {
+			con1.createStatement();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+
+		Connection con2 = this.dataSource.getConnection();
+		assertNotSame(con1, con2);
+		assertSame("Most recently used connection", target1, ((ConnectionProxy) con2).getTargetConnection());
+		con2.close();
+		assertEquals(2, this.dataSource.getBorrowCount());
+		assertEquals(2, this.dataSource.getCreatedCount());
+		assertEquals(2, this.dataSource.getPoolSize());
+		assertTrue(this.dataSource.shouldClose(con2));
+	}
+
+	public void testMaxPoolSize() throws SQLException {
+		this.dataSource.setMaxPoolSize(2);
+		this.dataSource.setMaxWait(100);
+		Connection con1 = this.dataSource.getConnection();
+		Connection con2 = this.dataSource.getConnection();
+		try {
+			this.dataSource.getConnection();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+		assertEquals(1, this.dataSource.getWaitCount());
+		con1.close();
+		Connection con3 = this.dataSource.getConnection();
+		assertEquals(2, this.dataSource.getPoolSize());
+		assertEquals(2, this.dataSource.getCreatedCount());
+		con2.close();
+		con3.close();
+	}
+
+	public void testWaitForReturnedConnection() throws Exception {
+		this.dataSource.setMaxPoolSize(1);
+		final Connection con = this.dataSource.getConnection();
+		Thread returner = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+					con.close();
+				}
+				catch (Exception ex) {
+					// ignore
+				}
+			}
+		};
+		returner.start();
+		Connection con2 = this.dataSource.getConnection();
+		assertTrue(con.isClosed());
+		assertEquals(1, this.dataSource.getWaitCount());
+		con2.close();
+		returner.join();
+	}
+
+	public void testSettingsResetOnReturn() throws SQLException {
+		this.dataSource.setMaxPoolSize(1);
+		Connection con = this.dataSource.getConnection();
+		con.setAutoCommit(false);
+		con.createStatement().executeUpdate("UPDATE pool_test SET name = 'juergen'");
+		con.close();
+
+		con = this.dataSource.getConnection();
+		assertTrue(con.getAutoCommit());
+		con.close();
+		assertEquals("rod", new JdbcTemplate(this.dataSource).queryForObject(
+				"SELECT name FROM pool_test WHERE id = 1", String.class));
+	}
+
+	public void testWithTransactionManager() {
+		this.dataSource.setMaxPoolSize(1);
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				jdbcTemplate.update("UPDATE pool_test SET name = 'juergen'");
+				assertEquals(1, dataSource.getActiveCount());
+			}
+		});
+		assertEquals(0, this.dataSource.getActiveCount());
+		assertEquals("juergen", jdbcTemplate.queryForObject("SELECT name FROM pool_test WHERE id = 1", String.class));
+		assertEquals(1, this.dataSource.getCreatedCount());
+	}
+
+	public void testValidationOnBorrow() throws SQLException {
+		this.dataSource.setValidationQuery("SELECT COUNT(*) FROM pool_test");
+		Connection con = this.dataSource.getConnection();
+		Connection target = ((ConnectionProxy) con).getTargetConnection();
+		con.close();
+		target.close();
+
+		con = this.dataSource.getConnection();
+		assertNotSame(target, ((ConnectionProxy) con).getTargetConnection());
+		con.close();
+		assertEquals(1, this.dataSource.getValidationFailureCount());
+		assertEquals(2, this.dataSource.getCreatedCount());
+		assertEquals(1, this.dataSource.getPoolSize());
+		assertEquals(0, this.dataSource.getActiveCount());
+	}
+
+	public void testOpenStatementsClosedOnReturn() throws SQLException {
+		Connection con = this.dataSource.getConnection();
+		Statement stmt = con.createStatement();
+		assertSame(con, stmt.getConnection());
+		PreparedStatement ps = con.prepareStatement("SELECT name FROM pool_test WHERE id = ?");
+		ps.setInt(1, 1);
+		ResultSet rs = ps.executeQuery();
+		assertTrue(rs.next());
+		assertEquals("rod", rs.getString(1));
+		Statement closedStmt = con.createStatement();
+		closedStmt.close();
+		con.close();
+		try {
+			ps.executeQuery();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+		try {
+			stmt.executeQuery("SELECT name FROM pool_test");
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+
+		con = this.dataSource.getConnection();
+		assertEquals(1, this.dataSource.getCreatedCount());
+		stmt = con.createStatement();
+		rs = stmt.executeQuery("SELECT name FROM pool_test");
+		assertTrue(rs.next());
+		rs.close();
+		stmt.close();
+		con.close();
+	}
+
+	public void testIdleEviction() throws Exception {
+		this.dataSource.setMinPoolSize(1);
+		this.dataSource.setMaxIdleTime(50);
+		Connection con1 = this.dataSource.getConnection();
+		Connection con2 = this.dataSource.getConnection();
+		Connection con3 = this.dataSource.getConnection();
+		con1.close();
+		con2.close();
+		con3.close();
+		assertEquals(3, this.dataSource.getIdleCount());
+		Thread.sleep(100);
+		this.dataSource.maintainPool();
+		assertEquals(1, this.dataSource.getIdleCount());
+		assertEquals(1, this.dataSource.getPoolSize());
+		assertEquals(2, this.dataSource.getDestroyedCount());
+	}
+
+	public void testMinPoolSizeRefill() throws SQLException {
+		this.dataSource.setMinPoolSize(2);
+		this.dataSource.afterPropertiesSet();
+		Connection con = this.dataSource.getConnection();
+		((ConnectionProxy) con).getTargetConnection().close();
+		con.close();
+		assertEquals(1, this.dataSource.getPoolSize());
+		this.dataSource.maintainPool();
+		assertEquals(2, this.dataSource.getPoolSize());
+		assertEquals(3, this.dataSource.getCreatedCount());
+	}
+
+	public void testLeakDetection() throws Exception {
+		this.dataSource.setLeakDetectionThreshold(50);
+		Connection con = this.dataSource.getConnection();
+		this.dataSource.maintainPool();
+		assertEquals(0, this.dataSource.getLeakCount());
+		Thread.sleep(100);
+		this.dataSource.maintainPool();
+		this.dataSource.maintainPool();
+		assertEquals("Reported once", 1, this.dataSource.getLeakCount());
+		con.close();
+	}
+
+	public void testDestroy() throws SQLException {
+		Connection con1 = this.dataSource.getConnection();
+		Connection con2 = this.dataSource.getConnection();
+		Connection target2 = ((ConnectionProxy) con2).getTargetConnection();
+		con2.close();
+		this.dataSource.destroy();
+		assertTrue(target2.isClosed());
+		assertEquals(1, this.dataSource.getPoolSize());
+		try {
+			this.dataSource.getConnection();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+		Connection target1 = ((ConnectionProxy) con1).getTargetConnection();
+		con1.close();
+		assertTrue(target1.isClosed());
+		assertEquals(0, this.dataSource.getPoolSize());
+		assertEquals(2, this.dataSource.getDestroyedCount());
+	}
+
+	public void testConcurrentAccess() throws Exception {
+		this.dataSource.setMaxPoolSize(20);
+		this.dataSource.setMaxWait(-1);
+		StopWatch sw = new StopWatch();
+		sw.start("DriverManagerDataSource");
+		runConcurrently(this.plainDataSource);
+		sw.stop();
+		sw.start("PoolingDriverManagerDataSource");
+		runConcurrently(this.dataSource);
+		sw.stop();
+		assertEquals(0, this.dataSource.getActiveCount());
+		assertTrue(this.dataSource.getPoolSize() <= 20);
+		assertTrue(this.dataSource.getBorrowCount() >= THREAD_COUNT * OPERATIONS_PER_THREAD);
+		logger.info(THREAD_COUNT + " threads with " + OPERATIONS_PER_THREAD + " queries each, " +
+				this.dataSource.getCreatedCount() + " pooled connections, " + this.dataSource.getWaitCount() +
+				" waits: " + sw.prettyPrint());
+	}
+
+	private void runConcurrently(DataSource ds) throws InterruptedException {
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(ds);
+		final List failures = new LinkedList();
+		Thread[] threads = new Thread[THREAD_COUNT];
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+							jdbcTemplate.queryForInt("SELECT id FROM pool_test WHERE name = 'rod'");
+						}
+					}
+					catch (Throwable ex) {
+						synchronized (failures) {
+							failures.add(ex);
+						}
+					}
+				}
+			};
+		}
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			threads[i].start();
+		}
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			threads[i].join();
+		}
+		if (!failures.isEmpty()) {
+			fail("Concurrent access failed: " + failures.get(0));
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class ReadWriteRoutingDataSourceTests extends TestCase {
+
+	private StubDataSource primary;
+
+	private StubDataSource replica1;
+
+	private StubDataSource replica2;
+
+	private ReadWriteRoutingDataSource routingDataSource;
+
+	protected void setUp() {
+		this.primary = new StubDataSource();
+		this.replica1 = new StubDataSource();
+		this.replica2 = new StubDataSource();
+		this.routingDataSource = new ReadWriteRoutingDataSource();
+		this.routingDataSource.setPrimaryDataSource(this.primary);
+		List replicas = new ArrayList();
+		replicas.add(this.replica1);
+		replicas.add(this.replica2);
+		this.routingDataSource.setReplicaDataSources(replicas);
+		this.routingDataSource.setHealthCheckInterval(0);
+		this.routingDataSource.afterPropertiesSet();
+	}
+
+	protected void tearDown() {
+		this.routingDataSource.destroy();
+	}
+
+	public void testTransactionRouting() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.routingDataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				DataSourceUtils.getConnection(routingDataSource);
+			}
+		});
+		assertEquals(1, this.primary.connectionCount);
+		assertEquals(1, this.primary.closeCount);
+		assertEquals(0, this.replica1.connectionCount + this.replica2.connectionCount);
+
+		tt.setReadOnly(true);
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				DataSourceUtils.getConnection(routingDataSource);
+			}
+		});
+		assertEquals(1, this.primary.connectionCount);
+		assertEquals(1, this.replica1.connectionCount + this.replica2.connectionCount);
+		assertEquals(1, this.replica1.closeCount + this.replica2.closeCount);
+		assertEquals(1, this.routingDataSource.getReplicaConnectionCount());
+		assertEquals(1, this.routingDataSource.getPrimaryConnectionCount());
+	}
+
+	public void testUnusedConnectionDoesNotFetchTarget() throws SQLException {
+		Connection con = this.routingDataSource.getConnection();
+		con.setReadOnly(true);
+		assertTrue(con.isReadOnly());
+		assertFalse(con.isClosed());
+		con.close();
+		assertTrue(con.isClosed());
+		assertEquals(0, this.primary.connectionCount + this.replica1.connectionCount + this.replica2.connectionCount);
+		try {
+			con.getAutoCommit();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+	}
+
+	public void testNonReadOnlyConnectionGoesToPrimary() throws SQLException {
+		Connection con = this.routingDataSource.getConnection();
+		con.setAutoCommit(false);
+		assertSame(this.primary.lastConnection, ((ConnectionProxy) con).getTargetConnection());
+		con.close();
+		assertEquals(1, this.primary.closeCount);
+	}
+
+	public void testWeightedRoundRobin() throws SQLException {
+		this.routingDataSource.setReplicaWeights(new int[] {2, 1});
+		for (int i = 0; i < 300; i++) {
+			Connection con = getReadOnlyConnection();
+			con.close();
+		}
+		assertEquals(200, this.replica1.connectionCount);
+		assertEquals(100, this.replica2.connectionCount);
+		assertEquals(0, this.primary.connectionCount);
+	}
+
+	public void testLeastOutstanding() throws SQLException {
+		this.routingDataSource.setLoadBalancingName("LOAD_BALANCING_LEAST_OUTSTANDING");
+		Connection con1 = getReadOnlyConnection();
+		Connection con2 = getReadOnlyConnection();
+		assertEquals(1, this.replica1.connectionCount);
+		assertEquals(1, this.replica2.connectionCount);
+		assertEquals(1, this.routingDataSource.getOutstandingCount(0));
+
+		con1.close();
+		assertEquals(0, this.routingDataSource.getOutstandingCount(0));
+		Connection con3 = getReadOnlyConnection();
+		Connection con4 = getReadOnlyConnection();
+		assertEquals(2, this.replica1.connectionCount);
+		assertEquals(2, this.replica2.connectionCount);
+		con2.close();
+		con3.close();
+		con4.close();
+		assertEquals(0, this.routingDataSource.getOutstandingCount(0));
+		assertEquals(0, this.routingDataSource.getOutstandingCount(1));
+	}
+
+	public void testFailover() throws SQLException {
+		this.routingDataSource.setHealthCheckInterval(60000);
+		this.replica1.failing = true;
+		for (int i = 0; i < 4; i++) {
+			getReadOnlyConnection().close();
+		}
+		assertEquals(1, this.replica1.attemptCount);
+		assertEquals(4, this.replica2.connectionCount);
+		assertEquals(1, this.routingDataSource.getAvailableReplicaCount());
+
+		this.replica2.failing = true;
+		getReadOnlyConnection().close();
+		assertEquals(1, this.replica2.attemptCount - this.replica2.connectionCount);
+		assertEquals(0, this.routingDataSource.getAvailableReplicaCount());
+		assertEquals(1, this.primary.connectionCount);
+		assertEquals(1, this.routingDataSource.getFailoverCount());
+		assertTrue("Read-only hint applied to primary", this.primary.lastReadOnly);
+
+		this.routingDataSource.setFallbackToPrimary(false);
+		try {
+			getReadOnlyConnection();
+			fail("Should have thrown SQLException");
+		}
+		catch (SQLException ex) {
+			// expected
+		}
+
+		this.replica1.failing = false;
+		this.routingDataSource.checkReplicas();
+		assertEquals(1, this.routingDataSource.getAvailableReplicaCount());
+		getReadOnlyConnection().close();
+		assertEquals("Health check plus routed Connection", 2, this.replica1.connectionCount);
+	}
+
+	public void testUnavailableReplicaRetriedAfterInterval() throws SQLException {
+		this.replica1.failing = true;
+		getReadOnlyConnection().close();
+		assertEquals(1, this.routingDataSource.getAvailableReplicaCount());
+		this.replica1.failing = false;
+		getReadOnlyConnection().close();
+		getReadOnlyConnection().close();
+		assertEquals(2, this.routingDataSource.getAvailableReplicaCount());
+		assertTrue(this.replica1.connectionCount > 0);
+	}
+
+	private Connection getReadOnlyConnection() throws SQLException {
+		Connection con = this.routingDataSource.getConnection();
+		con.setReadOnly(true);
+		con.getAutoCommit();
+		return con;
+	}
+
+
+	/**
+	 * DataSource that returns Connection stubs, counting calls.
+	 */
+	private static class StubDataSource extends AbstractDataSource {
+
+		private int attemptCount;
+
+		private int connectionCount;
+
+		private int closeCount;
+
+		private boolean failing;
+
+		private Connection lastConnection;
+
+		private boolean lastReadOnly;
+
+		public Connection getConnection() throws SQLException {
+			this.attemptCount++;
+			if (this.failing) {
+				throw new SQLException("Database down");
+			}
+			this.connectionCount++;
+			this.lastReadOnly = false;
+			this.lastConnection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class[] {Connection.class}, new InvocationHandler() {
+						private boolean readOnly;
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							if (method.getName().equals("close")) {
+								closeCount++;
+							}
+							else if (method.getName().equals("setReadOnly")) {
+								this.readOnly = ((Boolean) args[0]).booleanValue();
+								lastReadOnly = this.readOnly;
+							}
+							else if (method.getName().equals("isReadOnly")) {
+								return (this.readOnly ? Boolean.TRUE : Boolean.FALSE);
+							}
+							else if (method.getName().equals("getAutoCommit")) {
+								return Boolean.TRUE;
+							}
+							return null;
+						}
+					});
+			return this.lastConnection;
+		}
+
+		public Connection getConnection(String username, String password) throws SQLException {
+			return getConnection();
+		}
+	}
+
+}
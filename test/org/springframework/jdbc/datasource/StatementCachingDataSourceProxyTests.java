@@ -0,0 +1,293 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StopWatch;
+
+/**
+ * Tests for StatementCachingDataSourceProxy against an in-memory HSQLDB database,
+ * including a timing comparison with uncached statements.
+ * @author agent
+ * @since 1.1.2
+ */
+public class StatementCachingDataSourceProxyTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(StatementCachingDataSourceProxyTests.class);
+
+	private static final int ITERATIONS = 10000;
+
+	private DriverManagerDataSource targetDataSource;
+
+	/**
+	 * Keeps the HSQLDB in-memory database open for all tests: HSQLDB drops it
+	 * when its last connection gets closed, and a dropped database that gets
+	 * finalized later on unregisters the current database of the same name.
+	 */
+	private static Connection keepAliveConnection;
+
+	protected void setUp() throws SQLException {
+		this.targetDataSource = new DriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		if (keepAliveConnection == null) {
+			keepAliveConnection = this.targetDataSource.getConnection();
+		}
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(this.targetDataSource);
+		jdbcTemplate.execute("CREATE TABLE item (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(50))");
+		for (int i = 0; i < 10; i++) {
+			jdbcTemplate.update("INSERT INTO item VALUES (?, ?)", new Object[] {new Integer(i), "item" + i});
+		}
+	}
+
+	protected void tearDown() throws SQLException {
+		new JdbcTemplate(this.targetDataSource).execute("DROP TABLE item");
+	}
+
+	public void testCachingWithinTransaction() {
+		final StatementCachingDataSourceProxy dataSource = new StatementCachingDataSourceProxy(this.targetDataSource);
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				for (int i = 0; i < 10; i++) {
+					assertEquals("item" + i, jdbcTemplate.queryForObject(
+							"SELECT name FROM item WHERE id = ?", new Object[] {new Integer(i)}, String.class));
+				}
+				jdbcTemplate.update("UPDATE item SET name = ? WHERE id = ?", new Object[] {"x", new Integer(1)});
+				jdbcTemplate.update("UPDATE item SET name = ? WHERE id = ?", new Object[] {"y", new Integer(2)});
+				assertEquals(2, dataSource.getCachedStatementCount());
+			}
+		});
+		assertEquals(2, dataSource.getMissCount());
+		assertEquals(10, dataSource.getHitCount());
+		assertEquals(0, dataSource.getEvictionCount());
+		// physical Connection closed at transaction end
+		assertEquals(0, dataSource.getCachedStatementCount());
+		assertEquals("y", jdbcTemplate.queryForObject("SELECT name FROM item WHERE id = 2", String.class));
+	}
+
+	public void testCachingAcrossOperationsOnSingleConnection() throws SQLException {
+		Connection con = this.targetDataSource.getConnection();
+		try {
+			StatementCachingDataSourceProxy dataSource =
+					new StatementCachingDataSourceProxy(new SingleConnectionDataSource(con, true));
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+			for (int i = 0; i < 10; i++) {
+				assertEquals(i, jdbcTemplate.queryForInt("SELECT id FROM item WHERE name = ?", new Object[] {"item" + i}));
+			}
+			assertEquals(1, dataSource.getMissCount());
+			assertEquals(9, dataSource.getHitCount());
+			assertEquals(1, dataSource.getCachedStatementCount());
+		}
+		finally {
+			con.close();
+		}
+	}
+
+	public void testEviction() throws SQLException {
+		StatementCachingDataSourceProxy dataSource = new StatementCachingDataSourceProxy(this.targetDataSource);
+		dataSource.setCacheSize(2);
+		Connection con = dataSource.getConnection();
+		assertTrue(con instanceof ConnectionProxy);
+		con.prepareStatement("SELECT id FROM item").close();
+		con.prepareStatement("SELECT name FROM item").close();
+		con.prepareStatement("SELECT id FROM item").close();
+		con.prepareStatement("SELECT id, name FROM item").close();
+		assertEquals(1, dataSource.getEvictionCount());
+		assertEquals(2, dataSource.getCachedStatementCount());
+		// "SELECT name FROM item" has been evicted as least recently used
+		con.prepareStatement("SELECT id FROM item").close();
+		con.prepareStatement("SELECT name FROM item").close();
+		assertEquals(2, dataSource.getHitCount());
+		assertEquals(4, dataSource.getMissCount());
+		con.close();
+		assertTrue(con.isClosed());
+		assertEquals(0, dataSource.getCachedStatementCount());
+	}
+
+	public void testStatementInUseAndReset() throws SQLException {
+		StatementCachingDataSourceProxy dataSource = new StatementCachingDataSourceProxy(this.targetDataSource);
+		Connection con = dataSource.getConnection();
+		try {
+			String sql = "SELECT name FROM item WHERE id = ?";
+			PreparedStatement ps1 = con.prepareStatement(sql);
+			PreparedStatement ps2 = con.prepareStatement(sql);
+			assertNotSame(ps1, ps2);
+			assertSame(con, ps1.getConnection());
+			int defaultFetchSize = ps1.getFetchSize();
+			ps1.setFetchSize(defaultFetchSize + 5);
+			ps1.setInt(1, 3);
+			ResultSet rs = ps1.executeQuery();
+			assertTrue(rs.next());
+			assertEquals("item3", rs.getString(1));
+			rs.close();
+			ps1.close();
+			ps1.close();
+			try {
+				ps1.executeQuery();
+				fail("Should have thrown SQLException");
+			}
+			catch (SQLException ex) {
+				// expected
+			}
+			ps2.close();
+			assertEquals(2, dataSource.getMissCount());
+			assertEquals(1, dataSource.getCachedStatementCount());
+
+			PreparedStatement ps3 = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			assertEquals(1, dataSource.getHitCount());
+			assertEquals(defaultFetchSize, ps3.getFetchSize());
+			ps3.close();
+		}
+		finally {
+			con.close();
+		}
+	}
+
+	public void testClosingStatementOfResultSet() throws SQLException {
+		StatementCachingDataSourceProxy dataSource = new StatementCachingDataSourceProxy(this.targetDataSource);
+		Connection con = dataSource.getConnection();
+		try {
+			String sql = "SELECT name FROM item WHERE id = ?";
+			PreparedStatement ps = con.prepareStatement(sql);
+			ps.setInt(1, 4);
+			ResultSet rs = ps.executeQuery();
+			assertSame(ps, rs.getStatement());
+			assertTrue(rs.next());
+			assertEquals("item4", rs.getString(1));
+			rs.close();
+			rs.getStatement().close();
+			try {
+				ps.executeQuery();
+				fail("Should have thrown SQLException");
+			}
+			catch (SQLException ex) {
+				// expected
+			}
+
+			// cached statement still open and reused
+			ps = con.prepareStatement(sql);
+			assertEquals(1, dataSource.getHitCount());
+			ps.setInt(1, 5);
+			rs = ps.executeQuery();
+			assertTrue(rs.next());
+			assertEquals("item5", rs.getString(1));
+			rs.close();
+			ps.close();
+		}
+		finally {
+			con.close();
+		}
+	}
+
+	public void testWithTransactionAwareDataSourceProxy() {
+		final StatementCachingDataSourceProxy cachingDataSource =
+				new StatementCachingDataSourceProxy(this.targetDataSource);
+		final DataSource dataSource = new TransactionAwareDataSourceProxy(cachingDataSource);
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(cachingDataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				try {
+					for (int i = 0; i < 3; i++) {
+						Connection con = dataSource.getConnection();
+						PreparedStatement ps = con.prepareStatement("DELETE FROM item WHERE id = ?");
+						ps.setInt(1, i);
+						assertEquals(1, ps.executeUpdate());
+						ps.close();
+						con.close();
+					}
+				}
+				catch (SQLException ex) {
+					throw new IllegalStateException(ex.getMessage());
+				}
+				status.setRollbackOnly();
+			}
+		});
+		assertEquals(1, cachingDataSource.getMissCount());
+		assertEquals(2, cachingDataSource.getHitCount());
+		assertEquals(10, new JdbcTemplate(this.targetDataSource).queryForInt("SELECT COUNT(*) FROM item"));
+	}
+
+	public void testWithPoolingDriverManagerDataSource() throws SQLException {
+		PoolingDriverManagerDataSource pool =
+				new PoolingDriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", "");
+		pool.setMaxPoolSize(1);
+		try {
+			StatementCachingDataSourceProxy dataSource = new StatementCachingDataSourceProxy(pool);
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+			for (int i = 0; i < 10; i++) {
+				// each operation borrows the pooled Connection and returns it on close
+				assertEquals(i, jdbcTemplate.queryForInt("SELECT id FROM item WHERE name = ?", new Object[] {"item" + i}));
+			}
+			assertEquals(1, dataSource.getMissCount());
+			assertEquals(9, dataSource.getHitCount());
+			assertEquals(1, dataSource.getCachedStatementCount());
+			assertEquals(0, pool.getActiveCount());
+
+			Connection con = dataSource.getConnection();
+			con.prepareStatement("SELECT id FROM item").close();
+			con.close();
+			assertTrue(con.isClosed());
+			assertEquals(2, dataSource.getCachedStatementCount());
+		}
+		finally {
+			pool.destroy();
+		}
+	}
+
+	public void testCachingTiming() throws SQLException {
+		Connection con = this.targetDataSource.getConnection();
+		try {
+			StopWatch sw = new StopWatch();
+			sw.start("uncached statements");
+			runQueries(new SingleConnectionDataSource(con, true));
+			sw.stop();
+			StatementCachingDataSourceProxy dataSource =
+					new StatementCachingDataSourceProxy(new SingleConnectionDataSource(con, true));
+			sw.start("cached statements");
+			runQueries(dataSource);
+			sw.stop();
+			assertEquals(ITERATIONS - 2, dataSource.getHitCount());
+			logger.info(ITERATIONS + " queries with 2 different SQL statements: " + sw.prettyPrint());
+		}
+		finally {
+			con.close();
+		}
+	}
+
+	private void runQueries(DataSource dataSource) {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		for (int i = 0; i < ITERATIONS; i += 2) {
+			jdbcTemplate.queryForInt("SELECT id FROM item WHERE name = ?", new Object[] {"item" + (i % 10)});
+			jdbcTemplate.queryForObject("SELECT name FROM item WHERE id = ?", new Object[] {new Integer(i % 10)}, String.class);
+		}
+	}
+
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.object;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tests for BatchUpdateWriter against an in-memory HSQLDB database.
+ * @author agent
+ * @since 1.1.2
+ */
+public class BatchUpdateWriterTests extends TestCase {
+
+	private static final String INSERT_MASTER = "INSERT INTO writer_master VALUES (?, ?)";
+
+	private static final String INSERT_DETAIL = "INSERT INTO writer_detail VALUES (?, ?)";
+
+	/**
+	 * Keeps the HSQLDB in-memory database open for all tests: HSQLDB drops it
+	 * when its last connection gets closed, and a dropped database that gets
+	 * finalized later on unregisters the current database of the same name.
+	 */
+	private static Connection keepAliveConnection;
+
+	private PrepareCountingDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private BatchUpdateWriter writer;
+
+	protected void setUp() throws SQLException {
+		this.dataSource = new PrepareCountingDataSource(
+				new DriverManagerDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:.", "sa", ""));
+		if (keepAliveConnection == null) {
+			keepAliveConnection = this.dataSource.getTargetDataSource().getConnection();
+		}
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.jdbcTemplate.execute("CREATE TABLE writer_master (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(50))");
+		this.jdbcTemplate.execute("CREATE TABLE writer_detail (id INTEGER NOT NULL PRIMARY KEY, master_id INTEGER, " +
+				"FOREIGN KEY (master_id) REFERENCES writer_master (id))");
+
+		this.writer = new BatchUpdateWriter();
+		this.writer.setDataSource(this.dataSource);
+		this.writer.setBatchSize(3);
+		this.writer.addStatement(INSERT_MASTER, new int[] {Types.INTEGER, Types.VARCHAR});
+		this.writer.addStatement(INSERT_DETAIL, new int[] {Types.INTEGER, Types.INTEGER});
+	}
+
+	protected void tearDown() {
+		this.jdbcTemplate.execute("DROP TABLE writer_detail");
+		this.jdbcTemplate.execute("DROP TABLE writer_master");
+	}
+
+	public void testWriteWithAutoFlush() {
+		this.writer.write(INSERT_MASTER, new Object[] {new Integer(1), "rod"});
+		this.writer.write(INSERT_MASTER, new Object[] {new Integer(2), "juergen"});
+		assertEquals(2, this.writer.getQueueCount());
+		assertEquals(0, countRows("writer_master"));
+
+		this.writer.write(INSERT_MASTER, new Object[] {new Integer(3), "keith"});
+		assertEquals(0, this.writer.getQueueCount());
+		assertEquals(3, countRows("writer_master"));
+
+		this.writer.write(INSERT_MASTER, new Object[] {new Integer(4), "colin"});
+		this.writer.write(INSERT_DETAIL, new Object[] {new Integer(1), new Integer(4)});
+		this.writer.flush();
+		assertEquals(0, this.writer.getQueueCount());
+		assertEquals(4, countRows("writer_master"));
+		assertEquals(1, countRows("writer_detail"));
+
+		assertEquals(4, this.writer.getExecutionCount(INSERT_MASTER));
+		assertEquals(4, this.writer.getRowsAffected(INSERT_MASTER));
+		assertEquals(1, this.writer.getExecutionCount(INSERT_DETAIL));
+		assertEquals(1, this.writer.getRowsAffected(INSERT_DETAIL));
+		assertEquals("One statement per flush outside of transaction", 3, this.dataSource.prepareCount);
+
+		this.writer.reset();
+		assertEquals(0, this.writer.getExecutionCount(INSERT_MASTER));
+	}
+
+	public void testAutoFlushPreservesStatementOrder() {
+		this.writer.write(INSERT_MASTER, new Object[] {new Integer(1), "rod"});
+		this.writer.write(INSERT_DETAIL, new Object[] {new Integer(1), new Integer(1)});
+		this.writer.write(INSERT_DETAIL, new Object[] {new Integer(2), new Integer(1)});
+		this.writer.write(INSERT_DETAIL, new Object[] {new Integer(3), new Integer(1)});
+		assertEquals(1, countRows("writer_master"));
+		assertEquals(3, countRows("writer_detail"));
+	}
+
+	public void testFlushInterval() throws InterruptedException {
+		this.writer.setFlushInterval(50);
+		this.writer.write(INSERT_MASTER, new Object[] {new Integer(1), "rod"});
+		assertEquals(0, countRows("writer_master"));
+		Thread.sleep(100);
+		this.writer.write(INSERT_DETAIL, new Object[] {new Integer(1), new Integer(1)});
+		assertEquals("Master entry expired", 1, countRows("writer_master"));
+		assertEquals(1, this.writer.getQueueCount());
+		this.writer.flush();
+		assertEquals(1, countRows("writer_detail"));
+	}
+
+	public void testWriteWithinTransaction() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				for (int i = 1; i <= 8; i++) {
+					writer.write(INSERT_MASTER, new Object[] {new Integer(i), "name" + i});
+				}
+				assertEquals(2, writer.getQueueCount());
+			}
+		});
+		assertEquals("Flushed before commit", 8, countRows("writer_master"));
+		assertEquals("One statement for the transaction", 1, this.dataSource.prepareCount);
+		assertEquals(8, this.writer.getExecutionCount(INSERT_MASTER));
+		assertEquals(0, this.writer.getQueueCount());
+	}
+
+	public void testRollbackDiscardsPendingEntries() {
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				writer.write(INSERT_MASTER, new Object[] {new Integer(1), "rod"});
+				status.setRollbackOnly();
+			}
+		});
+		assertEquals(0, countRows("writer_master"));
+		assertEquals(0, this.writer.getQueueCount());
+		assertEquals(0, this.writer.getExecutionCount(INSERT_MASTER));
+	}
+
+	public void testFailingFlush() {
+		this.writer.write(INSERT_MASTER, new Object[] {new Integer(1), "rod"});
+		this.writer.write(INSERT_MASTER, new Object[] {new Integer(1), "juergen"});
+		try {
+			this.writer.flush();
+			fail("Should have thrown DataIntegrityViolationException");
+		}
+		catch (DataIntegrityViolationException ex) {
+			// expected
+		}
+		assertEquals(0, this.writer.getQueueCount());
+	}
+
+	public void testFailingFlushWithinTransaction() {
+		final BatchUpdateWriter batchWriter = new BatchUpdateWriter();
+		BatchEmulatingDataSource batchDataSource = new BatchEmulatingDataSource(this.dataSource);
+		batchWriter.setDataSource(batchDataSource);
+		batchWriter.addStatement(INSERT_MASTER, new int[] {Types.INTEGER, Types.VARCHAR});
+		TransactionTemplate tt = new TransactionTemplate(new DataSourceTransactionManager(batchDataSource));
+		tt.execute(new TransactionCallbackWithoutResult() {
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				batchWriter.write(INSERT_MASTER, new Object[] {new Integer(1), "rod"});
+				batchWriter.write(INSERT_MASTER, new Object[] {"no number", "juergen"});
+				try {
+					batchWriter.flush();
+					fail("Should have thrown DataAccessException");
+				}
+				catch (DataAccessException ex) {
+					// expected: second entry cannot be set after the first one got added to the batch
+				}
+				batchWriter.write(INSERT_MASTER, new Object[] {new Integer(3), "keith"});
+				batchWriter.flush();
+			}
+		});
+		assertEquals("Entries of failed flush not executed again", 1, countRows("writer_master"));
+		assertEquals(3, this.jdbcTemplate.queryForInt("SELECT id FROM writer_master"));
+		assertEquals("Statement prepared again after failure", 2, this.dataSource.prepareCount);
+	}
+
+	public void testInvalidUsage() {
+		Object[] args = new Object[] {new Integer(1), "rod"};
+		this.writer.write(INSERT_MASTER, args);
+		try {
+			this.writer.write(INSERT_MASTER, args);
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+		try {
+			this.writer.write("INSERT INTO writer_master VALUES (?, 'x')", new Object[] {new Integer(2)});
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+		try {
+			this.writer.write(INSERT_MASTER, new Object[] {new Integer(2)});
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+		try {
+			this.writer.addStatement("DELETE FROM writer_master", null);
+			fail("Should have thrown InvalidDataAccessApiUsageException");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	public void testConcurrentWrites() throws InterruptedException {
+		this.writer.setBatchSize(7);
+		final List failures = new LinkedList();
+		Thread[] threads = new Thread[10];
+		for (int i = 0; i < threads.length; i++) {
+			final int offset = i * 100;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 100; j++) {
+							writer.write(INSERT_MASTER, new Object[] {new Integer(offset + j), "name"});
+						}
+					}
+					catch (Throwable ex) {
+						synchronized (failures) {
+							failures.add(ex);
+						}
+					}
+				}
+			};
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		this.writer.flush();
+		assertTrue("No failures: " + failures, failures.isEmpty());
+		assertEquals(1000, countRows("writer_master"));
+		assertEquals(1000, this.writer.getRowsAffected(INSERT_MASTER));
+	}
+
+	private int countRows(String tableName) {
+		return this.jdbcTemplate.queryForInt("SELECT COUNT(*) FROM " + tableName);
+	}
+
+
+	/**
+	 * DataSource that counts prepareStatement calls on its Connections.
+	 */
+	/**
+	 * DataSource that emulates JDBC batch updates, which HSQLDB does not support:
+	 * Parameter setter calls get recorded on addBatch and replayed on executeBatch.
+	 */
+	private static class BatchEmulatingDataSource extends DelegatingDataSource {
+
+		public BatchEmulatingDataSource(DataSource targetDataSource) {
+			setTargetDataSource(targetDataSource);
+		}
+
+		public Connection getConnection() throws SQLException {
+			final Connection target = getTargetDataSource().getConnection();
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class},
+					new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							final Object result = invokeTarget(target, method, args);
+							if (method.getName().equals("getMetaData")) {
+								return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {DatabaseMetaData.class},
+										new InvocationHandler() {
+											public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+												if (method.getName().equals("supportsBatchUpdates")) {
+													return Boolean.TRUE;
+												}
+												return invokeTarget(result, method, args);
+											}
+										});
+							}
+							if (method.getName().equals("prepareStatement")) {
+								return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {PreparedStatement.class},
+										new BatchEmulatingInvocationHandler((PreparedStatement) result));
+							}
+							return result;
+						}
+					});
+		}
+	}
+
+
+	private static class BatchEmulatingInvocationHandler implements InvocationHandler {
+
+		private final PreparedStatement target;
+
+		/** Setter calls for the current parameter set, as Method and arguments pairs */
+		private List setterCalls = new LinkedList();
+
+		/** Lists of setter calls, one per batched parameter set */
+		private final List batch = new LinkedList();
+
+		public BatchEmulatingInvocationHandler(PreparedStatement target) {
+			this.target = target;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String methodName = method.getName();
+			if (methodName.equals("addBatch")) {
+				this.batch.add(this.setterCalls);
+				this.setterCalls = new LinkedList();
+				return null;
+			}
+			else if (methodName.equals("clearBatch")) {
+				this.batch.clear();
+				return null;
+			}
+			else if (methodName.equals("executeBatch")) {
+				int[] rowsAffected = new int[this.batch.size()];
+				for (int i = 0; i < rowsAffected.length; i++) {
+					List calls = (List) this.batch.remove(0);
+					for (Iterator it = calls.iterator(); it.hasNext();) {
+						Object[] call = (Object[]) it.next();
+						invokeTarget(this.target, (Method) call[0], (Object[]) call[1]);
+					}
+					rowsAffected[i] = this.target.executeUpdate();
+				}
+				return rowsAffected;
+			}
+			Object result = invokeTarget(this.target, method, args);
+			if (methodName.startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer) {
+				this.setterCalls.add(new Object[] {method, args});
+			}
+			return result;
+		}
+	}
+
+
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	}
+
+
+	private static class PrepareCountingDataSource extends DelegatingDataSource {
+
+		private int prepareCount = 0;
+
+		public PrepareCountingDataSource(DriverManagerDataSource targetDataSource) {
+			setTargetDataSource(targetDataSource);
+		}
+
+		public Connection getConnection() throws SQLException {
+			final Connection target = getTargetDataSource().getConnection();
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class},
+					new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							if (method.getName().equals("prepareStatement")) {
+								synchronized (PrepareCountingDataSource.this) {
+									prepareCount++;
+								}
+							}
+							try {
+								return method.invoke(target, args);
+							}
+							catch (InvocationTargetException ex) {
+								throw ex.getTargetException();
+							}
+						}
+					});
+		}
+	}
+
+}
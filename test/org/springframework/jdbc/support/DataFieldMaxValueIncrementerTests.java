@@ -20,15 +20,23 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
 import junit.framework.TestCase;
 import org.easymock.MockControl;
 
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.HiLoMaxValueIncrementer;
 import org.springframework.jdbc.support.incrementer.HsqlMaxValueIncrementer;
 import org.springframework.jdbc.support.incrementer.MySQLMaxValueIncrementer;
 import org.springframework.jdbc.support.incrementer.OracleSequenceMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.PooledSequenceMaxValueIncrementer;
 import org.springframework.jdbc.support.incrementer.PostgreSQLSequenceMaxValueIncrementer;
 
 /**
@@ -250,4 +258,196 @@ public class DataFieldMaxValueIncrementerTests extends TestCase {
 		rsControl.verify();
 	}
 
+
+	public void testHiLoMaxValueIncrementer() {
+		CountingIncrementer target = new CountingIncrementer(0, 1);
+		HiLoMaxValueIncrementer incrementer = new HiLoMaxValueIncrementer(target, 3);
+		incrementer.setPaddingLength(3);
+
+		assertEquals(0, incrementer.nextLongValue());
+		assertEquals(1, incrementer.nextIntValue());
+		assertEquals("002", incrementer.nextStringValue());
+		assertEquals(1, target.getCallCount());
+		assertEquals(3, incrementer.nextLongValue());
+		assertEquals(2, target.getCallCount());
+		assertEquals(4, incrementer.nextLongValue());
+		assertEquals(5, incrementer.nextLongValue());
+		assertEquals(6, incrementer.nextLongValue());
+		assertEquals(3, target.getCallCount());
+	}
+
+	public void testPooledSequenceMaxValueIncrementer() {
+		CountingIncrementer target = new CountingIncrementer(1, 10);
+		PooledSequenceMaxValueIncrementer incrementer = new PooledSequenceMaxValueIncrementer(target, 10);
+
+		for (int i = 1; i <= 25; i++) {
+			assertEquals(i, incrementer.nextLongValue());
+		}
+		assertEquals(3, target.getCallCount());
+	}
+
+	public void testBlockAllocatingMaxValueIncrementerBeyondIntRange() {
+		CountingIncrementer target = new CountingIncrementer(Integer.MAX_VALUE, 10);
+		PooledSequenceMaxValueIncrementer incrementer = new PooledSequenceMaxValueIncrementer(target, 10);
+
+		assertEquals(Integer.MAX_VALUE, incrementer.nextIntValue());
+		try {
+			incrementer.nextIntValue();
+			fail("Should have thrown DataAccessResourceFailureException");
+		}
+		catch (DataAccessResourceFailureException ex) {
+			// expected
+		}
+		assertEquals(Integer.MAX_VALUE + 2L, incrementer.nextLongValue());
+	}
+
+	public void testBlockAllocatingMaxValueIncrementerWithInvalidSettings() {
+		try {
+			new HiLoMaxValueIncrementer(new CountingIncrementer(0, 1), 0);
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+		HiLoMaxValueIncrementer incrementer = new HiLoMaxValueIncrementer();
+		incrementer.setTargetIncrementer(new CountingIncrementer(0, 1));
+		incrementer.setBlockSize(10);
+		incrementer.setPrefetchThreshold(10);
+		try {
+			incrementer.afterPropertiesSet();
+			fail("Should have thrown IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	public void testBlockAllocatingMaxValueIncrementerWithFailingTarget() {
+		CountingIncrementer target = new CountingIncrementer(0, 1);
+		HiLoMaxValueIncrementer incrementer = new HiLoMaxValueIncrementer(target, 2);
+		target.setFailing(true);
+		try {
+			incrementer.nextLongValue();
+			fail("Should have thrown DataAccessResourceFailureException");
+		}
+		catch (DataAccessResourceFailureException ex) {
+			// expected
+		}
+		target.setFailing(false);
+		assertEquals(0, incrementer.nextLongValue());
+		assertEquals(1, incrementer.nextLongValue());
+	}
+
+	public void testBlockAllocatingMaxValueIncrementerWithPrefetch() throws InterruptedException {
+		CountingIncrementer target = new CountingIncrementer(0, 1);
+		HiLoMaxValueIncrementer incrementer = new HiLoMaxValueIncrementer();
+		incrementer.setTargetIncrementer(target);
+		incrementer.setBlockSize(10);
+		incrementer.setPrefetchThreshold(5);
+		incrementer.afterPropertiesSet();
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, incrementer.nextLongValue());
+		}
+		assertEquals(1, target.getCallCount());
+		assertEquals(4, incrementer.nextLongValue());
+		for (int i = 0; i < 50 && target.getCallCount() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals("Next block prefetched", 2, target.getCallCount());
+		for (int i = 5; i < 30; i++) {
+			assertEquals(i, incrementer.nextLongValue());
+		}
+	}
+
+	public void testBlockAllocatingMaxValueIncrementerWithConcurrentAccess() throws InterruptedException {
+		CountingIncrementer target = new CountingIncrementer(0, 1);
+		HiLoMaxValueIncrementer incrementer = new HiLoMaxValueIncrementer();
+		incrementer.setTargetIncrementer(target);
+		incrementer.setBlockSize(7);
+		incrementer.setPrefetchThreshold(3);
+		incrementer.afterPropertiesSet();
+		doTestConcurrentAccess(incrementer, 20, 500);
+		assertTrue(target.getCallCount() <= 20 * 500 / 7 + 2);
+	}
+
+	private void doTestConcurrentAccess(
+			final DataFieldMaxValueIncrementer incrementer, int threadCount, final int valuesPerThread)
+			throws InterruptedException {
+
+		final Set values = Collections.synchronizedSet(new HashSet());
+		final Set failures = Collections.synchronizedSet(new HashSet());
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < valuesPerThread; j++) {
+							if (!values.add(new Long(incrementer.nextLongValue()))) {
+								failures.add("Duplicate value");
+							}
+						}
+					}
+					catch (Throwable ex) {
+						failures.add(ex);
+					}
+				}
+			};
+		}
+		for (int i = 0; i < threadCount; i++) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threadCount; i++) {
+			threads[i].join();
+		}
+		assertTrue("No failures: " + failures, failures.isEmpty());
+		assertEquals(threadCount * valuesPerThread, values.size());
+	}
+
+
+	/**
+	 * Target incrementer that simulates a database sequence.
+	 */
+	private static class CountingIncrementer implements DataFieldMaxValueIncrementer {
+
+		private long nextValue;
+
+		private final int increment;
+
+		private int callCount = 0;
+
+		private boolean failing = false;
+
+		public CountingIncrementer(long initialValue, int increment) {
+			this.nextValue = initialValue;
+			this.increment = increment;
+		}
+
+		public synchronized void setFailing(boolean failing) {
+			this.failing = failing;
+		}
+
+		public synchronized int getCallCount() {
+			return callCount;
+		}
+
+		public int nextIntValue() throws DataAccessException {
+			return (int) nextLongValue();
+		}
+
+		public synchronized long nextLongValue() throws DataAccessException {
+			if (this.failing) {
+				throw new DataAccessResourceFailureException("Sequence not available");
+			}
+			this.callCount++;
+			long value = this.nextValue;
+			this.nextValue += this.increment;
+			return value;
+		}
+
+		public String nextStringValue() throws DataAccessException {
+			return Long.toString(nextLongValue());
+		}
+	}
+
 }
@@ -19,18 +19,24 @@ package org.springframework.jdbc.support;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.ResultSet;
 
 import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.easymock.MockControl;
 
 import org.springframework.jdbc.support.lob.DefaultLobHandler;
 import org.springframework.jdbc.support.lob.LobCreator;
 import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.util.StopWatch;
 
 /**
  * @author Juergen Hoeller
@@ -38,6 +44,8 @@ import org.springframework.jdbc.support.lob.LobHandler;
  */
 public class DefaultLobHandlerTests extends TestCase {
 
+	private static final Log logger = LogFactory.getLog(DefaultLobHandlerTests.class);
+
 	public void testGetBlobAsBytes() throws SQLException {
 		LobHandler lobHandler = new DefaultLobHandler();
 		MockControl rsControl = MockControl.createControl(ResultSet.class);
@@ -93,6 +101,94 @@ public class DefaultLobHandlerTests extends TestCase {
 		rsControl.verify();
 	}
 
+	public void testCopyBlobToStream() throws SQLException, IOException {
+		LobHandler lobHandler = new DefaultLobHandler();
+		// 64 MB of generated content, never held in memory as a whole
+		GeneratingInputStream content = new GeneratingInputStream(64 * 1024 * 1024);
+		MockControl rsControl = MockControl.createControl(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.getBinaryStream(1);
+		rsControl.setReturnValue(content);
+		rsControl.replay();
+
+		CountingOutputStream out = new CountingOutputStream();
+		assertEquals(64 * 1024 * 1024, lobHandler.copyBlobToStream(rs, 1, out));
+		assertEquals(64 * 1024 * 1024, out.count);
+		assertEquals("Copied through fixed-size buffer", DefaultLobHandler.DEFAULT_BUFFER_SIZE, content.maxReadLength);
+		assertTrue(content.closed);
+		assertTrue(out.flushed);
+		rsControl.verify();
+	}
+
+	public void testCopyBlobToStreamWithNull() throws SQLException, IOException {
+		LobHandler lobHandler = new DefaultLobHandler();
+		MockControl rsControl = MockControl.createControl(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.getBinaryStream(1);
+		rsControl.setReturnValue(null);
+		rsControl.replay();
+
+		CountingOutputStream out = new CountingOutputStream();
+		assertEquals(-1, lobHandler.copyBlobToStream(rs, 1, out));
+		assertEquals(0, out.count);
+		rsControl.verify();
+	}
+
+	public void testCopyClobToWriter() throws SQLException, IOException {
+		DefaultLobHandler lobHandler = new DefaultLobHandler();
+		lobHandler.setBufferSize(4);
+		MockControl rsControl = MockControl.createControl(ResultSet.class);
+		ResultSet rs = (ResultSet) rsControl.getMock();
+		rs.getCharacterStream(1);
+		rsControl.setReturnValue(new StringReader("testContent"));
+		rs.getCharacterStream(2);
+		rsControl.setReturnValue(new StringReader("moreContent"));
+		rsControl.replay();
+
+		Writer out = new StringWriter();
+		assertEquals(11, lobHandler.copyClobToWriter(rs, 1, out));
+		assertEquals(11, lobHandler.copyClobToWriter(rs, 2, out));
+		assertEquals("testContentmoreContent", out.toString());
+		rsControl.verify();
+	}
+
+	public void testCopyLobsOfIncreasingSize() throws SQLException, IOException {
+		DefaultLobHandler lobHandler = new DefaultLobHandler();
+		StopWatch sw = new StopWatch();
+		// from 1 KB to 64 MB, each step 4 times the previous size
+		for (int size = 1024; size <= 64 * 1024 * 1024; size *= 4) {
+			MockControl rsControl = MockControl.createControl(ResultSet.class);
+			ResultSet rs = (ResultSet) rsControl.getMock();
+			GeneratingInputStream blobContent = new GeneratingInputStream(size);
+			rs.getBinaryStream(1);
+			rsControl.setReturnValue(blobContent);
+			GeneratingReader clobContent = new GeneratingReader(size);
+			rs.getCharacterStream(2);
+			rsControl.setReturnValue(clobContent);
+			rsControl.replay();
+
+			CountingOutputStream out = new CountingOutputStream();
+			sw.start("BLOB of " + size + " bytes");
+			assertEquals(size, lobHandler.copyBlobToStream(rs, 1, out));
+			sw.stop();
+			assertEquals(size, out.count);
+			assertTrue("Buffer bounded for " + size + " bytes",
+					blobContent.maxReadLength <= DefaultLobHandler.DEFAULT_BUFFER_SIZE &&
+					out.maxWriteLength <= DefaultLobHandler.DEFAULT_BUFFER_SIZE);
+
+			CountingWriter writer = new CountingWriter();
+			sw.start("CLOB of " + size + " characters");
+			assertEquals(size, lobHandler.copyClobToWriter(rs, 2, writer));
+			sw.stop();
+			assertEquals(size, writer.count);
+			assertTrue("Buffer bounded for " + size + " characters",
+					clobContent.maxReadLength <= DefaultLobHandler.DEFAULT_BUFFER_SIZE &&
+					writer.maxWriteLength <= DefaultLobHandler.DEFAULT_BUFFER_SIZE);
+			rsControl.verify();
+		}
+		logger.info("Streamed LOBs of increasing size: " + sw.prettyPrint());
+	}
+
 	public void testSetBlobAsBytes() throws SQLException {
 		LobCreator lobCreator = (new DefaultLobHandler()).getLobCreator();
 		byte[] content = "testContent".getBytes();
@@ -158,4 +254,125 @@ public class DefaultLobHandlerTests extends TestCase {
 		psControl.verify();
 	}
 
+
+	/**
+	 * InputStream that generates the given number of bytes on the fly,
+	 * recording the largest read request.
+	 */
+	private static class GeneratingInputStream extends InputStream {
+
+		private long remaining;
+
+		private int maxReadLength;
+
+		private boolean closed;
+
+		public GeneratingInputStream(long length) {
+			this.remaining = length;
+		}
+
+		public int read() {
+			return (read(new byte[1], 0, 1) != -1 ? 'x' : -1);
+		}
+
+		public int read(byte[] buffer, int offset, int length) {
+			this.maxReadLength = Math.max(this.maxReadLength, length);
+			if (this.remaining == 0) {
+				return -1;
+			}
+			int count = (int) Math.min(length, this.remaining);
+			for (int i = offset; i < offset + count; i++) {
+				buffer[i] = 'x';
+			}
+			this.remaining -= count;
+			return count;
+		}
+
+		public void close() {
+			this.closed = true;
+		}
+	}
+
+
+	/**
+	 * Reader that generates the given number of characters on the fly,
+	 * recording the largest read request.
+	 */
+	private static class GeneratingReader extends Reader {
+
+		private long remaining;
+
+		private int maxReadLength;
+
+		public GeneratingReader(long length) {
+			this.remaining = length;
+		}
+
+		public int read(char[] buffer, int offset, int length) {
+			this.maxReadLength = Math.max(this.maxReadLength, length);
+			if (this.remaining == 0) {
+				return -1;
+			}
+			int count = (int) Math.min(length, this.remaining);
+			for (int i = offset; i < offset + count; i++) {
+				buffer[i] = 'x';
+			}
+			this.remaining -= count;
+			return count;
+		}
+
+		public void close() {
+		}
+	}
+
+
+	/**
+	 * OutputStream that just counts the bytes written to it,
+	 * recording the largest write.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		private int maxWriteLength;
+
+		private boolean flushed;
+
+		public void write(int b) {
+			this.count++;
+		}
+
+		public void write(byte[] buffer, int offset, int length) {
+			this.maxWriteLength = Math.max(this.maxWriteLength, length);
+			this.count += length;
+		}
+
+		public void flush() {
+			this.flushed = true;
+		}
+	}
+
+
+	/**
+	 * Writer that just counts the characters written to it,
+	 * recording the largest write.
+	 */
+	private static class CountingWriter extends Writer {
+
+		private long count;
+
+		private int maxWriteLength;
+
+		public void write(char[] buffer, int offset, int length) {
+			this.maxWriteLength = Math.max(this.maxWriteLength, length);
+			this.count += length;
+		}
+
+		public void flush() {
+		}
+
+		public void close() {
+		}
+	}
+
 }
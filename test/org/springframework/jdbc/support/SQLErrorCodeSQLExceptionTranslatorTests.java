@@ -22,15 +22,23 @@ import java.util.LinkedList;
 import java.util.List;
 
 import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.util.StopWatch;
 
 /**
  * @author Rod Johnson
  */
 public class SQLErrorCodeSQLExceptionTranslatorTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(SQLErrorCodeSQLExceptionTranslatorTests.class);
 	
 	private static SQLErrorCodes ERROR_CODES = new SQLErrorCodes();
 	static {
@@ -135,4 +143,136 @@ public class SQLErrorCodeSQLExceptionTranslatorTests extends TestCase {
 		assertEquals(BadSqlGrammarException.class, sext.translate(TASK, SQL, BAD_SQL_EX).getClass());
 	}
 
+	public void testSqlStateTranslation() {
+		SQLErrorCodes sec = new SQLErrorCodes();
+		sec.setUseSqlStateForTranslation(true);
+		sec.setDataIntegrityViolationCodes(new String[] {"23505"});
+		sec.setCannotAcquireLockCodes(new String[] {"40001"});
+		SQLErrorCodeSQLExceptionTranslator sext = new SQLErrorCodeSQLExceptionTranslator(sec);
+
+		assertEquals(DataIntegrityViolationException.class,
+				sext.translate("task", "SQL", new SQLException("", "23505", 1)).getClass());
+		assertEquals(CannotAcquireLockException.class,
+				sext.translate("task", "SQL", new SQLException("", "40001", 1)).getClass());
+		// falls back to SQLState translator, with 07 being bad grammar
+		assertEquals(BadSqlGrammarException.class,
+				sext.translate("task", "SQL", new SQLException("", "07xxx", 23505)).getClass());
+	}
+
+	public void testCodeListedInSeveralCategories() {
+		SQLErrorCodes sec = new SQLErrorCodes();
+		sec.setDataRetrievalFailureCodes(new String[] {"5", "-6"});
+		sec.setOptimisticLockingFailureCodes(new String[] {"5", "007"});
+		sec.setBadSqlGrammarCodes(null);
+		SQLErrorCodeSQLExceptionTranslator sext = new SQLErrorCodeSQLExceptionTranslator(sec);
+
+		assertEquals("Same order of categories as before", DataRetrievalFailureException.class,
+				sext.translate("task", "SQL", new SQLException("", "xx", 5)).getClass());
+		assertEquals(DataRetrievalFailureException.class,
+				sext.translate("task", "SQL", new SQLException("", "xx", -6)).getClass());
+		assertFalse("Only canonical error codes match", sext.translate(
+				"task", "SQL", new SQLException("", "xx", 7)) instanceof OptimisticLockingFailureException);
+	}
+
+	public void testErrorCodesReplacedBySubclass() {
+		SQLErrorCodeSQLExceptionTranslator sext = new SQLErrorCodeSQLExceptionTranslator(new SQLErrorCodes()) {
+			protected DataAccessException customTranslate(String task, String sql, SQLException sqlex) {
+				this.sqlErrorCodes = ERROR_CODES;
+				return null;
+			}
+		};
+		runTests(sext);
+	}
+
+	public void testConcurrentTranslation() throws InterruptedException {
+		final SQLErrorCodeSQLExceptionTranslator sext =
+				new SQLErrorCodeSQLExceptionTranslator(SQLErrorCodesFactory.getInstance().getErrorCodes("Oracle"));
+		final List failures = new LinkedList();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 10000; j++) {
+							assertTrue(sext.translate("task", "SQL", new SQLException("", "xx", 1))
+									instanceof DataIntegrityViolationException);
+							assertTrue(sext.translate("task", "SQL", new SQLException("", "xx", 942))
+									instanceof BadSqlGrammarException);
+						}
+					}
+					catch (Throwable ex) {
+						synchronized (failures) {
+							failures.add(ex);
+						}
+					}
+				}
+			};
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertTrue("No failures: " + failures, failures.isEmpty());
+	}
+
+	public void testTranslationThroughputUnderExceptionStorm() throws InterruptedException {
+		// copy of the shared Oracle codes, plus a custom translation
+		SQLErrorCodes oracleCodes = SQLErrorCodesFactory.getInstance().getErrorCodes("Oracle");
+		SQLErrorCodes sec = new SQLErrorCodes();
+		sec.setBadSqlGrammarCodes(oracleCodes.getBadSqlGrammarCodes());
+		sec.setDataIntegrityViolationCodes(oracleCodes.getDataIntegrityViolationCodes());
+		sec.setCannotAcquireLockCodes(oracleCodes.getCannotAcquireLockCodes());
+		CustomSQLErrorCodesTranslation customTranslation = new CustomSQLErrorCodesTranslation();
+		customTranslation.setErrorCodes(new String[] {"20000"});
+		customTranslation.setExceptionClass("org.springframework.jdbc.support.CustomErrorCodeException");
+		List customTranslations = new LinkedList();
+		customTranslations.add(customTranslation);
+		sec.setCustomTranslations(customTranslations);
+		final SQLErrorCodeSQLExceptionTranslator sext = new SQLErrorCodeSQLExceptionTranslator(sec);
+		// mix of categorized, custom and unknown error codes, the latter going to the fallback translator
+		final SQLException[] storm = new SQLException[] {
+				new SQLException("", "23000", 1), new SQLException("", "42000", 942),
+				new SQLException("", "61000", 54), new SQLException("", "72000", 20000),
+				new SQLException("", "08000", 12345)};
+		final int translationsPerThread = 20000;
+		final List failures = new LinkedList();
+
+		StopWatch sw = new StopWatch();
+		for (int threadCount = 1; threadCount <= 16; threadCount *= 4) {
+			Thread[] threads = new Thread[threadCount];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread() {
+					public void run() {
+						try {
+							for (int j = 0; j < translationsPerThread; j++) {
+								assertNotNull(sext.translate("task", "SQL", storm[j % storm.length]));
+							}
+						}
+						catch (Throwable ex) {
+							synchronized (failures) {
+								failures.add(ex);
+							}
+						}
+					}
+				};
+			}
+			sw.start(threadCount + " threads, " + threadCount * translationsPerThread + " translations");
+			for (int i = 0; i < threads.length; i++) {
+				threads[i].start();
+			}
+			for (int i = 0; i < threads.length; i++) {
+				threads[i].join();
+			}
+			sw.stop();
+			long millis = Math.max(sw.getLastTaskTimeMillis(), 1);
+			logger.info(threadCount + " threads: " + (threadCount * translationsPerThread * 1000L / millis) +
+					" translations per second");
+		}
+		assertTrue("No failures: " + failures, failures.isEmpty());
+		assertEquals(CustomErrorCodeException.class, sext.translate("task", "SQL", storm[3]).getClass());
+		logger.info("SQLException translation under exception storm: " + sw.prettyPrint());
+	}
+
 }
@@ -266,6 +266,32 @@ public class SQLErrorCodesFactoryTests extends TestCase {
 		}
 	}
 
+	public void testErrorCodesCachedPerDataSource() throws Exception {
+		MockControl mdControl = MockControl.createControl(DatabaseMetaData.class);
+		DatabaseMetaData md = (DatabaseMetaData) mdControl.getMock();
+		md.getDatabaseProductName();
+		mdControl.setReturnValue("Oracle", 1);
+		md.getDriverVersion();
+		mdControl.setReturnValue("version", 1);
+		mdControl.replay();
+
+		MockControl ctrlConnection = MockControl.createControl(Connection.class);
+		Connection mockConnection = (Connection) ctrlConnection.getMock();
+		mockConnection.getMetaData();
+		ctrlConnection.setReturnValue(md, 1);
+		mockConnection.close();
+		ctrlConnection.setVoidCallable(1);
+		ctrlConnection.replay();
+
+		DataSource dataSource = new SpringMockDataSource("Oracle", mockConnection);
+		SQLErrorCodes sec = SQLErrorCodesFactory.getInstance().getErrorCodes(dataSource);
+		assertIsOracle(sec);
+		assertSame("Metadata looked up only once", sec, SQLErrorCodesFactory.getInstance().getErrorCodes(dataSource));
+
+		mdControl.verify();
+		ctrlConnection.verify();
+	}
+
 	public void testOracleRecognizedFromMetadata() throws Exception {
 		SQLErrorCodes sec = getErrorCodesFromDataSourceWithGivenMetadata("Oracle", null);
 		assertIsOracle(sec);
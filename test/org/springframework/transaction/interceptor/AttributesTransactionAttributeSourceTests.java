@@ -22,6 +22,8 @@ import javax.servlet.ServletException;
 
 import junit.framework.TestCase;
 
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.beans.ITestBean;
 import org.springframework.beans.TestBean;
 import org.springframework.metadata.support.MapAttributes;
@@ -170,4 +172,45 @@ public class AttributesTransactionAttributeSourceTests extends TestCase {
 		assertEquals(txAtt, actual);
 	}
 
+	public void testCachesPerTargetClass() throws Exception {
+		Method method = ITestBean.class.getMethod("getAge", null);
+
+		TransactionAttribute txAtt = new DefaultTransactionAttribute();
+		MapAttributes ma = new MapAttributes();
+		AttributesTransactionAttributeSource atas = new AttributesTransactionAttributeSource(ma);
+		ma.register(TestBean.class, new Object[] {txAtt});
+		assertNull(atas.getTransactionAttribute(method, null));
+		assertSame(txAtt, atas.getTransactionAttribute(method, TestBean.class));
+
+		// cached results must not change anymore
+		ma.register(ITestBean.class, new Object[] {txAtt});
+		ma.register(TestBean.class, new Object[0]);
+		assertNull(atas.getTransactionAttribute(method, null));
+		assertSame(txAtt, atas.getTransactionAttribute(method, TestBean.class));
+		assertSame(txAtt, atas.getTransactionAttribute(method, ITestBean.class));
+	}
+
+	public void testPreloaderResolvesAttributesForProxiedMethods() throws Exception {
+		Method getAge = ITestBean.class.getMethod("getAge", null);
+		Method getName = ITestBean.class.getMethod("getName", null);
+		TransactionAttribute txAtt = new DefaultTransactionAttribute();
+
+		MapAttributes ma = new MapAttributes();
+		ma.register(getAge, new Object[] {txAtt});
+		AttributesTransactionAttributeSource atas = new AttributesTransactionAttributeSource(ma);
+		TransactionInterceptor ti = new TransactionInterceptor();
+		ti.setTransactionAttributeSource(atas);
+
+		ProxyFactory pf = new ProxyFactory(new TestBean());
+		pf.addInterceptor(ti);
+		Advised proxy = (Advised) pf.getProxy();
+		assertEquals(1, new TransactionAttributePreloader().preloadTransactionAttributes(proxy));
+
+		// attributes must have been cached by now
+		ma.register(getAge, new Object[0]);
+		ma.register(getName, new Object[] {txAtt});
+		assertSame(txAtt, atas.getTransactionAttribute(getAge, TestBean.class));
+		assertNull(atas.getTransactionAttribute(getName, TestBean.class));
+	}
+
 }
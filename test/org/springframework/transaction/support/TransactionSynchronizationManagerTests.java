@@ -0,0 +1,154 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.transaction.support;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.springframework.core.Ordered;
+
+/**
+ * @author agent
+ * @since 1.1.2
+ */
+public class TransactionSynchronizationManagerTests extends TestCase {
+
+	protected void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	public void testBindAndUnbindResources() {
+		for (int i = 0; i < 10; i++) {
+			TransactionSynchronizationManager.bindResource("key" + i, "value" + i);
+		}
+		assertEquals(10, TransactionSynchronizationManager.getResourceMap().size());
+		assertEquals("value7", TransactionSynchronizationManager.getResource(new String("key7")));
+		try {
+			TransactionSynchronizationManager.bindResource("key3", "other");
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+
+		assertEquals("value3", TransactionSynchronizationManager.unbindResource("key3"));
+		assertFalse(TransactionSynchronizationManager.hasResource("key3"));
+		assertNull(TransactionSynchronizationManager.getResource("key3"));
+		assertEquals("value9", TransactionSynchronizationManager.getResource("key9"));
+		for (int i = 0; i < 10; i++) {
+			if (i != 3) {
+				assertEquals("value" + i, TransactionSynchronizationManager.unbindResource("key" + i));
+			}
+		}
+		assertTrue(TransactionSynchronizationManager.getResourceMap().isEmpty());
+		try {
+			TransactionSynchronizationManager.unbindResource("key0");
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+
+	public void testSynchronizationsSortedOnRegistration() {
+		TransactionSynchronization plain1 = new TransactionSynchronizationAdapter() {};
+		TransactionSynchronization plain2 = new TransactionSynchronizationAdapter() {};
+		TransactionSynchronization ordered1 = new OrderedSynchronization(1);
+		TransactionSynchronization ordered2 = new OrderedSynchronization(2);
+		TransactionSynchronization ordered2b = new OrderedSynchronization(2);
+
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.registerSynchronization(plain1);
+		TransactionSynchronizationManager.registerSynchronization(ordered2);
+		List snapshot = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.registerSynchronization(plain2);
+		TransactionSynchronizationManager.registerSynchronization(ordered2b);
+		TransactionSynchronizationManager.registerSynchronization(ordered1);
+
+		List synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		assertEquals(5, synchronizations.size());
+		assertSame(ordered1, synchronizations.get(0));
+		assertSame(ordered2, synchronizations.get(1));
+		assertSame(ordered2b, synchronizations.get(2));
+		assertSame(plain1, synchronizations.get(3));
+		assertSame(plain2, synchronizations.get(4));
+		assertEquals("Earlier snapshot unaffected", 2, snapshot.size());
+		try {
+			synchronizations.remove(0);
+			fail("Should have thrown UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException ex) {
+			// expected
+		}
+
+		TransactionSynchronizationManager.clearSynchronization();
+		assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+		try {
+			TransactionSynchronizationManager.getSynchronizations();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// expected
+		}
+		TransactionSynchronizationManager.initSynchronization();
+		assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+	}
+
+	public void testContextReusedAcrossTransactions() throws Exception {
+		Field contextHolderField = TransactionSynchronizationManager.class.getDeclaredField("contextHolder");
+		contextHolderField.setAccessible(true);
+		ThreadLocal contextHolder = (ThreadLocal) contextHolderField.get(null);
+
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.bindResource("key", "value");
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {});
+		Object context = contextHolder.get();
+		assertNotNull(context);
+		List synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		assertSame("Snapshot cached until next registration",
+				synchronizations, TransactionSynchronizationManager.getSynchronizations());
+		TransactionSynchronizationManager.unbindResource("key");
+		TransactionSynchronizationManager.clearSynchronization();
+
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.bindResource("key", "value");
+		assertSame("Context reused for next transaction", context, contextHolder.get());
+		TransactionSynchronizationManager.unbindResource("key");
+		TransactionSynchronizationManager.clearSynchronization();
+		assertSame(context, contextHolder.get());
+		assertFalse(TransactionSynchronizationManager.hasResource("key"));
+	}
+
+
+	private static class OrderedSynchronization extends TransactionSynchronizationAdapter implements Ordered {
+
+		private final int order;
+
+		private OrderedSynchronization(int order) {
+			this.order = order;
+		}
+
+		public int getOrder() {
+			return order;
+		}
+	}
+
+}
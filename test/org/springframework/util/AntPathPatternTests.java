@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Tests for AntPathPattern, including a matching benchmark for
+ * typical URL and classpath patterns.
+ * @author agent
+ * @since 1.1.2
+ */
+public class AntPathPatternTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(AntPathPatternTests.class);
+
+	private static final String[][] URL_CASES = new String[][] {
+		{"/shop/cart.html", "/shop/cart.html"},
+		{"/shop/*.html", "/shop/cart.html"},
+		{"/shop/cart*", "/shop/cartview"},
+		{"/shop/**/view", "/shop/a/b/c/view"},
+		{"/shop/*/items/?", "/shop/books/items/1"},
+		{"/**/*.jsp", "/WEB-INF/jsp/shop/cart.jsp"}};
+
+	private static final String[][] CLASSPATH_CASES = new String[][] {
+		{"org/springframework/**/*.class", "org/springframework/beans/factory/support/RootBeanDefinition.class"},
+		{"META-INF/spring/*-context.xml", "META-INF/spring/app-context.xml"},
+		{"com/mycompany/**/applicationContext*.xml", "com/mycompany/module/sub/applicationContext-dao.xml"},
+		{"**/*.properties", "org/springframework/util/messages.properties"}};
+
+	public void testSegmentKinds() {
+		assertTrue(new AntPathPattern("/test/cart").matches("/test/cart"));
+		assertFalse(new AntPathPattern("/test/cart").matches("/test/carts"));
+		assertTrue(new AntPathPattern("/test/*").matches("/test/cart"));
+		assertFalse(new AntPathPattern("/test/*").matches("/test/cart/view"));
+		assertTrue(new AntPathPattern("/test/ca*").matches("/test/ca"));
+		assertTrue(new AntPathPattern("/test/ca*").matches("/test/cart"));
+		assertFalse(new AntPathPattern("/test/ca*").matches("/test/c"));
+		assertTrue(new AntPathPattern("/test/*.html").matches("/test/.html"));
+		assertTrue(new AntPathPattern("/test/*.html").matches("/test/cart.html"));
+		assertFalse(new AntPathPattern("/test/*.html").matches("/test/cart.htm"));
+		assertTrue(new AntPathPattern("/test/c?r*.h*l").matches("/test/cart.html"));
+		assertFalse(new AntPathPattern("/test/c?r*.h*l").matches("/test/crt.html"));
+	}
+
+	public void testDoubleWildcard() {
+		AntPathPattern pattern = new AntPathPattern("/a/**/b/**/c");
+		assertTrue(pattern.matches("/a/b/c"));
+		assertTrue(pattern.matches("/a/x/y/b/z/c"));
+		assertTrue(pattern.matches("/a/b/b/c/c"));
+		assertFalse(pattern.matches("/a/c/b"));
+		assertFalse(pattern.matches("/a/b/c/d"));
+		assertTrue(new AntPathPattern("/a/**").matches("/a"));
+		assertTrue(new AntPathPattern("/a/**").matches("/a/"));
+		assertTrue(new AntPathPattern("/**/**").matches("/"));
+		assertFalse(new AntPathPattern("/a/**").matches("a/b"));
+	}
+
+	public void testSlashHandling() {
+		AntPathPattern pattern = new AntPathPattern("/test/view");
+		assertTrue(pattern.matches("/test/view/"));
+		assertTrue(pattern.matches("//test//view"));
+		assertFalse(pattern.matches("test/view"));
+		assertTrue(new AntPathPattern("").matches(""));
+		assertTrue(new AntPathPattern("/").matches("/"));
+		assertFalse(new AntPathPattern("/").matches("/test"));
+	}
+
+	public void testMatchSegment() {
+		String str = "/shop/cart.html";
+		assertTrue(AntPathPattern.matchSegment("cart.*", str, 6, str.length()));
+		assertTrue(AntPathPattern.matchSegment("s?op", str, 1, 5));
+		assertFalse(AntPathPattern.matchSegment("s?op", str, 1, 4));
+		assertTrue(AntPathPattern.matchSegment("*", str, 1, 1));
+	}
+
+	public void testCompiledPatternsCached() {
+		AntPathPattern pattern = PathMatcher.compile("/cached/**/test");
+		assertSame(pattern, PathMatcher.compile("/cached/**/test"));
+		for (int i = 0; i < 2000; i++) {
+			PathMatcher.compile("/dynamic/" + i + "/*.html");
+		}
+		assertNotSame("Evicted", pattern, PathMatcher.compile("/cached/**/test"));
+		pattern = PathMatcher.compile("/cached/**/test");
+		assertSame("Cached after cache limit reached", pattern, PathMatcher.compile("/cached/**/test"));
+		assertEquals(new AntPathPattern("/cached/**/test"), pattern);
+		assertEquals("/cached/**/test", pattern.toString());
+	}
+
+	public void testMatchingBenchmark() {
+		int iterations = 50000;
+		StopWatch sw = new StopWatch();
+		doTestMatching(sw, "URL patterns", URL_CASES, iterations);
+		doTestMatching(sw, "classpath patterns", CLASSPATH_CASES, iterations);
+		logger.info(sw.prettyPrint());
+	}
+
+	private void doTestMatching(StopWatch sw, String name, String[][] cases, int iterations) {
+		AntPathPattern[] patterns = new AntPathPattern[cases.length];
+		for (int i = 0; i < cases.length; i++) {
+			patterns[i] = new AntPathPattern(cases[i][0]);
+			assertTrue(cases[i][0] + " matches " + cases[i][1], patterns[i].matches(cases[i][1]));
+		}
+
+		sw.start(iterations + " x " + name + " via compiled patterns");
+		for (int i = 0; i < iterations; i++) {
+			for (int j = 0; j < cases.length; j++) {
+				patterns[j].matches(cases[j][1]);
+			}
+		}
+		sw.stop();
+
+		sw.start(iterations + " x " + name + " via PathMatcher");
+		for (int i = 0; i < iterations; i++) {
+			for (int j = 0; j < cases.length; j++) {
+				PathMatcher.match(cases[j][0], cases[j][1]);
+			}
+		}
+		sw.stop();
+
+		sw.start(iterations / 10 + " x " + name + " with compilation");
+		for (int i = 0; i < iterations / 10; i++) {
+			for (int j = 0; j < cases.length; j++) {
+				new AntPathPattern(cases[j][0]).matches(cases[j][1]);
+			}
+		}
+		sw.stop();
+	}
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.PathMatcher;
+import org.springframework.util.StopWatch;
+
+/**
+ * Tests for UrlPathTrie, including a lookup benchmark with thousands
+ * of patterns against a linear scan via PathMatcher.
+ * @author agent
+ * @since 1.1.2
+ */
+public class UrlPathTrieTests extends TestCase {
+
+	private static final Log logger = LogFactory.getLog(UrlPathTrieTests.class);
+
+	private static final String[] PATTERNS = new String[] {
+		"/", "/test", "/test/view/*", "/test/*/*", "/test/**", "/test/*.html", "/test/*",
+		"/t?st/index.html", "/**/*.jsp", "/admin/**/edit", "/admin/**/**/list*", "/docs/**",
+		"/a/**/b/**/c", "/*/x", "relative/*", "*"};
+
+	private static final String[] PATHS = new String[] {
+		"/", "", "/test", "/test/", "//test", "/test/view/1", "/test/view", "/test/a/b", "/test/a/b/c",
+		"/test/index.html", "/test/index", "/tast/index.html", "/tst/index.html", "/x.jsp", "/a/b/x.jsp",
+		"/admin/edit", "/admin/a/b/edit", "/admin/a/edit/x", "/admin/list", "/admin/a/listAll",
+		"/docs", "/docs/a/b", "/a/b/c", "/a/x/b/y/c", "/a/b/b/c/c", "/a/c/b", "/q/x", "/q/y",
+		"relative/a", "relative", "other", "/other"};
+
+	private UrlPathTrie trie;
+
+	protected void setUp() {
+		this.trie = new UrlPathTrie();
+		for (int i = 0; i < PATTERNS.length; i++) {
+			assertTrue(this.trie.add(PATTERNS[i], PATTERNS[i]));
+		}
+	}
+
+	public void testMatchesLikePathMatcher() {
+		for (int i = 0; i < PATHS.length; i++) {
+			assertMatchesLikePathMatcher(PATTERNS, PATHS[i], this.trie.lookupPattern(PATHS[i]));
+		}
+	}
+
+	public void testMostSpecificPatternWins() {
+		assertEquals("/test", this.trie.lookupPattern("/test"));
+		assertEquals("/test/view/*", this.trie.lookupPattern("/test/view/1"));
+		assertEquals("/test/*.html", this.trie.lookupPattern("/test/index.html"));
+		assertEquals("/test/*", this.trie.lookupPattern("/test/index"));
+		assertEquals("/test/*/*", this.trie.lookupPattern("/test/a/b"));
+		assertEquals("/test/**", this.trie.lookupPattern("/test/a/b/c"));
+		assertEquals("/t?st/index.html", this.trie.lookupPattern("/tast/index.html"));
+		assertEquals("/test/*", this.trie.lookupPattern("/test/x.jsp"));
+		assertEquals("/**/*.jsp", this.trie.lookupPattern("/a/b/x.jsp"));
+		assertEquals("/a/**/b/**/c", this.trie.lookupPattern("/a/x/b/y/c"));
+		assertEquals("*", this.trie.lookupPattern("other"));
+		assertNull(this.trie.lookupPattern("/other"));
+	}
+
+	public void testAntStylePatterns() {
+		String[] patterns = new String[] {
+			"/**/pathmatchingTest.html", "/**/pathmatching??.html", "/**/path??matching.html",
+			"/**/??path??matching.html", "/**/*.jsp", "/administrator/**/pathmatching.html",
+			"/administrator/**/testlast*", "/administrator/another/bla.xml",
+			"/administrator/testing/longer/**/**/**/**/**", "/administrator/testing/longer2/**/**/bla/**",
+			"/*test*.jpeg", "/*/test.jpeg", "/anotherTest*", "/shortpattern/testing", "/sho*"};
+		UrlPathTrie antTrie = new UrlPathTrie();
+		for (int i = 0; i < patterns.length; i++) {
+			antTrie.add(patterns[i], patterns[i]);
+		}
+		String[] matching = new String[] {
+			"/pathmatchingTest.html", "/pathmatchingAA.html", "/administrator/pathmatching.html",
+			"/administrator/test/pathmatching.html", "/bla.jsp", "/testing/bla.jsp",
+			"/administrator/another/bla.xml", "/administrator/test/testlastbit",
+			"/administrator/testing/longer/bla", "/administrator/testing/longer/test.jsp",
+			"/XXpathXXmatching.html", "/pathXXmatching.html", "/show1.html", "/reallyGood-test-is-this.jpeg",
+			"/testing/test.jpeg", "/anotherTest"};
+		String[] notMatching = new String[] {
+			"/pathmatchingA.html", "/administratort/pathmatching.html", "/administrator/another/bla.gif",
+			"/administrator/test/testla", "/administrator/testing/longer2/notmatching/notmatching",
+			"/shortpattern/testing/toolong", "/XpathXXmatching.html", "/XXpathmatching.html",
+			"/reallyGood-tst-is-this.jpeg", "/testing/test.jpg"};
+		for (int i = 0; i < matching.length; i++) {
+			assertNotNull("Match for [" + matching[i] + "]", antTrie.lookup(matching[i]));
+			assertMatchesLikePathMatcher(patterns, matching[i], antTrie.lookupPattern(matching[i]));
+		}
+		for (int i = 0; i < notMatching.length; i++) {
+			assertNull("No match for [" + notMatching[i] + "]", antTrie.lookup(notMatching[i]));
+		}
+	}
+
+	public void testEquivalentPatterns() {
+		assertFalse(this.trie.add("/test/", "other"));
+		assertFalse(this.trie.add("//test", "other"));
+		assertEquals("/test", this.trie.lookup("/test/"));
+		assertEquals(PATTERNS.length, this.trie.size());
+	}
+
+	public void testRandomPatternsMatchLikePathMatcher() {
+		Random random = new Random(42);
+		String[] segments = new String[] {"a", "b", "ab", "*", "a*", "*b", "?", "a?", "**"};
+		List patterns = new ArrayList();
+		UrlPathTrie randomTrie = new UrlPathTrie();
+		for (int i = 0; i < 300; i++) {
+			String pattern = randomPath(random, segments);
+			if (randomTrie.add(pattern, pattern)) {
+				patterns.add(pattern);
+			}
+		}
+		String[] patternArray = (String[]) patterns.toArray(new String[patterns.size()]);
+		String[] pathSegments = new String[] {"a", "b", "ab", "ba", "aab", "c"};
+		for (int i = 0; i < 1000; i++) {
+			String path = randomPath(random, pathSegments);
+			assertMatchesLikePathMatcher(patternArray, path, randomTrie.lookupPattern(path));
+		}
+	}
+
+	public void testLongPathWithMultipleDoubleWildcards() {
+		String[] patterns = new String[] {"/**/a/**/b/**/c", "/**/b/**/a/**/d", "/x/**/a/**/**/b"};
+		UrlPathTrie wildcardTrie = new UrlPathTrie();
+		for (int i = 0; i < patterns.length; i++) {
+			wildcardTrie.add(patterns[i], patterns[i]);
+		}
+		StringBuffer path = new StringBuffer();
+		for (int i = 0; i < 2000; i++) {
+			path.append("/a/b");
+		}
+		String[] paths = new String[] {path.toString(), path + "/c", path + "/d", "/x" + path, "/x" + path + "/e"};
+
+		StopWatch sw = new StopWatch();
+		sw.start("lookups of paths with " + path.length() + " characters");
+		for (int i = 0; i < paths.length; i++) {
+			assertMatchesLikePathMatcher(patterns, paths[i], wildcardTrie.lookupPattern(paths[i]));
+		}
+		sw.stop();
+		assertEquals("/**/a/**/b/**/c", wildcardTrie.lookupPattern(paths[1]));
+		assertEquals("/**/b/**/a/**/d", wildcardTrie.lookupPattern(paths[2]));
+		assertEquals("/x/**/a/**/**/b", wildcardTrie.lookupPattern(paths[3]));
+		assertNull(wildcardTrie.lookupPattern(paths[0]));
+		assertNull(wildcardTrie.lookupPattern(paths[4]));
+		assertTrue("Lookups without backtracking over all path splits", sw.getTotalTimeMillis() < 5000);
+		logger.info(sw.prettyPrint());
+	}
+
+	public void testLookupWith2000Patterns() {
+		List patterns = new ArrayList();
+		for (int i = 0; i < 500; i++) {
+			patterns.add("/module" + i + "/list.html");
+			patterns.add("/module" + i + "/edit/*.html");
+			patterns.add("/module" + i + "/**/view");
+			patterns.add("/module" + i + "/report*.pdf");
+		}
+		UrlPathTrie largeTrie = new UrlPathTrie();
+		for (int i = 0; i < patterns.size(); i++) {
+			largeTrie.add((String) patterns.get(i), patterns.get(i));
+		}
+		String[] paths = new String[] {
+			"/module250/list.html", "/module499/edit/item.html", "/module0/a/b/view", "/module42/report2004.pdf",
+			"/module500/list.html", "/unmapped/path"};
+		int lookupCount = 20000;
+
+		StopWatch sw = new StopWatch();
+		sw.start(lookupCount + " lookups via trie");
+		for (int i = 0; i < lookupCount; i++) {
+			largeTrie.lookup(paths[i % paths.length]);
+		}
+		sw.stop();
+
+		sw.start(lookupCount / 100 + " lookups via PathMatcher scan");
+		for (int i = 0; i < lookupCount / 100; i++) {
+			String path = paths[i % paths.length];
+			for (int j = 0; j < patterns.size(); j++) {
+				PathMatcher.match((String) patterns.get(j), path);
+			}
+		}
+		sw.stop();
+
+		for (int i = 0; i < paths.length; i++) {
+			String pattern = largeTrie.lookupPattern(paths[i]);
+			assertEquals(i < 4, pattern != null);
+			if (pattern != null) {
+				assertTrue(PathMatcher.match(pattern, paths[i]));
+			}
+		}
+		logger.info(sw.prettyPrint());
+	}
+
+	private void assertMatchesLikePathMatcher(String[] patterns, String path, String foundPattern) {
+		boolean anyMatch = false;
+		for (int i = 0; i < patterns.length; i++) {
+			if (PathMatcher.match(patterns[i], path)) {
+				anyMatch = true;
+			}
+		}
+		assertEquals("Match for path [" + path + "]: " + foundPattern, anyMatch, foundPattern != null);
+		if (foundPattern != null) {
+			assertTrue("Pattern [" + foundPattern + "] matches [" + path + "]", PathMatcher.match(foundPattern, path));
+		}
+	}
+
+	private String randomPath(Random random, String[] segments) {
+		StringBuffer path = new StringBuffer();
+		int segmentCount = random.nextInt(5);
+		for (int i = 0; i < segmentCount; i++) {
+			path.append('/').append(segments[random.nextInt(segments.length)]);
+		}
+		return (path.length() > 0 ? path.toString() : "/");
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2002-2004 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.view;
+
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.servlet.View;
+
+/**
+ * Tests for the view cache in AbstractCachingViewResolver.
+ * @author agent
+ * @since 1.1.2
+ */
+public class CachingViewResolverTests extends TestCase {
+
+	private CountingViewResolver resolver;
+
+	protected void setUp() {
+		StaticWebApplicationContext wac = new StaticWebApplicationContext();
+		wac.refresh();
+		this.resolver = new CountingViewResolver();
+		this.resolver.setApplicationContext(wac);
+	}
+
+	public void testViewsCachedPerLocale() throws Exception {
+		View view = this.resolver.resolveViewName("view", Locale.ENGLISH);
+		assertNotNull(view);
+		assertSame(view, this.resolver.resolveViewName("view", Locale.ENGLISH));
+		View germanView = this.resolver.resolveViewName("view", Locale.GERMAN);
+		assertNotSame(view, germanView);
+		assertSame(germanView, this.resolver.resolveViewName("view", Locale.GERMAN));
+		assertEquals(2, this.resolver.loadCount);
+		assertEquals(2, this.resolver.getCacheSize());
+		assertEquals(2, this.resolver.getCacheHitCount());
+		assertEquals(2, this.resolver.getCacheMissCount());
+	}
+
+	public void testLocaleIndependentViews() throws Exception {
+		InternalResourceViewResolver vr = new InternalResourceViewResolver();
+		vr.setApplicationContext(new StaticWebApplicationContext());
+		View view = vr.resolveViewName("view", Locale.ENGLISH);
+		assertSame(view, vr.resolveViewName("view", Locale.GERMAN));
+		assertEquals(1, vr.getCacheSize());
+	}
+
+	public void testUnresolvedViewsCached() throws Exception {
+		assertNull(this.resolver.resolveViewName("unknown", Locale.ENGLISH));
+		assertNull(this.resolver.resolveViewName("unknown", Locale.ENGLISH));
+		assertEquals(1, this.resolver.loadCount);
+		assertEquals(1, this.resolver.getCacheHitCount());
+
+		this.resolver.setCacheUnresolved(false);
+		assertNull(this.resolver.resolveViewName("unknown2", Locale.ENGLISH));
+		assertNull(this.resolver.resolveViewName("unknown2", Locale.ENGLISH));
+		assertEquals(3, this.resolver.loadCount);
+	}
+
+	public void testCacheLimit() throws Exception {
+		this.resolver.setCacheLimit(2);
+		View view1 = this.resolver.resolveViewName("view1", Locale.ENGLISH);
+		this.resolver.resolveViewName("view2", Locale.ENGLISH);
+		this.resolver.resolveViewName("unknown", Locale.ENGLISH);
+		assertEquals(2, this.resolver.getCacheSize());
+		assertNotSame("Eldest view removed", view1, this.resolver.resolveViewName("view1", Locale.ENGLISH));
+		assertEquals(2, this.resolver.getCacheSize());
+		assertEquals(4, this.resolver.loadCount);
+	}
+
+	public void testUnresolvedCacheLimit() throws Exception {
+		assertEquals(AbstractCachingViewResolver.DEFAULT_UNRESOLVED_CACHE_LIMIT, this.resolver.getUnresolvedCacheLimit());
+		this.resolver.setUnresolvedCacheLimit(2);
+		View view = this.resolver.resolveViewName("view", Locale.ENGLISH);
+		this.resolver.resolveViewName("unknown1", Locale.ENGLISH);
+		this.resolver.resolveViewName("unknown2", Locale.ENGLISH);
+		this.resolver.resolveViewName("unknown3", Locale.ENGLISH);
+		assertEquals(3, this.resolver.getCacheSize());
+		assertSame("Resolved view kept", view, this.resolver.resolveViewName("view", Locale.ENGLISH));
+		this.resolver.resolveViewName("unknown3", Locale.ENGLISH);
+		assertEquals(4, this.resolver.loadCount);
+		this.resolver.resolveViewName("unknown1", Locale.ENGLISH);
+		assertEquals("Eldest unresolved view name removed", 5, this.resolver.loadCount);
+		assertEquals(3, this.resolver.getCacheSize());
+	}
+
+	public void testOverriddenCacheKey() throws Exception {
+		CountingViewResolver resolver = new CountingViewResolver() {
+			protected String getCacheKey(String viewName, Locale locale) {
+				return viewName;
+			}
+		};
+		resolver.setApplicationContext(this.resolver.getApplicationContext());
+		View view = resolver.resolveViewName("view", Locale.ENGLISH);
+		assertSame("Cached by overridden key", view, resolver.resolveViewName("view", Locale.GERMAN));
+		assertEquals(1, resolver.loadCount);
+		assertEquals(1, resolver.getCacheSize());
+
+		resolver.removeFromCache("view", Locale.GERMAN);
+		assertEquals(0, resolver.getCacheSize());
+		assertNotSame(view, resolver.resolveViewName("view", Locale.ENGLISH));
+		assertEquals(2, resolver.loadCount);
+	}
+
+	public void testRemoveFromCacheAndClearCache() throws Exception {
+		View view = this.resolver.resolveViewName("view", Locale.ENGLISH);
+		View germanView = this.resolver.resolveViewName("view", Locale.GERMAN);
+		this.resolver.removeFromCache("view", Locale.ENGLISH);
+		assertEquals(1, this.resolver.getCacheSize());
+		assertNotSame(view, this.resolver.resolveViewName("view", Locale.ENGLISH));
+		assertSame(germanView, this.resolver.resolveViewName("view", Locale.GERMAN));
+
+		this.resolver.clearCache();
+		assertEquals(0, this.resolver.getCacheSize());
+		assertNotSame(germanView, this.resolver.resolveViewName("view", Locale.GERMAN));
+		assertEquals(4, this.resolver.loadCount);
+	}
+
+	public void testWithoutCache() throws Exception {
+		this.resolver.setCache(false);
+		View view = this.resolver.resolveViewName("view", Locale.ENGLISH);
+		assertNotSame(view, this.resolver.resolveViewName("view", Locale.ENGLISH));
+		assertEquals(0, this.resolver.getCacheSize());
+		assertEquals(0, this.resolver.getCacheHitCount());
+		assertEquals(2, this.resolver.getCacheMissCount());
+	}
+
+
+	private static class CountingViewResolver extends AbstractCachingViewResolver {
+
+		private int loadCount = 0;
+
+		protected View loadView(String viewName, Locale locale) {
+			this.loadCount++;
+			if (viewName.startsWith("unknown")) {
+				return null;
+			}
+			InternalResourceView view = new InternalResourceView();
+			view.setUrl(viewName + "_" + locale + ".jsp");
+			return view;
+		}
+	}
+
+}